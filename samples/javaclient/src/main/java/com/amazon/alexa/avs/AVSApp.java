@@ -88,7 +88,7 @@ public class AVSApp implements ExpectSpeechListener, RecordingRMSListener, RegCo
 		AVSAudioPlayerFactory factory = new AVSAudioPlayerFactory();
 		controller = new AVSController(this, factory, new AlertManagerFactory(), getAVSClientFactory(deviceConfig),
 				DialogRequestIdAuthority.getInstance(), new WakeWordIPCFactory(), deviceConfig, this);
-		player = factory.getAudioPlayer(controller);
+		player = factory.getAudioPlayer(controller, deviceConfig);
 
 		authSetup = new AuthSetup(config, this);
 		authSetup.addAccessTokenListener(this);
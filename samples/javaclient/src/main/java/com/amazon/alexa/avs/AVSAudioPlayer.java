@@ -27,26 +27,20 @@ import com.amazon.alexa.avs.message.response.speaker.SetMute;
 import com.amazon.alexa.avs.message.response.speaker.VolumePayload;
 import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
+import java.nio.file.Paths;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
-import javazoom.jl.player.Player;
-import uk.co.caprica.vlcj.component.AudioMediaPlayerComponent;
 import uk.co.caprica.vlcj.player.MediaPlayer;
 import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
 
@@ -56,26 +50,43 @@ public class AVSAudioPlayer {
 
     // callback to send audio events
     private final AVSController controller;
-    // vlc instance to play media
-    private AudioMediaPlayerComponent audioPlayer;
+    // vlc players, reused from item to item
+    private final MediaPlayerPool mediaPlayerPool;
+    // player of the current item and its listener
+    private volatile MediaPlayer mediaPlayer;
+    private ContentListener mediaPlayerListener;
+    // the next item, opened ahead of time on a second player
+    private StandbyPlayer standbyPlayer;
+    // set once the current item is nearly finished, so the next one should be prefetched
+    private volatile boolean prefetchWanted;
+    // how long before the end of an item the next one is prefetched
+    private final long prefetchLeadMs;
+    // resolves playlist urls of queued items to the streams they list
+    private final PlaylistResolver playlistResolver;
+    // set when the player reports an error, so it isn't reused
+    private volatile boolean mediaPlayerFailed;
+    // guards media player operations; the player itself changes from item to item
+    private final Object mediaPlayerLock = new Object();
     // queue of listen directive media
     private final Queue<Stream> playQueue;
-    // queue of speak directive media
-    private final Queue<SpeakItem> speakQueue;
+    // decodes and plays speak directive media
+    private final SpeechPipeline speechPipeline;
+    // guards speech state changes between the directive and speech event threads
+    private final Object speechLock = new Object();
     // Cache of URLs associated with the current AVSPlayItem/stream
     private Set<String> streamUrls;
     // Urls associated with the current stream that we've already tried to play
     private Set<String> attemptedUrls;
-    // Map of VLC-centric urls to file urls - we use this map to delete local files after playing
-    private Map<String, String> cachedAudioFiles;
-    // Alarm thread
-    private Thread alarmThread;
-    // Speaker thread
-    private Thread playThread;
-    // Object on which to lock
-    private Object playLock = new Object();
-    // How long the thread should block on waiting for audio to finish playing
-    private static final int TIMEOUT_IN_MS = 3000;
+    // attached content of queued Play directives, deleted as items leave the play queue
+    private final AttachmentSpool attachmentSpool;
+    // serves media through the audio cache; null if the cache couldn't be opened
+    private final CachingAudioProxy audioProxy;
+    // plays speech, earcons and alarms through one long-lived output line
+    private final SpeechRenderEngine renderEngine;
+    // earcons and the alarm, decoded ahead of time
+    private final EarconCache earconCache;
+    // the alarm sound being played, looped while the alert is active
+    private SpeechRenderEngine.Render alarmRender;
 
     // VLCJ volumes are between 0-200. Alexa volumes are from 0-100. These constants are used to
     // convert and limit volume values.
@@ -83,13 +94,33 @@ public class AVSAudioPlayer {
     private static final int VLCJ_MIN_VOLUME = 0;
     private static final int VLCJ_MAX_VOLUME = 200;
 
+    // while Alexa speaks, content is turned down to this fraction of its volume instead of being
+    // paused, ramping over DUCK_RAMP_MS in steps
+    private static final float CONTENT_DUCKED_GAIN = 0.3f;
+    private static final long DUCK_RAMP_MS = 300;
+    private static final long DUCK_STEP_MS = 20;
+
+    // players kept for reuse, and items played by one before it is replaced
+    private static final int MEDIA_PLAYER_POOL_SIZE = 2;
+    private static final int MEDIA_PLAYER_MAX_USES = 20;
+
+    // bounds the attached content held for queued Play directives
+    private static final long ATTACHMENT_SPOOL_QUOTA_BYTES = 64L * 1024 * 1024;
+
+    // media downloaded for items, kept for when they are played again
+    private static final String AUDIO_CACHE_DIRECTORY = "audio-cache";
+    private static final long AUDIO_CACHE_BUDGET_BYTES = 50L * 1024 * 1024;
+
+    private static final String ALARM_SOUND = "res/alarm.mp3";
+    // decoded when the player is created, so they play without delay
+    private static final String[] BUNDLED_SOUNDS =
+            { "res/start.mp3", "res/stop.mp3", "res/error.mp3", ALARM_SOUND };
+
     // VLC's elapsed time doesn't work correctly. So we're using System.nanoTime() to get accurate
     // timestamps
     private AudioPlayerTimer timer;
-    // track the last progressReport sent time
-    private boolean waitForPlaybackFinished;
-    // used for speak directives and earcons
-    private Player speaker = null;
+    // starts queued media once speech and pending events allow it
+    private final PlaybackScheduler playbackScheduler;
     private final ClassLoader resLoader; // used to load resource files
 
     private String latestStreamToken = "";
@@ -102,7 +133,15 @@ public class AVSAudioPlayer {
      */
     private final AudioPlayerStateMachine audioPlayerStateMachine;
 
-    private int currentVolume;
+    // changed under mediaPlayerLock, together with the media player volume
+    private volatile int currentVolume;
+
+    // ramps the content volume for ducking on the shared TimerWheel; the gain fields are guarded
+    // by duckLock
+    private final Object duckLock = new Object();
+    private float contentGain = 1f;
+    private float contentGainTarget = 1f;
+    private TimerWheel.Timeout duckRamp;
 
     private long playbackStutterStartedOffsetInMilliseconds;
 
@@ -125,28 +164,37 @@ public class AVSAudioPlayer {
 
     private volatile SpeechState speechState = SpeechState.FINISHED;
 
-    private boolean currentlyMuted;
+    private volatile boolean currentlyMuted;
 
-    public AVSAudioPlayer(AVSController controller) {
+    public AVSAudioPlayer(AVSController controller, long prefetchLeadMs) {
         this.controller = controller;
+        this.prefetchLeadMs = prefetchLeadMs;
+        playlistResolver = new PlaylistResolver();
         resLoader = Thread.currentThread().getContextClassLoader();
         timer = new AudioPlayerTimer();
-        waitForPlaybackFinished = false;
-        playQueue = new LinkedList<Stream>();
-        speakQueue = new LinkedList<SpeakItem>();
+        playQueue = new ConcurrentLinkedQueue<Stream>();
+        renderEngine = new SpeechRenderEngine();
+        earconCache = new EarconCache(renderEngine, resLoader);
+        earconCache.load(BUNDLED_SOUNDS);
+        speechPipeline = new SpeechPipeline(renderEngine, new SpeechPipelineListener());
+        playbackScheduler = new PlaybackScheduler(this::startPlayback, this::isSpeaking,
+                controller::whenEventsSent);
         streamUrls = new HashSet<String>();
         attemptedUrls = new HashSet<String>();
-        cachedAudioFiles = new HashMap<String, String>();
+        attachmentSpool = AttachmentSpool.createDefault(ATTACHMENT_SPOOL_QUOTA_BYTES);
+        audioProxy = createAudioProxy();
+        mediaPlayerPool = new MediaPlayerPool(MEDIA_PLAYER_POOL_SIZE, MEDIA_PLAYER_MAX_USES);
         setupAudioPlayer();
 
-        currentVolume = audioPlayer.getMediaPlayer().getVolume();
-        currentlyMuted = audioPlayer.getMediaPlayer().isMute();
+        currentVolume = mediaPlayer.getVolume();
+        currentlyMuted = mediaPlayer.isMute();
 
         audioPlayerStateMachine = new AudioPlayerStateMachine(this, controller);
 
         progressReporter = new AudioPlayerProgressReporter(
                 new ProgressReportDelayEventRunnable(audioPlayerStateMachine),
-                new ProgressReportIntervalEventRunnable(audioPlayerStateMachine), timer);
+                new ProgressReportIntervalEventRunnable(audioPlayerStateMachine), timer,
+                TimerWheel.getInstance());
 
         listeners = new HashSet<>();
     }
@@ -155,14 +203,36 @@ public class AVSAudioPlayer {
         listeners.add(listener);
     }
 
+    /**
+     * Start decoding the speech of a Speak directive that will be handled once the directives
+     * ahead of it are, so it can play without delay.
+     */
+    public void prepareSpeak(Speak speak) {
+        speechPipeline.prepare(speak.getToken(), speak.getAttachedContent());
+    }
+
+    /**
+     * Stop decoding the speech of a Speak directive that was prepared but will not be handled.
+     */
+    public void discardSpeak(Speak speak) {
+        speechPipeline.discard(speak.getToken());
+    }
+
     public void handleSpeak(Speak speak) {
         SpeakItem speakItem = new SpeakItem(speak.getToken(), speak.getAttachedContent());
 
-        speakQueue.add(speakItem);
-        // if not already speaking, start speech
-        if (speakQueue.size() == 1) {
-            startSpeech();
+        boolean started;
+        synchronized (speechLock) {
+            started = setSpeechState(SpeechState.PLAYING);
+            speechPipeline.enqueue(speakItem);
+        }
+        if (started) {
+            // block the directives behind this one until speech ends
+            notifyAlexaSpeechStarted();
         }
+        interruptAlerts();
+        // content keeps playing underneath the speech
+        duckContent(true);
     }
 
     public void handlePlay(Play play) throws DirectiveHandlingException {
@@ -183,17 +253,14 @@ public class AVSAudioPlayer {
 
         if (stream.hasAttachedContent()) {
             try {
-                File tmp = File.createTempFile(UUID.randomUUID().toString(), ".mp3");
-                tmp.deleteOnExit();
-                Files.copy(stream.getAttachedContent(), tmp.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING);
-
-                stream.setUrl(tmp.getAbsolutePath());
-                add(stream);
+                stream.setUrl(attachmentSpool.spool(stream.getAttachedContent()).toString());
             } catch (IOException e) {
-                log.error("Error while saving audio to a file", e);
+                log.error("Error while spooling attached content", e);
                 throw new DirectiveHandlingException(ExceptionType.INTERNAL_ERROR,
-                        "Error saving attached content to disk, unable to handle Play directive.");
+                        "Error spooling attached content, unable to handle Play directive.");
+            }
+            if (!add(stream)) {
+                releaseAttachment(stream);
             }
         } else {
             add(stream);
@@ -201,7 +268,7 @@ public class AVSAudioPlayer {
     }
 
     public void handleStop() {
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayerLock) {
             stop();
             audioPlayerStateMachine.playbackStopped();
         }
@@ -218,197 +285,245 @@ public class AVSAudioPlayer {
     }
 
     public void handleSetVolume(VolumePayload volumePayload) {
-        currentVolume = (int) (volumePayload.getVolume() * VLCJ_VOLUME_SCALAR);
-        audioPlayer.getMediaPlayer().setVolume(currentVolume);
+        synchronized (mediaPlayerLock) {
+            currentVolume = (int) (volumePayload.getVolume() * VLCJ_VOLUME_SCALAR);
+            applyContentVolume();
+        }
         controller.sendRequest(
                 RequestFactory.createSpeakerVolumeChangedEvent(getVolume(), isMuted()));
     }
 
     public void handleAdjustVolume(VolumePayload volumePayload) {
         int adjustVolumeBy = (int) (volumePayload.getVolume() * VLCJ_VOLUME_SCALAR);
-        currentVolume = Math.min(VLCJ_MAX_VOLUME,
-                Math.max(VLCJ_MIN_VOLUME, currentVolume + adjustVolumeBy));
-        audioPlayer.getMediaPlayer().setVolume(currentVolume);
+        synchronized (mediaPlayerLock) {
+            currentVolume = Math.min(VLCJ_MAX_VOLUME,
+                    Math.max(VLCJ_MIN_VOLUME, currentVolume + adjustVolumeBy));
+            applyContentVolume();
+        }
         controller.sendRequest(
                 RequestFactory.createSpeakerVolumeChangedEvent(getVolume(), isMuted()));
     }
 
     public void handleSetMute(SetMute setMutePayload) {
-        currentlyMuted = setMutePayload.getMute();
-        audioPlayer.getMediaPlayer().mute(currentlyMuted);
+        // the media player can be handed back to the pool by an AudioPlayer directive
+        // handled at the same time
+        synchronized (mediaPlayerLock) {
+            currentlyMuted = setMutePayload.getMute();
+            mediaPlayer.mute(currentlyMuted);
+        }
         controller
                 .sendRequest(RequestFactory.createSpeakerMuteChangedEvent(getVolume(), isMuted()));
     }
 
+    /**
+     * Give the media player of the previous item back to the pool and take one for the next, with
+     * a new listener so no state carries over from the previous item.
+     */
     private void setupAudioPlayer() {
-        audioPlayer = new AudioMediaPlayerComponent();
+        releaseMediaPlayer();
+        attachMediaPlayer(mediaPlayerPool.acquire());
+    }
 
-        audioPlayer.getMediaPlayer().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+    private void releaseMediaPlayer() {
+        if (mediaPlayer != null) {
+            mediaPlayer.removeMediaPlayerEventListener(mediaPlayerListener);
+            mediaPlayerPool.release(mediaPlayer, !mediaPlayerFailed);
+        }
+    }
 
-            private boolean playbackStartedSuccessfully;
+    private void attachMediaPlayer(MediaPlayer player) {
+        mediaPlayer = player;
+        mediaPlayerFailed = false;
+        mediaPlayerListener = new ContentListener();
+        mediaPlayer.addMediaPlayerEventListener(mediaPlayerListener);
+    }
 
-            private boolean bufferUnderrunInProgress;
+    /**
+     * Sends the playback events for the item played by the current media player
+     */
+    private class ContentListener extends MediaPlayerEventAdapter {
 
-            private boolean isPaused;
+        // also set when a prefetched item is swapped in
+        private volatile boolean playbackStartedSuccessfully;
 
-            @Override
-            public void newMedia(MediaPlayer mediaPlayer) {
-                log.debug("newMedia: {}", mediaPlayer.mrl());
-                playbackStartedSuccessfully = false;
-                bufferUnderrunInProgress = false;
-            }
+        private volatile boolean nearlyFinishedSent;
 
-            @Override
-            public void stopped(MediaPlayer mediaPlayer) {
-                log.debug("stopped: {}", mediaPlayer.mrl());
-            }
+        private boolean bufferUnderrunInProgress;
 
-            @Override
-            public void playing(MediaPlayer mediaPlayer) {
-                log.debug("playing: {}", mediaPlayer.mrl());
-                long length = audioPlayer.getMediaPlayer().getLength();
-                log.debug("    length: {}", length);
+        private boolean isPaused;
 
-                if (isPaused && playbackStartedSuccessfully) {
-                    audioPlayerStateMachine.playbackResumed();
-                    isPaused = false;
-                }
+        @Override
+        public void newMedia(MediaPlayer mediaPlayer) {
+            log.debug("newMedia: {}", mediaPlayer.mrl());
+            playbackStartedSuccessfully = false;
+            bufferUnderrunInProgress = false;
+        }
 
-                startTimerAndProgressReporter();
+        @Override
+        public void stopped(MediaPlayer mediaPlayer) {
+            log.debug("stopped: {}", mediaPlayer.mrl());
+        }
+
+        @Override
+        public void playing(MediaPlayer mediaPlayer) {
+            log.debug("playing: {}", mediaPlayer.mrl());
+            long length = mediaPlayer.getLength();
+            log.debug("    length: {}", length);
+
+            if (isPaused && playbackStartedSuccessfully) {
+                audioPlayerStateMachine.playbackResumed();
+                isPaused = false;
             }
 
-            @Override
-            public void buffering(MediaPlayer mediaPlayer, float newCache) {
-                Stream stream = playQueue.peek();
-                if (stream == null) {
-                    return;
-                }
-                if (playbackStartedSuccessfully && !bufferUnderrunInProgress) {
-                    // We started buffering mid playback
-                    bufferUnderrunInProgress = true;
-                    long startOffset = 0;
-                    startOffset = stream.getOffsetInMilliseconds();
-                    playbackStutterStartedOffsetInMilliseconds =
-                            Math.max(startOffset, getCurrentOffsetInMilliseconds());
-                    stopTimerAndProgressReporter();
-                    audioPlayerStateMachine.playbackStutterStarted();
-                }
+            startTimerAndProgressReporter();
+        }
 
-                if (bufferUnderrunInProgress && newCache >= 100.0f) {
-                    // We are fully buffered after a buffer underrun event
-                    bufferUnderrunInProgress = false;
-                    audioPlayerStateMachine.playbackStutterFinished();
-                    startTimerAndProgressReporter();
-                }
+        @Override
+        public void buffering(MediaPlayer mediaPlayer, float newCache) {
+            Stream stream = playQueue.peek();
+            if (stream == null) {
+                return;
+            }
+            if (playbackStartedSuccessfully && !bufferUnderrunInProgress) {
+                // We started buffering mid playback
+                bufferUnderrunInProgress = true;
+                long startOffset = 0;
+                startOffset = stream.getOffsetInMilliseconds();
+                playbackStutterStartedOffsetInMilliseconds =
+                        Math.max(startOffset, getCurrentOffsetInMilliseconds());
+                stopTimerAndProgressReporter();
+                audioPlayerStateMachine.playbackStutterStarted();
+            }
 
-                if (!playbackStartedSuccessfully && newCache >= 100.0f) {
-                    // We have successfully buffered the first time and started playback
-                    playbackStartedSuccessfully = true;
+            if (bufferUnderrunInProgress && newCache >= 100.0f) {
+                // We are fully buffered after a buffer underrun event
+                bufferUnderrunInProgress = false;
+                audioPlayerStateMachine.playbackStutterFinished();
+                startTimerAndProgressReporter();
+            }
 
-                    long offset = stream.getOffsetInMilliseconds();
+            if (!playbackStartedSuccessfully && newCache >= 100.0f) {
+                // We have successfully buffered the first time and started playback
+                playbackStarted(stream, mediaPlayer.getLength(), 0);
+            }
+        }
 
-                    timer.reset(offset, audioPlayer.getMediaPlayer().getLength());
-                    progressReporter.disable();
-                    if (stream.getProgressReportRequired()) {
-                        progressReporter.setup(stream.getProgressReport());
-                    }
+        /**
+         * Send PlaybackStarted once for the item, starting the timer from the time the item has
+         * already played
+         */
+        private synchronized void playbackStarted(Stream stream, long length, long playedMs) {
+            if (playbackStartedSuccessfully) {
+                return;
+            }
+            playbackStartedSuccessfully = true;
 
-                    audioPlayerStateMachine.playbackStarted();
-                    startTimerAndProgressReporter();
+            long offset = stream.getOffsetInMilliseconds();
 
-                    if (isPaused) {
-                        audioPlayerStateMachine.playbackPaused();
-                    }
-                }
+            timer.reset(offset + playedMs, length);
+            progressReporter.disable();
+            if (stream.getProgressReportRequired()) {
+                progressReporter.setup(stream.getProgressReport());
             }
 
-            @Override
-            public void paused(MediaPlayer mediaPlayer) {
-                log.debug("paused: {}", mediaPlayer.mrl());
-                stopTimerAndProgressReporter();
-                if (playbackStartedSuccessfully) {
-                    audioPlayerStateMachine.playbackPaused();
-                }
-                isPaused = true;
+            audioPlayerStateMachine.playbackStarted();
+            startTimerAndProgressReporter();
+
+            if (isPaused) {
+                audioPlayerStateMachine.playbackPaused();
             }
+        }
 
-            @Override
-            public void finished(MediaPlayer mediaPlayer) {
-                log.info("Finished playing {}", mediaPlayer.mrl());
-                List<String> items = mediaPlayer.subItems();
-                // Remember the url we just tried
-                attemptedUrls.add(mediaPlayer.mrl());
+        @Override
+        public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+            if (nearlyFinishedSent || !playbackStartedSuccessfully) {
+                return;
+            }
+            long length = mediaPlayer.getLength();
+            if (length > 0 && newTime >= length - prefetchLeadMs) {
+                // asks for the next item, which is prefetched once it is queued
+                nearlyFinishedSent = true;
+                audioPlayerStateMachine.playbackNearlyFinished();
+                prefetchWanted = true;
+                prefetchNext();
+            }
+        }
 
-                if (cachedAudioFiles.containsKey(mediaPlayer.mrl())) {
-                    String key = mediaPlayer.mrl();
-                    String cachedUrl = cachedAudioFiles.get(key);
-                    deleteCachedFile(cachedUrl);
-                    cachedAudioFiles.remove(key);
-                }
+        @Override
+        public void paused(MediaPlayer mediaPlayer) {
+            log.debug("paused: {}", mediaPlayer.mrl());
+            stopTimerAndProgressReporter();
+            if (playbackStartedSuccessfully) {
+                audioPlayerStateMachine.playbackPaused();
+            }
+            isPaused = true;
+        }
 
-                if ((items.size() > 0) || (streamUrls.size() > 0)) {
-                    // Add to the set of URLs to attempt playback
-                    streamUrls.addAll(items);
-
-                    // Play any url associated with this play item that
-                    // we haven't already tried
-                    for (String mrl : streamUrls) {
-                        if (!attemptedUrls.contains(mrl)) {
-                            log.info("Playing {}", mrl);
-                            mediaPlayer.playMedia(mrl);
-                            return;
-                        }
+        @Override
+        public void finished(MediaPlayer mediaPlayer) {
+            log.info("Finished playing {}", mediaPlayer.mrl());
+            List<String> items = mediaPlayer.subItems();
+            // Remember the url we just tried
+            attemptedUrls.add(mediaPlayer.mrl());
+
+            if ((items.size() > 0) || (streamUrls.size() > 0)) {
+                // Add to the set of URLs to attempt playback
+                streamUrls.addAll(items);
+
+                // Play any url associated with this play item that
+                // we haven't already tried
+                for (String mrl : streamUrls) {
+                    if (!attemptedUrls.contains(mrl)) {
+                        log.info("Playing {}", mrl);
+                        mediaPlayer.playMedia(mrl);
+                        return;
                     }
                 }
+            }
 
-                // wait for any pending events to finish(playbackStarted/progressReport)
-                while (controller.eventRunning()) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                    }
-                }
+            // the next item plays out straight away if it was prefetched, while the events for
+            // this one are still being sent
+            resumeStandby();
 
+            // the finished events go out after any pending
+            // playbackStarted/progressReport event
+            playbackScheduler.playbackEnded(() -> {
                 // remove the item from the queue since it has finished playing
-                playQueue.poll();
+                releaseAttachment(playQueue.poll());
 
                 stopTimerAndProgressReporter();
-                audioPlayerStateMachine.playbackNearlyFinished();
-                audioPlayerStateMachine.playbackFinished();
-
-                // unblock playback now that playbackFinished has been sent
-                waitForPlaybackFinished = false;
-                if (!playQueue.isEmpty()) {
-                    // start playback if it wasn't the last item
-                    startPlayback();
+                if (!nearlyFinishedSent) {
+                    audioPlayerStateMachine.playbackNearlyFinished();
                 }
-            }
+                audioPlayerStateMachine.playbackFinished();
 
-            @Override
-            public void error(MediaPlayer mediaPlayer) {
-                log.error("Error playing: {}", mediaPlayer.mrl());
+                // start playback if it wasn't the last item
+                return !playQueue.isEmpty();
+            });
+        }
 
-                attemptedUrls.add(mediaPlayer.mrl());
-                // If there are any urls left to try, don't throw an error
-                for (String mrl : streamUrls) {
-                    if (!attemptedUrls.contains(mrl)) {
-                        mediaPlayer.playMedia(mrl);
-                        return;
-                    }
+        @Override
+        public void error(MediaPlayer mediaPlayer) {
+            log.error("Error playing: {}", mediaPlayer.mrl());
+            mediaPlayerFailed = true;
+
+            attemptedUrls.add(mediaPlayer.mrl());
+            // If there are any urls left to try, don't throw an error
+            for (String mrl : streamUrls) {
+                if (!attemptedUrls.contains(mrl)) {
+                    mediaPlayer.playMedia(mrl);
+                    return;
                 }
+            }
 
-                // wait for any pending events to finish(playbackStarted/progressReport)
-                while (controller.eventRunning()) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                    }
-                }
-                playQueue.clear();
+            // the failed event goes out after any pending playbackStarted/progressReport event
+            playbackScheduler.playbackEnded(() -> {
+                clearQueue();
                 stopTimerAndProgressReporter();
                 audioPlayerStateMachine.playbackFailed();
-            }
-        });
+                return false;
+            });
+        }
     }
 
     /**
@@ -443,11 +558,7 @@ public class AVSAudioPlayer {
      */
     public void interruptAllAlexaOutput() {
         log.debug("Interrupting all Alexa output");
-        if (isSpeaking()) {
-            // Then we are interrupting some speech
-            interruptCurrentlyPlaying();
-        }
-        speakQueue.clear();
+        stopSpeech();
 
         interruptAlertsAndContent();
     }
@@ -456,11 +567,62 @@ public class AVSAudioPlayer {
      * Interrupt only alerts and content
      */
     private void interruptAlertsAndContent() {
+        interruptAlerts();
+        interruptContent();
+    }
+
+    /**
+     * Interrupt only alerts
+     */
+    private void interruptAlerts() {
         if (isAlarming()) {
             alertState = AlertState.INTERRUPTED;
+            stopAlarmSound();
         }
+    }
 
-        interruptContent();
+    /**
+     * Turn content down, or back up, gradually so that it doesn't jump in volume
+     */
+    private void duckContent(boolean duck) {
+        synchronized (duckLock) {
+            contentGainTarget = duck ? CONTENT_DUCKED_GAIN : 1f;
+            if (duckRamp == null && contentGain != contentGainTarget) {
+                duckRamp = TimerWheel.getInstance().scheduleAtFixedRate(this::stepContentGain, 0,
+                        DUCK_STEP_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void stepContentGain() {
+        synchronized (duckLock) {
+            contentGain = PcmMixer.approach(contentGain, contentGainTarget,
+                    (1f - CONTENT_DUCKED_GAIN) * DUCK_STEP_MS / DUCK_RAMP_MS);
+            if (contentGain == contentGainTarget && duckRamp != null) {
+                duckRamp.cancel();
+                duckRamp = null;
+            }
+        }
+        applyContentVolume();
+    }
+
+    /**
+     * Set the media player volume from the Alexa volume and any ducking. Holding the lock, the
+     * player is the current one: not a standby player being swapped in, nor one handed back to the
+     * pool, which may already have been freed.
+     */
+    private void applyContentVolume() {
+        synchronized (mediaPlayerLock) {
+            mediaPlayer.setVolume(getContentVolume());
+        }
+    }
+
+    private int getContentVolume() {
+        float gain;
+        synchronized (duckLock) {
+            gain = contentGain;
+        }
+        return Math.round(currentVolume * gain);
     }
 
     /**
@@ -468,10 +630,10 @@ public class AVSAudioPlayer {
      */
     private void interruptContent() {
 
-        synchronized (audioPlayer.getMediaPlayer()) {
-            if (!playQueue.isEmpty() && isPlaying() && audioPlayer.getMediaPlayer().isPlaying()) {
+        synchronized (mediaPlayerLock) {
+            if (!playQueue.isEmpty() && isPlaying() && mediaPlayer.isPlaying()) {
                 log.debug("AudioPlayer content interrupted");
-                audioPlayer.getMediaPlayer().pause();
+                mediaPlayer.pause();
             }
         }
     }
@@ -482,7 +644,7 @@ public class AVSAudioPlayer {
      */
     public void resumeAllAlexaOutput() {
         log.debug("Resuming all Alexa output");
-        if (speakQueue.isEmpty() && !resumeAlerts()) {
+        if (speechPipeline.isIdle() && !resumeAlerts()) {
             resumeContent();
         }
     }
@@ -502,13 +664,13 @@ public class AVSAudioPlayer {
      * Resume any content
      */
     private void resumeContent() {
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayerLock) {
             if (!playQueue.isEmpty() && isPlayingOrPaused()
-                    && !audioPlayer.getMediaPlayer().isPlaying()) {
+                    && !mediaPlayer.isPlaying()) {
                 // Pause toggles the pause state of the media player, if it was previously paused it
                 // will be resumed.
                 log.debug("AudioPlayer content resumed");
-                audioPlayer.getMediaPlayer().pause();
+                mediaPlayer.pause();
             }
         }
     }
@@ -518,65 +680,99 @@ public class AVSAudioPlayer {
      *
      * @param stream
      *            Stream to add to the play queue
+     * @return false if the stream doesn't follow the last one played and was dropped
      */
-    private void add(Stream stream) {
+    private boolean add(Stream stream) {
         String expectedPreviousToken = stream.getExpectedPreviousToken();
 
         boolean startPlaying = playQueue.isEmpty();
 
-        if (expectedPreviousToken == null || latestStreamToken.isEmpty()
-                || latestStreamToken.equals(expectedPreviousToken)) {
+        boolean added = expectedPreviousToken == null || latestStreamToken.isEmpty()
+                || latestStreamToken.equals(expectedPreviousToken);
+        if (added) {
+            // fetch and probe playlists now, so the item starts without waiting for that
+            playlistResolver.resolve(stream.getUrl());
             playQueue.add(stream);
         }
 
         if (startPlaying) {
-            startPlayback();
+            playbackScheduler.requestStart();
+        } else if (added) {
+            prefetchNext();
         }
+        return added;
     }
 
     /**
-     * Play media in the play queue
+     * Play the media at the head of the play queue. Called by the playback scheduler once any
+     * speech has completed and playbackFinished has been sent for the previous item.
+     *
+     * @return true if playback was started
      */
-    private void startPlayback() {
-        if (playQueue.isEmpty()) {
-            return;
-        }
+    private boolean startPlayback() {
+        Stream stream = playQueue.peek();
 
-        Thread thread = new Thread() {
+        if (stream == null) {
+            // if a stop/clearQueue came down before we started
+            return false;
+        }
 
-            @Override
-            public void run() {
-                // wait for any speech to complete before starting playback
-                // also wait for playbackFinished to be called after getNextItem
-                while (!speakQueue.isEmpty() || waitForPlaybackFinished) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        log.error("Interupted while waiting to start playback", e);
-                    }
-                }
+        // usually resolved by now, since that started when the item was queued
+        CompletableFuture<List<String>> urls = playlistResolver.resolve(stream.getUrl());
+        if (!urls.isDone()) {
+            // finish starting once resolved instead of holding up the scheduler; the resolver's
+            // own timeouts bound the wait. If the item was stopped or cleared meanwhile, whatever
+            // the scheduler started since is left alone.
+            urls.thenRun(() -> playbackScheduler.startDeferred(
+                    () -> playQueue.peek() != stream || startPlayback(stream, urls.join())));
+            return true;
+        }
+        return startPlayback(stream, urls.join());
+    }
 
-                Stream stream = playQueue.peek();
+    /**
+     * Play the stream at the head of the play queue from the urls its playlist resolved to
+     *
+     * @return true if playback was started
+     */
+    private boolean startPlayback(Stream stream, List<String> urls) {
+        latestStreamToken = stream.getToken();
 
-                if (stream == null) {
-                    // if a stop/clearQueue came down before we started
-                    return;
-                }
+        if (!playItem(stream, urls)) {
+            // an error will be reported from the vlcj listener
+            return false;
+        }
 
-                latestStreamToken = stream.getToken();
+        if (isAlarming()) {
+            // pause if there is an active alert
+            interruptContent();
+        } else if (isSpeaking()) {
+            // play underneath speech that started meanwhile, as for content already playing
+            duckContent(true);
+        }
+        return true;
+    }
 
-                if (!playItem(stream)) {
-                    // an error will be reported from the vlcj listener
-                    return;
-                }
+    private static CachingAudioProxy createAudioProxy() {
+        try {
+            return new CachingAudioProxy(
+                    new AudioCache(Paths.get(AUDIO_CACHE_DIRECTORY), AUDIO_CACHE_BUDGET_BYTES));
+        } catch (IOException e) {
+            log.warn("Failed to open the audio cache, media will be streamed directly", e);
+            return null;
+        }
+    }
 
-                if (isSpeaking() || isAlarming()) {
-                    // pause if Alexa is speaking or there is an active alert.
-                    interruptContent();
-                }
-            }
-        };
-        thread.start();
+    /**
+     * @return the location for the media player to play a url of the stream from, which goes
+     *         through the audio cache unless the url was listed in a playlist. Playlists are used
+     *         for radio, which can't be cached.
+     */
+    private String getPlayableUrl(Stream stream, String url) {
+        if (audioProxy == null || !url.equals(stream.getUrl())) {
+            return url;
+        }
+        return audioProxy.getLocalUrl(url);
     }
 
     /**
@@ -584,35 +780,42 @@ public class AVSAudioPlayer {
      *
      * @param stream
      *            The Stream object we will be playing
+     * @param urls
+     *            The urls to try in order, the first being played now
      * @return true if played successfully, false otherwise
      */
-    private boolean playItem(Stream stream) {
-        synchronized (audioPlayer.getMediaPlayer()) {
+    private boolean playItem(Stream stream, List<String> urls) {
+        synchronized (mediaPlayerLock) {
 
             // Reset url caches and state information
             streamUrls = new HashSet<String>();
             attemptedUrls = new HashSet<String>();
+            prefetchWanted = false;
+
+            StandbyPlayer prefetched = takeStandby(stream);
+            if (prefetched != null) {
+                swapIn(stream, prefetched);
+                return true;
+            }
 
-            // Resetting the audio player is necessary to prevent hanging behavior
-            // when listening to some long-running music tracks
+            // Switching the player is necessary to prevent hanging behavior when listening to
+            // some long-running music tracks; the pool retires players after a few items
             setupAudioPlayer();
 
-            String url = stream.getUrl();
+            String url = urls.get(0);
+            streamUrls.addAll(urls);
+            attemptedUrls.add(url);
             long offset = stream.getOffsetInMilliseconds();
 
             log.debug("playing {}", url);
 
             timer.reset(); // Clear the old values
 
-            if (audioPlayer.getMediaPlayer().startMedia(url)) {
-                audioPlayer.getMediaPlayer().setVolume(currentVolume);
-                audioPlayer.getMediaPlayer().mute(currentlyMuted);
+            if (mediaPlayer.startMedia(getPlayableUrl(stream, url))) {
+                applyContentVolume();
+                mediaPlayer.mute(currentlyMuted);
                 if (offset > 0) {
-                    audioPlayer.getMediaPlayer().setTime(offset);
-                }
-
-                if (stream.hasAttachedContent()) {
-                    cachedAudioFiles.put(audioPlayer.getMediaPlayer().mrl(), url);
+                    mediaPlayer.setTime(offset);
                 }
 
                 return true;
@@ -622,78 +825,174 @@ public class AVSAudioPlayer {
     }
 
     /**
-     * Stop all media playback
+     * Open the item after the current one on a standby player, if it is queued
      */
-    public void stop() {
-        synchronized (audioPlayer.getMediaPlayer()) {
-            if (!playQueue.isEmpty() && isPlayingOrPaused()) {
-
-                // Stop keeping track of the offset and sending reporting events
-                stopTimerAndProgressReporter();
+    private void prefetchNext() {
+        synchronized (mediaPlayerLock) {
+            Stream next = getNextQueued();
+            if (!prefetchWanted || standbyPlayer != null || next == null) {
+                return;
+            }
+            CompletableFuture<List<String>> urls = playlistResolver.resolve(next.getUrl());
+            if (!urls.isDone()) {
+                urls.thenRun(this::prefetchNext);
+                return;
+            }
+            List<String> nextUrls = urls.join();
+            standbyPlayer = new StandbyPlayer(mediaPlayerPool.acquire(), next, nextUrls,
+                    getPlayableUrl(next, nextUrls.get(0)));
+            if (!standbyPlayer.start()) {
+                cancelStandby();
+            }
+        }
+    }
 
-                audioPlayer.getMediaPlayer().stop();
+    /**
+     * Start playing out the prefetched item when the current one finishes, unless something else
+     * holds content back
+     */
+    private void resumeStandby() {
+        synchronized (mediaPlayerLock) {
+            if (standbyPlayer == null || !standbyPlayer.isUsable() || isSpeaking()
+                    || isAlarming()) {
+                return;
+            }
+            if (getNextQueued() == standbyPlayer.getStream()) {
+                standbyPlayer.resume(getContentVolume(), currentlyMuted);
             }
         }
     }
 
     /**
-     * Play items from the speech play queue
+     * @return the item queued after the current one, or null
      */
-    private void startSpeech() {
+    private Stream getNextQueued() {
+        Iterator<Stream> queued = playQueue.iterator();
+        if (queued.hasNext()) {
+            queued.next();
+            if (queued.hasNext()) {
+                return queued.next();
+            }
+        }
+        return null;
+    }
 
-        final SpeakItem speak = speakQueue.peek();
+    /**
+     * @return the standby player if it has the given item ready, otherwise null after releasing
+     *         any standby player
+     */
+    private StandbyPlayer takeStandby(Stream stream) {
+        StandbyPlayer prefetched = standbyPlayer;
+        if (prefetched != null && prefetched.getStream() == stream && prefetched.isUsable()) {
+            standbyPlayer = null;
+            return prefetched;
+        }
+        cancelStandby();
+        return null;
+    }
 
-        // This addresses the possibility of the queue being cleared
-        // between the time of this function call and this line of code.
-        if (speak == null) {
-            return;
+    /**
+     * Make the standby player the current one, playing its item from where it is
+     */
+    private void swapIn(Stream stream, StandbyPlayer prefetched) {
+        log.debug("playing prefetched {}", stream.getUrl());
+        releaseMediaPlayer();
+        // the standby listener is removed after this one is added, so no event is missed
+        attachMediaPlayer(prefetched.getPlayer());
+        prefetched.detach();
+        streamUrls.addAll(prefetched.getStreamUrls());
+        attemptedUrls.addAll(prefetched.getAttemptedUrls());
+
+        timer.reset();
+        prefetched.resume(getContentVolume(), currentlyMuted);
+        if (prefetched.isBuffered()) {
+            mediaPlayerListener.playbackStarted(stream, mediaPlayer.getLength(),
+                    prefetched.getPlayedMs());
         }
+    }
 
-        notifyAlexaSpeechStarted();
+    private void cancelStandby() {
+        if (standbyPlayer != null) {
+            standbyPlayer.detach();
+            mediaPlayerPool.release(standbyPlayer.getPlayer(), standbyPlayer.isUsable());
+            standbyPlayer = null;
+        }
+    }
 
-        speechState = SpeechState.PLAYING;
-        latestToken = speak.getToken();
+    /**
+     * Stop all media playback
+     */
+    public void stop() {
+        synchronized (mediaPlayerLock) {
+            cancelStandby();
+            if (!playQueue.isEmpty() && isPlayingOrPaused()) {
 
-        controller
-                .sendRequest(RequestFactory.createSpeechSynthesizerSpeechStartedEvent(latestToken));
-
-        Thread thread = new Thread() {
-            @Override
-            public void run() {
-                synchronized (playLock) {
-                    try {
-                        InputStream inpStream = speak.getAudio();
-                        interruptAlertsAndContent();
-                        play(inpStream);
-                        while (inpStream.available() > 0) {
-                            playLock.wait(TIMEOUT_IN_MS);
-                        }
-                    } catch (InterruptedException | IOException e) {
-                    }
+                // Stop keeping track of the offset and sending reporting events
+                stopTimerAndProgressReporter();
 
-                    finishedSpeechItem();
-                }
+                mediaPlayer.stop();
             }
-        };
-        thread.start();
+        }
+        playbackScheduler.stopped();
     }
 
     /**
-     * When a speech item is finished, perform the necessary actions
+     * Stop speech and drop any queued speech items
      */
-    private void finishedSpeechItem() {
-        // remove the finished item
-        speakQueue.poll();
+    private void stopSpeech() {
+        speechPipeline.stop();
+        if (setSpeechState(SpeechState.FINISHED)) {
+            notifyAlexaSpeechFinished();
+        }
+    }
 
-        if (speakQueue.isEmpty()) {
-            speechState = SpeechState.FINISHED;
+    /**
+     * Sends the speech events as items of the speech pipeline start and finish playing
+     */
+    private class SpeechPipelineListener implements SpeechPipeline.Listener {
+        @Override
+        public void onSpeechItemStarted(SpeakItem item, long timeToFirstAudioMs) {
+            if (timeToFirstAudioMs >= 0) {
+                log.info("Speech {} started {} ms after it was queued"
+                        + " (engine average {} ms, max {} ms)", item.getToken(), timeToFirstAudioMs,
+                        renderEngine.getAverageTimeToFirstAudioMs(),
+                        renderEngine.getMaxTimeToFirstAudioMs());
+            }
+            latestToken = item.getToken();
+            if (setSpeechState(SpeechState.PLAYING)) {
+                notifyAlexaSpeechStarted();
+            }
             controller.sendRequest(
-                    RequestFactory.createSpeechSynthesizerSpeechFinishedEvent(latestToken));
+                    RequestFactory.createSpeechSynthesizerSpeechStartedEvent(item.getToken()));
+        }
 
-            notifyAlexaSpeechFinished();
-        } else {
-            // if not done start the next speech
-            startSpeech();
+        @Override
+        public void onSpeechItemFinished(SpeakItem item, boolean last) {
+            controller.sendRequest(
+                    RequestFactory.createSpeechSynthesizerSpeechFinishedEvent(item.getToken()));
+            boolean finished = false;
+            synchronized (speechLock) {
+                // something may have been queued since
+                if (last && speechPipeline.isIdle()) {
+                    finished = setSpeechState(SpeechState.FINISHED);
+                }
+            }
+            if (finished) {
+                notifyAlexaSpeechFinished();
+            }
+        }
+    }
+
+    /**
+     * @return true if the speech state changed
+     */
+    private boolean setSpeechState(SpeechState state) {
+        synchronized (speechLock) {
+            if (speechState == state) {
+                return false;
+            }
+            speechState = state;
+            return true;
         }
     }
 
@@ -704,7 +1003,7 @@ public class AVSAudioPlayer {
         // save the top item
         Stream top = playQueue.poll();
         // clear the queue and re-add the top item
-        playQueue.clear();
+        clearQueue();
         if (top != null) {
             playQueue.add(top);
         }
@@ -716,7 +1015,26 @@ public class AVSAudioPlayer {
     public void clearAll() {
         // stop playback and clear all
         stop();
-        playQueue.clear();
+        clearQueue();
+    }
+
+    private void clearQueue() {
+        synchronized (mediaPlayerLock) {
+            cancelStandby();
+        }
+        Stream stream;
+        while ((stream = playQueue.poll()) != null) {
+            releaseAttachment(stream);
+        }
+    }
+
+    /**
+     * Delete the spooled attached content of a stream which left the play queue, if it had any.
+     */
+    private void releaseAttachment(Stream stream) {
+        if (stream != null && stream.hasAttachedContent()) {
+            attachmentSpool.release(stream.getUrl());
+        }
     }
 
     /**
@@ -725,7 +1043,7 @@ public class AVSAudioPlayer {
      * @return The position in milliseconds of the stream
      */
     private long getProgress() {
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayerLock) {
             return timer.getOffsetInMilliseconds();
         }
     }
@@ -808,26 +1126,36 @@ public class AVSAudioPlayer {
     }
 
     /**
-     * Returns the offset in milliseconds of the default audio player. If there is no player
+     * Returns the offset in milliseconds of the speech or alarm being played. If there is no player
      * position, this function defaults to 0
      *
      * @return Player offset in milliseconds
      */
     private synchronized long getPlayerPosition() {
+        if (isSpeaking()) {
+            return speechPipeline.getPositionInMilliseconds();
+        }
         long offsetInMilliseconds = 0;
-        if (speaker != null) {
-            offsetInMilliseconds = speaker.getPosition();
+        if (alarmRender != null) {
+            offsetInMilliseconds = alarmRender.getPositionInMilliseconds();
         }
         return offsetInMilliseconds;
     }
 
     /**
-     * plays MP3 data from a resource asynchronously. will stop any previous playback and start the
-     * new audio
+     * plays MP3 data from a resource asynchronously, over any speech and after any earcon playing
      */
     public synchronized void playMp3FromResource(String resource) {
-        final InputStream inpStream = resLoader.getResourceAsStream(resource);
-        play(inpStream);
+        earconCache.play(SpeechRenderEngine.Channel.EARCON, resource);
+    }
+
+    /**
+     * Get ready to play the alarm sound without delay: decode it if it isn't cached and open the
+     * output line if it is closed.
+     */
+    public void prepareAlert() {
+        earconCache.prepare(ALARM_SOUND);
+        renderEngine.prepare();
     }
 
     /**
@@ -841,101 +1169,56 @@ public class AVSAudioPlayer {
                 alertState = AlertState.INTERRUPTED;
             } else {
                 alertState = AlertState.PLAYING;
-
-                alarmThread = new Thread() {
-                    @Override
-                    public void run() {
-                        while (isAlarming() && !isSpeaking()) {
-                            if (Thread.interrupted()) {
-                                break;
-                            }
-                            InputStream inpStream = resLoader.getResourceAsStream("res/alarm.mp3");
-                            synchronized (playLock) {
-                                try {
-                                    play(inpStream);
-                                    while (inpStream.available() > 0) {
-                                        playLock.wait(TIMEOUT_IN_MS);
-                                    }
-                                } catch (InterruptedException | IOException e) {
-                                }
-                            }
-                        }
-                    }
-                };
-                alarmThread.start();
+                playAlarmSound();
             }
         }
     }
 
     /**
-     * Stop the alarm
-     */
-    public void stopAlert() {
-        interruptCurrentlyPlaying();
-        alertState = AlertState.FINISHED;
-    }
-
-    /**
-     * Interrupt whatever audio is currently playing through the default audio player
+     * Play the alarm sound once more, and again each time it finishes, for as long as the alert
+     * is in the foreground
      */
-    private synchronized void interruptCurrentlyPlaying() {
-        if (playThread != null) {
-            playThread.interrupt();
+    private synchronized void playAlarmSound() {
+        if (!isAlarming() || isSpeaking()) {
+            alarmRender = null;
+            return;
         }
-        stopPlayer();
-    }
-
-    /**
-     * Ends playback of the default audio player
-     */
-    private synchronized void stopPlayer() {
-        if (speaker != null) {
-            speaker.close();
-            speaker = null;
-            if (isSpeaking()) {
-                speechState = SpeechState.FINISHED;
-                notifyAlexaSpeechFinished();
+        alarmRender = earconCache.play(SpeechRenderEngine.Channel.ALERT, ALARM_SOUND);
+        alarmRender.getFinished().whenComplete((result, error) -> {
+            if (error == null) {
+                playAlarmSound();
             }
-        }
+        });
     }
 
     /**
-     * Play a generic input stream through the default audio player without blocking
+     * Stop the alarm
      */
-    private synchronized void play(final InputStream inpStream) {
-        play(inpStream, false);
+    public void stopAlert() {
+        alertState = AlertState.FINISHED;
+        stopAlarmSound();
     }
 
     /**
-     * Play a generic input stream through the default audio player
+     * Cut off the alarm sound being played
      */
-    private synchronized void play(final InputStream inpStream, boolean block) {
-        playThread = new Thread() {
-            @Override
-            public void run() {
-                synchronized (playLock) {
-                    try {
-                        speaker = new Player(inpStream);
-                        speaker.play();
-                    } catch (Exception e) {
-                        log.error("An error occurred while trying to play audio", e);
-                    } finally {
-                        IOUtils.closeQuietly(inpStream);
-                    }
-                    playLock.notifyAll();
-                }
-            }
-        };
-        playThread.start();
+    private synchronized void stopAlarmSound() {
+        if (alarmRender != null) {
+            alarmRender.cancel();
+            alarmRender = null;
+        }
     }
 
     private void notifyAlexaSpeechStarted() {
+        playbackScheduler.speechStateChanged();
         for (AlexaSpeechListener listener : listeners) {
             listener.onAlexaSpeechStarted();
         }
     }
 
     private void notifyAlexaSpeechFinished() {
+        duckContent(false);
+        playbackScheduler.speechStateChanged();
         for (AlexaSpeechListener listener : listeners) {
             listener.onAlexaSpeechFinished();
         }
@@ -974,9 +1257,4 @@ public class AVSAudioPlayer {
 
         void onAlexaSpeechFinished();
     }
-
-    private void deleteCachedFile(final String uri) {
-        File file = new File(uri);
-        file.delete();
-    }
 }
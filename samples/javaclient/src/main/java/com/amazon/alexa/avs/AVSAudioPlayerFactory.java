@@ -12,9 +12,11 @@
  */
 package com.amazon.alexa.avs;
 
+import com.amazon.alexa.avs.config.DeviceConfig;
+
 public class AVSAudioPlayerFactory {
 
-    public AVSAudioPlayer getAudioPlayer(AVSController controller) {
-        return new AVSAudioPlayer(controller);
+    public AVSAudioPlayer getAudioPlayer(AVSController controller, DeviceConfig config) {
+        return new AVSAudioPlayer(controller, config.getMediaPrefetchLeadMs());
     }
 }
@@ -16,6 +16,8 @@ import com.amazon.alexa.avs.AVSAudioPlayer.AlexaSpeechListener;
 import com.amazon.alexa.avs.AlertManager.ResultListener;
 import com.amazon.alexa.avs.auth.AccessTokenListener;
 import com.amazon.alexa.avs.config.DeviceConfig;
+import com.amazon.alexa.avs.config.DeviceConfig.AudioSourceType;
+import com.amazon.alexa.avs.config.DeviceConfig.WakeWordAgentTransport;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException.ExceptionType;
 import com.amazon.alexa.avs.http.AVSClient;
@@ -57,9 +59,7 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -70,11 +70,14 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         UserActivityListener, WakeWordDetectedHandler {
 
     private AudioCapture microphone;
-    private AVSClient avsClient;
+    // replaced by a SetEndpoint directive while other namespaces send events
+    private volatile AVSClient avsClient;
 
     private final DialogRequestIdAuthority dialogRequestIdAuthority;
     private AlertManager alertManager;
-    private boolean eventRunning = false; // is an event currently being sent
+    private int eventsRunning = 0; // number of events currently being sent
+    // run once no event is being sent, guarded by eventsSentCallbacks
+    private final List<Runnable> eventsSentCallbacks = new ArrayList<>();
 
     private static final AudioInputFormat AUDIO_TYPE = AudioInputFormat.LPCM;
     private static final String START_SOUND = "res/start.mp3";
@@ -90,10 +93,12 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     private final AVSAudioPlayer player;
     private BlockableDirectiveThread dependentDirectiveThread;
     private BlockableDirectiveThread independentDirectiveThread;
+    private NamespaceDirectiveDispatcher namespaceDirectiveDispatcher;
+    private final CapabilityAgentRegistry capabilityAgentRegistry = new CapabilityAgentRegistry();
     private BlockingQueue<Directive> dependentQueue;
     private BlockingQueue<Directive> independentQueue;
     public SpeechRequestAudioPlayerPauseController speechRequestAudioPlayerPauseController;
-    private ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(1);
+    private final TimerWheel timerWheel = TimerWheel.getInstance();
 
     private AtomicLong lastUserInteractionTimestampSeconds;
 
@@ -101,6 +106,10 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     private ExpectStopCaptureListener stopCaptureHandler;
 
     private boolean wakeWordAgentEnabled = false;
+    // false when we read the wake word agent's capture, so it never has to release the microphone
+    private boolean microphoneHandoffRequired = false;
+    // true when the wake word engine should stop listening while we record
+    private boolean pauseWakeWordWhileRecording = false;
 
     private WakeWordIPC wakeWordIPC = null;
     private boolean acceptWakeWordEvents = true; // to ensure we only process one event at a time
@@ -119,14 +128,26 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
                     throws Exception {
         this.avsClientFactory = avsClientFactory;
         this.wakeWordAgentEnabled = config.getWakeWordAgentEnabled();
+        boolean wakeWordInProcess =
+                config.getWakeWordAgentTransport() == WakeWordAgentTransport.IN_PROCESS;
+        this.microphoneHandoffRequired = wakeWordAgentEnabled && !wakeWordInProcess
+                && config.getAudioSourceInfo().getType() != AudioSourceType.WAKE_WORD_AGENT;
+        this.pauseWakeWordWhileRecording =
+                microphoneHandoffRequired || (wakeWordAgentEnabled && wakeWordInProcess);
         this.wakeWordDetectedHandler = wakeWakeDetectedHandler;
         this.config = config;
 
-        if (this.wakeWordAgentEnabled) {
+        if (config.getAudioSourceInfo().getType() == AudioSourceType.LINE) {
+            // start probing audio devices in the background while the rest of the app comes up
+            AudioDeviceRegistry.getInstance();
+        }
+
+        if (this.wakeWordAgentEnabled && !wakeWordInProcess) {
             try {
-                log.info("Creating Wake Word IPC | port number: " + WAKE_WORD_AGENT_PORT_NUMBER);
-                this.wakeWordIPC =
-                        wakewordIPCFactory.createWakeWordIPC(this, WAKE_WORD_AGENT_PORT_NUMBER);
+                log.info("Creating Wake Word IPC | port number: " + WAKE_WORD_AGENT_PORT_NUMBER
+                        + " | transport: " + config.getWakeWordAgentTransport());
+                this.wakeWordIPC = wakewordIPCFactory.createWakeWordIPC(this,
+                        WAKE_WORD_AGENT_PORT_NUMBER, config.getWakeWordAgentTransport());
                 this.wakeWordIPC.init();
                 Thread.sleep(1000);
                 log.info("Created Wake Word IPC ok.");
@@ -137,7 +158,11 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
 
         initializeMicrophone();
 
-        this.player = audioFactory.getAudioPlayer(this);
+        if (this.wakeWordAgentEnabled && wakeWordInProcess) {
+            startInProcessWakeWordEngine(wakewordIPCFactory);
+        }
+
+        this.player = audioFactory.getAudioPlayer(this, config);
         this.player.registerAlexaSpeechListener(this);
         this.dialogRequestIdAuthority = dialogRequestIdAuthority;
         speechRequestAudioPlayerPauseController =
@@ -149,8 +174,8 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
 
         independentQueue = new LinkedBlockingDeque<>();
 
-        directiveEnqueuer =
-                new DirectiveEnqueuer(dialogRequestIdAuthority, dependentQueue, independentQueue);
+        directiveEnqueuer = new DirectiveEnqueuer(dialogRequestIdAuthority, dependentQueue,
+                independentQueue, this::onDirectiveEnqueued, timerWheel);
 
         avsClient = avsClientFactory.getAVSClient(directiveEnqueuer, this);
 
@@ -176,17 +201,36 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
             public void run() {
                 player.stop();
                 avsClient.shutdown();
+                directiveEnqueuer.shutdown();
+                if (namespaceDirectiveDispatcher != null) {
+                    namespaceDirectiveDispatcher.shutdown();
+                }
+                log.info("Directive handler statistics: {}",
+                        capabilityAgentRegistry.getHandlerStatistics());
             }
         });
 
-        dependentDirectiveThread =
-                new BlockableDirectiveThread(dependentQueue, this, "DependentDirectiveThread");
-        independentDirectiveThread =
-                new BlockableDirectiveThread(independentQueue, this, "IndependentDirectiveThread");
-
-        lastUserInteractionTimestampSeconds =
-                new AtomicLong(System.currentTimeMillis() / MILLISECONDS_PER_SECOND);
-        scheduledExecutor.scheduleAtFixedRate(new UserInactivityReport(),
+        registerDirectiveHandlers();
+
+        // Directives of a dialog are handled one after the other so that speech can block the
+        // ones that follow it; everything else only waits for its own namespace.
+        namespaceDirectiveDispatcher = new NamespaceDirectiveDispatcher(this);
+        // These all drive the AVSAudioPlayer, and SpeechRecognizer directives start and stop
+        // capture, which interrupts its output; the player was written for one caller at a time,
+        // so they keep a single thread. Alerts only go through the synchronized AlertManager and
+        // System directives only replace the volatile client or set an atomic timestamp, so those
+        // run alongside.
+        namespaceDirectiveDispatcher.shareExecutor(AVSAPIConstants.SpeechSynthesizer.NAMESPACE,
+                AVSAPIConstants.AudioPlayer.NAMESPACE, AVSAPIConstants.Speaker.NAMESPACE,
+                AVSAPIConstants.SpeechRecognizer.NAMESPACE);
+        dependentDirectiveThread = new BlockableDirectiveThread(dependentQueue,
+                namespaceDirectiveDispatcher::dispatchAndWait, "DependentDirectiveThread");
+        independentDirectiveThread = new BlockableDirectiveThread(independentQueue,
+                namespaceDirectiveDispatcher, "IndependentDirectiveThread");
+
+        lastUserInteractionTimestampSeconds = new AtomicLong(
+                timerWheel.getClock().currentTimeMillis() / MILLISECONDS_PER_SECOND);
+        timerWheel.scheduleAtFixedRate(new UserInactivityReport(),
                 USER_INACTIVITY_REPORT_PERIOD_HOURS, USER_INACTIVITY_REPORT_PERIOD_HOURS,
                 TimeUnit.HOURS);
 
@@ -194,13 +238,13 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     }
 
     private void getMicrophone(AVSController controller) throws LineUnavailableException {
-        controller.microphone = AudioCapture.getAudioHardware(AUDIO_TYPE.getAudioFormat(),
-                new MicrophoneLineFactory());
+        controller.microphone = AudioCapture.getAudioHardware(new AudioSourceFactory()
+                .createAudioSource(config.getAudioSourceInfo(), AUDIO_TYPE.getAudioFormat()));
     }
 
     private void initializeMicrophone() {
 
-        if (this.wakeWordAgentEnabled) {
+        if (this.microphoneHandoffRequired) {
             AVSController controller = this;
             Callable<Void> task = new Callable<Void>() {
                 @Override
@@ -236,6 +280,24 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         }
     }
 
+    private void startInProcessWakeWordEngine(WakeWordIPCFactory wakewordIPCFactory) {
+        if (microphone == null) {
+            log.error("The in-process wake word engine needs a microphone, wake word disabled");
+            wakeWordAgentEnabled = false;
+            return;
+        }
+        try {
+            wakeWordIPC = wakewordIPCFactory.createInProcessWakeWordIPC(this,
+                    microphone.getFrameBus(), config.getWakeWordEngineInfo());
+            wakeWordIPC.init();
+            microphone.startListening();
+            log.info("Started the in-process wake word engine.");
+        } catch (LineUnavailableException e) {
+            log.error("Could not start the in-process wake word engine, wake word disabled", e);
+            wakeWordAgentEnabled = false;
+        }
+    }
+
     public void startHandlingDirectives() {
         dependentDirectiveThread.start();
         independentDirectiveThread.start();
@@ -263,10 +325,12 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
 
             acceptWakeWordEvents = false;
 
-            try {
-                wakeWordIPC.sendCommand(IPCCommand.IPC_PAUSE_WAKE_WORD_ENGINE);
-            } catch (IOException e) {
-                log.warn("Could not send the IPC_PAUSE_WAKE_WORD_ENGINE command");
+            if (this.pauseWakeWordWhileRecording) {
+                try {
+                    wakeWordIPC.sendCommand(IPCCommand.IPC_PAUSE_WAKE_WORD_ENGINE);
+                } catch (IOException e) {
+                    log.warn("Could not send the IPC_PAUSE_WAKE_WORD_ENGINE command");
+                }
             }
         }
 
@@ -277,7 +341,7 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
                     dialogRequestId, PROFILE, FORMAT, player.getPlaybackState(),
                     player.getSpeechState(), alertManager.getState(), player.getVolumeState());
 
-            dependentQueue.clear();
+            clearDependentQueue();
 
             InputStream inputStream = getMicrophoneInputStream(this, rmsListener);
 
@@ -295,12 +359,16 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
 
         int numberRetries = 1;
 
-        if (this.wakeWordAgentEnabled) {
+        if (this.microphoneHandoffRequired) {
             numberRetries = WAKE_WORD_RELEASE_TRIES;
         }
 
         for (; numberRetries > 0; numberRetries--) {
             try {
+                if (microphone == null) {
+                    // no capture device was present at startup, one may have been plugged in since
+                    getMicrophone(controller);
+                }
                 return microphone.getAudioInputStream(controller, rmsListener);
             } catch (LineUnavailableException | IOException | NullPointerException e) {
                 if (numberRetries == 1) {
@@ -354,13 +422,44 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     }
 
     public void sendRequest(RequestBody body) {
-        eventRunning = true;
+        synchronized (eventsSentCallbacks) {
+            eventsRunning++;
+        }
         try {
             avsClient.sendEvent(body);
         } catch (Exception e) {
             log.error("Failed to send request", e);
+        } finally {
+            eventSent();
+        }
+    }
+
+    private void eventSent() {
+        List<Runnable> callbacks;
+        synchronized (eventsSentCallbacks) {
+            if (--eventsRunning > 0 || eventsSentCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<>(eventsSentCallbacks);
+            eventsSentCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Run the callback once no event is being sent: right away if none is, otherwise on the thread
+     * that finishes sending the last one, so it should only hand work off.
+     */
+    public void whenEventsSent(Runnable callback) {
+        synchronized (eventsSentCallbacks) {
+            if (eventsRunning > 0) {
+                eventsSentCallbacks.add(callback);
+                return;
+            }
         }
-        eventRunning = false;
+        callback.run();
     }
 
     /**
@@ -375,41 +474,63 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     }
 
     public boolean eventRunning() {
-        return eventRunning;
+        synchronized (eventsSentCallbacks) {
+            return eventsRunning > 0;
+        }
     }
 
+    /**
+     * Handle a directive. Called by the {@link NamespaceDirectiveDispatcher}, concurrently for
+     * directives of namespaces which don't share an executor. A directive that can't be handled
+     * is reported with an ExceptionEncountered event, which is also logged, and goes no further.
+     */
     @Override
-    public synchronized void dispatch(Directive directive) {
+    public void dispatch(Directive directive) {
         String directiveNamespace = directive.getNamespace();
 
         String directiveName = directive.getName();
         log.info("Handling directive: {}.{}", directiveNamespace, directiveName);
         if (dialogRequestIdAuthority.isCurrentDialogRequestId(directive.getDialogRequestId())) {
+            // only from the dependent queue, which dispatches one directive at a time
             speechRequestAudioPlayerPauseController.dispatchDirective();
         }
         try {
-            if (AVSAPIConstants.SpeechRecognizer.NAMESPACE.equals(directiveNamespace)) {
-                handleSpeechRecognizerDirective(directive);
-            } else if (AVSAPIConstants.SpeechSynthesizer.NAMESPACE.equals(directiveNamespace)) {
-                handleSpeechSynthesizerDirective(directive);
-            } else if (AVSAPIConstants.AudioPlayer.NAMESPACE.equals(directiveNamespace)) {
-                handleAudioPlayerDirective(directive);
-            } else if (AVSAPIConstants.Alerts.NAMESPACE.equals(directiveNamespace)) {
-                handleAlertsDirective(directive);
-            } else if (AVSAPIConstants.Speaker.NAMESPACE.equals(directiveNamespace)) {
-                handleSpeakerDirective(directive);
-            } else if (AVSAPIConstants.System.NAMESPACE.equals(directiveNamespace)) {
-                handleSystemDirective(directive);
-            } else {
-                throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                        "No device side component to handle the directive.");
-            }
+            capabilityAgentRegistry.handle(directive);
         } catch (DirectiveHandlingException e) {
             sendExceptionEncounteredEvent(directive.getRawMessage(), e.getType(), e);
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             sendExceptionEncounteredEvent(directive.getRawMessage(), ExceptionType.INTERNAL_ERROR,
                     e);
-            throw e;
+        }
+    }
+
+    /**
+     * Drop the directives of the previous dialog that haven't been handled yet.
+     */
+    private void clearDependentQueue() {
+        List<Directive> dropped = new ArrayList<>();
+        dependentQueue.drainTo(dropped);
+        for (Directive directive : dropped) {
+            if (isSpeak(directive)) {
+                // its speech was prepared when it was queued
+                player.discardSpeak((Speak) directive.getPayload());
+            }
+        }
+    }
+
+    private static boolean isSpeak(Directive directive) {
+        return AVSAPIConstants.SpeechSynthesizer.NAMESPACE.equals(directive.getNamespace())
+                && AVSAPIConstants.SpeechSynthesizer.Directives.Speak.NAME
+                        .equals(directive.getName());
+    }
+
+    /**
+     * Called as soon as a directive is complete, while it may still be waiting behind others.
+     */
+    private void onDirectiveEnqueued(Directive directive) {
+        if (isSpeak(directive)) {
+            // decode the speech while it waits so it can play as soon as its turn comes
+            player.prepareSpeak((Speak) directive.getPayload());
         }
     }
 
@@ -421,100 +542,93 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         log.error("{} error handling directive: {}", type, directiveJson, e);
     }
 
-    private void handleAudioPlayerDirective(Directive directive) throws DirectiveHandlingException {
-        String directiveName = directive.getName();
-        if (AVSAPIConstants.AudioPlayer.Directives.Play.NAME.equals(directiveName)) {
-            player.handlePlay((Play) directive.getPayload());
-        } else if (AVSAPIConstants.AudioPlayer.Directives.Stop.NAME.equals(directiveName)) {
-            player.handleStop();
-        } else if (AVSAPIConstants.AudioPlayer.Directives.ClearQueue.NAME.equals(directiveName)) {
-            player.handleClearQueue((ClearQueue) directive.getPayload());
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's audio player component cannot handle this directive.");
-        }
-    }
-
-    private void handleSystemDirective(Directive directive) throws DirectiveHandlingException {
-        String directiveName = directive.getName();
-        if (AVSAPIConstants.System.Directives.ResetUserInactivity.NAME.equals(directiveName)) {
-            onUserActivity();
-        } else if (AVSAPIConstants.System.Directives.SetEndpoint.NAME.equals(directiveName)) {
-            handleSetEndpoint((SetEndpoint) directive.getPayload());
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's system component cannot handle this directive.");
-        }
+    /**
+     * Register the handlers of the interfaces this client supports.
+     */
+    private void registerDirectiveHandlers() {
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                "audio player");
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.System.NAMESPACE, "system");
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.SpeechSynthesizer.NAMESPACE,
+                "speech synthesizer");
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.SpeechRecognizer.NAMESPACE,
+                "speech recognizer");
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.Alerts.NAMESPACE, "alert");
+        capabilityAgentRegistry.setComponentName(AVSAPIConstants.Speaker.NAMESPACE, "speaker");
+
+        capabilityAgentRegistry.register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                AVSAPIConstants.AudioPlayer.Directives.Play.NAME,
+                directive -> player.handlePlay((Play) directive.getPayload()));
+        capabilityAgentRegistry.register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                AVSAPIConstants.AudioPlayer.Directives.Stop.NAME,
+                directive -> player.handleStop());
+        capabilityAgentRegistry.register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                AVSAPIConstants.AudioPlayer.Directives.ClearQueue.NAME,
+                directive -> player.handleClearQueue((ClearQueue) directive.getPayload()));
+
+        capabilityAgentRegistry.register(AVSAPIConstants.System.NAMESPACE,
+                AVSAPIConstants.System.Directives.ResetUserInactivity.NAME,
+                directive -> onUserActivity());
+        capabilityAgentRegistry.register(AVSAPIConstants.System.NAMESPACE,
+                AVSAPIConstants.System.Directives.SetEndpoint.NAME,
+                directive -> handleSetEndpoint((SetEndpoint) directive.getPayload()));
+
+        capabilityAgentRegistry.register(AVSAPIConstants.SpeechSynthesizer.NAMESPACE,
+                AVSAPIConstants.SpeechSynthesizer.Directives.Speak.NAME,
+                directive -> player.handleSpeak((Speak) directive.getPayload()));
+
+        // If your device cannot handle automatically starting to listen, you must
+        // implement a listen timeout event, as described here:
+        // https://developer.amazon.com/public/solutions/alexa/alexa-voice-service/rest/speechrecognizer-listentimeout-request
+        capabilityAgentRegistry.register(AVSAPIConstants.SpeechRecognizer.NAMESPACE,
+                AVSAPIConstants.SpeechRecognizer.Directives.ExpectSpeech.NAME,
+                directive -> notifyExpectSpeechDirective());
+        capabilityAgentRegistry.register(AVSAPIConstants.SpeechRecognizer.NAMESPACE,
+                AVSAPIConstants.SpeechRecognizer.Directives.StopCapture.NAME,
+                directive -> stopCaptureHandler.onStopCaptureDirective());
+
+        capabilityAgentRegistry.register(AVSAPIConstants.Alerts.NAMESPACE,
+                AVSAPIConstants.Alerts.Directives.SetAlert.NAME,
+                directive -> handleSetAlert((SetAlert) directive.getPayload()));
+        capabilityAgentRegistry.register(AVSAPIConstants.Alerts.NAMESPACE,
+                AVSAPIConstants.Alerts.Directives.DeleteAlert.NAME,
+                directive -> handleDeleteAlert((DeleteAlert) directive.getPayload()));
+
+        capabilityAgentRegistry.register(AVSAPIConstants.Speaker.NAMESPACE,
+                AVSAPIConstants.Speaker.Directives.SetVolume.NAME,
+                directive -> player.handleSetVolume((VolumePayload) directive.getPayload()));
+        capabilityAgentRegistry.register(AVSAPIConstants.Speaker.NAMESPACE,
+                AVSAPIConstants.Speaker.Directives.AdjustVolume.NAME,
+                directive -> player.handleAdjustVolume((VolumePayload) directive.getPayload()));
+        capabilityAgentRegistry.register(AVSAPIConstants.Speaker.NAMESPACE,
+                AVSAPIConstants.Speaker.Directives.SetMute.NAME,
+                directive -> player.handleSetMute((SetMute) directive.getPayload()));
     }
 
-    private void handleSpeechSynthesizerDirective(Directive directive)
-            throws DirectiveHandlingException {
-        if (AVSAPIConstants.SpeechSynthesizer.Directives.Speak.NAME.equals(directive.getName())) {
-            player.handleSpeak((Speak) directive.getPayload());
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's speech synthesizer component cannot handle this directive.");
-        }
+    /**
+     * @return the registry to add handlers for further interfaces to.
+     */
+    public CapabilityAgentRegistry getCapabilityAgentRegistry() {
+        return capabilityAgentRegistry;
     }
 
+    private void handleSetAlert(SetAlert payload) {
+        String alertToken = payload.getToken();
+        ZonedDateTime scheduledTime = payload.getScheduledTime();
+        AlertType type = payload.getType();
 
-    private void handleSpeechRecognizerDirective(Directive directive) throws DirectiveHandlingException {
-        String directiveName = directive.getName();
-        if (AVSAPIConstants.SpeechRecognizer.Directives.ExpectSpeech.NAME.equals(directiveName)) {
-
-            // If your device cannot handle automatically starting to listen, you must
-            // implement a listen timeout event, as described here:
-            // https://developer.amazon.com/public/solutions/alexa/alexa-voice-service/rest/speechrecognizer-listentimeout-request
-            notifyExpectSpeechDirective();
-        } else if (directiveName
-                .equals(AVSAPIConstants.SpeechRecognizer.Directives.StopCapture.NAME)) {
-            stopCaptureHandler.onStopCaptureDirective();
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's speech recognizer component cannot handle this directive.");
+        Alert existing = alertManager.getAlert(alertToken);
+        if (existing != null && existing.getScheduledTime().equals(scheduledTime)) {
+            return;
         }
-    }
 
-    private void handleAlertsDirective(Directive directive) throws DirectiveHandlingException {
-        String directiveName = directive.getName();
-        if (AVSAPIConstants.Alerts.Directives.SetAlert.NAME.equals(directiveName)) {
-            SetAlert payload = (SetAlert) directive.getPayload();
-            String alertToken = payload.getToken();
-            ZonedDateTime scheduledTime = payload.getScheduledTime();
-            AlertType type = payload.getType();
-
-            if (alertManager.hasAlert(alertToken)) {
-                AlertScheduler scheduler = alertManager.getScheduler(alertToken);
-                if (scheduler.getAlert().getScheduledTime().equals(scheduledTime)) {
-                    return;
-                } else {
-                    scheduler.cancel();
-                }
-            }
-
-            Alert alert = new Alert(alertToken, type, scheduledTime);
-            alertManager.add(alert);
-        } else if (AVSAPIConstants.Alerts.Directives.DeleteAlert.NAME.equals(directiveName)) {
-            DeleteAlert payload = (DeleteAlert) directive.getPayload();
-            alertManager.delete(payload.getToken());
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's alert component cannot handle this directive.");
-        }
+        // replaces an existing alert with the same token
+        Alert alert = new Alert(alertToken, type, scheduledTime);
+        alertManager.add(alert);
     }
 
-    private void handleSpeakerDirective(Directive directive) throws DirectiveHandlingException {
-        String directiveName = directive.getName();
-        if (AVSAPIConstants.Speaker.Directives.SetVolume.NAME.equals(directiveName)) {
-            player.handleSetVolume((VolumePayload) directive.getPayload());
-        } else if (AVSAPIConstants.Speaker.Directives.AdjustVolume.NAME.equals(directiveName)) {
-            player.handleAdjustVolume((VolumePayload) directive.getPayload());
-        } else if (AVSAPIConstants.Speaker.Directives.SetMute.NAME.equals(directiveName)) {
-            player.handleSetMute((SetMute) directive.getPayload());
-        } else {
-            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
-                    "The device's speaker component cannot handle this directive.");
-        }
+    private void handleDeleteAlert(DeleteAlert payload) {
+        alertManager.delete(payload.getToken());
     }
 
     private void handleSetEndpoint(SetEndpoint setEndpoint) throws DirectiveHandlingException {
@@ -551,10 +665,12 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         	microphone.stopCapture();
 
         if (this.wakeWordAgentEnabled) {
-            try {
-                wakeWordIPC.sendCommand(IPCCommand.IPC_RESUME_WAKE_WORD_ENGINE);
-            } catch (IOException e) {
-                log.warn("could not send resume wake word engine command", e);
+            if (this.pauseWakeWordWhileRecording) {
+                try {
+                    wakeWordIPC.sendCommand(IPCCommand.IPC_RESUME_WAKE_WORD_ENGINE);
+                } catch (IOException e) {
+                    log.warn("could not send resume wake word engine command", e);
+                }
             }
             acceptWakeWordEvents = true;
         }
@@ -570,6 +686,11 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     @Override
     public void recordingCompleted() {
         player.playMp3FromResource(END_SOUND);
+        if (microphone != null) {
+            log.info("Capture statistics for dialogRequestId {}: {}",
+                    dialogRequestIdAuthority.getCurrentDialogRequestId(),
+                    microphone.getCaptureStatistics());
+        }
     }
 
     public boolean isSpeaking() {
@@ -606,6 +727,11 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         sendRequest(RequestFactory.createAlertsDeleteAlertEvent(alertToken, success));
     }
 
+    @Override
+    public void prepareAlert(String alertToken) {
+        player.prepareAlert();
+    }
+
     @Override
     public void startAlert(String alertToken) {
         player.startAlert();
@@ -657,7 +783,7 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     @Override
     public void onUserActivity() {
         lastUserInteractionTimestampSeconds
-                .set(System.currentTimeMillis() / MILLISECONDS_PER_SECOND);
+                .set(timerWheel.getClock().currentTimeMillis() / MILLISECONDS_PER_SECOND);
     }
 
     private class UserInactivityReport implements Runnable {
@@ -665,7 +791,7 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
         @Override
         public void run() {
             sendRequest(RequestFactory.createSystemUserInactivityReportEvent(
-                    (System.currentTimeMillis() / MILLISECONDS_PER_SECOND)
+                    (timerWheel.getClock().currentTimeMillis() / MILLISECONDS_PER_SECOND)
                             - lastUserInteractionTimestampSeconds.get()));
         }
     }
@@ -673,6 +799,7 @@ public class AVSController implements RecordingStateListener, AlertHandler, Aler
     @Override
     public synchronized void onWakeWordDetected() {
         if (acceptWakeWordEvents) {
+            log.info("Wake word detected: {}", wakeWordIPC.getLastDetection());
             wakeWordDetectedHandler.onWakeWordDetected();
         }
     }
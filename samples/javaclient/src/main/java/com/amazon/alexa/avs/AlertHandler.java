@@ -14,6 +14,11 @@ package com.amazon.alexa.avs;
 
 public interface AlertHandler {
 
+    /**
+     * Called shortly before the alert is due, to get what plays it ready.
+     */
+    void prepareAlert(String alertToken);
+
     void startAlert(String alertToken);
 
     void stopAlert(String alertToken);
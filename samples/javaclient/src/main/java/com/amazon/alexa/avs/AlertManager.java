@@ -18,16 +18,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AlertManager implements AlertHandler {
     private final AlertEventListener listener;
     private final AlertHandler handler;
-    private final Map<String, AlertScheduler> schedulers;
+    // read without the lock; changed with it held
+    private final Map<String, Alert> alerts;
+    private final AlertScheduler scheduler;
     private final Set<String> activeAlerts;
     private final AlertsDataStore dataStore;
 
@@ -37,7 +39,8 @@ public class AlertManager implements AlertHandler {
             AlertsDataStore dataStore) {
         this.listener = listener;
         this.handler = handler;
-        this.schedulers = new HashMap<String, AlertScheduler>();
+        this.alerts = new ConcurrentHashMap<String, Alert>();
+        this.scheduler = new AlertScheduler(this, TimerWheel.getInstance().getClock());
         this.activeAlerts = new HashSet<String>();
         this.dataStore = dataStore;
     }
@@ -47,8 +50,8 @@ public class AlertManager implements AlertHandler {
 
     }
 
-    public synchronized boolean hasAlert(String alertToken) {
-        return schedulers.containsKey(alertToken);
+    public boolean hasAlert(String alertToken) {
+        return alerts.containsKey(alertToken);
     }
 
     public synchronized boolean hasActiveAlerts() {
@@ -59,16 +62,15 @@ public class AlertManager implements AlertHandler {
         return activeAlerts;
     }
 
-    public synchronized List<Alert> getAllAlerts() {
-        List<Alert> list = new ArrayList<Alert>(schedulers.size());
-        for (AlertScheduler scheduler : schedulers.values()) {
-            list.add(scheduler.getAlert());
-        }
-        return list;
+    public List<Alert> getAllAlerts() {
+        return new ArrayList<Alert>(alerts.values());
     }
 
-    public synchronized AlertScheduler getScheduler(String alertToken) {
-        return schedulers.get(alertToken);
+    /**
+     * @return the alert with the token, or null if there is none.
+     */
+    public Alert getAlert(String alertToken) {
+        return alerts.get(alertToken);
     }
 
     public void add(final Alert alert) {
@@ -79,8 +81,12 @@ public class AlertManager implements AlertHandler {
     // should be set to true. We only want to trigger events the first time
     // a alert is set
     public synchronized void add(final Alert alert, final boolean suppressEvent) {
-        final AlertScheduler scheduler = new AlertScheduler(alert, this);
-        schedulers.put(alert.getToken(), scheduler);
+        // an alert being replaced stops sounding
+        if (activeAlerts.contains(alert.getToken())) {
+            stopAlert(alert.getToken());
+        }
+        alerts.put(alert.getToken(), alert);
+        scheduler.schedule(alert);
         log.debug("Adding alert with token {}", alert.getToken());
         writeCurrentAlertsToDisk(new ResultListener() {
             @Override
@@ -95,21 +101,30 @@ public class AlertManager implements AlertHandler {
                 if (!suppressEvent) {
                     listener.onAlertSet(alert.getToken(), false);
                 }
-                schedulers.remove(alert.getToken());
-                scheduler.cancel();
+                synchronized (AlertManager.this) {
+                    // unless it was replaced in the meantime
+                    if (alerts.get(alert.getToken()) == alert) {
+                        alerts.remove(alert.getToken());
+                        scheduler.cancel(alert.getToken());
+                    }
+                }
             }
         });
     }
 
     public synchronized void delete(final String alertToken) {
-        final AlertScheduler scheduler = schedulers.remove(alertToken);
+        final Alert alert = alerts.remove(alertToken);
         log.debug("Deleting alert with token {}", alertToken);
-        if (scheduler != null) {
-            final Alert alert = scheduler.getAlert();
+        if (alert != null) {
+            scheduler.cancel(alertToken);
             writeCurrentAlertsToDisk(new ResultListener() {
                 @Override
                 public void onSuccess() {
-                    scheduler.cancel();
+                    synchronized (AlertManager.this) {
+                        if (activeAlerts.contains(alertToken)) {
+                            stopAlert(alertToken);
+                        }
+                    }
                     listener.onAlertDelete(alert.getToken(), true);
                 }
 
@@ -129,8 +144,17 @@ public class AlertManager implements AlertHandler {
         dataStore.writeToDisk(getAllAlerts(), l);
     }
 
+    @Override
+    public void prepareAlert(String alertToken) {
+        handler.prepareAlert(alertToken);
+    }
+
     @Override
     public synchronized void startAlert(String alertToken) {
+        if (!alerts.containsKey(alertToken)) {
+            // deleted after the scheduler picked it
+            return;
+        }
         activeAlerts.add(alertToken);
         listener.onAlertStarted(alertToken);
         handler.startAlert(alertToken);
@@ -139,7 +163,8 @@ public class AlertManager implements AlertHandler {
     @Override
     public synchronized void stopAlert(String alertToken) {
         activeAlerts.remove(alertToken);
-        schedulers.remove(alertToken);
+        alerts.remove(alertToken);
+        scheduler.cancel(alertToken);
         listener.onAlertStopped(alertToken);
         handler.stopAlert(alertToken);
     }
@@ -157,10 +182,9 @@ public class AlertManager implements AlertHandler {
     }
 
     public synchronized AlertsStatePayload getState() {
-        List<Alert> all = new ArrayList<>(schedulers.size());
+        List<Alert> all = new ArrayList<>(alerts.size());
         List<Alert> active = new ArrayList<>(activeAlerts.size());
-        for (AlertScheduler scheduler : schedulers.values()) {
-            Alert alert = scheduler.getAlert();
+        for (Alert alert : alerts.values()) {
             all.add(alert);
 
             if (activeAlerts.contains(alert.getToken())) {
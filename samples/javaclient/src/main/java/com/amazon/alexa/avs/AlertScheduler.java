@@ -12,49 +12,200 @@
  */
 package com.amazon.alexa.avs;
 
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * A timer used to trigger AVS alerts on schedule
+ * Triggers AVS alerts on schedule, all of them from one thread. Alerts wait in a priority queue
+ * ordered by due time, so adding one is O(log n) and the thread only looks at the next alert due.
+ * Shortly before an alert is due the handler is asked to prepare it, so that the alarm sounds on
+ * time.
+ * <p>
+ * Due times are instants, so a change of time zone doesn't move an alert. They are compared with
+ * the wall clock, while waiting is measured on a monotonic clock; the thread therefore never waits
+ * longer than {@link #MAX_WAIT_MS} before checking the wall clock again, which re-arms every alert
+ * against the new time after the clock is set.
  */
-public class AlertScheduler extends Timer {
-    private final Alert alert;
+public class AlertScheduler {
+    private static final Logger log = LoggerFactory.getLogger(AlertScheduler.class);
+
+    // how long before an alert is due the handler prepares it
+    private static final long PREPARE_LEAD_MS = 5000;
+    // the longest the wall clock can be set without the alerts noticing; alerts are meant to
+    // sound on the second
+    private static final long MAX_WAIT_MS = 1000;
+    // a difference between the wall and monotonic clocks treated as the time being set
+    private static final long CLOCK_CHANGE_THRESHOLD_MS = 1000;
+    // cancelled alerts are left in the queue until they make up more than half of it
+    private static final int MIN_PURGE_SIZE = 64;
+
     private final AlertHandler handler;
-    private boolean active = false;
-
-    public AlertScheduler(final Alert alert, final AlertHandler handler) {
-        super();
-        schedule(new TimerTask() {
-            @Override
-            public void run() {
-                setActive(true);
-                handler.startAlert(alert.getToken());
-            }
-        }, Date.from(alert.getScheduledTime().toInstant()));
-        this.alert = alert;
+    private final TimerWheel.Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Entry> queue =
+            new PriorityQueue<>(Comparator.comparingLong((Entry entry) -> entry.dueTime));
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int cancelledCount;
+
+    public AlertScheduler(AlertHandler handler, TimerWheel.Clock clock) {
         this.handler = handler;
+        this.clock = clock;
+        Thread thread = new Thread(this::run, "AlertScheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedule the alert, replacing any alert scheduled with the same token. An alert due in the
+     * past is started right away.
+     */
+    public void schedule(Alert alert) {
+        Entry entry =
+                new Entry(alert.getToken(), alert.getScheduledTime().toInstant().toEpochMilli());
+        lock.lock();
+        try {
+            cancelEntry(entries.put(entry.token, entry));
+            queue.offer(entry);
+            if (queue.peek() == entry) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the alert with the token from being started.
+     *
+     * @return false if no such alert was waiting to start.
+     */
+    public boolean cancel(String alertToken) {
+        lock.lock();
+        try {
+            return cancelEntry(entries.remove(alertToken));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized boolean isActive() {
-        return active;
+    /**
+     * @return how many alerts are waiting to start.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void setActive(boolean active) {
-        this.active = active;
+    // called with the lock held
+    private boolean cancelEntry(Entry entry) {
+        if (entry == null) {
+            return false;
+        }
+        // left in the queue, since removing it from the middle takes linear time
+        entry.cancelled = true;
+        cancelledCount++;
+        if (cancelledCount > MIN_PURGE_SIZE && cancelledCount > queue.size() / 2) {
+            queue.removeIf(queued -> queued.cancelled);
+            cancelledCount = 0;
+        }
+        return true;
     }
 
-    @Override
-    public void cancel() {
-        super.cancel();
-        if (isActive()) {
-            handler.stopAlert(alert.getToken());
-            setActive(false);
+    private void run() {
+        List<String> toPrepare = new ArrayList<>();
+        List<String> toStart = new ArrayList<>();
+        long lastWallTime = clock.currentTimeMillis();
+        long lastNanoTime = clock.nanoTime();
+        while (true) {
+            lock.lock();
+            try {
+                long now = clock.currentTimeMillis();
+                long nanoTime = clock.nanoTime();
+                long drift = (now - lastWallTime)
+                        - TimeUnit.NANOSECONDS.toMillis(nanoTime - lastNanoTime);
+                if (Math.abs(drift) > CLOCK_CHANGE_THRESHOLD_MS) {
+                    log.info("The clock was set by {} ms, rescheduling alerts", drift);
+                }
+                lastWallTime = now;
+                lastNanoTime = nanoTime;
+
+                Entry next;
+                while ((next = queue.peek()) != null) {
+                    if (next.cancelled) {
+                        queue.poll();
+                        cancelledCount--;
+                    } else if (next.dueTime <= now) {
+                        queue.poll();
+                        entries.remove(next.token);
+                        toStart.add(next.token);
+                    } else {
+                        break;
+                    }
+                }
+                if (next != null && !next.prepared && next.dueTime - PREPARE_LEAD_MS <= now) {
+                    next.prepared = true;
+                    toPrepare.add(next.token);
+                }
+                if (toStart.isEmpty() && toPrepare.isEmpty()) {
+                    long wait = MAX_WAIT_MS;
+                    if (next != null) {
+                        long until = next.prepared ? next.dueTime : next.dueTime - PREPARE_LEAD_MS;
+                        wait = Math.min(wait, until - now);
+                    }
+                    changed.await(wait, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                log.warn("AlertScheduler thread interrupted", e);
+                continue;
+            } finally {
+                lock.unlock();
+            }
+
+            // outside the lock, so that the handler can schedule or cancel alerts
+            for (String alertToken : toPrepare) {
+                try {
+                    handler.prepareAlert(alertToken);
+                } catch (RuntimeException e) {
+                    log.error("Failed to prepare alert {}", alertToken, e);
+                }
+            }
+            for (String alertToken : toStart) {
+                try {
+                    handler.startAlert(alertToken);
+                } catch (RuntimeException e) {
+                    log.error("Failed to start alert {}", alertToken, e);
+                }
+            }
+            toPrepare.clear();
+            toStart.clear();
         }
     }
 
-    public Alert getAlert() {
-        return alert;
+    private static class Entry {
+        private final String token;
+        private final long dueTime;
+        private boolean prepared;
+        private boolean cancelled;
+
+        Entry(String token, long dueTime) {
+            this.token = token;
+            this.dueTime = dueTime;
+        }
     }
 }
@@ -0,0 +1,156 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds the audio attached to Play directives while the media player needs it. The media player
+ * can only open a location, so attachments are spooled to files; where the system has a shared
+ * memory file system the spool lives there, so the audio is only ever copied within memory and
+ * never written to and read back from a disk or SD card.
+ * <p>
+ * The total size of the spool is bounded by a quota, and each file is deleted as soon as its item
+ * leaves the play queue rather than when the JVM exits. Files left behind by a previous run are
+ * removed when the spool is created.
+ */
+public class AttachmentSpool {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentSpool.class);
+
+    private static final String DIRECTORY_NAME = "avs-attachments";
+    // a tmpfs on most Linux systems
+    private static final Path SHARED_MEMORY = Paths.get("/dev/shm");
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long quotaBytes;
+    // all guarded by this
+    private final Map<Path, Long> spooled = new HashMap<>();
+    private long usedBytes;
+
+    /**
+     * Create a spool in shared memory if the system has it, otherwise in the temporary directory.
+     */
+    public static AttachmentSpool createDefault(long quotaBytes) {
+        Path parent = Files.isDirectory(SHARED_MEMORY) && Files.isWritable(SHARED_MEMORY)
+                ? SHARED_MEMORY : Paths.get(System.getProperty("java.io.tmpdir"));
+        return new AttachmentSpool(parent.resolve(DIRECTORY_NAME), quotaBytes);
+    }
+
+    public AttachmentSpool(Path directory, long quotaBytes) {
+        this.directory = directory;
+        this.quotaBytes = quotaBytes;
+        removeLeftovers();
+    }
+
+    /**
+     * Copy the attachment into the spool, closing the stream.
+     *
+     * @return the spooled file, to be {@link #release(Path) released} once it isn't needed.
+     * @throws IOException
+     *             if it could not be written, or would take the spool over its quota.
+     */
+    public Path spool(InputStream content) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(UUID.randomUUID().toString() + ".mp3");
+        long size = 0;
+        try (InputStream in = content;
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int count;
+            while ((count = in.read(chunk)) >= 0) {
+                reserve(count);
+                size += count;
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, count);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            unreserve(size);
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        synchronized (this) {
+            spooled.put(file, size);
+        }
+        log.debug("Spooled {} bytes of attached content to {}", size, file);
+        return file;
+    }
+
+    /**
+     * Delete a spooled file and return its space to the quota.
+     */
+    public void release(String location) {
+        Path file = Paths.get(location);
+        Long size;
+        synchronized (this) {
+            size = spooled.remove(file);
+        }
+        if (size == null) {
+            return;
+        }
+        unreserve(size);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // for example because the player still has it open on a system which doesn't allow
+            // that
+            log.warn("Failed to delete spooled attachment {}", file, e);
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private synchronized void reserve(long bytes) throws IOException {
+        if (usedBytes + bytes > quotaBytes) {
+            throw new IOException("Attachment spool quota of " + quotaBytes + " bytes exceeded");
+        }
+        usedBytes += bytes;
+    }
+
+    private synchronized void unreserve(long bytes) {
+        usedBytes -= bytes;
+    }
+
+    private void removeLeftovers() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to remove attachments left in {}", directory, e);
+        }
+    }
+}
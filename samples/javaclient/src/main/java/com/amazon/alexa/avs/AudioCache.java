@@ -0,0 +1,486 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Audio downloaded for media items, kept on disk so items played again, such as flash briefing
+ * intros, are read locally instead of being downloaded again. Entries are named by a hash of their
+ * url and store the validators the server sent with them, so a stale entry can be revalidated with
+ * a conditional request.
+ * <p>
+ * The total size is kept within a budget by evicting the least recently played entries; the order
+ * survives restarts through the modification times of the files. An entry is written to a
+ * temporary file which is only renamed into place once it is complete and synced, and its
+ * metadata is written last, so an entry interrupted by a crash is never read and is removed the
+ * next time the cache is opened.
+ */
+public class AudioCache {
+    private static final Logger log = LoggerFactory.getLogger(AudioCache.class);
+
+    private static final String DATA = ".data";
+    private static final String META = ".meta";
+    private static final String PARTIAL = ".part";
+    private static final String TEMPORARY = ".tmp";
+
+    private static final String URL = "url";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String CONTENT_TYPE = "contentType";
+    private static final String LENGTH = "length";
+    private static final String EXPIRES = "expires";
+
+    /**
+     * A complete cached download.
+     */
+    public static class Entry {
+        private final String key;
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final long length;
+        private volatile long expiresMillis;
+        private final Path data;
+
+        Entry(String key, String url, String etag, String lastModified, String contentType,
+                long length, long expiresMillis, Path data) {
+            this.key = key;
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.length = length;
+            this.expiresMillis = expiresMillis;
+            this.data = data;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return true if the entry can be used without asking the server.
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiresMillis;
+        }
+
+        /**
+         * @return true if the server can be asked whether the entry is still current.
+         */
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Open the cached audio from the given position. The entry stays readable while open even
+         * if it is evicted meanwhile.
+         */
+        public InputStream open(long position) throws IOException {
+            FileChannel channel = FileChannel.open(data, StandardOpenOption.READ);
+            channel.position(position);
+            return Channels.newInputStream(channel);
+        }
+
+        private void toProperties(Properties properties) {
+            properties.setProperty(URL, url);
+            if (etag != null) {
+                properties.setProperty(ETAG, etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty(LAST_MODIFIED, lastModified);
+            }
+            if (contentType != null) {
+                properties.setProperty(CONTENT_TYPE, contentType);
+            }
+            properties.setProperty(LENGTH, Long.toString(length));
+            properties.setProperty(EXPIRES, Long.toString(expiresMillis));
+        }
+    }
+
+    /**
+     * Receives a download for the cache. Nothing is visible in the cache until it is committed.
+     */
+    public class Writer extends OutputStream {
+        private final Entry entry;
+        private final Path partial;
+        private final FileChannel channel;
+        private long written;
+        private boolean closed;
+
+        private Writer(Entry entry) throws IOException {
+            this.entry = entry;
+            partial = directory.resolve(entry.key + PARTIAL);
+            channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += length;
+        }
+
+        /**
+         * Make the download part of the cache, if it is complete.
+         */
+        public void commit() throws IOException {
+            if (written != entry.length) {
+                abort();
+                throw new IOException(
+                        "Download of " + entry.url + " ended after " + written + " bytes");
+            }
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+            closed = true;
+            try {
+                add(entry, partial);
+            } catch (IOException e) {
+                discard(entry, partial);
+                throw e;
+            }
+        }
+
+        /**
+         * Discard the download. Closing a writer which wasn't committed also discards it.
+         */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(partial);
+            } catch (IOException e) {
+                log.warn("Failed to delete partial download {}", partial, e);
+            }
+            synchronized (AudioCache.this) {
+                writing.remove(entry.key);
+            }
+        }
+
+        @Override
+        public void close() {
+            abort();
+        }
+    }
+
+    private final Path directory;
+    private final long budgetBytes;
+    private final long maxEntryBytes;
+    // all guarded by this; least recently used first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> writing = new HashSet<>();
+    private long usedBytes;
+
+    /**
+     * Open the cache, removing anything left incomplete by an earlier run.
+     *
+     * @param budgetBytes
+     *            the most the entries may take up together. A single entry may take up a quarter
+     *            of it.
+     */
+    public AudioCache(Path directory, long budgetBytes) throws IOException {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        maxEntryBytes = budgetBytes / 4;
+        Files.createDirectories(directory);
+        load();
+    }
+
+    /**
+     * @return the entry for the url, or null if it isn't cached.
+     */
+    public Entry get(String url) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key(url));
+        }
+        if (entry != null) {
+            // records the use across restarts
+            try {
+                Files.setLastModifiedTime(entry.data,
+                        FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                remove(entry);
+                return null;
+            } catch (IOException e) {
+                log.debug("Failed to touch {}", entry.data, e);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Start caching a download.
+     *
+     * @return a writer for the download, or null if it is too large or the url is already being
+     *         downloaded.
+     */
+    public Writer begin(String url, String etag, String lastModified, String contentType,
+            long length, long expiresMillis) throws IOException {
+        if (length < 0 || length > maxEntryBytes) {
+            return null;
+        }
+        String key = key(url);
+        synchronized (this) {
+            if (!writing.add(key)) {
+                return null;
+            }
+        }
+        Entry entry = new Entry(key, url, etag, lastModified, contentType, length, expiresMillis,
+                directory.resolve(key + DATA));
+        try {
+            return new Writer(entry);
+        } catch (IOException e) {
+            synchronized (this) {
+                writing.remove(key);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Record that the server confirmed the entry is current until the given time.
+     */
+    public void refresh(Entry entry, long expiresMillis) {
+        entry.expiresMillis = expiresMillis;
+        try {
+            writeMetadata(entry);
+        } catch (IOException e) {
+            log.warn("Failed to update {}", entry.url, e);
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void add(Entry entry, Path partial) throws IOException {
+        Path meta = directory.resolve(entry.key + META);
+        // an older version stops being an entry before its data is replaced
+        Files.deleteIfExists(meta);
+        Files.move(partial, entry.data, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        writeMetadata(entry);
+
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            writing.remove(entry.key);
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                usedBytes -= previous.length;
+            }
+            usedBytes += entry.length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (usedBytes > budgetBytes && eldest.hasNext()) {
+                Entry candidate = eldest.next();
+                if (candidate != entry) {
+                    eldest.remove();
+                    usedBytes -= candidate.length;
+                    evicted.add(candidate);
+                }
+            }
+        }
+        for (Entry candidate : evicted) {
+            log.debug("Evicting {}", candidate.url);
+            deleteFiles(candidate.key);
+        }
+        log.debug("Cached {} bytes of {}", entry.length, entry.url);
+    }
+
+    /**
+     * Clean up after an entry failed to be added, which may be after it replaced the data of an
+     * older version: both are dropped along with any of their files.
+     */
+    private void discard(Entry entry, Path partial) {
+        synchronized (this) {
+            writing.remove(entry.key);
+            Entry previous = entries.remove(entry.key);
+            if (previous != null) {
+                usedBytes -= previous.length;
+            }
+        }
+        deleteFiles(entry.key);
+        try {
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(directory.resolve(entry.key + META + TEMPORARY));
+        } catch (IOException e) {
+            log.warn("Failed to delete partial download {}", partial, e);
+        }
+    }
+
+    private void remove(Entry entry) {
+        synchronized (this) {
+            if (entries.get(entry.key) != entry) {
+                return;
+            }
+            entries.remove(entry.key);
+            usedBytes -= entry.length;
+        }
+        deleteFiles(entry.key);
+    }
+
+    private void writeMetadata(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        entry.toProperties(properties);
+        Path temporary = directory.resolve(entry.key + META + TEMPORARY);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            properties.store(Channels.newOutputStream(channel), null);
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(entry.key + META),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        List<Entry> loaded = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + META)) {
+            for (Path meta : files) {
+                Entry entry = readEntry(meta);
+                if (entry != null) {
+                    loaded.add(entry);
+                    keys.add(entry.key);
+                }
+            }
+        }
+        // leftovers of interrupted writes, and data whose metadata was never written
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String key = name.substring(0, Math.max(0, dot));
+                String suffix = dot < 0 ? "" : name.substring(dot);
+                if (!keys.contains(key) || !(suffix.equals(DATA) || suffix.equals(META))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        loaded.sort((a, b) -> Long.compare(lastUsed(a), lastUsed(b)));
+        synchronized (this) {
+            for (Entry entry : loaded) {
+                entries.put(entry.key, entry);
+                usedBytes += entry.length;
+            }
+        }
+        log.info("Audio cache holds {} entries, {} bytes", loaded.size(), getUsedBytes());
+    }
+
+    private Entry readEntry(Path meta) {
+        String name = meta.getFileName().toString();
+        String key = name.substring(0, name.length() - META.length());
+        Path data = directory.resolve(key + DATA);
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            properties.load(in);
+            long length = Long.parseLong(properties.getProperty(LENGTH));
+            if (Files.size(data) == length) {
+                return new Entry(key, properties.getProperty(URL), properties.getProperty(ETAG),
+                        properties.getProperty(LAST_MODIFIED),
+                        properties.getProperty(CONTENT_TYPE), length,
+                        Long.parseLong(properties.getProperty(EXPIRES, "0")), data);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Dropping unreadable cache entry {}", key, e);
+        }
+        return null;
+    }
+
+    private static long lastUsed(Entry entry) {
+        try {
+            return Files.getLastModifiedTime(entry.data).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void deleteFiles(String key) {
+        try {
+            // the metadata first, so a crash in between leaves no entry behind
+            Files.deleteIfExists(directory.resolve(key + META));
+            Files.deleteIfExists(directory.resolve(key + DATA));
+        } catch (IOException e) {
+            log.warn("Failed to delete cache entry {}", key, e);
+        }
+    }
+
+    static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -12,56 +12,91 @@
  */
 package com.amazon.alexa.avs;
 
+import com.amazon.alexa.avs.CaptureFrameBus.Frame;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PipedInputStream;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.TargetDataLine;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Owns the capture thread, which reads from the {@link AudioSource} into the
+ * {@link CaptureFrameBus} and, while a recording is in progress, into the stream being uploaded.
+ * Normally the source is only open during a recording; after {@link #startListening()} it stays
+ * open between recordings so that in-process consumers such as a wake word engine keep receiving
+ * frames.
+ */
 public class AudioCapture {
     private static AudioCapture sAudioCapture;
-    private final TargetDataLine microphoneLine;
+    private final AudioSource audioSource;
     private AudioFormat audioFormat;
     private AudioBufferThread thread;
+    private final CaptureFrameBus frameBus;
+    private final RecordingRMSCalculator rmsCalculator = new RecordingRMSCalculator();
+    // the stream of the recording in progress, null between recordings
+    private final AtomicReference<AudioStateOutputStream> uploadStream = new AtomicReference<>();
+    private volatile boolean listening = false;
 
     private static final int BUFFER_SIZE_IN_SECONDS = 6;
+    private static final int FRAME_BUS_CAPACITY = 64;
+    private static final int MAX_FRAME_SIZE_IN_MS = 200;
+    private static final int REOPEN_RETRY_DELAY_MS = 1000;
 
     private final int BUFFER_SIZE_IN_BYTES;
 
     private static final Logger log = LoggerFactory.getLogger(AudioCapture.class);
 
-    public static AudioCapture getAudioHardware(final AudioFormat audioFormat,
-            MicrophoneLineFactory microphoneLineFactory) throws LineUnavailableException {
+    public static AudioCapture getAudioHardware(AudioSource audioSource) {
         if (sAudioCapture == null) {
-            sAudioCapture = new AudioCapture(audioFormat, microphoneLineFactory);
+            sAudioCapture = new AudioCapture(audioSource);
         }
         return sAudioCapture;
     }
 
-    private AudioCapture(final AudioFormat audioFormat, MicrophoneLineFactory microphoneLineFactory)
-            throws LineUnavailableException {
+    private AudioCapture(AudioSource audioSource) {
         super();
-        this.audioFormat = audioFormat;
-        microphoneLine = microphoneLineFactory.getMicrophone();
-        if (microphoneLine == null) {
-            throw new LineUnavailableException();
-        }
+        this.audioSource = audioSource;
+        this.audioFormat = audioSource.getFormat();
         BUFFER_SIZE_IN_BYTES = (int) ((audioFormat.getSampleSizeInBits() * audioFormat.getSampleRate()) / 8
                 * BUFFER_SIZE_IN_SECONDS);
+        int maxFrameSize = (int) (audioFormat.getFrameRate() * MAX_FRAME_SIZE_IN_MS / 1000)
+                * audioFormat.getFrameSize();
+        frameBus = new CaptureFrameBus(FRAME_BUS_CAPACITY, maxFrameSize);
+        frameBus.subscribe("RMS", rmsCalculator);
+    }
+
+    /**
+     * @return the bus every captured frame is published on, for consumers other than the upload.
+     */
+    public CaptureFrameBus getFrameBus() {
+        return frameBus;
+    }
+
+    /**
+     * Keep capturing between recordings, so consumers of the frame bus see the microphone all the
+     * time. Capture statistics then cover the whole time the source has been open rather than a
+     * single recording.
+     */
+    public synchronized void startListening() throws LineUnavailableException {
+        listening = true;
+        startCapture();
     }
 
     public InputStream getAudioInputStream(final RecordingStateListener stateListener,
             final RecordingRMSListener rmsListener) throws LineUnavailableException, IOException {
         try {
             startCapture();
+            rmsCalculator.setRMSListener(rmsListener);
             PipedInputStream inputStream = new PipedInputStream(BUFFER_SIZE_IN_BYTES);
-            thread = new AudioBufferThread(inputStream, stateListener, rmsListener);
-            thread.start();
+            AudioStateOutputStream outputStream =
+                    new AudioStateOutputStream(inputStream, stateListener, rmsListener);
+            closeUploadStream(uploadStream.getAndSet(outputStream));
             return inputStream;
         } catch (LineUnavailableException | IOException e) {
             stopCapture();
@@ -69,15 +104,44 @@ public class AudioCapture {
         }
     }
 
+    /**
+     * End the recording in progress. The source is closed too unless we are listening.
+     */
     public void stopCapture() {
-        microphoneLine.stop();
-        microphoneLine.close();
+        if (!listening) {
+            audioSource.close();
+        }
+        rmsCalculator.setRMSListener(null);
+        closeUploadStream(uploadStream.getAndSet(null));
+    }
 
+    private synchronized void startCapture() throws LineUnavailableException {
+        if (!audioSource.isOpen()) {
+            audioSource.open();
+        }
+        if (thread == null) {
+            thread = new AudioBufferThread();
+            thread.start();
+        }
+    }
+
+    private void closeUploadStream(AudioStateOutputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.error("Failed to close audio stream ", e);
+        }
     }
 
-    private void startCapture() throws LineUnavailableException {
-        microphoneLine.open(audioFormat);
-        microphoneLine.start();
+    /**
+     * @return statistics for the current or most recent recording, or null if there hasn't been
+     *         one.
+     */
+    public CaptureStatistics getCaptureStatistics() {
+        return audioSource.getStatistics();
     }
 
     public int getAudioBufferSizeInBytes() {
@@ -86,38 +150,84 @@ public class AudioCapture {
 
     private class AudioBufferThread extends Thread {
 
-        private final AudioStateOutputStream audioStateOutputStream;
-
-        public AudioBufferThread(PipedInputStream inputStream,
-                RecordingStateListener recordingStateListener, RecordingRMSListener rmsListener)
-                        throws IOException {
-            audioStateOutputStream =
-                    new AudioStateOutputStream(inputStream, recordingStateListener, rmsListener);
+        public AudioBufferThread() {
+            super("AudioCapture");
+            setDaemon(true);
         }
 
         @Override
         public void run() {
-            while (microphoneLine.isOpen()) {
-                copyAudioBytesFromInputToOutput();
+            while (true) {
+                while (audioSource.isOpen()) {
+                    copyAudioBytesFromInputToOutput();
+                }
+
+                AudioStateOutputStream stream;
+                boolean exit;
+                synchronized (AudioCapture.this) {
+                    if (audioSource.isOpen()) {
+                        // a new recording reopened the source as we were leaving the loop
+                        continue;
+                    }
+                    stream = uploadStream.getAndSet(null);
+                    exit = !listening;
+                    if (exit) {
+                        thread = null;
+                    }
+                }
+                closeUploadStream(stream);
+                if (exit) {
+                    return;
+                }
+                reopen();
             }
-            closePipedOutputStream();
         }
 
         private void copyAudioBytesFromInputToOutput() {
-            byte[] data = new byte[microphoneLine.getBufferSize() / 5];
-            int numBytesRead = microphoneLine.read(data, 0, data.length);
-            try {
-                audioStateOutputStream.write(data, 0, numBytesRead);
-            } catch (IOException e) {
+            // capture straight into the frame bus so other consumers can share the buffer
+            Frame frame = frameBus.claim();
+            int numBytesRead = audioSource.read(frame.getData(), 0, frame.getData().length);
+            if (numBytesRead < 0) {
+                // the source has run out of audio for this recording; closing it lets a
+                // listening capture move on to the source's next recording
+                audioSource.close();
                 stopCapture();
+                return;
+            }
+            long timestampNanos = System.nanoTime();
+            AudioStateOutputStream stream = uploadStream.get();
+            if (stream != null) {
+                try {
+                    stream.write(frame.getData(), 0, numBytesRead);
+                } catch (IOException e) {
+                    // the upload was stopped while we were writing, or its reader went away
+                    if (uploadStream.get() == stream) {
+                        stopCapture();
+                    }
+                }
             }
+            frameBus.publish(frame, numBytesRead, timestampNanos);
         }
 
-        private void closePipedOutputStream() {
+        /**
+         * The source closed underneath us while listening, for example because the capture device
+         * was unplugged. Keep trying to get it back so listeners don't go deaf.
+         */
+        private void reopen() {
             try {
-                audioStateOutputStream.close();
-            } catch (IOException e) {
-                log.error("Failed to close audio stream ", e);
+                synchronized (AudioCapture.this) {
+                    if (!audioSource.isOpen()) {
+                        audioSource.open();
+                    }
+                }
+                log.info("Audio source reopened");
+            } catch (LineUnavailableException | RuntimeException e) {
+                log.warn("Could not reopen the audio source, retrying");
+                try {
+                    Thread.sleep(REOPEN_RETRY_DELAY_MS);
+                } catch (InterruptedException e1) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
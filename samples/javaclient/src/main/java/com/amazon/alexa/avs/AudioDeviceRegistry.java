@@ -0,0 +1,293 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * Keeps track of the capture devices on this machine. Mixers are probed once on a background
+ * thread and their capabilities cached; afterwards the mixer list is re-read periodically and
+ * only mixers that appeared are probed, so devices being plugged in or removed are noticed without
+ * paying the probing cost again. Listeners are told when the preferred capture device changes.
+ */
+public class AudioDeviceRegistry {
+    private static final Logger log = LoggerFactory.getLogger(AudioDeviceRegistry.class);
+
+    private static final long RESCAN_PERIOD_SECONDS = 5;
+    private static final long FIRST_PROBE_TIMEOUT_SECONDS = 10;
+
+    // native rates to try, in order of preference, when a line can't capture the target format
+    private static final float[] CAPTURE_SAMPLE_RATES = { 48000f, 44100f, 32000f, 96000f, 16000f };
+    private static final int[] CAPTURE_CHANNELS = { 1, 2 };
+
+    private static AudioDeviceRegistry sInstance;
+
+    public interface CaptureDeviceListener {
+        /**
+         * Called on the registry thread when the preferred capture device changes.
+         *
+         * @param device
+         *            the new preferred device, or null if no capture device is left.
+         */
+        void onCaptureDeviceChanged(CaptureDevice device);
+    }
+
+    /**
+     * Cached capabilities of one capture line of a mixer.
+     */
+    public static class CaptureDevice {
+        private final Mixer.Info mixerInfo;
+        private final DataLine.Info lineInfo;
+        private final AudioFormat captureFormat;
+        private final boolean supportsTargetFormat;
+
+        CaptureDevice(Mixer.Info mixerInfo, DataLine.Info lineInfo, AudioFormat targetFormat) {
+            this.mixerInfo = mixerInfo;
+            this.lineInfo = lineInfo;
+            this.captureFormat = selectCaptureFormat(lineInfo, targetFormat);
+            this.supportsTargetFormat = lineInfo.isFormatSupported(targetFormat);
+        }
+
+        public String getName() {
+            return mixerInfo.getName();
+        }
+
+        public Mixer.Info getMixerInfo() {
+            return mixerInfo;
+        }
+
+        public AudioFormat[] getSupportedFormats() {
+            return lineInfo.getFormats();
+        }
+
+        public int getMinBufferSize() {
+            return lineInfo.getMinBufferSize();
+        }
+
+        public int getMaxBufferSize() {
+            return lineInfo.getMaxBufferSize();
+        }
+
+        /**
+         * @return the format to open this device with, or null if it has no usable PCM format.
+         */
+        public AudioFormat getCaptureFormat() {
+            return captureFormat;
+        }
+
+        public boolean supportsTargetFormat() {
+            return supportsTargetFormat;
+        }
+
+        public TargetDataLine getLine() throws LineUnavailableException {
+            return (TargetDataLine) AudioSystem.getMixer(mixerInfo).getLine(lineInfo);
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " (" + captureFormat + ")";
+        }
+    }
+
+    private final AudioFormat targetFormat;
+    private final ScheduledExecutorService executor;
+    private final CountDownLatch firstProbe = new CountDownLatch(1);
+    private final Set<CaptureDeviceListener> listeners = new CopyOnWriteArraySet<>();
+
+    // only touched on the registry thread
+    private final Map<String, List<CaptureDevice>> devicesByMixer = new LinkedHashMap<>();
+
+    private volatile List<CaptureDevice> captureDevices = Collections.emptyList();
+    private volatile CaptureDevice preferredDevice;
+
+    public static synchronized AudioDeviceRegistry getInstance() {
+        if (sInstance == null) {
+            sInstance = new AudioDeviceRegistry(AudioInputFormat.LPCM.getAudioFormat());
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    private AudioDeviceRegistry(AudioFormat targetFormat) {
+        this.targetFormat = targetFormat;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AudioDeviceRegistry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void start() {
+        executor.scheduleWithFixedDelay(this::rescan, 0, RESCAN_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void addCaptureDeviceListener(CaptureDeviceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeCaptureDeviceListener(CaptureDeviceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the capture device chosen by policy, waiting for the first probe to complete if it
+     *         is still running. Null if there is no usable capture device.
+     */
+    public CaptureDevice getPreferredCaptureDevice() {
+        try {
+            if (!firstProbe.await(FIRST_PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for the audio devices to be probed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return preferredDevice;
+    }
+
+    public List<CaptureDevice> getCaptureDevices() {
+        return captureDevices;
+    }
+
+    /**
+     * Pick the format to open a capture line with. If the line can capture the target format
+     * directly that is used, otherwise the best native 16 bit PCM format it supports, which
+     * {@link AudioResampler} then converts to the target format.
+     *
+     * @return the format to open the line with, or null if no usable format is supported.
+     */
+    public static AudioFormat selectCaptureFormat(DataLine.Info info, AudioFormat targetFormat) {
+        if (info.isFormatSupported(targetFormat)) {
+            return targetFormat;
+        }
+
+        for (float sampleRate : CAPTURE_SAMPLE_RATES) {
+            for (int channels : CAPTURE_CHANNELS) {
+                for (boolean bigEndian : new boolean[] { false, true }) {
+                    AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, bigEndian);
+                    if (info.isFormatSupported(format)) {
+                        return format;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void rescan() {
+        try {
+            Mixer.Info[] mixerInfos = AudioSystem.getMixerInfo();
+            Map<String, Mixer.Info> present = new LinkedHashMap<>();
+            for (Mixer.Info mixerInfo : mixerInfos) {
+                present.put(getKey(mixerInfo), mixerInfo);
+            }
+
+            boolean changed = devicesByMixer.keySet().retainAll(present.keySet());
+            for (Map.Entry<String, Mixer.Info> entry : present.entrySet()) {
+                if (!devicesByMixer.containsKey(entry.getKey())) {
+                    devicesByMixer.put(entry.getKey(), probe(entry.getValue()));
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                List<CaptureDevice> devices = new ArrayList<>();
+                for (List<CaptureDevice> mixerDevices : devicesByMixer.values()) {
+                    devices.addAll(mixerDevices);
+                }
+                captureDevices = Collections.unmodifiableList(devices);
+                log.info("Capture devices: {}", devices);
+                updatePreferredDevice(devices);
+            }
+        } catch (Exception e) {
+            log.error("Failed to enumerate audio devices", e);
+        } finally {
+            firstProbe.countDown();
+        }
+    }
+
+    private List<CaptureDevice> probe(Mixer.Info mixerInfo) {
+        List<CaptureDevice> devices = new ArrayList<>();
+        Mixer mixer = AudioSystem.getMixer(mixerInfo);
+        try {
+            mixer.open();
+            mixer.close();
+        } catch (Exception e) {
+            return devices;
+        }
+
+        for (Line.Info lineInfo : mixer.getTargetLineInfo()) {
+            if (lineInfo instanceof DataLine.Info
+                    && TargetDataLine.class.isAssignableFrom(lineInfo.getLineClass())) {
+                CaptureDevice device =
+                        new CaptureDevice(mixerInfo, (DataLine.Info) lineInfo, targetFormat);
+                if (device.getCaptureFormat() != null) {
+                    devices.add(device);
+                }
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Policy: keep using the current device while it is present, so a hot-plugged device doesn't
+     * steal the microphone mid-session. Otherwise prefer devices that capture the target format
+     * natively over ones that need resampling, in mixer enumeration order.
+     */
+    private void updatePreferredDevice(List<CaptureDevice> devices) {
+        CaptureDevice current = preferredDevice;
+        if (current != null && devices.contains(current)) {
+            return;
+        }
+
+        CaptureDevice best = null;
+        for (CaptureDevice device : devices) {
+            if (best == null || (device.supportsTargetFormat() && !best.supportsTargetFormat())) {
+                best = device;
+            }
+        }
+
+        preferredDevice = best;
+        if (current != null || best != null) {
+            log.info("Preferred capture device changed from {} to {}", current, best);
+            for (CaptureDeviceListener listener : listeners) {
+                listener.onCaptureDeviceChanged(best);
+            }
+        }
+    }
+
+    private static String getKey(Mixer.Info mixerInfo) {
+        return mixerInfo.getName() + "|" + mixerInfo.getVendor() + "|"
+                + mixerInfo.getDescription() + "|" + mixerInfo.getVersion();
+    }
+}
@@ -16,17 +16,15 @@ import com.amazon.alexa.avs.message.response.ProgressReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class AudioPlayerProgressReporter {
-    private final ScheduledExecutorService eventScheduler = Executors.newScheduledThreadPool(1);
     private static final Logger log = LoggerFactory.getLogger(AudioPlayerProgressReporter.class);
 
-    private ScheduledFuture<?> progressReportDelayFuture;
-    private ScheduledFuture<?> progressReportIntervalFuture;
+    private final TimerWheel timerWheel;
+
+    private TimerWheel.Timeout progressReportDelayTimeout;
+    private TimerWheel.Timeout progressReportIntervalTimeout;
 
     private final Runnable progressReportDelayRunnable;
     private final Runnable progressReportIntervalRunnable;
@@ -39,16 +37,18 @@ public class AudioPlayerProgressReporter {
 
     public AudioPlayerProgressReporter(Runnable progressReportDelayRunnable,
             Runnable progressReportIntervalRunnable,
-            AudioPlayerTimer audioPlayerTimer) {
+            AudioPlayerTimer audioPlayerTimer, TimerWheel timerWheel) {
         if (progressReportDelayRunnable == null ||
                 progressReportIntervalRunnable == null ||
-                audioPlayerTimer == null) {
+                audioPlayerTimer == null ||
+                timerWheel == null) {
             throw new IllegalArgumentException("All arguments must be provided.");
         }
 
         this.progressReportDelayRunnable = progressReportDelayRunnable;
         this.progressReportIntervalRunnable = progressReportIntervalRunnable;
         this.audioPlayerTimer = audioPlayerTimer;
+        this.timerWheel = timerWheel;
         this.isSetup = false;
     }
 
@@ -157,7 +157,7 @@ public class AudioPlayerProgressReporter {
      */
     private void scheduleDelayEvent(long delay) {
         log.debug("Scheduling ProgressReportDelayElapsed event in {} ms", String.valueOf(delay));
-        progressReportDelayFuture = eventScheduler.schedule(progressReportDelayRunnable, delay,
+        progressReportDelayTimeout = timerWheel.schedule(progressReportDelayRunnable, delay,
                 TimeUnit.MILLISECONDS);
     }
 
@@ -171,17 +171,19 @@ public class AudioPlayerProgressReporter {
     private void scheduleIntervalEvent(long delay, long interval) {
         log.debug("Scheduling ProgressReportIntervalElapsed event in {} ms that will repeat every {} ms",
                 String.valueOf(delay), String.valueOf(interval));
-        progressReportIntervalFuture = eventScheduler.scheduleAtFixedRate(
+        progressReportIntervalTimeout = timerWheel.scheduleAtFixedRate(
                 progressReportIntervalRunnable, delay, interval, TimeUnit.MILLISECONDS);
     }
 
     private void cancelEvents() {
-        if (progressReportDelayFuture != null && !progressReportDelayFuture.isDone()) {
-            progressReportDelayFuture.cancel(false);
+        if (progressReportDelayTimeout != null) {
+            progressReportDelayTimeout.cancel();
+            progressReportDelayTimeout = null;
         }
 
-        if (progressReportIntervalFuture != null && !progressReportIntervalFuture.isDone()) {
-            progressReportIntervalFuture.cancel(false);
+        if (progressReportIntervalTimeout != null) {
+            progressReportIntervalTimeout.cancel();
+            progressReportIntervalTimeout = null;
         }
     }
 }
@@ -0,0 +1,210 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Streaming converter from a microphone's native 16 bit PCM format (any sample rate, any number of
+ * channels, either byte order) to the mono 16 bit little endian format expected by AVS. Channels
+ * are averaged down to mono and the sample rate is converted with a polyphase windowed-sinc filter
+ * for the rational ratio between the two rates. All buffers are allocated up front, so
+ * {@link #convert(byte[], int, int, byte[], int)} can be called from the capture thread without
+ * producing garbage.
+ */
+public class AudioResampler {
+    // taps per polyphase branch; the prototype filter has TAPS_PER_PHASE * upFactor taps
+    private static final int TAPS_PER_PHASE = 32;
+    private static final double KAISER_BETA = 8.0;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final int upFactor;
+    private final int downFactor;
+    private final int sourceChannels;
+    private final boolean sourceBigEndian;
+    private final int sourceFrameSize;
+    private final float[] coefficients;
+
+    // input history is stored twice so the filter window is always contiguous
+    private final float[] history = new float[TAPS_PER_PHASE * 2];
+    private int historyIndex;
+    private int phase;
+
+    public AudioResampler(AudioFormat sourceFormat, AudioFormat targetFormat) {
+        if (sourceFormat.getSampleSizeInBits() != 16 || targetFormat.getSampleSizeInBits() != 16
+                || targetFormat.getChannels() != 1 || targetFormat.isBigEndian()) {
+            throw new IllegalArgumentException(
+                    "Unsupported conversion from " + sourceFormat + " to " + targetFormat);
+        }
+        int sourceRate = Math.round(sourceFormat.getSampleRate());
+        int targetRate = Math.round(targetFormat.getSampleRate());
+        int divisor = gcd(sourceRate, targetRate);
+
+        upFactor = targetRate / divisor;
+        downFactor = sourceRate / divisor;
+        sourceChannels = sourceFormat.getChannels();
+        sourceBigEndian = sourceFormat.isBigEndian();
+        sourceFrameSize = sourceChannels * BYTES_PER_SAMPLE;
+        coefficients = createPolyphaseFilter(upFactor, downFactor);
+    }
+
+    /**
+     * @return true if audio in the source format has to go through a resampler to be sent in the
+     *         target format.
+     */
+    public static boolean isConversionRequired(AudioFormat sourceFormat,
+            AudioFormat targetFormat) {
+        return !sourceFormat.matches(targetFormat);
+    }
+
+    /**
+     * Discard the filter history, for example when a new recording is started.
+     */
+    public void reset() {
+        Arrays.fill(history, 0f);
+        historyIndex = 0;
+        phase = 0;
+    }
+
+    /**
+     * @param sourceBytes
+     *            number of bytes of source audio that will be passed to a single
+     *            {@link #convert(byte[], int, int, byte[], int)} call.
+     * @return the size of an output buffer that is always large enough for that call.
+     */
+    public int getMaxOutputSize(int sourceBytes) {
+        long frames = sourceBytes / sourceFrameSize;
+        return (int) ((frames * upFactor) / downFactor + 1) * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * @param targetBytes
+     *            space available in the output buffer.
+     * @return the largest number of source bytes, in whole frames, whose conversion is guaranteed
+     *         to fit in that space.
+     */
+    public int getMaxInputSize(int targetBytes) {
+        long samples = targetBytes / BYTES_PER_SAMPLE - 1;
+        if (samples <= 0) {
+            return 0;
+        }
+        return (int) ((samples * downFactor) / upFactor) * sourceFrameSize;
+    }
+
+    /**
+     * Convert a block of source audio. Trailing bytes which do not make up a whole frame are
+     * ignored, so callers should read whole frames from the line.
+     *
+     * @return number of bytes written to the output buffer.
+     */
+    public int convert(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        final int frames = length / sourceFrameSize;
+        final float[] coeffs = coefficients;
+        final float[] hist = history;
+        int out = targetOffset;
+        int in = offset;
+
+        for (int frame = 0; frame < frames; frame++) {
+            float sample = 0f;
+            for (int channel = 0; channel < sourceChannels; channel++) {
+                sample += readSample(source, in);
+                in += BYTES_PER_SAMPLE;
+            }
+            sample /= sourceChannels;
+
+            historyIndex = (historyIndex == 0 ? TAPS_PER_PHASE : historyIndex) - 1;
+            hist[historyIndex] = sample;
+            hist[historyIndex + TAPS_PER_PHASE] = sample;
+
+            while (phase < upFactor) {
+                int base = phase * TAPS_PER_PHASE;
+                float acc = 0f;
+                for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                    acc += coeffs[base + tap] * hist[historyIndex + tap];
+                }
+                int value = Math.round(acc);
+                if (value > Short.MAX_VALUE) {
+                    value = Short.MAX_VALUE;
+                } else if (value < Short.MIN_VALUE) {
+                    value = Short.MIN_VALUE;
+                }
+                target[out++] = (byte) value;
+                target[out++] = (byte) (value >> 8);
+                phase += downFactor;
+            }
+            phase -= upFactor;
+        }
+        return out - targetOffset;
+    }
+
+    private float readSample(byte[] data, int index) {
+        if (sourceBigEndian) {
+            return (short) ((data[index] << 8) | (data[index + 1] & 0xff));
+        }
+        return (short) ((data[index + 1] << 8) | (data[index] & 0xff));
+    }
+
+    /**
+     * Build a Kaiser windowed low-pass filter for the upsampled rate and split it into upFactor
+     * branches, each laid out contiguously so the inner loop walks memory in order.
+     */
+    private static float[] createPolyphaseFilter(int upFactor, int downFactor) {
+        int length = TAPS_PER_PHASE * upFactor;
+        // cut off at the lower of the two Nyquist frequencies, relative to the upsampled rate
+        double cutoff = 0.5 / Math.max(upFactor, downFactor);
+        double center = (length - 1) / 2.0;
+        double windowNormalizer = besselI0(KAISER_BETA);
+        float[] branches = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            double x = i - center;
+            double sinc =
+                    (x == 0) ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double ratio = x / center;
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio)))
+                    / windowNormalizer;
+            // scale by upFactor to make up for the energy lost to zero stuffing
+            double coefficient = sinc * window * upFactor;
+
+            int branch = i % upFactor;
+            int tap = i / upFactor;
+            branches[branch * TAPS_PER_PHASE + tap] = (float) coefficient;
+        }
+        return branches;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < 1e-12 * sum) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
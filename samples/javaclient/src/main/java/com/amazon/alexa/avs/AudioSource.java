@@ -0,0 +1,48 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Where {@link AudioCapture} gets its audio from. Sources deliver audio already converted to
+ * {@link #getFormat()}, and are opened for every recording and closed when it ends.
+ */
+public interface AudioSource {
+
+    /**
+     * @return the format of the audio returned by {@link #read(byte[], int, int)}.
+     */
+    AudioFormat getFormat();
+
+    void open() throws LineUnavailableException;
+
+    /**
+     * Block until some audio is available and copy it into the buffer. Sources decide how much to
+     * read each time, up to length bytes.
+     *
+     * @return number of bytes read, or -1 if the source has no more audio for this recording.
+     */
+    int read(byte[] buffer, int offset, int length);
+
+    boolean isOpen();
+
+    /**
+     * @return statistics for the current or most recent recording, or null if there hasn't been
+     *         one.
+     */
+    CaptureStatistics getStatistics();
+
+    void close();
+}
@@ -0,0 +1,41 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.config.DeviceConfig.AudioSourceInformation;
+
+import java.io.File;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+public class AudioSourceFactory {
+
+    public AudioSource createAudioSource(AudioSourceInformation info, AudioFormat audioFormat)
+            throws LineUnavailableException {
+        switch (info.getType()) {
+            case FILE:
+                return new FileAudioSource(audioFormat, info.getFiles(), info.getSpeed());
+            case SYNTHETIC:
+                return new SyntheticAudioSource(audioFormat,
+                        SyntheticAudioSource.Signal.fromString(info.getSignal()),
+                        info.getFrequencyHz(), info.getDurationMs(), info.getSpeed());
+            case WAKE_WORD_AGENT:
+                return new SharedCaptureRingAudioSource(audioFormat,
+                        new File(SharedCaptureRingAudioSource.DEFAULT_RING_FILE));
+            case LINE:
+            default:
+                return new LineAudioSource(audioFormat, new MicrophoneLineFactory());
+        }
+    }
+}
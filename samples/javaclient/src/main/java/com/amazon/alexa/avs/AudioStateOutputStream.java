@@ -18,13 +18,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
- * A PipedOutputStream that call the appropriate listeners when the bytes from the audio source are
- * written and updates decibel values. This output stream should be connected to a input stream with
- * a large buffer to avoid dropping audio bytes while waiting for a connection to AVS
+ * A PipedOutputStream that call the appropriate listeners when recording starts and stops, and
+ * clears the RMS value when it is closed. This output stream should be connected to a input stream
+ * with a large buffer to avoid dropping audio bytes while waiting for a connection to AVS
  */
 public class AudioStateOutputStream extends PipedOutputStream {
     private static final Logger log = LoggerFactory.getLogger(AudioStateOutputStream.class);
@@ -50,7 +48,6 @@ public class AudioStateOutputStream extends PipedOutputStream {
             log.error("Failed to flush AudioStateOutputStream", e);
             throw e;
         }
-        calculateDB(b, len);
     }
 
     @Override
@@ -78,32 +75,4 @@ public class AudioStateOutputStream extends PipedOutputStream {
         }
     }
 
-    // rmsListener is the AudioRMSListener callback for audio visualizer(optional - can be null)
-    // assuming 16bit samples, 1 channel, little endian
-    private void calculateDB(byte[] data, int cnt) {
-        if ((rmsListener == null) || (cnt < 2)) {
-            return;
-        }
-
-        final int bytesPerSample = 2;
-        int len = cnt / bytesPerSample;
-        double avg = 0;
-
-        for (int i = 0; i < cnt; i += bytesPerSample) {
-            ByteBuffer bb = ByteBuffer.allocate(bytesPerSample);
-            bb.order(ByteOrder.LITTLE_ENDIAN);
-            bb.put(data[i]);
-            bb.put(data[i + 1]);
-            // generate the signed 16 bit number from the 2 bytes
-            double dVal = java.lang.Math.abs(bb.getShort(0));
-            // scale it from 1 to 100. Use max/2 as values tend to be low
-            dVal = ((100 * dVal) / (Short.MAX_VALUE / 2.0)) + 1;
-            avg += dVal * dVal; // add the square to the running average
-        }
-        avg /= len;
-        avg = java.lang.Math.sqrt(avg);
-        // update the AudioRMSListener callback with the scaled root-mean-squared power value
-        rmsListener.rmsChanged((int) avg);
-    }
-
 }
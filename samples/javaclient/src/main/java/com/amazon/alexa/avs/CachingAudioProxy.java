@@ -0,0 +1,312 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves media urls to the media player through the {@link AudioCache}. The media player can only
+ * be given a location, so it is given one on a local HTTP server instead of the original url. A
+ * cached entry is served from disk; otherwise the audio is downloaded and passed on as it arrives,
+ * while also being written to the cache, so the first play doesn't wait for the download and
+ * doesn't download it twice.
+ * <p>
+ * Only complete responses of known length within the cache's entry limit are cached. Streams
+ * without a length, such as radio, and ranged requests made when seeking are passed through.
+ */
+public class CachingAudioProxy {
+    private static final Logger log = LoggerFactory.getLogger(CachingAudioProxy.class);
+
+    private static final int TIMEOUT_MS = 10000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    // urls the media player may still request
+    private static final int MAX_REGISTERED_URLS = 256;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final AudioCache cache;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    // path on the local server to original url; guarded by itself
+    private final Map<String, String> urls = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_REGISTERED_URLS;
+        }
+    };
+
+    public CachingAudioProxy(AudioCache cache) throws IOException {
+        this.cache = cache;
+        serverSocket = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "CachingAudioProxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::accept);
+    }
+
+    /**
+     * @return the location for the media player to play the url from: the url itself unless it is
+     *         an http or https url.
+     */
+    public String getLocalUrl(String url) {
+        String lower = url.toLowerCase(Locale.US);
+        if (!lower.startsWith("http://") && !lower.startsWith("https://")) {
+            return url;
+        }
+        String path = "/" + AudioCache.key(url);
+        synchronized (urls) {
+            urls.put(path, url);
+        }
+        return "http://" + serverSocket.getInetAddress().getHostAddress() + ":"
+                + serverSocket.getLocalPort() + path;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                log.error("Audio proxy stopped accepting connections", e);
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(TIMEOUT_MS);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            String requestLine = readLine(in);
+            String range = null;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+                if (header.toLowerCase(Locale.US).startsWith("range:")) {
+                    range = header.substring("range:".length()).trim();
+                }
+            }
+            String[] parts = requestLine == null ? new String[0] : requestLine.split(" ");
+            String url;
+            synchronized (urls) {
+                url = parts.length > 1 ? urls.get(parts[1]) : null;
+            }
+            OutputStream out = client.getOutputStream();
+            if (url == null) {
+                writeHead(out, 404, "Not Found", null, -1, null);
+                return;
+            }
+            serve(url, range, out);
+        } catch (IOException e) {
+            // usually the media player closing the connection when stopped or seeking
+            log.debug("Audio proxy connection ended: {}", e.getMessage());
+        }
+    }
+
+    private void serve(String url, String range, OutputStream out) throws IOException {
+        Matcher rangeMatcher = range == null ? null : RANGE.matcher(range);
+        long rangeStart = -1;
+        if (rangeMatcher != null && rangeMatcher.matches()) {
+            rangeStart = Long.parseLong(rangeMatcher.group(1));
+        }
+
+        AudioCache.Entry entry = cache.get(url);
+        if (entry != null && entry.isFresh()) {
+            serveEntry(entry, rangeStart, out);
+            return;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            if (range != null) {
+                connection.setRequestProperty("Range", range);
+            } else if (entry != null && entry.hasValidators()) {
+                if (entry.getEtag() != null) {
+                    connection.setRequestProperty("If-None-Match", entry.getEtag());
+                }
+                if (entry.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", entry.getLastModified());
+                }
+            }
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                cache.refresh(entry, getExpiresMillis(connection));
+                serveEntry(entry, rangeStart, out);
+                return;
+            }
+            if (code == -1) {
+                // SHOUTcast servers answer with ICY 200 OK
+                code = HttpURLConnection.HTTP_OK;
+            }
+
+            long length = connection.getContentLengthLong();
+            String contentType = connection.getContentType();
+            String cacheControl = connection.getHeaderField("Cache-Control");
+            AudioCache.Writer writer = null;
+            if (code == HttpURLConnection.HTTP_OK && range == null
+                    && (cacheControl == null || !cacheControl.contains("no-store"))) {
+                writer = cache.begin(url, connection.getHeaderField("ETag"),
+                        connection.getHeaderField("Last-Modified"), contentType, length,
+                        getExpiresMillis(connection));
+            }
+
+            StringBuilder extra = new StringBuilder();
+            appendHeader(extra, "Content-Range", connection.getHeaderField("Content-Range"));
+            appendHeader(extra, "Accept-Ranges", connection.getHeaderField("Accept-Ranges"));
+            writeHead(out, code, connection.getResponseMessage(), contentType, length,
+                    extra.toString());
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                return;
+            }
+            relay(connection.getInputStream(), out, writer);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Copy the download to the media player, and to the cache if it is being cached.
+     */
+    private static void relay(InputStream download, OutputStream out, AudioCache.Writer writer)
+            throws IOException {
+        try (InputStream in = download) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                if (writer != null) {
+                    writer.write(buffer, 0, count);
+                }
+                out.write(buffer, 0, count);
+            }
+            out.flush();
+            if (writer != null) {
+                writer.commit();
+                writer = null;
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+    }
+
+    private static void serveEntry(AudioCache.Entry entry, long rangeStart, OutputStream out)
+            throws IOException {
+        long length = entry.getLength();
+        if (rangeStart >= length) {
+            writeHead(out, 416, "Range Not Satisfiable", null, 0,
+                    "Content-Range: bytes */" + length + "\r\n");
+            return;
+        }
+        long start = Math.max(0, rangeStart);
+        if (rangeStart >= 0) {
+            writeHead(out, 206, "Partial Content", entry.getContentType(), length - start,
+                    "Accept-Ranges: bytes\r\nContent-Range: bytes " + start + "-" + (length - 1)
+                            + "/" + length + "\r\n");
+        } else {
+            writeHead(out, 200, "OK", entry.getContentType(), length, "Accept-Ranges: bytes\r\n");
+        }
+        try (InputStream in = entry.open(start)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @return until when the response may be used without asking the server again, which is now
+     *         unless it says otherwise.
+     */
+    private static long getExpiresMillis(HttpURLConnection connection) {
+        long now = System.currentTimeMillis();
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            if (cacheControl.contains("no-cache")) {
+                return now;
+            }
+            Matcher maxAge = MAX_AGE.matcher(cacheControl);
+            if (maxAge.find()) {
+                return now + Long.parseLong(maxAge.group(1)) * 1000;
+            }
+        }
+        long expires = connection.getExpiration();
+        return expires > 0 ? expires : now;
+    }
+
+    private static void appendHeader(StringBuilder headers, String name, String value) {
+        if (value != null) {
+            headers.append(name).append(": ").append(value).append("\r\n");
+        }
+    }
+
+    private static void writeHead(OutputStream out, int code, String message, String contentType,
+            long length, String extraHeaders) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.0 ").append(code).append(' ')
+                .append(message == null ? "" : message).append("\r\n");
+        appendHeader(head, "Content-Type", contentType);
+        if (length >= 0) {
+            head.append("Content-Length: ").append(length).append("\r\n");
+        }
+        if (extraHeaders != null) {
+            head.append(extraHeaders);
+        }
+        head.append("Connection: close\r\n\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (line.size() >= MAX_HEADER_BYTES) {
+                throw new IOException("Request header too long");
+            }
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), StandardCharsets.ISO_8859_1).trim();
+    }
+}
@@ -0,0 +1,223 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.exception.DirectiveHandlingException;
+import com.amazon.alexa.avs.exception.DirectiveHandlingException.ExceptionType;
+import com.amazon.alexa.avs.message.response.Directive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes directives to the {@link DirectiveHandler}s capability agents registered for them. Each
+ * handler is stored under its namespace and name, so routing a directive is a single hash lookup
+ * however many interfaces are supported, and supporting a new interface only means registering
+ * its handlers.
+ * <p>
+ * Every handler is timed, and its statistics are available from
+ * {@link #getHandlerStatistics()}.
+ */
+public class CapabilityAgentRegistry {
+    private static final Logger log = LoggerFactory.getLogger(CapabilityAgentRegistry.class);
+
+    /**
+     * Namespace and name of a directive, compared by value. A key is built for every lookup; its
+     * hash is computed once, as the map needs it on every lookup and the strings are short.
+     */
+    private static final class DirectiveKey {
+        private final String namespace;
+        private final String name;
+        private final int hash;
+
+        DirectiveKey(String namespace, String name) {
+            this.namespace = namespace;
+            this.name = name;
+            hash = 31 * namespace.hashCode() + name.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DirectiveKey)) {
+                return false;
+            }
+            DirectiveKey other = (DirectiveKey) obj;
+            return hash == other.hash && namespace.equals(other.namespace)
+                    && name.equals(other.name);
+        }
+
+        @Override
+        public String toString() {
+            return namespace + "." + name;
+        }
+    }
+
+    /**
+     * Timing of one registered handler.
+     */
+    public static class HandlerStatistics {
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean failure) {
+            handled.increment();
+            if (failure) {
+                failed.increment();
+            }
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long getHandled() {
+            return handled.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getAverageMicros() {
+            long count = handled.sum();
+            return count == 0 ? 0 : totalNanos.sum() / count / 1000;
+        }
+
+        public long getMaxMicros() {
+            return maxNanos.get() / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return "handled=" + getHandled() + ", failed=" + getFailed() + ", averageUs="
+                    + getAverageMicros() + ", maxUs=" + getMaxMicros();
+        }
+    }
+
+    private static final class Registration {
+        private final DirectiveHandler handler;
+        private final HandlerStatistics statistics = new HandlerStatistics();
+
+        Registration(DirectiveHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    private final Map<DirectiveKey, Registration> registrations = new ConcurrentHashMap<>();
+    // number of handlers registered per namespace
+    private final Map<String, Integer> namespaces = new ConcurrentHashMap<>();
+    // how ExceptionEncountered refers to the component handling a namespace
+    private final Map<String, String> componentNames = new ConcurrentHashMap<>();
+
+    /**
+     * Register the handler for directives with the given namespace and name.
+     *
+     * @throws IllegalStateException
+     *             if a handler is already registered for them.
+     */
+    public synchronized void register(String namespace, String name, DirectiveHandler handler) {
+        DirectiveKey key = new DirectiveKey(namespace, name);
+        if (registrations.putIfAbsent(key, new Registration(handler)) != null) {
+            throw new IllegalStateException("A handler is already registered for " + key);
+        }
+        namespaces.merge(namespace, 1, Integer::sum);
+    }
+
+    public synchronized void unregister(String namespace, String name) {
+        if (registrations.remove(new DirectiveKey(namespace, name)) != null) {
+            namespaces.computeIfPresent(namespace, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Name the component handling a namespace, as in "the device's speaker component", for the
+     * ExceptionEncountered event sent for directives of the namespace that it cannot handle.
+     */
+    public void setComponentName(String namespace, String componentName) {
+        componentNames.put(namespace, componentName);
+    }
+
+    /**
+     * @return the namespaces with at least one registered handler.
+     */
+    public Set<String> getNamespaces() {
+        return Collections.unmodifiableSet(namespaces.keySet());
+    }
+
+    public boolean isRegistered(String namespace, String name) {
+        return registrations.containsKey(new DirectiveKey(namespace, name));
+    }
+
+    /**
+     * Hand the directive to the handler registered for it.
+     *
+     * @throws DirectiveHandlingException
+     *             if no handler is registered for the directive, or the handler failed.
+     */
+    public void handle(Directive directive) throws DirectiveHandlingException {
+        String namespace = directive.getNamespace();
+        String name = directive.getName();
+        Registration registration = registrations.get(new DirectiveKey(namespace, name));
+        if (registration == null) {
+            String componentName = componentNames.get(namespace);
+            if (componentName != null && namespaces.containsKey(namespace)) {
+                throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
+                        "The device's " + componentName
+                                + " component cannot handle this directive.");
+            }
+            throw new DirectiveHandlingException(ExceptionType.UNSUPPORTED_OPERATION,
+                    "No device side component to handle the directive.");
+        }
+
+        boolean failure = true;
+        long start = System.nanoTime();
+        try {
+            registration.handler.handle(directive);
+            failure = false;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            registration.statistics.record(nanos, failure);
+            log.debug("Handled {}.{} in {} us", namespace, name, nanos / 1000);
+        }
+    }
+
+    /**
+     * @return statistics of every registered handler, keyed by "Namespace.Name".
+     */
+    public Map<String, HandlerStatistics> getHandlerStatistics() {
+        Map<String, HandlerStatistics> statistics = new TreeMap<>();
+        for (Map.Entry<DirectiveKey, Registration> entry : registrations.entrySet()) {
+            statistics.put(entry.getKey().toString(), entry.getValue().statistics);
+        }
+        return statistics;
+    }
+}
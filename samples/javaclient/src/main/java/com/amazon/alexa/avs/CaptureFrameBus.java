@@ -0,0 +1,245 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Broadcasts captured audio frames to any number of consumers without copying them. Frames live
+ * in a ring of preallocated slots: the capture thread reads audio straight into the slot returned
+ * by {@link #claim()} and then {@link #publish(Frame, int, long)}es it. Every subscriber has its
+ * own thread and cursor into the ring and sees the same slots, so all consumers get identical
+ * frames and timestamps.
+ * <p>
+ * The capture thread never waits for a consumer. A consumer that falls most of a ring behind
+ * would soon be reading slots that are being overwritten, so instead it is moved forward to the
+ * newest frame and the frames it missed are counted, leaving the capture thread and the other
+ * consumers unaffected. A listener that takes so long that its slot is claimed again while it is
+ * still reading it has seen a torn frame; those are counted separately.
+ */
+public class CaptureFrameBus {
+    private static final Logger log = LoggerFactory.getLogger(CaptureFrameBus.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Receives frames on the subscription's thread. The frame must not be modified or kept after
+     * the call returns, since its slot will be reused.
+     */
+    public interface FrameListener {
+        void onFrame(Frame frame);
+    }
+
+    /**
+     * One slot of the ring.
+     */
+    public static final class Frame {
+        private final byte[] data;
+        private int length;
+        private long sequence;
+        private long timestampNanos;
+
+        private Frame(int capacity) {
+            data = new byte[capacity];
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} when the last byte of the frame was captured.
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+    }
+
+    private final Frame[] ring;
+    private final int mask;
+    private final int lagMargin;
+    // sequence of the slot being written by the capture thread
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // sequence of the newest frame consumers may read
+    private final AtomicLong published = new AtomicLong(-1);
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+
+    /**
+     * @param capacity
+     *            number of frames in the ring, rounded up to a power of two.
+     * @param maxFrameSize
+     *            size in bytes of each slot.
+     */
+    public CaptureFrameBus(int capacity, int maxFrameSize) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new Frame[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Frame(maxFrameSize);
+        }
+        mask = size - 1;
+        lagMargin = size / 4;
+    }
+
+    public int getMaxFrameSize() {
+        return ring[0].data.length;
+    }
+
+    /**
+     * Get the next slot to capture into. Only the capture thread may call this; claiming again
+     * without publishing returns the same slot.
+     */
+    public Frame claim() {
+        long current = claimed.get();
+        if (current > published.get()) {
+            return ring[(int) (current & mask)];
+        }
+        long sequence = current + 1;
+        Frame frame = ring[(int) (sequence & mask)];
+        frame.sequence = sequence;
+        claimed.lazySet(sequence);
+        return frame;
+    }
+
+    public void publish(Frame frame, int length, long timestampNanos) {
+        frame.length = length;
+        frame.timestampNanos = timestampNanos;
+        published.set(frame.sequence);
+        for (Subscription subscription : subscriptions) {
+            LockSupport.unpark(subscription.thread);
+        }
+    }
+
+    /**
+     * Start delivering frames published from now on to the listener, on a new daemon thread.
+     */
+    public Subscription subscribe(String name, FrameListener listener) {
+        Subscription subscription = new Subscription(name, listener, published.get() + 1);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public class Subscription implements Runnable {
+        private final String name;
+        private final FrameListener listener;
+        private final Thread thread;
+        private final AtomicLong droppedFrames = new AtomicLong();
+        private final AtomicLong tornFrames = new AtomicLong();
+        private volatile boolean running = true;
+        private long cursor;
+
+        private Subscription(String name, FrameListener listener, long firstSequence) {
+            this.name = name;
+            this.listener = listener;
+            this.cursor = firstSequence;
+            thread = new Thread(this, "CaptureFrameBus-" + name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * @return number of frames this consumer skipped because it fell too far behind.
+         */
+        public long getDroppedFrames() {
+            return droppedFrames.get();
+        }
+
+        /**
+         * @return number of frames whose slot was overwritten while the listener was reading it.
+         */
+        public long getTornFrames() {
+            return tornFrames.get();
+        }
+
+        public void cancel() {
+            running = false;
+            if (subscriptions.remove(this)) {
+                LockSupport.unpark(thread);
+                if (droppedFrames.get() > 0 || tornFrames.get() > 0) {
+                    log.info("Capture frame consumer {} stopped, {} frames dropped, {} torn", name,
+                            droppedFrames.get(), tornFrames.get());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long available = published.get();
+                if (cursor > available) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                if (isLagging(cursor)) {
+                    skipTo(available);
+                }
+                try {
+                    listener.onFrame(ring[(int) (cursor & mask)]);
+                } catch (RuntimeException e) {
+                    log.error("Capture frame consumer {} failed and was removed", name, e);
+                    cancel();
+                    return;
+                }
+                if (isOverwritten(cursor)) {
+                    // the capture thread lapped the listener while it was reading the slot
+                    if (tornFrames.getAndIncrement() == 0) {
+                        log.warn("Capture frame consumer {} is too slow, frames were overwritten"
+                                + " while it was reading them", name);
+                    }
+                }
+                cursor++;
+            }
+        }
+
+        /**
+         * A consumer is moved forward before it gets close enough to the capture thread for its
+         * slot to be reused while the listener is still looking at it.
+         */
+        private boolean isLagging(long sequence) {
+            return claimed.get() - sequence >= ring.length - lagMargin;
+        }
+
+        /**
+         * @return true if the slot of the frame has been claimed for a later frame.
+         */
+        private boolean isOverwritten(long sequence) {
+            return claimed.get() - sequence >= ring.length;
+        }
+
+        private void skipTo(long sequence) {
+            long skipped = sequence - cursor;
+            if (skipped <= 0) {
+                return;
+            }
+            if (droppedFrames.getAndAdd(skipped) == 0) {
+                log.warn("Capture frame consumer {} is too slow, frames are being dropped", name);
+            }
+            cursor = sequence;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+/**
+ * Health of the audio captured for one recording. Samples the hardware dropped because the capture
+ * thread didn't read them in time (for example during a GC pause) never reach AVS and tend to
+ * cause bad recognitions, so these are logged alongside the dialogRequestId of every recording.
+ */
+public class CaptureStatistics {
+    private final float frameRate;
+    private volatile long reads;
+    private volatile long capturedFrames;
+    private volatile long catchUpReads;
+    private volatile int maxFillPercent;
+    private volatile long overruns;
+    private volatile long droppedFrames;
+
+    public CaptureStatistics(float frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    void recordRead(long frames, int fillPercent, boolean catchUp) {
+        reads++;
+        capturedFrames += frames;
+        if (catchUp) {
+            catchUpReads++;
+        }
+        if (fillPercent > maxFillPercent) {
+            maxFillPercent = fillPercent;
+        }
+    }
+
+    void recordOverrun(long totalDroppedFrames) {
+        overruns++;
+        droppedFrames = totalDroppedFrames;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getCapturedFrames() {
+        return capturedFrames;
+    }
+
+    /**
+     * @return number of reads that were larger than usual to catch up with a full buffer.
+     */
+    public long getCatchUpReads() {
+        return catchUpReads;
+    }
+
+    /**
+     * @return highest fill level of the line's buffer seen before a read, in percent.
+     */
+    public int getMaxFillPercent() {
+        return maxFillPercent;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getDroppedMs() {
+        return (long) (droppedFrames * 1000 / frameRate);
+    }
+
+    @Override
+    public String toString() {
+        return "reads=" + reads + ", capturedMs=" + (long) (capturedFrames * 1000 / frameRate)
+                + ", catchUpReads=" + catchUpReads + ", maxFillPercent=" + maxFillPercent
+                + ", overruns=" + overruns + ", droppedMs=" + getDroppedMs();
+    }
+}
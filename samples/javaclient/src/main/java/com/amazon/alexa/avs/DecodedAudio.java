@@ -0,0 +1,231 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.sound.sampled.AudioFormat;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * MP3 audio being decoded to 16 bit PCM in the background. Decoding starts as soon as the object
+ * is created and runs a couple of seconds ahead of playback, into a {@link PcmRingBuffer}, so an
+ * item is ready to play the moment its turn comes and a long one doesn't have to be held in
+ * memory. Once the buffer is full, decoding gives up its thread until playback has made room, so a
+ * few threads decode any number of items.
+ */
+public class DecodedAudio implements PcmSource {
+    private static final int BUFFER_MS = 2000;
+
+    private final InputStream source;
+    private final Executor executor;
+    // only used by the decoding task, which runs on one thread at a time
+    private Bitstream bitstream;
+    private Decoder decoder;
+    // decoded audio which didn't fit in the buffer yet
+    private byte[] pending;
+    private int pendingOffset;
+    private AudioFormat format;
+    private PcmRingBuffer buffer;
+    private boolean complete;
+    private IOException error;
+    private volatile boolean cancelled;
+
+    /**
+     * Start decoding the MP3 stream on the given executor. The stream is closed once it has been
+     * decoded.
+     */
+    public static DecodedAudio decode(InputStream mp3, Executor executor) {
+        DecodedAudio audio = new DecodedAudio(mp3, executor);
+        audio.resume();
+        return audio;
+    }
+
+    private DecodedAudio(InputStream source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the PCM format of the decoded audio, or null if the first frame hasn't been decoded
+     *         yet.
+     * @throws IOException
+     *             if the stream could not be decoded, or held no audio.
+     */
+    @Override
+    public synchronized AudioFormat getFormat() throws IOException {
+        if (format == null && complete) {
+            throw error != null ? error : new IOException("No audio frames in the stream");
+        }
+        return format;
+    }
+
+    /**
+     * @return the PCM format of the decoded audio, waiting for the first frame to be decoded.
+     * @throws IOException
+     *             if the stream could not be decoded, or held no audio.
+     */
+    public synchronized AudioFormat awaitFormat() throws IOException, InterruptedException {
+        while (format == null && !complete) {
+            wait();
+        }
+        return getFormat();
+    }
+
+    /**
+     * @return the buffer the audio is decoded into, once the format is known.
+     */
+    public synchronized PcmRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int readAvailable(byte[] data, int offset, int length) throws IOException {
+        PcmRingBuffer current = getBuffer();
+        if (current == null) {
+            // throws if decoding failed before the first frame
+            getFormat();
+            return 0;
+        }
+        return current.readAvailable(data, offset, length);
+    }
+
+    /**
+     * Stop decoding, for example because the item will not be played after all. The stream is
+     * closed right away, so a decoder waiting for more of it stops too.
+     */
+    @Override
+    public void cancel() {
+        PcmRingBuffer current;
+        synchronized (this) {
+            cancelled = true;
+            current = buffer;
+        }
+        if (current != null) {
+            current.cancel();
+        }
+        IOUtils.closeQuietly(source);
+    }
+
+    private void resume() {
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            IOUtils.closeQuietly(source);
+            finish(new IOException("Failed to start decoding audio", e));
+        }
+    }
+
+    private void run() {
+        IOException failure = null;
+        try {
+            if (decodeUntilFull()) {
+                return;
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (JavaLayerException | RuntimeException e) {
+            failure = new IOException("Failed to decode audio", e);
+        }
+        try {
+            if (bitstream != null) {
+                bitstream.close();
+            }
+        } catch (JavaLayerException | RuntimeException e) {
+            // the source is closed below either way
+        }
+        IOUtils.closeQuietly(source);
+        finish(failure);
+    }
+
+    /**
+     * @return true if decoding stopped for playback to make room in the buffer, and will resume
+     *         then; false once it has ended.
+     */
+    private boolean decodeUntilFull() throws IOException, JavaLayerException {
+        if (bitstream == null) {
+            if (source == null) {
+                throw new IOException("No audio stream to decode");
+            }
+            bitstream = new Bitstream(source);
+            decoder = new Decoder();
+        }
+        while (true) {
+            if (pending != null) {
+                PcmRingBuffer output = getBuffer();
+                int count = output.writeAvailable(pending, pendingOffset,
+                        pending.length - pendingOffset);
+                if (count < 0) {
+                    return false;
+                }
+                pendingOffset += count;
+                if (pendingOffset < pending.length) {
+                    output.whenSpace(this::resume);
+                    return true;
+                }
+                pending = null;
+            }
+            Header header;
+            if (cancelled || (header = bitstream.readFrame()) == null) {
+                return false;
+            }
+            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            pending = toBytes(output.getBuffer(), output.getBufferLength());
+            pendingOffset = 0;
+            bitstream.closeFrame();
+            getOrCreateBuffer(decoder);
+        }
+    }
+
+    private synchronized PcmRingBuffer getOrCreateBuffer(Decoder decoder) {
+        if (buffer == null) {
+            format = new AudioFormat(decoder.getOutputFrequency(), 16,
+                    decoder.getOutputChannels(), true, false);
+            int frames = (int) (format.getFrameRate() * BUFFER_MS / 1000);
+            buffer = new PcmRingBuffer(frames * format.getFrameSize());
+            if (cancelled) {
+                buffer.cancel();
+            }
+            notifyAll();
+        }
+        return buffer;
+    }
+
+    private synchronized void finish(IOException e) {
+        error = e;
+        complete = true;
+        if (buffer != null) {
+            buffer.finish(e);
+        }
+        notifyAll();
+    }
+
+    private static byte[] toBytes(short[] samples, int length) {
+        byte[] bytes = new byte[length * 2];
+        for (int i = 0; i < length; i++) {
+            bytes[i * 2] = (byte) samples[i];
+            bytes[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+}
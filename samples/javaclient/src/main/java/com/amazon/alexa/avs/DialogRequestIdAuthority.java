@@ -39,6 +39,10 @@ public class DialogRequestIdAuthority {
         return currentDialogRequestId;
     }
 
+    public String getCurrentDialogRequestId() {
+        return currentDialogRequestId;
+    }
+
     public boolean isCurrentDialogRequestId(String candidateRequestId) {
         return currentDialogRequestId != null && currentDialogRequestId.equals(candidateRequestId);
     }
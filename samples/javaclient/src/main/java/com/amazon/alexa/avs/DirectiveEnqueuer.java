@@ -17,12 +17,19 @@ import com.amazon.alexa.avs.message.Payload;
 import com.amazon.alexa.avs.message.response.AttachedContentPayload;
 import com.amazon.alexa.avs.message.response.Directive;
 
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The DirectiveEnqueuer takes parts parsed from a multipart parser, combines directves with their
@@ -32,8 +39,24 @@ import java.util.Queue;
  * Any directive with the current dialogRequestID is dependent on all the directives with that id
  * which came before it. These directives are added to the dependent directive queue. Any directive
  * with no dialogRequestId is dependent on nothing and is added to the independent directive queue.
+ *
+ * Directives waiting for their attached content are indexed by content id, so an arriving
+ * attachment finds its directive without a scan. Order is only kept among directives with the
+ * same dialogRequestId (and among those without one): a directive waiting for content holds up
+ * the directives behind it in its own dialog, but not those of any other. Attachments whose
+ * directive never arrives, and directives whose attachment never arrives, are dropped after
+ * {@link #PENDING_TTL_MS} so a long running device doesn't accumulate them. They are looked for
+ * whenever a part arrives and, so that they don't linger while the downchannel is quiet, every
+ * {@link #EVICTION_PERIOD_MS} on the {@link TimerWheel}.
  */
 public class DirectiveEnqueuer implements MultipartParserConsumer {
+    private static final Logger log = LoggerFactory.getLogger(DirectiveEnqueuer.class);
+
+    // How long a directive or attachment may wait for its counterpart.
+    public static final long PENDING_TTL_MS = 60000;
+
+    // How often waiting directives and attachments are checked against the TTL.
+    public static final long EVICTION_PERIOD_MS = PENDING_TTL_MS / 4;
 
     // The authority for the current dialogRequestId.
     private final DialogRequestIdAuthority dialogRequestIdAuthority;
@@ -44,71 +67,250 @@ public class DirectiveEnqueuer implements MultipartParserConsumer {
     // Queue made up of all directives without a dialogRequestId
     private final Queue<Directive> independentQueue;
 
-    // Queue for incomplete directives. A directive is incomplete if it still needs some attached
-    // content to be associated with it.
-    private final Queue<Directive> incompleteDirectiveQueue;
+    // Directives that can't be enqueued yet, in arrival order, per dialogRequestId. Directives
+    // without a dialogRequestId are under the null key. A directive is held back if it still needs
+    // attached content, or if one before it with the same dialogRequestId does.
+    private final Map<String, Queue<PendingDirective>> incompleteDirectives;
+
+    // Incomplete directives by the content id they are waiting for.
+    private final Map<String, PendingDirective> directivesByContentId;
+
+    // Attachments which have not yet been matched with directives, oldest first.
+    private final LinkedHashMap<String, PendingAttachment> attachments;
+
+    private int incompleteDirectiveCount;
+    private final AtomicLong expiredDirectiveCount = new AtomicLong();
+    private final AtomicLong orphanedAttachmentCount = new AtomicLong();
+
+    /**
+     * Told about every directive added to one of the queues, for example to start preparing its
+     * content before the directives ahead of it have been handled.
+     */
+    public interface DirectiveEnqueuedListener {
+        void onDirectiveEnqueued(Directive directive);
+    }
+
+    private final DirectiveEnqueuedListener enqueuedListener;
+
+    private final TimerWheel.Clock clock;
+    private final TimerWheel.Timeout evictionTimeout;
+
+    private static class PendingDirective {
+        private final Directive directive;
+        private final long arrivalNanos;
+
+        PendingDirective(Directive directive, long arrivalNanos) {
+            this.directive = directive;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
 
-    // Map of all attachments which have not yet been matched with directives.
-    private final Map<String, InputStream> attachments;
+    private static class PendingAttachment {
+        private final InputStream content;
+        private final long arrivalNanos;
+
+        PendingAttachment(InputStream content, long arrivalNanos) {
+            this.content = content;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
 
     public DirectiveEnqueuer(DialogRequestIdAuthority dialogRequestIdAuthority,
             Queue<Directive> dependentQueue, Queue<Directive> independentQueue) {
+        this(dialogRequestIdAuthority, dependentQueue, independentQueue, null);
+    }
+
+    public DirectiveEnqueuer(DialogRequestIdAuthority dialogRequestIdAuthority,
+            Queue<Directive> dependentQueue, Queue<Directive> independentQueue,
+            DirectiveEnqueuedListener enqueuedListener) {
+        this(dialogRequestIdAuthority, dependentQueue, independentQueue, enqueuedListener,
+                TimerWheel.getInstance());
+    }
+
+    public DirectiveEnqueuer(DialogRequestIdAuthority dialogRequestIdAuthority,
+            Queue<Directive> dependentQueue, Queue<Directive> independentQueue,
+            DirectiveEnqueuedListener enqueuedListener, TimerWheel timerWheel) {
         this.dialogRequestIdAuthority = dialogRequestIdAuthority;
         this.dependentQueue = dependentQueue;
         this.independentQueue = independentQueue;
-        incompleteDirectiveQueue = new LinkedList<>();
-        attachments = new HashMap<>();
+        this.enqueuedListener = enqueuedListener;
+        incompleteDirectives = new HashMap<>();
+        directivesByContentId = new HashMap<>();
+        attachments = new LinkedHashMap<>();
+        clock = timerWheel.getClock();
+        evictionTimeout = timerWheel.scheduleAtFixedRate(this::evictExpired, EVICTION_PERIOD_MS,
+                EVICTION_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop checking for expired directives and attachments, and log how many were dropped.
+     */
+    public void shutdown() {
+        evictionTimeout.cancel();
+        log.info("Dropped {} directives without their attachment and {} attachments without"
+                + " their directive", getExpiredDirectiveCount(), getOrphanedAttachmentCount());
+    }
+
+    /**
+     * Drop attachments and incomplete directives that have waited longer than
+     * {@link #PENDING_TTL_MS}.
+     */
+    synchronized void evictExpired() {
+        evictExpired(clock.nanoTime());
     }
 
     @Override
     public synchronized void onDirective(Directive directive) {
-        incompleteDirectiveQueue.add(directive);
-        matchAttachementsWithDirectives();
+        long now = clock.nanoTime();
+        evictExpired(now);
+
+        String dialogRequestId = directive.getDialogRequestId();
+        Queue<PendingDirective> pending = incompleteDirectives.get(dialogRequestId);
+        String contentId = getRequiredContentId(directive);
+        if (contentId != null) {
+            PendingAttachment attachment = attachments.remove(contentId);
+            if (attachment != null) {
+                attach(directive, contentId, attachment.content);
+                contentId = null;
+            }
+        }
+
+        if (contentId == null && pending == null) {
+            // Nothing to wait for and nothing ahead of it
+            enqueueDirective(directive);
+            return;
+        }
+
+        PendingDirective pendingDirective = new PendingDirective(directive, now);
+        if (pending == null) {
+            pending = new ArrayDeque<>();
+            incompleteDirectives.put(dialogRequestId, pending);
+        }
+        pending.add(pendingDirective);
+        incompleteDirectiveCount++;
+        if (contentId != null) {
+            directivesByContentId.put(contentId, pendingDirective);
+        }
     }
 
     @Override
     public synchronized void onDirectiveAttachment(String contentId,
             InputStream attachmentContent) {
-        attachments.put(contentId, attachmentContent);
-        matchAttachementsWithDirectives();
+        long now = clock.nanoTime();
+        evictExpired(now);
+
+        PendingDirective pendingDirective = directivesByContentId.remove(contentId);
+        if (pendingDirective == null) {
+            attachments.put(contentId, new PendingAttachment(attachmentContent, now));
+            return;
+        }
+        attach(pendingDirective.directive, contentId, attachmentContent);
+        enqueueCompleteDirectives(pendingDirective.directive.getDialogRequestId());
     }
 
-    private void matchAttachementsWithDirectives() {
-        for (Directive directive : incompleteDirectiveQueue) {
-            Payload payload = directive.getPayload();
-            if (payload instanceof AttachedContentPayload) {
-                AttachedContentPayload attachedContentPayload = (AttachedContentPayload) payload;
-                String contentId = attachedContentPayload.getAttachedContentId();
+    /**
+     * @return number of directives held back because they, or a directive before them, are
+     *         waiting for attached content.
+     */
+    public synchronized int getIncompleteDirectiveCount() {
+        return incompleteDirectiveCount;
+    }
 
-                InputStream attachment = attachments.remove(contentId);
-                if (attachment != null) {
-                    attachedContentPayload.setAttachedContent(contentId, attachment);
-                }
+    /**
+     * @return number of attachments waiting for their directive.
+     */
+    public synchronized int getPendingAttachmentCount() {
+        return attachments.size();
+    }
+
+    /**
+     * @return number of directives dropped because their attached content never arrived.
+     */
+    public long getExpiredDirectiveCount() {
+        return expiredDirectiveCount.get();
+    }
+
+    /**
+     * @return number of attachments dropped because their directive never arrived.
+     */
+    public long getOrphanedAttachmentCount() {
+        return orphanedAttachmentCount.get();
+    }
+
+    private static String getRequiredContentId(Directive directive) {
+        Payload payload = directive.getPayload();
+        if (payload instanceof AttachedContentPayload) {
+            AttachedContentPayload attachedContentPayload = (AttachedContentPayload) payload;
+            if (attachedContentPayload.requiresAttachedContent()) {
+                return attachedContentPayload.getAttachedContentId();
             }
         }
+        return null;
+    }
 
-        findCompleteDirectives();
+    private static void attach(Directive directive, String contentId, InputStream content) {
+        ((AttachedContentPayload) directive.getPayload()).setAttachedContent(contentId, content);
+    }
+
+    /**
+     * Enqueue directives from the front of a dialog's queue until one is still waiting for its
+     * content.
+     */
+    private void enqueueCompleteDirectives(String dialogRequestId) {
+        Queue<PendingDirective> pending = incompleteDirectives.get(dialogRequestId);
+        if (pending == null) {
+            return;
+        }
+        while (!pending.isEmpty()
+                && getRequiredContentId(pending.peek().directive) == null) {
+            enqueueDirective(pending.poll().directive);
+            incompleteDirectiveCount--;
+        }
+        if (pending.isEmpty()) {
+            incompleteDirectives.remove(dialogRequestId);
+        }
     }
 
-    private void findCompleteDirectives() {
-        Iterator<Directive> iterator = incompleteDirectiveQueue.iterator();
-        while (iterator.hasNext()) {
-            Directive directive = iterator.next();
-            Payload payload = directive.getPayload();
-            if (payload instanceof AttachedContentPayload) {
-                AttachedContentPayload attachedContentPayload = (AttachedContentPayload) payload;
+    /**
+     * Drop attachments and incomplete directives that have waited longer than the TTL. Only the
+     * directive at the front of each dialog can be holding anything up, so only those are checked;
+     * the ones behind it are looked at once they reach the front.
+     */
+    private void evictExpired(long now) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(PENDING_TTL_MS);
 
-                if (!attachedContentPayload.requiresAttachedContent()) {
-                    // The front most directive IS complete.
-                    enqueueDirective(directive);
-                    iterator.remove();
-                } else {
+        Iterator<Map.Entry<String, PendingAttachment>> attachmentIterator =
+                attachments.entrySet().iterator();
+        while (attachmentIterator.hasNext()) {
+            Map.Entry<String, PendingAttachment> entry = attachmentIterator.next();
+            if (now - entry.getValue().arrivalNanos < ttlNanos) {
+                break;
+            }
+            attachmentIterator.remove();
+            IOUtils.closeQuietly(entry.getValue().content);
+            orphanedAttachmentCount.incrementAndGet();
+            log.warn("Dropping attachment {}, no directive arrived for it", entry.getKey());
+        }
+
+        if (incompleteDirectives.isEmpty()) {
+            return;
+        }
+        for (String dialogRequestId : incompleteDirectives.keySet().toArray(new String[0])) {
+            Queue<PendingDirective> pending = incompleteDirectives.get(dialogRequestId);
+            PendingDirective head = pending.peek();
+            while (head != null && now - head.arrivalNanos >= ttlNanos) {
+                String contentId = getRequiredContentId(head.directive);
+                if (contentId == null) {
                     break;
                 }
-            } else {
-                // Immediately enqueue any directive which does not contain audio content
-                enqueueDirective(directive);
-                iterator.remove();
+                pending.poll();
+                incompleteDirectiveCount--;
+                directivesByContentId.remove(contentId);
+                expiredDirectiveCount.incrementAndGet();
+                log.warn("Dropping {} directive, its attachment {} never arrived",
+                        head.directive.getName(), contentId);
+                enqueueCompleteDirectives(dialogRequestId);
+                head = pending.peek();
             }
         }
     }
@@ -119,6 +321,11 @@ public class DirectiveEnqueuer implements MultipartParserConsumer {
             independentQueue.add(directive);
         } else if (dialogRequestIdAuthority.isCurrentDialogRequestId(dialogRequestId)) {
             dependentQueue.add(directive);
+        } else {
+            return;
+        }
+        if (enqueuedListener != null) {
+            enqueuedListener.onDirectiveEnqueued(directive);
         }
     }
 }
@@ -0,0 +1,161 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The sounds bundled with the client (earcons and the alarm), decoded once and kept as PCM in the
+ * output format of the {@link SpeechRenderEngine}, outside the Java heap. Playing one is then just
+ * a copy into the engine's mix for its already open line, with no resource loading, MP3 decoding,
+ * resampling or device setup, so the listening earcon follows the wake word within a few
+ * milliseconds.
+ */
+public class EarconCache {
+    private static final Logger log = LoggerFactory.getLogger(EarconCache.class);
+
+    private final SpeechRenderEngine engine;
+    private final ClassLoader resLoader;
+    private final Map<String, ByteBuffer> sounds = new ConcurrentHashMap<>();
+
+    public EarconCache(SpeechRenderEngine engine, ClassLoader resLoader) {
+        this.engine = engine;
+        this.resLoader = resLoader;
+    }
+
+    /**
+     * Decode the given MP3 resources, in parallel, and wait for them. A resource that can't be
+     * decoded is logged and later played straight from the resource instead.
+     */
+    public void load(String... resources) {
+        long start = System.nanoTime();
+        Map<String, DecodedAudio> decoding = new LinkedHashMap<>();
+        for (String resource : resources) {
+            InputStream stream = resLoader.getResourceAsStream(resource);
+            if (stream == null) {
+                log.error("Sound {} not found", resource);
+                continue;
+            }
+            decoding.put(resource, engine.decode(stream));
+        }
+        for (Map.Entry<String, DecodedAudio> entry : decoding.entrySet()) {
+            try {
+                sounds.put(entry.getKey(), toOutputFormat(entry.getValue()));
+            } catch (IOException e) {
+                log.error("Failed to decode sound {}", entry.getKey(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Decoded {} sounds in {} ms", sounds.size(),
+                (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Decode a sound which is not cached yet, such as one that failed to decode earlier, so that it
+     * plays at once when needed.
+     */
+    public void prepare(String resource) {
+        if (!sounds.containsKey(resource)) {
+            load(resource);
+        }
+    }
+
+    /**
+     * Queue a sound to be played on a channel of the engine, after what was already submitted to
+     * that channel. The render fails if the sound can't be found.
+     */
+    public SpeechRenderEngine.Render play(SpeechRenderEngine.Channel channel, String resource) {
+        ByteBuffer pcm = sounds.get(resource);
+        if (pcm == null) {
+            InputStream stream = resLoader.getResourceAsStream(resource);
+            if (stream == null) {
+                log.error("Sound {} not found", resource);
+                return engine.failed(channel, new FileNotFoundException(resource));
+            }
+            return engine.render(channel, engine.decode(stream));
+        }
+        return engine.render(channel, new BufferSource(pcm.duplicate()));
+    }
+
+    private static ByteBuffer toOutputFormat(DecodedAudio audio)
+            throws IOException, InterruptedException {
+        AudioFormat format = audio.awaitFormat();
+        PcmRingBuffer ring = audio.getBuffer();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int count;
+        while ((count = ring.read(chunk, 0, chunk.length)) >= 0) {
+            decoded.write(chunk, 0, count);
+        }
+
+        byte[] pcm = decoded.toByteArray();
+        int length = pcm.length;
+        if (AudioResampler.isConversionRequired(format, SpeechRenderEngine.OUTPUT_FORMAT)) {
+            AudioResampler resampler =
+                    new AudioResampler(format, SpeechRenderEngine.OUTPUT_FORMAT);
+            byte[] converted = new byte[resampler.getMaxOutputSize(pcm.length)];
+            length = resampler.convert(pcm, 0, pcm.length, converted, 0);
+            pcm = converted;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(pcm, 0, length);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads one playback of a cached sound.
+     */
+    private static class BufferSource implements PcmSource {
+        private final ByteBuffer pcm;
+        private volatile boolean cancelled;
+
+        BufferSource(ByteBuffer pcm) {
+            this.pcm = pcm;
+        }
+
+        @Override
+        public AudioFormat getFormat() {
+            return SpeechRenderEngine.OUTPUT_FORMAT;
+        }
+
+        @Override
+        public int readAvailable(byte[] data, int offset, int length) {
+            if (cancelled || !pcm.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, pcm.remaining());
+            pcm.get(data, offset, count);
+            return count;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
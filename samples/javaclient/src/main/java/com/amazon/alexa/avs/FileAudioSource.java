@@ -0,0 +1,130 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * {@link AudioSource} that plays recorded utterances, one file per recording in rotation. WAV
+ * files in any 16 bit PCM format are resampled to the target format; files ending in .raw or .pcm
+ * are assumed to already be in the target format. Directories are expanded to the files they
+ * contain, in name order.
+ */
+public class FileAudioSource extends PacedAudioSource {
+    private static final Logger log = LoggerFactory.getLogger(FileAudioSource.class);
+
+    private final List<File> files = new ArrayList<>();
+    private int nextFile = 0;
+    private AudioInputStream stream;
+    private AudioResampler resampler;
+    private byte[] fileBuffer;
+
+    public FileAudioSource(AudioFormat audioFormat, List<String> paths, double speed) {
+        super(audioFormat, speed);
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles(File::isFile);
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No audio files in " + paths);
+        }
+    }
+
+    /**
+     * @return the files played in rotation, after expanding directories.
+     */
+    public List<File> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    @Override
+    protected void openSource() throws LineUnavailableException {
+        File file = files.get(nextFile);
+        nextFile = (nextFile + 1) % files.size();
+        log.info("Playing {} as captured audio", file);
+
+        try {
+            String name = file.getName().toLowerCase();
+            if (name.endsWith(".raw") || name.endsWith(".pcm")) {
+                stream = new AudioInputStream(new BufferedInputStream(new FileInputStream(file)),
+                        audioFormat, file.length() / audioFormat.getFrameSize());
+            } else {
+                stream = AudioSystem.getAudioInputStream(file);
+            }
+        } catch (IOException | UnsupportedAudioFileException e) {
+            throw new LineUnavailableException("Could not open " + file + ": " + e.getMessage());
+        }
+
+        AudioFormat fileFormat = stream.getFormat();
+        if (AudioResampler.isConversionRequired(fileFormat, audioFormat)) {
+            try {
+                resampler = new AudioResampler(fileFormat, audioFormat);
+            } catch (IllegalArgumentException e) {
+                closeSource();
+                throw new LineUnavailableException(file + " is not 16 bit PCM: " + fileFormat);
+            }
+            fileBuffer = new byte[fileFormat.getFrameSize() * (int) fileFormat.getFrameRate() / 10];
+        } else {
+            resampler = null;
+        }
+    }
+
+    @Override
+    protected int readSource(byte[] buffer, int offset, int length) {
+        try {
+            if (resampler == null) {
+                return stream.read(buffer, offset, length - length % audioFormat.getFrameSize());
+            }
+            int sourceBytes = Math.min(fileBuffer.length, resampler.getMaxInputSize(length));
+            int numBytesRead = stream.read(fileBuffer, 0, sourceBytes);
+            if (numBytesRead < 0) {
+                return -1;
+            }
+            return resampler.convert(fileBuffer, 0, numBytesRead, buffer, offset);
+        } catch (IOException e) {
+            log.error("Failed to read audio file", e);
+            return -1;
+        }
+    }
+
+    @Override
+    protected void closeSource() {
+        IOUtils.closeQuietly(stream);
+        stream = null;
+    }
+}
@@ -0,0 +1,182 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.AudioDeviceRegistry.CaptureDevice;
+import com.amazon.alexa.avs.AudioDeviceRegistry.CaptureDeviceListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * {@link AudioSource} reading from a microphone line. The line is opened in its native format
+ * and resampled if it can't capture the target format, and is switched when the
+ * {@link AudioDeviceRegistry} picks a different capture device.
+ */
+public class LineAudioSource implements AudioSource, CaptureDeviceListener {
+    private static final Logger log = LoggerFactory.getLogger(LineAudioSource.class);
+
+    private final AudioFormat audioFormat;
+    private final MicrophoneLineFactory microphoneLineFactory;
+    private volatile TargetDataLine microphoneLine;
+    private volatile boolean captureDeviceChanged = false;
+    private AudioFormat captureFormat;
+    private AudioResampler resampler;
+    private byte[] captureBuffer;
+    private int lineBufferSize;
+    private int readSize;
+    private long overrunToleranceFrames;
+    private long startNanos;
+    private volatile CaptureStatistics statistics;
+
+    public LineAudioSource(AudioFormat audioFormat, MicrophoneLineFactory microphoneLineFactory)
+            throws LineUnavailableException {
+        this.audioFormat = audioFormat;
+        this.microphoneLineFactory = microphoneLineFactory;
+        selectMicrophone();
+        microphoneLineFactory.getDeviceRegistry().addCaptureDeviceListener(this);
+    }
+
+    private void selectMicrophone() throws LineUnavailableException {
+        TargetDataLine line = microphoneLineFactory.getMicrophone();
+        if (line == null) {
+            throw new LineUnavailableException();
+        }
+        AudioFormat nativeFormat =
+                microphoneLineFactory.getCaptureFormat(line, audioFormat);
+        if (nativeFormat != null
+                && AudioResampler.isConversionRequired(nativeFormat, audioFormat)) {
+            log.info("Microphone does not support {}, capturing {} and resampling", audioFormat,
+                    nativeFormat);
+            captureFormat = nativeFormat;
+            resampler = new AudioResampler(nativeFormat, audioFormat);
+        } else {
+            captureFormat = audioFormat;
+            resampler = null;
+        }
+        microphoneLine = line;
+        captureDeviceChanged = false;
+    }
+
+    @Override
+    public void onCaptureDeviceChanged(CaptureDevice device) {
+        // the registry keeps its preferred device for as long as it is present, so a change while
+        // capturing means our device is gone: end the recording and switch on the next one
+        captureDeviceChanged = true;
+        if (microphoneLine.isOpen()) {
+            log.warn("Capture device was removed while recording");
+            close();
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return audioFormat;
+    }
+
+    @Override
+    public synchronized void open() throws LineUnavailableException {
+        if (captureDeviceChanged) {
+            selectMicrophone();
+        }
+        microphoneLine.open(captureFormat);
+        if (resampler != null) {
+            resampler.reset();
+        }
+        int frameSize = captureFormat.getFrameSize();
+        lineBufferSize = microphoneLine.getBufferSize();
+        lineBufferSize -= lineBufferSize % frameSize;
+        readSize = lineBufferSize / 5;
+        readSize -= readSize % frameSize;
+        if (resampler != null
+                && (captureBuffer == null || captureBuffer.length != lineBufferSize)) {
+            captureBuffer = new byte[lineBufferSize];
+        }
+        // allow two reads of scheduling slack before counting frames as lost
+        overrunToleranceFrames = 2 * readSize / frameSize;
+        statistics = new CaptureStatistics(captureFormat.getFrameRate());
+        microphoneLine.start();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Reads a normal sized chunk, or everything that has piled up in the line's buffer if the
+     * capture thread has fallen behind, as far as it fits in the given buffer.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int frameSize = captureFormat.getFrameSize();
+        int available = microphoneLine.available();
+        int sourceBytes = readSize;
+        boolean catchUp = available > readSize;
+        if (catchUp) {
+            sourceBytes = Math.min(available - available % frameSize, lineBufferSize);
+        }
+        int maxSourceBytes = (resampler == null) ? length - length % frameSize
+                : resampler.getMaxInputSize(length);
+        sourceBytes = Math.min(sourceBytes, maxSourceBytes);
+
+        if (resampler == null) {
+            int numBytesRead = microphoneLine.read(buffer, offset, sourceBytes);
+            recordRead(numBytesRead, available, catchUp);
+            return numBytesRead;
+        }
+        int numBytesRead = microphoneLine.read(captureBuffer, 0, sourceBytes);
+        recordRead(numBytesRead, available, catchUp);
+        return resampler.convert(captureBuffer, 0, numBytesRead, buffer, offset);
+    }
+
+    private void recordRead(int numBytesRead, int available, boolean catchUp) {
+        statistics.recordRead(numBytesRead / captureFormat.getFrameSize(),
+                (int) (100L * available / lineBufferSize), catchUp);
+        checkForOverrun();
+    }
+
+    /**
+     * The line's frame position only advances for frames that were actually delivered, so if it
+     * falls behind the time elapsed since the line was started, the hardware buffer overran and
+     * the difference was lost.
+     */
+    private void checkForOverrun() {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        long expectedFrames = (long) (elapsedSeconds * captureFormat.getFrameRate());
+        long deliveredFrames = microphoneLine.getLongFramePosition()
+                + microphoneLine.available() / captureFormat.getFrameSize();
+        long droppedFrames = expectedFrames - deliveredFrames - overrunToleranceFrames;
+        if (droppedFrames > statistics.getDroppedFrames()) {
+            statistics.recordOverrun(droppedFrames);
+            log.warn("Microphone buffer overrun, {} ms of audio lost so far",
+                    statistics.getDroppedMs());
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return microphoneLine.isOpen();
+    }
+
+    @Override
+    public CaptureStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        microphoneLine.stop();
+        microphoneLine.close();
+    }
+}
@@ -0,0 +1,117 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import uk.co.caprica.vlcj.player.MediaPlayer;
+import uk.co.caprica.vlcj.player.MediaPlayerFactory;
+
+/**
+ * Reusable VLC media players. Creating a player starts native threads and buffers, and creating
+ * one through its own component also starts a whole libvlc instance, so players are created from
+ * one shared factory and handed back to the pool when an item is done with them instead of being
+ * abandoned.
+ * <p>
+ * A player is only reused if it stopped cleanly and hasn't failed; players are also retired after
+ * a number of items, since long sessions on one player have been seen to hang. Retired and surplus
+ * players are released.
+ */
+public class MediaPlayerPool {
+    private static final Logger log = LoggerFactory.getLogger(MediaPlayerPool.class);
+
+    private final Supplier<MediaPlayer> playerFactory;
+    private final int maxIdle;
+    private final int maxUses;
+    // guarded by this
+    private final Deque<MediaPlayer> idle = new ArrayDeque<>();
+    // number of items each player, idle or in use, has been acquired for; guarded by this
+    private final Map<MediaPlayer, Integer> uses = new IdentityHashMap<>();
+
+    /**
+     * @param maxIdle
+     *            players kept for reuse; any more are released.
+     * @param maxUses
+     *            items a player is acquired for before it is retired.
+     */
+    public MediaPlayerPool(int maxIdle, int maxUses) {
+        this(new MediaPlayerFactory("--no-video")::newHeadlessMediaPlayer, maxIdle, maxUses);
+    }
+
+    /**
+     * @param playerFactory
+     *            creates a player when there is no idle one.
+     */
+    MediaPlayerPool(Supplier<MediaPlayer> playerFactory, int maxIdle, int maxUses) {
+        this.playerFactory = playerFactory;
+        this.maxIdle = maxIdle;
+        this.maxUses = maxUses;
+    }
+
+    /**
+     * @return an idle player, or a new one if there is none.
+     */
+    public MediaPlayer acquire() {
+        synchronized (this) {
+            MediaPlayer player = idle.poll();
+            if (player != null) {
+                uses.put(player, uses.get(player) + 1);
+                return player;
+            }
+        }
+        MediaPlayer player = playerFactory.get();
+        log.debug("Created media player, {} in use", inUse() + 1);
+        synchronized (this) {
+            uses.put(player, 1);
+        }
+        return player;
+    }
+
+    /**
+     * Give back a player which is no longer used. Its event listeners must have been removed.
+     *
+     * @param healthy
+     *            false if the player reported an error, so it isn't trusted with another item.
+     */
+    public void release(MediaPlayer player, boolean healthy) {
+        if (healthy) {
+            try {
+                player.stop();
+                healthy = !player.isPlaying();
+            } catch (RuntimeException e) {
+                log.warn("Failed to stop media player", e);
+                healthy = false;
+            }
+        }
+        synchronized (this) {
+            if (healthy && uses.get(player) < maxUses && idle.size() < maxIdle) {
+                idle.push(player);
+                return;
+            }
+            uses.remove(player);
+        }
+        log.debug("Releasing media player");
+        player.release();
+    }
+
+    private synchronized int inUse() {
+        return uses.size() - idle.size();
+    }
+}
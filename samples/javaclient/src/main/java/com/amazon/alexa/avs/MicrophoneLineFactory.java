@@ -12,35 +12,48 @@
  */
 package com.amazon.alexa.avs;
 
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Line;
-import javax.sound.sampled.Mixer;
+import com.amazon.alexa.avs.AudioDeviceRegistry.CaptureDevice;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.TargetDataLine;
 
 public class MicrophoneLineFactory {
-    // get the system default microphone
+    private final AudioDeviceRegistry deviceRegistry;
+
+    public MicrophoneLineFactory() {
+        this(AudioDeviceRegistry.getInstance());
+    }
+
+    public MicrophoneLineFactory(AudioDeviceRegistry deviceRegistry) {
+        this.deviceRegistry = deviceRegistry;
+    }
+
+    public AudioDeviceRegistry getDeviceRegistry() {
+        return deviceRegistry;
+    }
+
+    // get the preferred microphone from the cached device list
     public TargetDataLine getMicrophone() {
-        Mixer.Info[] mixers = AudioSystem.getMixerInfo();
-        for (Mixer.Info mixerInfo : mixers) {
-            Mixer m = AudioSystem.getMixer(mixerInfo);
-            try {
-                m.open();
-                m.close();
-            } catch (Exception e) {
-                continue;
-            }
-
-            Line.Info[] lines = m.getTargetLineInfo();
-            for (Line.Info li : lines) {
-                try {
-                    TargetDataLine temp = (TargetDataLine) AudioSystem.getLine(li);
-                    if (temp != null) {
-                        return temp;
-                    }
-                } catch (Exception e) {
-                }
-            }
+        CaptureDevice device = deviceRegistry.getPreferredCaptureDevice();
+        if (device == null) {
+            return null;
+        }
+        try {
+            return device.getLine();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            return null;
         }
-        return null;
+    }
+
+    /**
+     * Pick the format to open the given microphone line with.
+     *
+     * @see AudioDeviceRegistry#selectCaptureFormat(DataLine.Info, AudioFormat)
+     */
+    public AudioFormat getCaptureFormat(TargetDataLine line, AudioFormat targetFormat) {
+        return AudioDeviceRegistry.selectCaptureFormat((DataLine.Info) line.getLineInfo(),
+                targetFormat);
     }
 }
@@ -0,0 +1,113 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.message.response.Directive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands directives to a {@link DirectiveDispatcher} on one serial executor per namespace, so
+ * directives for the same capability are handled one at a time and in order, while a slow
+ * directive in one namespace (say an AudioPlayer.Play copying its attachment to disk) doesn't hold
+ * up another (say a Speaker.SetVolume).
+ * <p>
+ * {@link #dispatch(Directive)} returns as soon as the directive is queued.
+ * {@link #dispatchAndWait(Directive)} also waits for it to be handled, which is how directives of
+ * a dialog are kept in order across namespaces: each waits for the one before it, and the caller
+ * gets to check whether it should block before taking the next.
+ * <p>
+ * Namespaces whose handlers share state that isn't safe to use from several threads can be put on
+ * one executor with {@link #shareExecutor(String...)}, so their directives are handled one at a
+ * time in the order they were dispatched.
+ * <p>
+ * A handler that throws is logged here; the directive counts as handled and the ones behind it go
+ * ahead.
+ */
+public class NamespaceDirectiveDispatcher implements DirectiveDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(NamespaceDirectiveDispatcher.class);
+
+    private final DirectiveDispatcher handler;
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+    // namespaces handled on the executor of another namespace
+    private final Map<String, String> sharedExecutors = new ConcurrentHashMap<>();
+
+    public NamespaceDirectiveDispatcher(DirectiveDispatcher handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void dispatch(Directive directive) {
+        submit(directive);
+    }
+
+    /**
+     * Dispatch the directive and wait until it has been handled.
+     */
+    public void dispatchAndWait(Directive directive) {
+        submit(directive).join();
+    }
+
+    /**
+     * @return a future completed once the directive has been handled.
+     */
+    public CompletableFuture<Void> submit(Directive directive) {
+        String namespace = directive.getNamespace();
+        ExecutorService executor = executors.computeIfAbsent(
+                sharedExecutors.getOrDefault(namespace, namespace), this::createExecutor);
+        return CompletableFuture.runAsync(() -> handle(directive), executor);
+    }
+
+    /**
+     * Handle the directives of all the given namespaces on one executor. Must be called before
+     * any of them are dispatched.
+     */
+    public void shareExecutor(String... namespaces) {
+        for (String namespace : namespaces) {
+            sharedExecutors.put(namespace, namespaces[0]);
+        }
+    }
+
+    /**
+     * Stop the executors once the directives already queued have been handled.
+     */
+    public void shutdown() {
+        for (ExecutorService executor : executors.values()) {
+            executor.shutdown();
+        }
+    }
+
+    private void handle(Directive directive) {
+        try {
+            handler.dispatch(directive);
+        } catch (RuntimeException e) {
+            log.error("Failed to dispatch {}.{}", directive.getNamespace(), directive.getName(),
+                    e);
+        }
+    }
+
+    private ExecutorService createExecutor(String namespace) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DirectiveDispatcher-" + namespace);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,117 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Base class for sources that don't come from hardware. Audio is handed out no faster than the
+ * configured multiple of real time, so the rest of the pipeline sees the same timing it would with
+ * a microphone; a speed of 0 or less disables pacing altogether.
+ */
+public abstract class PacedAudioSource implements AudioSource {
+    private static final int READ_SIZE_MS = 100;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLISECOND = 1000000L;
+
+    protected final AudioFormat audioFormat;
+    private final double speed;
+    private final double bytesPerSecond;
+    private volatile boolean open = false;
+    private long startNanos;
+    private long bytesDelivered;
+    private volatile CaptureStatistics statistics;
+
+    protected PacedAudioSource(AudioFormat audioFormat, double speed) {
+        this.audioFormat = audioFormat;
+        this.speed = speed;
+        bytesPerSecond = audioFormat.getFrameRate() * audioFormat.getFrameSize();
+    }
+
+    protected abstract void openSource() throws LineUnavailableException;
+
+    /**
+     * @return number of bytes read in whole frames of {@link #getFormat()}, or -1 at the end of
+     *         the audio for this recording.
+     */
+    protected abstract int readSource(byte[] buffer, int offset, int length);
+
+    protected abstract void closeSource();
+
+    @Override
+    public AudioFormat getFormat() {
+        return audioFormat;
+    }
+
+    @Override
+    public synchronized void open() throws LineUnavailableException {
+        openSource();
+        bytesDelivered = 0;
+        statistics = new CaptureStatistics(audioFormat.getFrameRate());
+        startNanos = System.nanoTime();
+        open = true;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (!open) {
+            return -1;
+        }
+        int numBytesRead = readSource(buffer, offset, Math.min(length, getReadSize()));
+        if (numBytesRead > 0) {
+            bytesDelivered += numBytesRead;
+            statistics.recordRead(numBytesRead / audioFormat.getFrameSize(), 0, false);
+            waitUntilDue();
+        }
+        return numBytesRead;
+    }
+
+    private void waitUntilDue() {
+        if (speed <= 0) {
+            return;
+        }
+        long dueNanos =
+                startNanos + (long) (bytesDelivered * NANOS_PER_SECOND / (bytesPerSecond * speed));
+        long remainingNanos = dueNanos - System.nanoTime();
+        if (remainingNanos > 0) {
+            try {
+                Thread.sleep(remainingNanos / NANOS_PER_MILLISECOND,
+                        (int) (remainingNanos % NANOS_PER_MILLISECOND));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public CaptureStatistics getStatistics() {
+        return statistics;
+    }
+
+    private int getReadSize() {
+        int readSize = (int) (bytesPerSecond * READ_SIZE_MS / 1000);
+        return readSize - readSize % audioFormat.getFrameSize();
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        closeSource();
+    }
+}
@@ -0,0 +1,77 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+/**
+ * The arithmetic of mixing 16 bit little endian mono PCM: sources are added into a float
+ * accumulator with a gain that moves linearly across the block, so gain changes and fades are
+ * ramped rather than stepped and don't click, and the sum is clipped back to 16 bit. Nothing here
+ * allocates, so it can run for every buffer on the mixing thread.
+ */
+public final class PcmMixer {
+
+    private PcmMixer() {
+    }
+
+    /**
+     * Add frames of PCM to the accumulator.
+     *
+     * @param fromGain
+     *            gain applied to the first frame.
+     * @param toGain
+     *            gain the ramp reaches after the last frame.
+     */
+    public static void add(byte[] pcm, int offset, float[] mix, int mixOffset, int frames,
+            float fromGain, float toGain) {
+        if (fromGain == 0f && toGain == 0f) {
+            return;
+        }
+        float gain = fromGain;
+        float step = (toGain - fromGain) / frames;
+        int in = offset;
+        int end = mixOffset + frames;
+        for (int i = mixOffset; i < end; i++) {
+            short sample = (short) ((pcm[in + 1] << 8) | (pcm[in] & 0xff));
+            mix[i] += sample * gain;
+            gain += step;
+            in += 2;
+        }
+    }
+
+    /**
+     * Write the accumulator as PCM, clipping samples that overflowed.
+     */
+    public static void toPcm(float[] mix, int frames, byte[] pcm) {
+        int out = 0;
+        for (int i = 0; i < frames; i++) {
+            int value = Math.round(mix[i]);
+            if (value > Short.MAX_VALUE) {
+                value = Short.MAX_VALUE;
+            } else if (value < Short.MIN_VALUE) {
+                value = Short.MIN_VALUE;
+            }
+            pcm[out++] = (byte) value;
+            pcm[out++] = (byte) (value >> 8);
+        }
+    }
+
+    /**
+     * @return the gain moved towards the target by at most maxChange.
+     */
+    public static float approach(float gain, float target, float maxChange) {
+        if (gain < target) {
+            return Math.min(target, gain + maxChange);
+        }
+        return Math.max(target, gain - maxChange);
+    }
+}
@@ -0,0 +1,221 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded buffer of PCM bytes between one decoder thread and one reader, without locks. Each side
+ * only advances its own position, so the reader can always poll with
+ * {@link #readAvailable(byte[], int, int)} without waiting for the writer; the mixer relies on
+ * that to never stall on audio that is still being decoded. The writer, and a reader using the
+ * blocking {@link #read(byte[], int, int)}, park until the other side makes progress. A writer
+ * which shouldn't hold on to its thread can instead {@link #writeAvailable(byte[], int, int)
+ * write what fits} and be called back {@link #whenSpace(Runnable) once there is space}.
+ */
+public class PcmRingBuffer {
+    private final byte[] buffer;
+    // totals since the buffer was created; positions in the array are these modulo its length.
+    // written is only advanced by the writer and read only by the reader
+    private volatile long written;
+    private volatile long read;
+    // the error is set before finished
+    private volatile IOException error;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+    private volatile Thread waitingWriter;
+    private volatile Thread waitingReader;
+    private final AtomicReference<Runnable> spaceListener = new AtomicReference<>();
+
+    public PcmRingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Write all the bytes, waiting for space as needed.
+     *
+     * @return false if the buffer was cancelled before everything was written.
+     */
+    public boolean write(byte[] data, int offset, int length) throws InterruptedException {
+        while (length > 0) {
+            int count = writeAvailable(data, offset, length);
+            if (count < 0) {
+                return false;
+            }
+            if (count == 0) {
+                awaitSpace();
+            }
+            offset += count;
+            length -= count;
+        }
+        return true;
+    }
+
+    /**
+     * Write as many of the bytes as there is space for now.
+     *
+     * @return the number of bytes written, which is 0 if the buffer is full, or -1 once cancelled.
+     */
+    public int writeAvailable(byte[] data, int offset, int length) {
+        int total = 0;
+        while (length > 0) {
+            if (cancelled) {
+                return -1;
+            }
+            long position = written;
+            int space = (int) (buffer.length - (position - read));
+            if (space == 0) {
+                break;
+            }
+            int start = (int) (position % buffer.length);
+            int count = Math.min(length, Math.min(space, buffer.length - start));
+            System.arraycopy(data, offset, buffer, start, count);
+            written = position + count;
+            offset += count;
+            length -= count;
+            total += count;
+            LockSupport.unpark(waitingReader);
+        }
+        return total;
+    }
+
+    /**
+     * Run the listener once there is space to write, or once the buffer is cancelled. It runs on
+     * the reader's thread, so it should only hand the writing over to another thread, and right
+     * away if there is space already. Only one listener waits at a time.
+     */
+    public void whenSpace(Runnable listener) {
+        spaceListener.set(listener);
+        if (cancelled || written - read < buffer.length) {
+            runSpaceListener();
+        }
+    }
+
+    /**
+     * Mark the end of the stream, successful if the error is null.
+     */
+    public void finish(IOException error) {
+        this.error = error;
+        finished = true;
+        LockSupport.unpark(waitingReader);
+    }
+
+    /**
+     * Read up to length bytes that are available now.
+     *
+     * @return the number of bytes read, which is 0 if the writer hasn't caught up, or -1 at the end
+     *         of the stream or once cancelled.
+     * @throws IOException
+     *             if the writer finished with an error and everything before it has been read.
+     */
+    public int readAvailable(byte[] data, int offset, int length) throws IOException {
+        if (cancelled) {
+            return -1;
+        }
+        long position = read;
+        long end = written;
+        if (position == end) {
+            if (!finished) {
+                return 0;
+            }
+            // anything written before finishing is visible now
+            end = written;
+            if (position == end) {
+                if (error != null) {
+                    throw error;
+                }
+                return -1;
+            }
+        }
+        int start = (int) (position % buffer.length);
+        int count = (int) Math.min(length, Math.min(end - position, buffer.length - start));
+        System.arraycopy(buffer, start, data, offset, count);
+        read = position + count;
+        LockSupport.unpark(waitingWriter);
+        if (spaceListener.get() != null) {
+            runSpaceListener();
+        }
+        return count;
+    }
+
+    /**
+     * Read up to length bytes, waiting until at least one is available.
+     *
+     * @return the number of bytes read, or -1 at the end of the stream or once cancelled.
+     * @throws IOException
+     *             if the writer finished with an error and everything before it has been read.
+     */
+    public int read(byte[] data, int offset, int length)
+            throws IOException, InterruptedException {
+        int count;
+        while ((count = readAvailable(data, offset, length)) == 0 && length > 0) {
+            awaitData();
+        }
+        return count;
+    }
+
+    /**
+     * Discard the contents and wake up the reader and writer for good.
+     */
+    public void cancel() {
+        cancelled = true;
+        LockSupport.unpark(waitingWriter);
+        LockSupport.unpark(waitingReader);
+        runSpaceListener();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void runSpaceListener() {
+        // taken by whichever thread gets to it first, so it runs once
+        Runnable listener = spaceListener.getAndSet(null);
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    // each side publishes itself before checking the other's position, so a wakeup in between is
+    // not lost
+
+    private void awaitSpace() throws InterruptedException {
+        waitingWriter = Thread.currentThread();
+        try {
+            while (!cancelled && written - read == buffer.length) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingWriter = null;
+        }
+    }
+
+    private void awaitData() throws InterruptedException {
+        waitingReader = Thread.currentThread();
+        try {
+            while (!cancelled && !finished && written == read) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingReader = null;
+        }
+    }
+}
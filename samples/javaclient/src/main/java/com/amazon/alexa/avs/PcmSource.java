@@ -0,0 +1,43 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * 16 bit PCM audio that {@link SpeechRenderEngine} can mix. The engine polls it from its mixing
+ * thread, so none of these methods may block.
+ */
+public interface PcmSource {
+    /**
+     * @return the format of the audio, or null if it isn't known yet.
+     * @throws IOException
+     *             if there is no audio to play.
+     */
+    AudioFormat getFormat() throws IOException;
+
+    /**
+     * Read the audio that is available now.
+     *
+     * @return the number of bytes read, 0 if none is available yet, or -1 at the end of the audio
+     *         or once cancelled.
+     */
+    int readAvailable(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * The audio will not be played, or no more of it; any work producing it can stop.
+     */
+    void cancel();
+}
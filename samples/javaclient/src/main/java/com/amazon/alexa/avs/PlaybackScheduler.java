@@ -0,0 +1,189 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Decides when the media player starts the next item of its queue. Instead of threads polling for
+ * speech to end and for events to be sent, every change is a signal handled on one executor:
+ * media being queued, speech finishing, an item ending and the events sent for it being
+ * acknowledged. The next item is therefore started as soon as nothing stands in its way.
+ *
+ * <pre>
+ * IDLE --start requested--> WAITING_FOR_SPEECH --speech finished--> PLAYING
+ * IDLE --start requested, not speaking--> PLAYING
+ * PLAYING --item ended--> WAITING_FOR_EVENTS --events sent--> IDLE, or the next item
+ * any --stopped--> IDLE
+ * </pre>
+ */
+public class PlaybackScheduler {
+    private static final Logger log = LoggerFactory.getLogger(PlaybackScheduler.class);
+
+    /**
+     * What the scheduler drives. Called on the scheduler thread only.
+     */
+    public interface Playback {
+        /**
+         * Start playing the item at the head of the queue, or arrange for
+         * {@link PlaybackScheduler#startDeferred} to finish starting it.
+         *
+         * @return false if there was nothing to play or it could not be started.
+         */
+        boolean startNext();
+    }
+
+    enum State {
+        IDLE,
+        WAITING_FOR_SPEECH,
+        PLAYING,
+        WAITING_FOR_EVENTS;
+    }
+
+    private final Playback playback;
+    private final BooleanSupplier speaking;
+    private final Consumer<Runnable> whenEventsSent;
+    private final ExecutorService executor;
+
+    // only touched on the scheduler thread
+    private State state = State.IDLE;
+
+    /**
+     * @param speaking
+     *            true while media has to wait for speech.
+     * @param whenEventsSent
+     *            runs a callback once no event is being sent.
+     */
+    public PlaybackScheduler(Playback playback, BooleanSupplier speaking,
+            Consumer<Runnable> whenEventsSent) {
+        this.playback = playback;
+        this.speaking = speaking;
+        this.whenEventsSent = whenEventsSent;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlaybackScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Media was queued and should start once speech allows it.
+     */
+    public void requestStart() {
+        executor.execute(() -> {
+            if (state == State.IDLE) {
+                startOrWait();
+            }
+        });
+    }
+
+    /**
+     * Speech started or finished. Media waiting for speech is started if it has finished.
+     */
+    public void speechStateChanged() {
+        executor.execute(() -> {
+            if (state == State.WAITING_FOR_SPEECH) {
+                startOrWait();
+            }
+        });
+    }
+
+    /**
+     * The current item ended, by finishing or failing. Once the events already being sent for it
+     * (such as PlaybackStarted or a progress report) have gone out, the completion is run on the
+     * scheduler thread to send the final events.
+     *
+     * @param completion
+     *            sends the events for the ended item and returns true if the next item should be
+     *            played.
+     */
+    public void playbackEnded(BooleanSupplier completion) {
+        executor.execute(() -> {
+            state = State.WAITING_FOR_EVENTS;
+            whenEventsSent.accept(() -> executor.execute(() -> complete(completion)));
+        });
+    }
+
+    /**
+     * Finish starting an item whose start {@link Playback#startNext()} left waiting, such as for
+     * its playlist to be resolved. Nothing is started if playback was stopped meanwhile.
+     *
+     * @param start
+     *            starts the item and returns false if it could not be started.
+     */
+    public void startDeferred(BooleanSupplier start) {
+        executor.execute(() -> {
+            if (state != State.PLAYING) {
+                return;
+            }
+            try {
+                if (!start.getAsBoolean()) {
+                    state = State.IDLE;
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to start the media item", e);
+                state = State.IDLE;
+            }
+        });
+    }
+
+    /**
+     * Playback was stopped; nothing is started until it is requested again. An item which already
+     * ended still has its events sent.
+     */
+    public void stopped() {
+        executor.execute(() -> {
+            if (state != State.WAITING_FOR_EVENTS) {
+                state = State.IDLE;
+            }
+        });
+    }
+
+    private void complete(BooleanSupplier completion) {
+        state = State.IDLE;
+        boolean playNext;
+        try {
+            playNext = completion.getAsBoolean();
+        } catch (RuntimeException e) {
+            log.error("Failed to complete the media item", e);
+            return;
+        }
+        if (playNext) {
+            startOrWait();
+        }
+    }
+
+    private void startOrWait() {
+        if (speaking.getAsBoolean()) {
+            state = State.WAITING_FOR_SPEECH;
+            return;
+        }
+        state = State.PLAYING;
+        try {
+            if (!playback.startNext()) {
+                // the queue was cleared, or the media player reports the failure through
+                // playbackEnded
+                state = State.IDLE;
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to start the media item", e);
+            state = State.IDLE;
+        }
+    }
+}
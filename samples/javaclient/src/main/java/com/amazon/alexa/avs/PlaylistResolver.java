@@ -0,0 +1,249 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns m3u and pls playlist urls, as used by internet radio, into the streams they list before
+ * the media player is given them. The playlist is fetched and parsed when the item is queued, and
+ * the listed streams are then probed in parallel so the first one that answers is played, instead
+ * of the media player parsing the playlist itself and trying the entries one after the other.
+ * <p>
+ * Resolutions are cached per playlist url for a while, so a station played again starts without
+ * fetching its playlist. Urls which aren't playlists resolve to themselves straight away.
+ */
+public class PlaylistResolver {
+    private static final Logger log = LoggerFactory.getLogger(PlaylistResolver.class);
+
+    private static final int FETCH_TIMEOUT_MS = 5000;
+    private static final int PROBE_TIMEOUT_MS = 3000;
+    private static final int MAX_PLAYLIST_BYTES = 64 * 1024;
+    // entries probed at once; the rest are kept as alternatives in playlist order
+    private static final int MAX_PROBES = 4;
+    private static final long RESOLUTION_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_CACHED_RESOLUTIONS = 64;
+
+    private static class Resolution {
+        private final CompletableFuture<List<String>> urls;
+        private final long expiresNanos;
+
+        Resolution(CompletableFuture<List<String>> urls) {
+            this.urls = urls;
+            expiresNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESOLUTION_TTL_MS);
+        }
+
+        boolean isExpired() {
+            return urls.isDone() && System.nanoTime() - expiresNanos > 0;
+        }
+    }
+
+    private final ExecutorService executor;
+    // guarded by itself, least recently used first
+    private final Map<String, Resolution> cache =
+            new LinkedHashMap<String, Resolution>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Resolution> eldest) {
+                    return size() > MAX_CACHED_RESOLUTIONS;
+                }
+            };
+
+    public PlaylistResolver() {
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "PlaylistResolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return true if the url names an m3u or pls playlist.
+     */
+    public static boolean isPlaylist(String url) {
+        String path;
+        try {
+            path = new URL(url).getPath().toLowerCase(Locale.US);
+        } catch (MalformedURLException e) {
+            return false;
+        }
+        return path.endsWith(".m3u") || path.endsWith(".pls");
+    }
+
+    /**
+     * Start resolving the url, or return the resolution already cached or in progress.
+     *
+     * @return the urls to try in order: the first stream of the playlist that answered, then the
+     *         others. If the playlist can't be fetched, just the url itself, for the media player
+     *         to try. The future never completes exceptionally.
+     */
+    public CompletableFuture<List<String>> resolve(String url) {
+        if (!isPlaylist(url)) {
+            return CompletableFuture.completedFuture(Collections.singletonList(url));
+        }
+        synchronized (cache) {
+            Resolution resolution = cache.get(url);
+            if (resolution != null && !resolution.isExpired()) {
+                return resolution.urls;
+            }
+            CompletableFuture<List<String>> urls = new CompletableFuture<>();
+            cache.put(url, new Resolution(urls));
+            executor.execute(() -> resolveNow(url, urls));
+            return urls;
+        }
+    }
+
+    private void resolveNow(String url, CompletableFuture<List<String>> result) {
+        List<String> entries;
+        try {
+            entries = parse(url, fetch(url));
+        } catch (IOException e) {
+            log.warn("Failed to fetch playlist {}", url, e);
+            entries = Collections.emptyList();
+        }
+        if (entries.isEmpty()) {
+            // not cached, so the next play tries again
+            synchronized (cache) {
+                cache.remove(url);
+            }
+            result.complete(Collections.singletonList(url));
+            return;
+        }
+        probe(entries, result);
+    }
+
+    /**
+     * Probe the first entries in parallel and complete with the first that answers moved to the
+     * front, or with the entries as they are if none does.
+     */
+    private void probe(List<String> entries, CompletableFuture<List<String>> result) {
+        List<String> candidates = entries.subList(0, Math.min(MAX_PROBES, entries.size()));
+        AtomicInteger remaining = new AtomicInteger(candidates.size());
+        for (String candidate : candidates) {
+            executor.execute(() -> {
+                if (answers(candidate)) {
+                    List<String> ordered = new ArrayList<>(entries);
+                    ordered.remove(candidate);
+                    ordered.add(0, candidate);
+                    if (result.complete(Collections.unmodifiableList(ordered))) {
+                        log.debug("Resolved to {}", candidate);
+                    }
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.complete(Collections.unmodifiableList(entries));
+                }
+            });
+        }
+    }
+
+    private static boolean answers(String url) {
+        HttpURLConnection connection = null;
+        try {
+            URLConnection urlConnection = new URL(url).openConnection();
+            if (!(urlConnection instanceof HttpURLConnection)) {
+                // nothing to probe, such as an mms stream
+                return false;
+            }
+            connection = (HttpURLConnection) urlConnection;
+            connection.setConnectTimeout(PROBE_TIMEOUT_MS);
+            connection.setReadTimeout(PROBE_TIMEOUT_MS);
+            int code = connection.getResponseCode();
+            if (code == -1) {
+                // SHOUTcast servers answer with ICY 200 OK
+                String status = connection.getHeaderField(0);
+                return status != null && status.startsWith("ICY 200");
+            }
+            return code >= 200 && code < 300;
+        } catch (IOException e) {
+            log.debug("No answer from {}: {}", url, e.getMessage());
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static String fetch(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(FETCH_TIMEOUT_MS);
+        connection.setReadTimeout(FETCH_TIMEOUT_MS);
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                if (content.size() + count > MAX_PLAYLIST_BYTES) {
+                    throw new IOException(
+                            "Playlist is larger than " + MAX_PLAYLIST_BYTES + " bytes");
+                }
+                content.write(buffer, 0, count);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the stream urls listed in an m3u or pls playlist, relative ones resolved against the
+     *         playlist url.
+     */
+    static List<String> parse(String url, String content) {
+        boolean pls = content.trim().toLowerCase(Locale.US).startsWith("[playlist]");
+        List<String> entries = new ArrayList<>();
+        for (String line : content.split("\r?\n")) {
+            line = line.trim();
+            String entry;
+            if (pls) {
+                int equals = line.indexOf('=');
+                if (equals < 0 || !line.toLowerCase(Locale.US).startsWith("file")) {
+                    continue;
+                }
+                entry = line.substring(equals + 1).trim();
+            } else if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            } else {
+                entry = line;
+            }
+            try {
+                String resolved = new URL(new URL(url), entry).toString();
+                if (!entries.contains(resolved)) {
+                    entries.add(resolved);
+                }
+            } catch (MalformedURLException e) {
+                log.debug("Skipping playlist entry {}", entry);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,55 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.CaptureFrameBus.Frame;
+import com.amazon.alexa.avs.CaptureFrameBus.FrameListener;
+
+/**
+ * Capture frame consumer that reports the loudness of the audio being recorded to the current
+ * {@link RecordingRMSListener}, for example to drive a visualizer.
+ */
+public class RecordingRMSCalculator implements FrameListener {
+    private volatile RecordingRMSListener rmsListener;
+
+    public void setRMSListener(RecordingRMSListener rmsListener) {
+        this.rmsListener = rmsListener;
+    }
+
+    // assuming 16bit samples, 1 channel, little endian
+    @Override
+    public void onFrame(Frame frame) {
+        RecordingRMSListener listener = rmsListener;
+        int cnt = frame.getLength();
+        if ((listener == null) || (cnt < 2)) {
+            return;
+        }
+
+        final byte[] data = frame.getData();
+        final int bytesPerSample = 2;
+        int len = cnt / bytesPerSample;
+        double avg = 0;
+
+        for (int i = 0; i + 1 < cnt; i += bytesPerSample) {
+            // generate the signed 16 bit number from the 2 bytes
+            double dVal = Math.abs((short) ((data[i + 1] << 8) | (data[i] & 0xff)));
+            // scale it from 1 to 100. Use max/2 as values tend to be low
+            dVal = ((100 * dVal) / (Short.MAX_VALUE / 2.0)) + 1;
+            avg += dVal * dVal; // add the square to the running average
+        }
+        avg /= len;
+        avg = Math.sqrt(avg);
+        // update the AudioRMSListener callback with the scaled root-mean-squared power value
+        listener.rmsChanged((int) avg);
+    }
+}
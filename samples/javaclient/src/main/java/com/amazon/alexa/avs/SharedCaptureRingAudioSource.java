@@ -0,0 +1,234 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * {@link AudioSource} reading the audio the wake word agent captures, through the memory mapped
+ * ring it publishes (SharedCaptureRing in the agent). The agent keeps the microphone the whole
+ * time, so a recording needs neither the pause/resume hand-off nor a line to be opened, and when
+ * it follows a wake word it starts at the exact sample the wake word was detected at.
+ */
+public class SharedCaptureRingAudioSource implements AudioSource {
+    private static final Logger log = LoggerFactory.getLogger(SharedCaptureRingAudioSource.class);
+
+    public static final String DEFAULT_RING_FILE = "/dev/shm/alexa-wake-word-audio";
+
+    // the layout must match SharedCaptureRing.h in the wake word agent
+    static final int MAGIC = 0x41575741;
+    static final int VERSION = 1;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SAMPLE_RATE_OFFSET = 8;
+    static final int CHANNELS_OFFSET = 12;
+    static final int BITS_PER_SAMPLE_OFFSET = 16;
+    static final int CAPACITY_OFFSET = 20;
+    static final int WRITE_INDEX_OFFSET = 64;
+    static final int DETECTION_INDEX_OFFSET = 128;
+    static final int DATA_OFFSET = 4096;
+
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int READ_SIZE_MS = 50;
+    // a detection older than this belongs to an earlier interaction, not to this recording
+    private static final int MAX_DETECTION_AGE_MS = 2000;
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AudioFormat audioFormat;
+    private final File ringFile;
+    private MappedByteBuffer mapping;
+    private ByteBuffer samples;
+    private AudioFormat ringFormat;
+    private AudioResampler resampler;
+    private byte[] captureBuffer;
+    private int capacity;
+    // samples the writer may be filling while we copy, kept out of reach of the reader
+    private int safetyMargin;
+    private int readSize;
+    private int readIndex;
+    private long droppedSamples;
+    private volatile boolean open = false;
+    private volatile CaptureStatistics statistics;
+    // a volatile read keeps the samples from being read ahead of the write index
+    private volatile int fence;
+
+    public SharedCaptureRingAudioSource(AudioFormat audioFormat, File ringFile) {
+        this.audioFormat = audioFormat;
+        this.ringFile = ringFile;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return audioFormat;
+    }
+
+    @Override
+    public synchronized void open() throws LineUnavailableException {
+        if (mapping == null || mapping.getInt(MAGIC_OFFSET) != MAGIC) {
+            map();
+        }
+
+        int writeIndex = getWriteIndex();
+        int detectionIndex = mapping.getInt(DETECTION_INDEX_OFFSET);
+        int detectionAge = writeIndex - detectionIndex;
+        int maxDetectionAge = (int) (ringFormat.getSampleRate() * ringFormat.getChannels()
+                * MAX_DETECTION_AGE_MS / 1000);
+        if (detectionAge >= 0 && detectionAge <= maxDetectionAge) {
+            readIndex = detectionIndex;
+            log.info("Starting capture {} ms after the wake word",
+                    (long) (detectionAge * 1000 / ringFormat.getSampleRate()));
+        } else {
+            readIndex = writeIndex;
+        }
+
+        if (resampler != null) {
+            resampler.reset();
+        }
+        droppedSamples = 0;
+        statistics = new CaptureStatistics(ringFormat.getFrameRate());
+        open = true;
+    }
+
+    private void map() throws LineUnavailableException {
+        try (RandomAccessFile file = new RandomAccessFile(ringFile, "r")) {
+            mapping = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } catch (IOException e) {
+            log.warn("Could not map the wake word agent's capture ring " + ringFile, e);
+            throw new LineUnavailableException("Wake word agent is not sharing its capture");
+        }
+        mapping.order(ByteOrder.nativeOrder());
+        if (mapping.capacity() < DATA_OFFSET || mapping.getInt(MAGIC_OFFSET) != MAGIC
+                || mapping.getInt(VERSION_OFFSET) != VERSION
+                || mapping.getInt(BITS_PER_SAMPLE_OFFSET) != 16) {
+            mapping = null;
+            throw new LineUnavailableException("Wake word agent is not sharing its capture");
+        }
+
+        capacity = mapping.getInt(CAPACITY_OFFSET);
+        safetyMargin = capacity / 8;
+        ringFormat = new AudioFormat(mapping.getInt(SAMPLE_RATE_OFFSET), 16,
+                mapping.getInt(CHANNELS_OFFSET), true,
+                ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+        readSize = (int) (ringFormat.getFrameRate() * READ_SIZE_MS / 1000)
+                * ringFormat.getChannels();
+        samples = mapping.duplicate();
+
+        if (AudioResampler.isConversionRequired(ringFormat, audioFormat)) {
+            log.info("Wake word agent captures {}, resampling to {}", ringFormat, audioFormat);
+            resampler = new AudioResampler(ringFormat, audioFormat);
+            captureBuffer = new byte[capacity * BYTES_PER_SAMPLE];
+        } else {
+            resampler = null;
+        }
+    }
+
+    private int getWriteIndex() {
+        int writeIndex = mapping.getInt(WRITE_INDEX_OFFSET);
+        int acquire = fence;
+        return writeIndex;
+    }
+
+    /**
+     * Waits for a normal sized chunk, or takes everything that has piled up if the capture thread
+     * has fallen behind, as far as it fits in the given buffer.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int available = waitForSamples();
+        if (available < 0) {
+            return -1;
+        }
+
+        boolean catchUp = available > readSize;
+        int maxBytes = (resampler == null) ? length : resampler.getMaxInputSize(length);
+        int count = Math.min(available, maxBytes / BYTES_PER_SAMPLE);
+        count -= count % ringFormat.getChannels();
+
+        byte[] target = (resampler == null) ? buffer : captureBuffer;
+        int targetOffset = (resampler == null) ? offset : 0;
+        copySamples(readIndex, count, target, targetOffset);
+        readIndex += count;
+        statistics.recordRead(count / ringFormat.getChannels(),
+                (int) (100L * available / capacity), catchUp);
+
+        if (resampler == null) {
+            return count * BYTES_PER_SAMPLE;
+        }
+        return resampler.convert(captureBuffer, 0, count * BYTES_PER_SAMPLE, buffer, offset);
+    }
+
+    /**
+     * @return number of samples ready to be read, or -1 if the source was closed.
+     */
+    private int waitForSamples() {
+        while (open) {
+            int available = getWriteIndex() - readIndex;
+            if (available > capacity - safetyMargin) {
+                // the agent has lapped us: skip what it has overwritten or is about to
+                int skipped = available - (capacity - safetyMargin);
+                readIndex += skipped;
+                droppedSamples += skipped;
+                statistics.recordOverrun(droppedSamples / ringFormat.getChannels());
+                log.warn("Capture ring overrun, {} ms of audio lost so far",
+                        statistics.getDroppedMs());
+                available -= skipped;
+            }
+            if (available >= readSize) {
+                return available;
+            }
+            LockSupport.parkNanos(this, POLL_NANOS);
+        }
+        return -1;
+    }
+
+    private void copySamples(int index, int count, byte[] target, int targetOffset) {
+        int position = index & (capacity - 1);
+        int firstChunk = Math.min(count, capacity - position);
+        samples.position(DATA_OFFSET + position * BYTES_PER_SAMPLE);
+        samples.get(target, targetOffset, firstChunk * BYTES_PER_SAMPLE);
+        if (firstChunk < count) {
+            samples.position(DATA_OFFSET);
+            samples.get(target, targetOffset + firstChunk * BYTES_PER_SAMPLE,
+                    (count - firstChunk) * BYTES_PER_SAMPLE);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public CaptureStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,223 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays queued speech items back to back through the {@link SpeechRenderEngine}. Each item's MP3
+ * is decoded in the background, ideally from {@link #prepare(String, InputStream)} as soon as its
+ * attachment arrives, so by the time an item's turn comes it is ready to play, and the engine
+ * writes each item right behind the previous one, so there is no gap between them.
+ * <p>
+ * {@link Listener} calls are made in order on the engine's callback thread when an item's first
+ * and last frames have been played. An item that fails to play is still reported started and
+ * finished; one that is stopped before it starts is not reported at all.
+ * <p>
+ * At most {@link #MAX_PREPARED_ITEMS} items are prepared at a time; any more are decoded once they
+ * are queued. A prepared item that isn't queued within {@link #PREPARED_TTL_MS}, for example
+ * because its directive failed before reaching the player, is cancelled on the
+ * {@link TimerWheel} so its decoder thread and attachment stream are not held forever.
+ */
+public class SpeechPipeline {
+    private static final Logger log = LoggerFactory.getLogger(SpeechPipeline.class);
+
+    // Items decoded ahead of being queued at the same time.
+    public static final int MAX_PREPARED_ITEMS = 8;
+
+    // How long a prepared item may wait to be queued.
+    public static final long PREPARED_TTL_MS = 60000;
+
+    // How often prepared items are checked against the TTL.
+    private static final long EXPIRY_PERIOD_MS = PREPARED_TTL_MS / 4;
+
+    public interface Listener {
+        /**
+         * @param timeToFirstAudioMs
+         *            milliseconds from the item being queued until its first frame was played,
+         *            or -1 if it failed to play.
+         */
+        void onSpeechItemStarted(SpeakItem item, long timeToFirstAudioMs);
+
+        /**
+         * @param last
+         *            true if nothing else is queued behind the item.
+         */
+        void onSpeechItemFinished(SpeakItem item, boolean last);
+    }
+
+    private static class PreparedItem {
+        private final DecodedAudio audio;
+        private final long preparedNanos;
+
+        PreparedItem(DecodedAudio audio, long preparedNanos) {
+            this.audio = audio;
+            this.preparedNanos = preparedNanos;
+        }
+    }
+
+    private final SpeechRenderEngine engine;
+    private final Listener listener;
+    private final TimerWheel.Clock clock;
+
+    // all guarded by this
+    // items prepared ahead of being queued, until they are queued, discarded or expire, oldest
+    // first
+    private final Map<String, PreparedItem> prepared = new LinkedHashMap<>();
+    // renders of the items queued or playing, oldest first
+    private final Queue<SpeechRenderEngine.Render> renders = new ArrayDeque<>();
+    private SpeechRenderEngine.Render playing;
+
+    public SpeechPipeline(SpeechRenderEngine engine, Listener listener) {
+        this(engine, listener, TimerWheel.getInstance());
+    }
+
+    public SpeechPipeline(SpeechRenderEngine engine, Listener listener, TimerWheel timerWheel) {
+        this.engine = engine;
+        this.listener = listener;
+        clock = timerWheel.getClock();
+        timerWheel.scheduleAtFixedRate(this::expirePrepared, EXPIRY_PERIOD_MS, EXPIRY_PERIOD_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start decoding the audio of a speech item which will be queued later. If
+     * {@link #MAX_PREPARED_ITEMS} are already prepared, the item is left to be decoded when it is
+     * queued.
+     */
+    public synchronized void prepare(String token, InputStream audio) {
+        if (audio == null || prepared.containsKey(token)) {
+            return;
+        }
+        if (prepared.size() >= MAX_PREPARED_ITEMS) {
+            log.debug("Not preparing speech {}, {} items are already prepared", token,
+                    prepared.size());
+            return;
+        }
+        prepared.put(token, new PreparedItem(engine.decode(audio), clock.nanoTime()));
+    }
+
+    /**
+     * Stop decoding an item prepared with {@link #prepare(String, InputStream)} which will not be
+     * queued after all.
+     */
+    public synchronized void discard(String token) {
+        PreparedItem item = prepared.remove(token);
+        if (item != null) {
+            item.audio.cancel();
+        }
+    }
+
+    /**
+     * Cancel prepared items that have waited longer than {@link #PREPARED_TTL_MS} to be queued.
+     */
+    synchronized void expirePrepared() {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(PREPARED_TTL_MS);
+        long now = clock.nanoTime();
+        Iterator<Map.Entry<String, PreparedItem>> iterator = prepared.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PreparedItem> entry = iterator.next();
+            if (now - entry.getValue().preparedNanos < ttlNanos) {
+                break;
+            }
+            iterator.remove();
+            entry.getValue().audio.cancel();
+            log.warn("Dropping prepared speech {}, it was never played", entry.getKey());
+        }
+    }
+
+    /**
+     * @return number of items prepared and not yet queued.
+     */
+    public synchronized int getPreparedCount() {
+        return prepared.size();
+    }
+
+    /**
+     * Queue an item to be played after the ones already queued.
+     */
+    public synchronized void enqueue(SpeakItem item) {
+        // the prepared decoder already reads the item's stream
+        PreparedItem preparedItem = prepared.remove(item.getToken());
+        DecodedAudio audio = preparedItem == null ? engine.decode(item.getAudio())
+                : preparedItem.audio;
+        SpeechRenderEngine.Render render = engine.render(audio);
+        renders.add(render);
+        render.getStarted().thenRun(() -> onStarted(item, render));
+        render.getFinished().whenComplete((result, error) -> onFinished(item, render, error));
+    }
+
+    /**
+     * Stop the item being played and drop the queued and prepared ones. The interrupted item is
+     * still reported finished.
+     */
+    public synchronized void stop() {
+        engine.cancel(renders);
+        renders.clear();
+        for (PreparedItem item : prepared.values()) {
+            item.audio.cancel();
+        }
+        prepared.clear();
+    }
+
+    /**
+     * @return true if no item is queued or playing.
+     */
+    public synchronized boolean isIdle() {
+        return renders.isEmpty();
+    }
+
+    /**
+     * @return how far into the item being played playback is.
+     */
+    public synchronized long getPositionInMilliseconds() {
+        return playing == null ? 0 : playing.getPositionInMilliseconds();
+    }
+
+    private void onStarted(SpeakItem item, SpeechRenderEngine.Render render) {
+        synchronized (this) {
+            playing = render;
+        }
+        listener.onSpeechItemStarted(item, render.getTimeToFirstAudioMs());
+    }
+
+    private void onFinished(SpeakItem item, SpeechRenderEngine.Render render, Throwable error) {
+        boolean started = render.getStarted().isDone()
+                && !render.getStarted().isCompletedExceptionally();
+        boolean last;
+        synchronized (this) {
+            renders.remove(render);
+            if (playing == render) {
+                playing = null;
+            }
+            last = renders.isEmpty();
+        }
+        if (!started) {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            listener.onSpeechItemStarted(item, -1);
+        }
+        listener.onSpeechItemFinished(item, last);
+    }
+}
@@ -0,0 +1,792 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Mixes speech, earcons and alarms into one output line which is opened when the engine is
+ * created and kept open while sounds play, instead of a new audio device and thread for every
+ * sound. The line is closed after {@value #LINE_IDLE_MS} ms of silence, since on a sound card
+ * without software mixing, such as ALSA without dmix, an open line keeps the media player off the
+ * device; it is opened again for the next sound. Each
+ * {@link Channel} plays its renders back to back, and the channels play at the same time: a
+ * single mixing thread polls every channel's current {@link PcmSource}, converts it to the
+ * line's format, adds it in with the channel's gain and writes the mix to the line. Sources are
+ * polled without blocking, such as MP3 being decoded into a lock-free {@link PcmRingBuffer} by
+ * {@link DecodedAudio}, so a channel waiting for its decoder never holds up the others.
+ * <p>
+ * Gain changes are ramped. Channels which are {@link Channel#isDuckedBySpeech() ducked by speech}
+ * are turned down while speech is queued or playing, and a render that is cancelled while playing
+ * is faded out rather than cut off.
+ * <p>
+ * Each {@link Render} has futures which complete when its first and last frames have been played,
+ * judged by the line's frame position, on a callback thread so that whatever is chained to them
+ * never holds up the audio. The time from a render being submitted until its first frame is
+ * played is recorded as its time to first audio.
+ */
+public class SpeechRenderEngine {
+    private static final Logger log = LoggerFactory.getLogger(SpeechRenderEngine.class);
+
+    // AVS speech is 24 kHz mono; anything else is converted to it
+    public static final AudioFormat OUTPUT_FORMAT = new AudioFormat(24000f, 16, 1, true, false);
+
+    // short, so a sound played on an idle line is heard almost at once
+    private static final int LINE_BUFFER_MS = 100;
+    // how far mixing runs ahead of the line position. Less than the line buffer, so a sound
+    // starting while others play joins the mix sooner, while the rest of the buffer absorbs
+    // hiccups of the mixing thread
+    private static final int MIX_AHEAD_MS = 40;
+    // how much audio is mixed and written to the line at a time
+    private static final int PERIOD_MS = 10;
+    private static final int PERIOD_FRAMES =
+            (int) (OUTPUT_FORMAT.getFrameRate() * PERIOD_MS / 1000);
+    private static final int FRAME_SIZE = OUTPUT_FORMAT.getFrameSize();
+    // room for a period of the largest source format, 48 kHz stereo
+    private static final int INPUT_BUFFER_SIZE = PERIOD_FRAMES * 2 * 4 * 2;
+    private static final int CONVERTED_BUFFER_SIZE = PERIOD_FRAMES * FRAME_SIZE * 4;
+    // time for a gain change from silence to full volume
+    private static final int GAIN_RAMP_FRAMES = (int) (OUTPUT_FORMAT.getFrameRate() * 30 / 1000);
+    private static final int CANCEL_FADE_FRAMES = (int) (OUTPUT_FORMAT.getFrameRate() * 10 / 1000);
+    private static final float DUCKED_GAIN = 0.25f;
+    // how long to wait before polling again when every playing source is still being decoded
+    private static final long UNDERRUN_WAIT_MS = 2;
+    // give up waiting for the line position to reach the end of the audio after this much slack
+    private static final long MAX_DRAIN_SLACK_MS = 500;
+    // long enough that speech, earcons and alarms of one interaction share the line
+    private static final long LINE_IDLE_MS = 3000;
+    // decoding only holds a thread until the item's buffer is full, so a couple is enough
+    private static final int DECODER_THREADS = 2;
+
+    public enum Channel {
+        SPEECH(false),
+        EARCON(false),
+        ALERT(true);
+
+        private final boolean duckedBySpeech;
+
+        Channel(boolean duckedBySpeech) {
+            this.duckedBySpeech = duckedBySpeech;
+        }
+
+        public boolean isDuckedBySpeech() {
+            return duckedBySpeech;
+        }
+    }
+
+    /**
+     * One piece of audio submitted to the engine.
+     */
+    public class Render {
+        private final Channel channel;
+        private final PcmSource source;
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        // guarded by the engine; frames of the mix, -1 until known
+        private long startFrame = -1;
+        private long endFrame = -1;
+        private boolean isStarted;
+        private boolean cancelled;
+        private boolean completed;
+        private IOException error;
+        // false if other audio was playing or queued on its channel when it was submitted
+        private boolean submittedIdle;
+        private volatile long timeToFirstAudioNanos = -1;
+
+        private Render(Channel channel, PcmSource source) {
+            this.channel = channel;
+            this.source = source;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        /**
+         * @return a future completed once the first frame has been played.
+         */
+        public CompletableFuture<Void> getStarted() {
+            return started;
+        }
+
+        /**
+         * @return a future completed once the last frame has been played. It completes with a
+         *         {@link CancellationException} if the render was cancelled, or with the error if
+         *         the audio could not be decoded or played.
+         */
+        public CompletableFuture<Void> getFinished() {
+            return finished;
+        }
+
+        /**
+         * Fade the render out, or drop it if it hasn't started.
+         */
+        public void cancel() {
+            SpeechRenderEngine.this.cancel(this);
+        }
+
+        public long getPositionInMilliseconds() {
+            synchronized (SpeechRenderEngine.this) {
+                if (!isStarted) {
+                    return 0;
+                }
+                if (line == null) {
+                    // closed once idle, after the render was played out
+                    return endFrame < 0 ? 0 : framesToMillis(endFrame - startFrame);
+                }
+                long position = line.getLongFramePosition();
+                if (endFrame >= 0) {
+                    position = Math.min(position, endFrame);
+                }
+                return framesToMillis(position - startFrame);
+            }
+        }
+
+        /**
+         * @return milliseconds from submitting the render until its first frame was played, or
+         *         -1 if it hasn't been played yet.
+         */
+        public long getTimeToFirstAudioMs() {
+            long nanos = timeToFirstAudioNanos;
+            return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    /**
+     * The renders of one channel and the state of mixing its current one. Guarded by the engine.
+     */
+    private class ChannelMixer {
+        private final Channel channel;
+        private final Deque<Render> queue = new ArrayDeque<>();
+        // renders whose audio has been mixed, or is being mixed, but hasn't all been played
+        private final Deque<Render> inFlight = new ArrayDeque<>();
+        private final byte[] input = new byte[INPUT_BUFFER_SIZE];
+        private final byte[] converted = new byte[CONVERTED_BUFFER_SIZE];
+        private Render current;
+        private AudioFormat sourceFormat;
+        private AudioResampler resampler;
+        private int pendingInput;
+        private int convertedStart;
+        private int convertedEnd;
+        private boolean sourceEnded;
+        private float volume = 1f;
+        private float gain = 1f;
+        // fades the current render out once it is cancelled
+        private float fade = 1f;
+
+        ChannelMixer(Channel channel) {
+            this.channel = channel;
+        }
+
+        boolean isActive() {
+            return current != null || !queue.isEmpty();
+        }
+
+        /**
+         * Add up to a period of this channel's audio to the mix, continuing with the next render
+         * as soon as one ends.
+         *
+         * @return the number of frames of audio added.
+         */
+        int mix(float[] mix, long firstFrame, boolean speechActive) {
+            float target = volume * (channel.isDuckedBySpeech() && speechActive ? DUCKED_GAIN : 1f);
+            if (current == null && queue.isEmpty()) {
+                // nothing can be heard, so there is nothing to ramp
+                gain = target;
+                return 0;
+            }
+            int offset = 0;
+            int mixed = 0;
+            while (offset < PERIOD_FRAMES) {
+                if (current == null && !startNext()) {
+                    break;
+                }
+                if (current.cancelled && (current.startFrame < 0 || fade <= 0f)) {
+                    current.source.cancel();
+                    endCurrent();
+                    continue;
+                }
+                int frames = fill(PERIOD_FRAMES - offset, firstFrame + offset);
+                if (current == null) {
+                    // failed before producing anything
+                    continue;
+                }
+                if (frames > 0) {
+                    if (current.startFrame < 0) {
+                        current.startFrame = firstFrame + offset;
+                    }
+                    frames = add(mix, offset, frames, target);
+                    offset += frames;
+                    mixed += frames;
+                }
+                if (sourceEnded && convertedEnd - convertedStart < FRAME_SIZE) {
+                    current.endFrame = firstFrame + offset;
+                    endCurrent();
+                } else if (frames == 0) {
+                    // the source hasn't caught up; the rest of the period is silent
+                    break;
+                }
+            }
+            return mixed;
+        }
+
+        private boolean startNext() {
+            current = queue.poll();
+            if (current == null) {
+                return false;
+            }
+            inFlight.add(current);
+            fade = 1f;
+            return true;
+        }
+
+        private void endCurrent() {
+            current = null;
+            sourceFormat = null;
+            resampler = null;
+            pendingInput = 0;
+            convertedStart = 0;
+            convertedEnd = 0;
+            sourceEnded = false;
+        }
+
+        /**
+         * Convert source audio until there are enough frames, or the source has no more for now.
+         *
+         * @return the number of converted frames available, up to the number wanted.
+         */
+        private int fill(int wanted, long frame) {
+            try {
+                while (!sourceEnded && (convertedEnd - convertedStart) / FRAME_SIZE < wanted) {
+                    if (!convert()) {
+                        break;
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // IllegalArgumentException if the format can't be converted
+                log.error("Failed to render audio", e);
+                if (current.startFrame < 0) {
+                    // it fails once the audio ahead of it on the channel has played
+                    current.error = e instanceof IOException ? (IOException) e
+                            : new IOException("Failed to render audio", e);
+                    current.startFrame = frame;
+                    current.endFrame = frame;
+                    current.source.cancel();
+                    endCurrent();
+                    return 0;
+                }
+                // otherwise it just ends where the audio ran out
+                sourceEnded = true;
+            }
+            return Math.min(wanted, (convertedEnd - convertedStart) / FRAME_SIZE);
+        }
+
+        /**
+         * @return false if the source has nothing more for now.
+         */
+        private boolean convert() throws IOException {
+            if (sourceFormat == null) {
+                sourceFormat = current.source.getFormat();
+                if (sourceFormat == null) {
+                    return false;
+                }
+                if (AudioResampler.isConversionRequired(sourceFormat, OUTPUT_FORMAT)) {
+                    resampler = new AudioResampler(sourceFormat, OUTPUT_FORMAT);
+                }
+            }
+            if (convertedStart > 0) {
+                System.arraycopy(converted, convertedStart, converted, 0,
+                        convertedEnd - convertedStart);
+                convertedEnd -= convertedStart;
+                convertedStart = 0;
+            }
+            int space = converted.length - convertedEnd;
+            if (resampler == null) {
+                // already in the output format, so read straight into place
+                int count = current.source.readAvailable(converted, convertedEnd, space);
+                if (count < 0) {
+                    sourceEnded = true;
+                    return false;
+                }
+                convertedEnd += count;
+                return count > 0;
+            }
+
+            int frameSize = sourceFormat.getFrameSize();
+            int room = Math.min(input.length, resampler.getMaxInputSize(space)) - pendingInput;
+            if (room < frameSize) {
+                return false;
+            }
+            int count = current.source.readAvailable(input, pendingInput, room);
+            if (count < 0) {
+                sourceEnded = true;
+                return false;
+            }
+            count += pendingInput;
+            // only whole frames can be converted
+            int usable = count - count % frameSize;
+            convertedEnd += resampler.convert(input, 0, usable, converted, convertedEnd);
+            pendingInput = count - usable;
+            System.arraycopy(input, usable, input, 0, pendingInput);
+            return count > pendingInput;
+        }
+
+        /**
+         * Add converted frames to the mix, ramping the channel gain and any fade.
+         *
+         * @return the number of frames consumed.
+         */
+        private int add(float[] mix, int offset, int frames, float target) {
+            float fromFade = fade;
+            if (current.cancelled) {
+                frames = Math.min(frames, (int) Math.ceil(fade * CANCEL_FADE_FRAMES));
+                fade = Math.max(0f, fade - (float) frames / CANCEL_FADE_FRAMES);
+            }
+            float fromGain = gain;
+            gain = PcmMixer.approach(gain, target, (float) frames / GAIN_RAMP_FRAMES);
+            PcmMixer.add(converted, convertedStart, mix, offset, frames, fromGain * fromFade,
+                    gain * fade);
+            convertedStart += frames * FRAME_SIZE;
+            return frames;
+        }
+    }
+
+    private final ExecutorService decoderExecutor;
+    private final ExecutorService callbackExecutor;
+    private final Thread playbackThread;
+    private final ChannelMixer[] channels;
+    // only used on the playback thread
+    private final float[] mix = new float[PERIOD_FRAMES];
+    private final byte[] output = new byte[PERIOD_FRAMES * FRAME_SIZE];
+
+    // all guarded by this
+    private long framesWritten;
+    // when to stop waiting for the line to play what was written, 0 if not waiting
+    private long drainDeadline;
+    // when everything written had been played, 0 while there is audio
+    private long idleSinceMillis;
+    private long renderedCount;
+    private long totalTimeToFirstAudioNanos;
+    private long maxTimeToFirstAudioNanos;
+
+    // only opened on the playback thread
+    private volatile SourceDataLine line;
+    // set to have the idle playback thread open the line ahead of a sound
+    private boolean openRequested;
+
+    public SpeechRenderEngine() {
+        Channel[] values = Channel.values();
+        channels = new ChannelMixer[values.length];
+        for (Channel channel : values) {
+            channels[channel.ordinal()] = new ChannelMixer(channel);
+        }
+        decoderExecutor = Executors.newFixedThreadPool(DECODER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "SpeechDecoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        callbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SpeechRenderCallbacks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        playbackThread = new Thread(this::run, "SpeechRender");
+        playbackThread.setDaemon(true);
+        playbackThread.start();
+    }
+
+    /**
+     * Start decoding MP3 audio, to be rendered now or later.
+     */
+    public DecodedAudio decode(InputStream mp3) {
+        return DecodedAudio.decode(mp3, decoderExecutor);
+    }
+
+    /**
+     * Queue speech to be played after the speech already submitted.
+     */
+    public Render render(PcmSource source) {
+        return render(Channel.SPEECH, source);
+    }
+
+    /**
+     * Queue audio to be played on a channel after everything already submitted to it, and
+     * alongside the other channels.
+     */
+    public synchronized Render render(Channel channel, PcmSource source) {
+        Render render = new Render(channel, source);
+        ChannelMixer mixer = channels[channel.ordinal()];
+        render.submittedIdle = !mixer.isActive() && mixer.inFlight.isEmpty();
+        mixer.queue.add(render);
+        notifyAll();
+        return render;
+    }
+
+    /**
+     * @return a render which is never played because of the error, such as a sound that could not
+     *         be found. Its futures complete with the error.
+     */
+    public synchronized Render failed(Channel channel, IOException error) {
+        Render render = new Render(channel, null);
+        complete(render, error);
+        return render;
+    }
+
+    /**
+     * Open the output line now if it is closed, for a sound which has to start on time such as an
+     * alarm. The line is opened on the playback thread once it is idle.
+     */
+    public synchronized void prepare() {
+        // keeps an idle line open for the sound
+        idleSinceMillis = 0;
+        if (line == null) {
+            openRequested = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Set the volume of a channel, from 0 to 1. The change is ramped.
+     */
+    public synchronized void setVolume(Channel channel, float volume) {
+        channels[channel.ordinal()].volume = Math.max(0f, Math.min(1f, volume));
+    }
+
+    /**
+     * Cancel every render on every channel.
+     */
+    public synchronized void stop() {
+        List<Render> renders = new ArrayList<>();
+        for (ChannelMixer mixer : channels) {
+            renders.addAll(mixer.inFlight);
+            renders.addAll(mixer.queue);
+        }
+        cancel(renders);
+    }
+
+    /**
+     * Cancel several renders at once, so that none of them starts playing while the others are
+     * being cancelled.
+     */
+    public synchronized void cancel(Collection<Render> renders) {
+        for (Render render : renders) {
+            cancel(render);
+        }
+    }
+
+    /**
+     * @return average time to first audio of the renders played so far, in milliseconds.
+     */
+    public synchronized long getAverageTimeToFirstAudioMs() {
+        return renderedCount == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMillis(totalTimeToFirstAudioNanos / renderedCount);
+    }
+
+    public synchronized long getMaxTimeToFirstAudioMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxTimeToFirstAudioNanos);
+    }
+
+    private synchronized void cancel(Render render) {
+        if (render.cancelled || render.completed) {
+            return;
+        }
+        render.cancelled = true;
+        ChannelMixer mixer = channels[render.channel.ordinal()];
+        mixer.queue.remove(render);
+        mixer.inFlight.remove(render);
+        if (mixer.current != render) {
+            render.source.cancel();
+        }
+        // a playing render is faded out by the mixer, which cancels its source after
+        complete(render, new CancellationException());
+    }
+
+    private void run() {
+        try {
+            openLine();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            // tried again for the first render
+            log.warn("Could not open the speech output line", e);
+        }
+        while (true) {
+            try {
+                mixNext();
+                waitForRoom();
+                line.write(output, 0, output.length);
+                synchronized (this) {
+                    framesWritten += PERIOD_FRAMES;
+                    updateProgress(false);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Speech rendering failed", e);
+                failAll(new IOException("Speech rendering failed", e));
+            }
+        }
+    }
+
+    /**
+     * Wait until there is audio to mix and mix the next period of it into the output buffer.
+     */
+    private synchronized void mixNext() throws InterruptedException {
+        while (true) {
+            if (!isAnyChannelActive()) {
+                if (openRequested) {
+                    openRequested = false;
+                    try {
+                        openLine();
+                    } catch (LineUnavailableException | IllegalArgumentException e) {
+                        // tried again for the next render
+                        log.warn("Could not open the speech output line", e);
+                    }
+                    continue;
+                }
+                if (!waitUntilPlayedOrNext()) {
+                    waitIdle();
+                }
+                continue;
+            }
+            drainDeadline = 0;
+            idleSinceMillis = 0;
+            if (line == null) {
+                try {
+                    openLine();
+                } catch (LineUnavailableException | IllegalArgumentException e) {
+                    // IllegalArgumentException if there is no line for the output format
+                    log.error("Failed to open the speech output line", e);
+                    failAll(new IOException("Failed to open the speech output line", e));
+                    continue;
+                }
+            }
+
+            Arrays.fill(mix, 0f);
+            boolean speechActive = channels[Channel.SPEECH.ordinal()].isActive();
+            int mixed = 0;
+            for (ChannelMixer mixer : channels) {
+                mixed += mixer.mix(mix, framesWritten, speechActive);
+            }
+            if (mixed > 0) {
+                PcmMixer.toPcm(mix, PERIOD_FRAMES, output);
+                return;
+            }
+            // every source is still being decoded, or the renders just failed or ended
+            updateProgress(false);
+            if (isAnyChannelActive()) {
+                wait(UNDERRUN_WAIT_MS);
+            }
+        }
+    }
+
+    /**
+     * Wait for a render with nothing left to play, closing the line once it has been idle for
+     * LINE_IDLE_MS. Called with the lock held.
+     */
+    private void waitIdle() throws InterruptedException {
+        if (line == null) {
+            wait();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (idleSinceMillis == 0) {
+            idleSinceMillis = now;
+        }
+        long remaining = idleSinceMillis + LINE_IDLE_MS - now;
+        if (remaining > 0) {
+            wait(remaining);
+            return;
+        }
+        log.debug("Closing the idle speech output line");
+        SourceDataLine idleLine = line;
+        line = null;
+        idleSinceMillis = 0;
+        idleLine.stop();
+        idleLine.close();
+    }
+
+    /**
+     * Wait until the line has played enough that the next period stays within MIX_AHEAD_MS of
+     * the line position.
+     */
+    private synchronized void waitForRoom() throws InterruptedException {
+        long ahead;
+        while ((ahead = framesWritten - line.getLongFramePosition())
+                > OUTPUT_FORMAT.getFrameRate() * MIX_AHEAD_MS / 1000) {
+            wait(Math.max(1, framesToMillis(ahead) - MIX_AHEAD_MS));
+        }
+    }
+
+    private boolean isAnyChannelActive() {
+        for (ChannelMixer mixer : channels) {
+            if (mixer.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void openLine() throws LineUnavailableException {
+        if (line != null) {
+            return;
+        }
+        SourceDataLine newLine = AudioSystem.getSourceDataLine(OUTPUT_FORMAT);
+        int bufferSize = (int) (OUTPUT_FORMAT.getFrameRate() * LINE_BUFFER_MS / 1000)
+                * FRAME_SIZE;
+        newLine.open(OUTPUT_FORMAT, bufferSize);
+        newLine.start();
+        synchronized (this) {
+            line = newLine;
+            framesWritten = newLine.getLongFramePosition();
+        }
+    }
+
+    /**
+     * Complete every render with the error, for example because there is no line to play them.
+     */
+    private synchronized void failAll(IOException error) {
+        for (ChannelMixer mixer : channels) {
+            List<Render> renders = new ArrayList<>(mixer.inFlight);
+            renders.addAll(mixer.queue);
+            mixer.inFlight.clear();
+            mixer.queue.clear();
+            mixer.endCurrent();
+            for (Render render : renders) {
+                render.source.cancel();
+                complete(render, error);
+            }
+        }
+    }
+
+    /**
+     * Wait for the line to play what was written, for at most as long as that should take. Called
+     * with the lock held, so a new render wakes it up early.
+     *
+     * @return false once everything written has been played.
+     */
+    private boolean waitUntilPlayedOrNext() throws InterruptedException {
+        if (!hasRendersInFlight()) {
+            drainDeadline = 0;
+            return false;
+        }
+        if (line == null) {
+            updateProgress(true);
+            return false;
+        }
+        long behind = framesWritten - line.getLongFramePosition();
+        if (behind <= 0) {
+            updateProgress(false);
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (drainDeadline == 0) {
+            drainDeadline = now + framesToMillis(behind) + MAX_DRAIN_SLACK_MS;
+        }
+        if (now >= drainDeadline) {
+            // the line's position didn't quite reach the end of what was written; treat it as
+            // played and count from where the line says it is
+            log.debug("Speech line stopped {} frames short", behind);
+            updateProgress(true);
+            framesWritten = line.getLongFramePosition();
+            drainDeadline = 0;
+            return false;
+        }
+        wait(Math.max(1, Math.min(framesToMillis(behind), drainDeadline - now)));
+        updateProgress(false);
+        return true;
+    }
+
+    private boolean hasRendersInFlight() {
+        for (ChannelMixer mixer : channels) {
+            if (!mixer.inFlight.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Complete the futures of renders whose first or last frame has been played since the last
+     * call.
+     */
+    private synchronized void updateProgress(boolean drained) {
+        long position = drained || line == null ? Long.MAX_VALUE : line.getLongFramePosition();
+        for (ChannelMixer mixer : channels) {
+            Iterator<Render> iterator = mixer.inFlight.iterator();
+            while (iterator.hasNext()) {
+                Render render = iterator.next();
+                if (!render.isStarted && render.startFrame >= 0 && position >= render.startFrame
+                        && render.error == null) {
+                    markStarted(render);
+                }
+                if (render.endFrame < 0 || position < render.endFrame) {
+                    break;
+                }
+                iterator.remove();
+                complete(render, render.error);
+            }
+        }
+    }
+
+    private void markStarted(Render render) {
+        render.isStarted = true;
+        long timeToFirstAudio = System.nanoTime() - render.submittedNanos;
+        render.timeToFirstAudioNanos = timeToFirstAudio;
+        if (render.submittedIdle) {
+            // audio queued behind other audio waits for it, which says nothing about the engine
+            renderedCount++;
+            totalTimeToFirstAudioNanos += timeToFirstAudio;
+            maxTimeToFirstAudioNanos = Math.max(maxTimeToFirstAudioNanos, timeToFirstAudio);
+            log.debug("Time to first audio {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeToFirstAudio));
+        }
+        callbackExecutor.execute(() -> render.started.complete(null));
+    }
+
+    private void complete(Render render, Throwable error) {
+        render.completed = true;
+        callbackExecutor.execute(() -> {
+            if (error == null) {
+                render.finished.complete(null);
+            } else {
+                render.started.completeExceptionally(error);
+                render.finished.completeExceptionally(error);
+            }
+        });
+    }
+
+    private long framesToMillis(long frames) {
+        return (long) (Math.max(0, frames) * 1000 / OUTPUT_FORMAT.getFrameRate());
+    }
+}
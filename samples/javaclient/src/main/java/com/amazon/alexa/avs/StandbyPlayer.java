@@ -0,0 +1,180 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.message.response.audioplayer.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import uk.co.caprica.vlcj.player.MediaPlayer;
+import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
+
+/**
+ * Opens the next stream of the play queue on a second media player while the current one is still
+ * playing. VLC resolves playlists, connects and fills its cache, then holds the stream paused at
+ * its first sample, so that at the end of the current item it only has to be resumed.
+ */
+public class StandbyPlayer extends MediaPlayerEventAdapter {
+    private static final Logger log = LoggerFactory.getLogger(StandbyPlayer.class);
+
+    // the media waits paused instead of playing once it is opened
+    private static final String START_PAUSED = ":start-paused";
+
+    private final MediaPlayer player;
+    private final Stream stream;
+    private final List<String> urls;
+    private final String location;
+    private final String[] options;
+    // the urls to try and those opened so far, added to on the player's event thread
+    private final Set<String> streamUrls = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<String> attemptedUrls = Collections.synchronizedSet(new HashSet<String>());
+
+    private volatile boolean buffered;
+    private volatile boolean failed;
+    private volatile boolean ended;
+    private volatile long resumedNanos;
+
+    /**
+     * @param urls
+     *            the urls to try for the stream, the first of which is opened.
+     * @param location
+     *            where the media player opens the first url from.
+     */
+    public StandbyPlayer(MediaPlayer player, Stream stream, List<String> urls, String location) {
+        this.player = player;
+        this.stream = stream;
+        this.urls = urls;
+        this.location = location;
+        long offset = stream.getOffsetInMilliseconds();
+        options = offset > 0 ? new String[] { START_PAUSED, ":start-time=" + offset / 1000.0 }
+                : new String[] { START_PAUSED };
+    }
+
+    /**
+     * Start opening the stream.
+     *
+     * @return false if the media player didn't accept it.
+     */
+    public boolean start() {
+        String url = urls.get(0);
+        log.debug("Prefetching {}", url);
+        player.addMediaPlayerEventListener(this);
+        // in case the media player doesn't support starting paused
+        player.mute(true);
+        streamUrls.addAll(urls);
+        attemptedUrls.add(url);
+        return player.playMedia(location, options);
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    /**
+     * @return true if the stream can still be swapped in.
+     */
+    public boolean isUsable() {
+        return !failed && !ended;
+    }
+
+    /**
+     * @return true once the media player has filled its cache.
+     */
+    public boolean isBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Start playing out the stream.
+     */
+    public void resume(int volume, boolean muted) {
+        if (resumedNanos != 0) {
+            return;
+        }
+        player.setVolume(volume);
+        player.mute(muted);
+        player.setPause(false);
+        resumedNanos = System.nanoTime();
+    }
+
+    /**
+     * @return how long the stream has been playing out since {@link #resume(int, boolean)}.
+     */
+    public long getPlayedMs() {
+        return resumedNanos == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - resumedNanos);
+    }
+
+    public MediaPlayer getPlayer() {
+        return player;
+    }
+
+    /**
+     * Stop receiving events from the media player, which keeps playing if resumed.
+     */
+    public void detach() {
+        player.removeMediaPlayerEventListener(this);
+    }
+
+    /**
+     * @return the urls to try for the stream, including any playlist entries found.
+     */
+    public Set<String> getStreamUrls() {
+        synchronized (streamUrls) {
+            return new HashSet<String>(streamUrls);
+        }
+    }
+
+    /**
+     * @return the urls of the stream that the media player has opened, including playlist entries.
+     */
+    public Set<String> getAttemptedUrls() {
+        synchronized (attemptedUrls) {
+            return new HashSet<String>(attemptedUrls);
+        }
+    }
+
+    @Override
+    public void buffering(MediaPlayer mediaPlayer, float newCache) {
+        if (newCache >= 100.0f) {
+            buffered = true;
+        }
+    }
+
+    @Override
+    public void finished(MediaPlayer mediaPlayer) {
+        List<String> items = mediaPlayer.subItems();
+        streamUrls.addAll(items);
+        // a playlist opens its first entry
+        for (String mrl : items) {
+            if (attemptedUrls.add(mrl)) {
+                mediaPlayer.playMedia(mrl, options);
+                return;
+            }
+        }
+        ended = true;
+    }
+
+    @Override
+    public void error(MediaPlayer mediaPlayer) {
+        log.warn("Error prefetching: {}", mediaPlayer.mrl());
+        failed = true;
+    }
+}
@@ -0,0 +1,87 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * {@link AudioSource} that generates a fixed length signal for every recording: a sine tone,
+ * white noise or silence. Useful to exercise the recognize path without any audio assets.
+ */
+public class SyntheticAudioSource extends PacedAudioSource {
+    private static final double AMPLITUDE = Short.MAX_VALUE * 0.3;
+
+    public enum Signal {
+        SINE,
+        NOISE,
+        SILENCE;
+
+        public static Signal fromString(String signal) {
+            return valueOf(signal.toUpperCase());
+        }
+    }
+
+    private final Signal signal;
+    private final double radiansPerSample;
+    private final long samplesPerRecording;
+    private final Random random = new Random(0);
+    private long sampleIndex;
+
+    public SyntheticAudioSource(AudioFormat audioFormat, Signal signal, int frequencyHz,
+            int durationMs, double speed) {
+        super(audioFormat, speed);
+        if (audioFormat.getSampleSizeInBits() != 16 || audioFormat.getChannels() != 1
+                || audioFormat.isBigEndian()) {
+            throw new IllegalArgumentException("Unsupported format " + audioFormat);
+        }
+        this.signal = signal;
+        radiansPerSample = 2 * Math.PI * frequencyHz / audioFormat.getSampleRate();
+        samplesPerRecording = (long) audioFormat.getSampleRate() * durationMs / 1000;
+    }
+
+    @Override
+    protected void openSource() {
+        sampleIndex = 0;
+    }
+
+    @Override
+    protected int readSource(byte[] buffer, int offset, int length) {
+        int samples = (int) Math.min(length / 2, samplesPerRecording - sampleIndex);
+        if (samples <= 0) {
+            return -1;
+        }
+        for (int i = 0; i < samples; i++) {
+            int value;
+            switch (signal) {
+                case SINE:
+                    value = (int) (AMPLITUDE * Math.sin(radiansPerSample * sampleIndex));
+                    break;
+                case NOISE:
+                    value = (int) (AMPLITUDE * (2 * random.nextDouble() - 1));
+                    break;
+                default:
+                    value = 0;
+            }
+            buffer[offset++] = (byte) value;
+            buffer[offset++] = (byte) (value >> 8);
+            sampleIndex++;
+        }
+        return samples * 2;
+    }
+
+    @Override
+    protected void closeSource() {
+    }
+}
@@ -0,0 +1,454 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One thread keeping the time for every periodic or delayed task of the client: progress reports,
+ * HTTP/2 pings, user inactivity reports and token refreshes. Tasks live in a hierarchical timing
+ * wheel, so scheduling and cancelling are constant time, and the thread only wakes up when a slot
+ * of the wheel holding tasks is due rather than on every tick. Due tasks are handed to the
+ * executor they were scheduled with, so a slow callback never delays the others.
+ * <p>
+ * Tasks never run before their deadline; they may run up to one tick late. A repeating task which
+ * falls behind, for instance after the device was suspended, skips the periods it missed instead
+ * of running them in a burst. Runs of a repeating task never overlap: a period which comes while
+ * the previous run is still going, or still waiting for its executor, is skipped.
+ */
+public class TimerWheel {
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 64;
+    // about 35 years, which keeps the levels of the wheel within a long
+    private static final long MAX_DELAY_MS = 1L << 40;
+
+    /**
+     * Source of time for the wheel and its users.
+     */
+    public interface Clock {
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+
+        /**
+         * @return monotonic time used for deadlines, as {@link System#nanoTime()}.
+         */
+        long nanoTime();
+
+        /**
+         * @return wall-clock time, as {@link System#currentTimeMillis()}.
+         */
+        long currentTimeMillis();
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public interface Timeout {
+        /**
+         * Stop the task from running again. A run already handed to its executor still happens.
+         *
+         * @return false if the task had already been cancelled or was not going to run again.
+         */
+        boolean cancel();
+    }
+
+    private static TimerWheel instance;
+
+    private final Clock clock;
+    // deadlines are in milliseconds since the wheel was created, so they are never negative
+    private final long originNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition bucketAdded = lock.newCondition();
+    private final PriorityQueue<Bucket> dueBuckets =
+            new PriorityQueue<>(Comparator.comparingLong((Bucket bucket) -> bucket.expiration));
+    private final Wheel wheel;
+    private final ExecutorService callbackExecutor;
+
+    /**
+     * @return the wheel shared by the whole client.
+     */
+    public static synchronized TimerWheel getInstance() {
+        if (instance == null) {
+            instance = new TimerWheel(Clock.SYSTEM);
+        }
+        return instance;
+    }
+
+    public TimerWheel(Clock clock) {
+        this(clock, true);
+    }
+
+    /**
+     * @param startThread false for tests, which then hand out due tasks with {@link #runDue()}.
+     */
+    TimerWheel(Clock clock, boolean startThread) {
+        this.clock = clock;
+        originNanos = clock.nanoTime();
+        wheel = new Wheel(TICK_MS, now());
+        // threads only exist while callbacks are running
+        callbackExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "TimerWheelCallback");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (startThread) {
+            Thread thread = new Thread(this::run, "TimerWheel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Run the task once after the delay, on a thread of the wheel's own.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit, callbackExecutor);
+    }
+
+    /**
+     * Run the task once after the delay, on the executor.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        return add(new Task(task, executor, toDeadline(delay, unit), 0));
+    }
+
+    /**
+     * Run the task once at the given wall-clock time, on a thread of the wheel's own. A time in the
+     * past runs it right away.
+     */
+    public Timeout scheduleAt(Runnable task, long epochMillis) {
+        return schedule(task, epochMillis - clock.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the task after the initial delay and then every period, on a thread of the wheel's own.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period,
+            TimeUnit unit) {
+        return scheduleAtFixedRate(task, initialDelay, period, unit, callbackExecutor);
+    }
+
+    /**
+     * Run the task after the initial delay and then every period, on the executor.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period,
+            TimeUnit unit, Executor executor) {
+        long periodMs = Math.max(1, unit.toMillis(period));
+        return add(new Task(task, executor, toDeadline(initialDelay, unit), periodMs));
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - originNanos);
+    }
+
+    private long toDeadline(long delay, TimeUnit unit) {
+        // rounded up to the next millisecond so that the task never runs early
+        long now = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - originNanos + 999999);
+        return now + Math.max(0, Math.min(unit.toMillis(delay), MAX_DELAY_MS));
+    }
+
+    private Task add(Task task) {
+        List<Task> due = new ArrayList<>(1);
+        lock.lock();
+        try {
+            insert(task, due);
+        } finally {
+            lock.unlock();
+        }
+        dispatch(due);
+        return task;
+    }
+
+    // called with the lock held
+    private void insert(Task task, List<Task> due) {
+        if (task.cancelled) {
+            return;
+        }
+        if (!wheel.add(task)) {
+            due.add(task);
+            if (task.periodMs > 0) {
+                long now = now();
+                long deadline = task.deadline + task.periodMs;
+                if (deadline <= now) {
+                    deadline += (now - deadline) / task.periodMs * task.periodMs + task.periodMs;
+                }
+                task.deadline = deadline;
+                wheel.add(task);
+            }
+        }
+    }
+
+    private void dispatch(List<Task> due) {
+        for (Task task : due) {
+            if (!task.running.compareAndSet(false, true)) {
+                log.debug("Skipping a period of a timed task whose last run is still going");
+                continue;
+            }
+            try {
+                task.executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.running.set(false);
+                log.warn("Executor rejected a timed task", e);
+            }
+        }
+    }
+
+    /**
+     * Hand every task due by the clock to its executor, on the calling thread. Only for a wheel
+     * created without its own thread.
+     */
+    void runDue() {
+        List<Task> due = new ArrayList<>();
+        lock.lock();
+        try {
+            takeDue(due);
+        } finally {
+            lock.unlock();
+        }
+        dispatch(due);
+    }
+
+    private void run() {
+        List<Task> due = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                if (!takeDue(due)) {
+                    Bucket bucket = dueBuckets.peek();
+                    if (bucket == null) {
+                        bucketAdded.awaitUninterruptibly();
+                    } else {
+                        bucketAdded.await(bucket.expiration - now(), TimeUnit.MILLISECONDS);
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                log.warn("TimerWheel thread interrupted", e);
+            } finally {
+                lock.unlock();
+            }
+            dispatch(due);
+            due.clear();
+        }
+    }
+
+    /**
+     * Empty every slot which is due, called with the lock held.
+     *
+     * @return false if no slot was due.
+     */
+    private boolean takeDue(List<Task> due) {
+        boolean taken = false;
+        long now = now();
+        for (Bucket bucket = dueBuckets.peek(); bucket != null && bucket.expiration <= now;
+                bucket = dueBuckets.peek()) {
+            dueBuckets.poll();
+            taken = true;
+            wheel.advanceClock(bucket.expiration);
+            // every task is placed again: it either moves to a finer level or is due
+            for (Task task = bucket.takeAll(); task != null;) {
+                Task next = task.next;
+                task.next = null;
+                insert(task, due);
+                task = next;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * One level of the wheel. Each slot covers one tick; times beyond the last slot go to a coarser
+     * level whose tick is this level's whole span.
+     */
+    private class Wheel {
+        private final long tickMs;
+        private final long intervalMs;
+        private final Bucket[] buckets = new Bucket[WHEEL_SIZE];
+        private long currentTime;
+        private Wheel overflow;
+
+        Wheel(long tickMs, long startMs) {
+            this.tickMs = tickMs;
+            intervalMs = tickMs * WHEEL_SIZE;
+            currentTime = startMs - startMs % tickMs;
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        /**
+         * @return false if the task is due.
+         */
+        boolean add(Task task) {
+            long deadline = task.deadline;
+            if (deadline <= currentTime) {
+                return false;
+            }
+            // the finest level rounds up so that tasks never run early; coarser levels round
+            // down so that their tasks move to a finer level before they are due
+            long tick = tickMs == TICK_MS ? (deadline + tickMs - 1) / tickMs : deadline / tickMs;
+            if (tick * tickMs == currentTime) {
+                // only at a coarser level, for a task just beyond the span of the finer one
+                tick++;
+            }
+            if (tick * tickMs < currentTime + intervalMs) {
+                Bucket bucket = buckets[(int) (tick % WHEEL_SIZE)];
+                bucket.add(task);
+                if (bucket.expiration != tick * tickMs) {
+                    bucket.expiration = tick * tickMs;
+                    dueBuckets.offer(bucket);
+                    if (dueBuckets.peek() == bucket) {
+                        bucketAdded.signal();
+                    }
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Wheel(intervalMs, currentTime);
+            }
+            return overflow.add(task);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - timeMs % tickMs;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tasks due in one slot, as a doubly linked list so that a task is removed in constant time.
+     */
+    private static class Bucket {
+        private long expiration = -1;
+        private Task head;
+
+        void add(Task task) {
+            task.bucket = this;
+            task.prev = null;
+            task.next = head;
+            if (head != null) {
+                head.prev = task;
+            }
+            head = task;
+        }
+
+        void remove(Task task) {
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            task.bucket = null;
+            task.prev = null;
+            task.next = null;
+        }
+
+        /**
+         * Empty the slot, which can then take a new expiration.
+         *
+         * @return the first of the tasks, linked through next.
+         */
+        Task takeAll() {
+            Task first = head;
+            for (Task task = head; task != null; task = task.next) {
+                task.bucket = null;
+                task.prev = null;
+            }
+            head = null;
+            expiration = -1;
+            return first;
+        }
+    }
+
+    private class Task implements Timeout, Runnable {
+        private final Runnable runnable;
+        private final Executor executor;
+        private final long periodMs;
+        // from the moment a run is handed to the executor until it returns
+        private final AtomicBoolean running = new AtomicBoolean();
+        private long deadline;
+        private boolean cancelled;
+        private Bucket bucket;
+        private Task prev;
+        private Task next;
+
+        Task(Runnable runnable, Executor executor, long deadline, long periodMs) {
+            this.runnable = runnable;
+            this.executor = executor;
+            this.deadline = deadline;
+            this.periodMs = periodMs;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } finally {
+                running.set(false);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (cancelled || bucket == null) {
+                    cancelled = true;
+                    return false;
+                }
+                cancelled = true;
+                // the slot stays queued; the thread finds it empty when it is due
+                bucket.remove(this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
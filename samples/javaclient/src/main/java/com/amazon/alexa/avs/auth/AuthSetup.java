@@ -12,6 +12,7 @@
  */
 package com.amazon.alexa.avs.auth;
 
+import com.amazon.alexa.avs.TimerWheel;
 import com.amazon.alexa.avs.auth.companionapp.CodeChallengeWorkflow;
 import com.amazon.alexa.avs.auth.companionapp.CompanionAppAuthManager;
 import com.amazon.alexa.avs.auth.companionapp.OAuth2ClientForPkce;
@@ -66,7 +67,7 @@ public class AuthSetup implements AccessTokenListener {
 		if (deviceConfig.getProvisioningMethod() == ProvisioningMethod.COMPANION_APP) {
 			OAuth2ClientForPkce oAuthClient = new OAuth2ClientForPkce(deviceConfig.getCompanionAppInfo().getLwaUrl());
 			CompanionAppAuthManager authManager = new CompanionAppAuthManager(deviceConfig, oAuthClient,
-					CodeChallengeWorkflow.getInstance(), this);
+					CodeChallengeWorkflow.getInstance(), this, TimerWheel.getInstance());
 
 			final CompanionAppProvisioningServer registrationServer = new CompanionAppProvisioningServer(authManager,
 					deviceConfig);
@@ -85,7 +86,7 @@ public class AuthSetup implements AccessTokenListener {
 		} else if (deviceConfig.getProvisioningMethod() == ProvisioningMethod.COMPANION_SERVICE) {
 			CompanionServiceClient remoteProvisioningClient = new CompanionServiceClient(deviceConfig);
 			final CompanionServiceAuthManager authManager = new CompanionServiceAuthManager(deviceConfig,
-					remoteProvisioningClient, regCodeDisplayHandler, this);
+					remoteProvisioningClient, regCodeDisplayHandler, this, TimerWheel.getInstance());
 
 			Thread provisioningThread = new Thread() {
 				@Override
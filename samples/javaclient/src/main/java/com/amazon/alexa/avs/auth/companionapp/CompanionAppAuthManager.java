@@ -12,6 +12,7 @@
  */
 package com.amazon.alexa.avs.auth.companionapp;
 
+import com.amazon.alexa.avs.TimerWheel;
 import com.amazon.alexa.avs.auth.AccessTokenListener;
 import com.amazon.alexa.avs.config.DeviceConfig;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionAppInformation;
@@ -20,12 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.sql.Date;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Entry points for dealing with authentication and provisioning. Owns exchanging credentials for
@@ -76,7 +75,12 @@ public class CompanionAppAuthManager {
 
     private final AccessTokenListener accessTokenListener;
 
-    private final Timer refreshTimer;
+    private final TimerWheel timerWheel;
+
+    /**
+     * The pending refresh, replaced whenever new tokens arrive.
+     */
+    private TimerWheel.Timeout refreshTimeout;
 
     /**
      * Creates an {@link CompanionAppAuthManager} object.
@@ -85,19 +89,21 @@ public class CompanionAppAuthManager {
      * @param oAuth2Client
      * @param codeChallengeWorkflow
      * @param accessTokenListener
+     * @param timerWheel
      */
     public CompanionAppAuthManager(DeviceConfig deviceConfig, OAuth2ClientForPkce oAuth2Client,
-            CodeChallengeWorkflow codeChallengeWorkflow, AccessTokenListener accessTokenListener) {
+            CodeChallengeWorkflow codeChallengeWorkflow, AccessTokenListener accessTokenListener,
+            TimerWheel timerWheel) {
         this.deviceConfig = deviceConfig;
         this.pkceOAuth2Client = oAuth2Client;
         this.codeChallengeWorkflow = codeChallengeWorkflow;
         this.accessTokenListener = accessTokenListener;
-        this.refreshTimer = new Timer();
+        this.timerWheel = timerWheel;
 
         if (deviceConfig.getCompanionAppInfo() != null
                 && deviceConfig.getCompanionAppInfo().getClientId() != null
                 && deviceConfig.getCompanionAppInfo().getRefreshToken() != null) {
-            this.refreshTimer.schedule(new RefreshTokenTimerTask(), 0);
+            scheduleRefresh(0);
         }
     }
 
@@ -171,11 +177,19 @@ public class CompanionAppAuthManager {
         info.setRefreshToken(tokens.getRefreshToken());
         deviceConfig.saveConfig();
 
-        refreshTimer.schedule(new RefreshTokenTimerTask(), new Date(tokens.getExpiresTime()));
+        scheduleRefresh(tokens.getExpiresTime() - timerWheel.getClock().currentTimeMillis());
 
         accessTokenListener.onAccessTokenReceived(tokens.getAccessToken());
     }
 
+    private synchronized void scheduleRefresh(long delayInMs) {
+        if (refreshTimeout != null) {
+            refreshTimeout.cancel();
+        }
+        refreshTimeout = timerWheel.schedule(new RefreshTokenTask(0), delayInMs,
+                TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Exchanges a refreshToken for an accessToken.
      *
@@ -234,26 +248,31 @@ public class CompanionAppAuthManager {
     }
 
     /**
-     * TimerTask for refreshing accessTokens every hour.
+     * Task for refreshing accessTokens every hour. A failed attempt is retried later on the
+     * {@link TimerWheel} rather than by blocking its thread.
      */
-    private class RefreshTokenTimerTask extends TimerTask {
+    private class RefreshTokenTask implements Runnable {
+        private final int tries;
+
+        RefreshTokenTask(int tries) {
+            this.tries = tries;
+        }
+
         @Override
         public void run() {
-            int tries = 0;
-            while (tries < TOKEN_REFRESH_RETRY_COUNT) {
-                try {
-                    refreshTokens();
-                    break;
-                } catch (IOException e) {
-                    try {
-                        log.error(
-                                "There was a problem connecting to the LWA service. Trying again in {} seconds",
-                                TOKEN_REFRESH_RETRY_INTERVAL_IN_S);
-                        Thread.sleep(TOKEN_REFRESH_RETRY_INTERVAL_IN_S);
-                    } catch (InterruptedException ie) {
-                        log.error("Interrupted while waiting to retry connecting to LWA", ie);
+            try {
+                refreshTokens();
+            } catch (IOException e) {
+                if (tries + 1 < TOKEN_REFRESH_RETRY_COUNT) {
+                    log.error(
+                            "There was a problem connecting to the LWA service. Trying again in {} seconds",
+                            TOKEN_REFRESH_RETRY_INTERVAL_IN_S);
+                    synchronized (CompanionAppAuthManager.this) {
+                        refreshTimeout = timerWheel.schedule(new RefreshTokenTask(tries + 1),
+                                TOKEN_REFRESH_RETRY_INTERVAL_IN_S, TimeUnit.SECONDS);
                     }
-                    tries++;
+                } else {
+                    log.error("Failed to refresh the access token", e);
                 }
             }
         }
@@ -12,6 +12,7 @@
  */
 package com.amazon.alexa.avs.auth.companionservice;
 
+import com.amazon.alexa.avs.TimerWheel;
 import com.amazon.alexa.avs.auth.AccessTokenListener;
 import com.amazon.alexa.avs.auth.OAuth2AccessToken;
 import com.amazon.alexa.avs.auth.companionservice.CompanionServiceClient.RemoteServiceException;
@@ -19,9 +20,6 @@ import com.amazon.alexa.avs.config.DeviceConfig;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionServiceInformation;
 
 import java.io.IOException;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class CompanionServiceAuthManager {
     /**
@@ -37,18 +35,21 @@ public class CompanionServiceAuthManager {
 
     private final AccessTokenListener accessTokenListener;
 
-    private final Timer refreshTimer;
+    private final TimerWheel timerWheel;
+
+    private TimerWheel.Timeout refreshTimeout;
 
     private OAuth2AccessToken token;
 
     public CompanionServiceAuthManager(DeviceConfig deviceConfig,
             CompanionServiceClient remoteProvisioningClient,
-            RegCodeDisplayHandler regCodeDisplayHandler, AccessTokenListener accessTokenListener) {
+            RegCodeDisplayHandler regCodeDisplayHandler, AccessTokenListener accessTokenListener,
+            TimerWheel timerWheel) {
         this.deviceConfig = deviceConfig;
         this.companionServiceClient = remoteProvisioningClient;
         this.regCodeDisplayHandler = regCodeDisplayHandler;
         this.accessTokenListener = accessTokenListener;
-        this.refreshTimer = new Timer();
+        this.timerWheel = timerWheel;
     }
 
     public void startRemoteProvisioning() {
@@ -102,8 +103,7 @@ public class CompanionServiceAuthManager {
                     info.setSessionId(sessionId);
                     deviceConfig.saveConfig();
 
-                    refreshTimer.schedule(new RefreshTokenTimerTask(),
-                            new Date(token.getExpiresTime()));
+                    scheduleRefresh(token.getExpiresTime());
 
                     accessTokenListener.onAccessTokenReceived(token.getAccessToken());
                     break;
@@ -121,19 +121,16 @@ public class CompanionServiceAuthManager {
         }
     }
 
-    private void refreshTokens() {
-        if (deviceConfig.getCompanionServiceInfo() != null) {
-            requestAccessToken(deviceConfig.getCompanionServiceInfo().getSessionId());
+    private synchronized void scheduleRefresh(long expiresTime) {
+        if (refreshTimeout != null) {
+            refreshTimeout.cancel();
         }
+        refreshTimeout = timerWheel.scheduleAt(this::refreshTokens, expiresTime);
     }
 
-    /**
-     * TimerTask for refreshing accessTokens every hour.
-     */
-    private class RefreshTokenTimerTask extends TimerTask {
-        @Override
-        public void run() {
-            refreshTokens();
+    private void refreshTokens() {
+        if (deviceConfig.getCompanionServiceInfo() != null) {
+            requestAccessToken(deviceConfig.getCompanionServiceInfo().getSessionId());
         }
     }
 }
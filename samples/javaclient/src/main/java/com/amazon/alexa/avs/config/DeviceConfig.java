@@ -12,6 +12,8 @@
  */
 package com.amazon.alexa.avs.config;
 
+import com.amazon.alexa.avs.wakeword.TemplateMatchingWakeWordEngine;
+
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -21,8 +23,10 @@ import java.util.Locale;
 import java.util.stream.Collectors;
 
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -50,6 +54,12 @@ public class DeviceConfig {
     public static final String AUTO_LOGIN_ENABLED = "autoLoginEnabled";
     public static final String AUTO_LOGIN_USERNAME = "autoLoginUsername";
     public static final String AUTO_LOGIN_PASSWORD = "autoLoginPassword";
+    public static final String AUDIO_SOURCE = "audioSource";
+    public static final String WAKE_WORD_AGENT_TRANSPORT = "wakeWordAgentTransport";
+    public static final String WAKE_WORD_ENGINE = "wakeWordEngine";
+    public static final String MEDIA_PREFETCH_LEAD_MS = "mediaPrefetchLeadMs";
+
+    public static final int DEFAULT_MEDIA_PREFETCH_LEAD_MS = 10000;
 
     /*
      * Required parameters from the config file.
@@ -69,6 +79,10 @@ public class DeviceConfig {
     private boolean autoLoginEnabled;
     private String autoLoginUsername;
     private String autoLoginPassword;
+    private AudioSourceInformation audioSourceInfo = new AudioSourceInformation();
+    private WakeWordAgentTransport wakeWordAgentTransport = WakeWordAgentTransport.TCP;
+    private WakeWordEngineInformation wakeWordEngineInfo = new WakeWordEngineInformation();
+    private int mediaPrefetchLeadMs = DEFAULT_MEDIA_PREFETCH_LEAD_MS;
 
     @SuppressWarnings("javadoc")
     public enum ProvisioningMethod {
@@ -313,6 +327,62 @@ public class DeviceConfig {
         this.companionServiceInfo = companionServiceInfo;
     }
 
+    /**
+     * @return audioSourceInfo.
+     */
+    public AudioSourceInformation getAudioSourceInfo() {
+        return audioSourceInfo;
+    }
+
+    /**
+     * @param audioSourceInfo
+     */
+    public void setAudioSourceInfo(AudioSourceInformation audioSourceInfo) {
+        this.audioSourceInfo = audioSourceInfo;
+    }
+
+    /**
+     * @return wakeWordAgentTransport.
+     */
+    public WakeWordAgentTransport getWakeWordAgentTransport() {
+        return wakeWordAgentTransport;
+    }
+
+    /**
+     * @param wakeWordAgentTransport
+     */
+    public void setWakeWordAgentTransport(WakeWordAgentTransport wakeWordAgentTransport) {
+        this.wakeWordAgentTransport = wakeWordAgentTransport;
+    }
+
+    /**
+     * @return wakeWordEngineInfo.
+     */
+    public WakeWordEngineInformation getWakeWordEngineInfo() {
+        return wakeWordEngineInfo;
+    }
+
+    /**
+     * @param wakeWordEngineInfo
+     */
+    public void setWakeWordEngineInfo(WakeWordEngineInformation wakeWordEngineInfo) {
+        this.wakeWordEngineInfo = wakeWordEngineInfo;
+    }
+
+    /**
+     * @return how long before the end of a media item the next one starts buffering.
+     */
+    public int getMediaPrefetchLeadMs() {
+        return mediaPrefetchLeadMs;
+    }
+
+    /**
+     * @param mediaPrefetchLeadMs
+     */
+    public void setMediaPrefetchLeadMs(int mediaPrefetchLeadMs) {
+        this.mediaPrefetchLeadMs = mediaPrefetchLeadMs;
+    }
+
     /**
      * Save this file back to disk.
      */
@@ -347,6 +417,22 @@ public class DeviceConfig {
             builder.add(COMPANION_SERVICE, companionServiceInfo.toJson());
         }
 
+        if (audioSourceInfo.getType() != AudioSourceType.LINE) {
+            builder.add(AUDIO_SOURCE, audioSourceInfo.toJson());
+        }
+
+        if (wakeWordAgentTransport != WakeWordAgentTransport.TCP) {
+            builder.add(WAKE_WORD_AGENT_TRANSPORT, wakeWordAgentTransport.toString());
+        }
+
+        if (!wakeWordEngineInfo.getTemplates().isEmpty()) {
+            builder.add(WAKE_WORD_ENGINE, wakeWordEngineInfo.toJson());
+        }
+
+        if (mediaPrefetchLeadMs != DEFAULT_MEDIA_PREFETCH_LEAD_MS) {
+            builder.add(MEDIA_PREFETCH_LEAD_MS, mediaPrefetchLeadMs);
+        }
+
         return builder.build();
     }
 
@@ -637,6 +723,344 @@ public class DeviceConfig {
         }
     }
 
+    @SuppressWarnings("javadoc")
+    public enum WakeWordAgentTransport {
+        TCP("tcp"),
+        SHARED_MEMORY("sharedMemory"),
+        IN_PROCESS("inProcess");
+
+        private String name;
+
+        WakeWordAgentTransport(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        public static WakeWordAgentTransport fromString(String transport) {
+            for (WakeWordAgentTransport value : values()) {
+                if (value.name.equals(transport)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid wake word agent transport");
+        }
+    }
+
+    @SuppressWarnings("javadoc")
+    public enum AudioSourceType {
+        LINE("line"),
+        FILE("file"),
+        SYNTHETIC("synthetic"),
+        WAKE_WORD_AGENT("wakeWordAgent");
+
+        private String name;
+
+        AudioSourceType(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        public static AudioSourceType fromString(String type) {
+            for (AudioSourceType value : values()) {
+                if (value.name.equals(type)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid audio source type");
+        }
+    }
+
+    /**
+     * Describes where captured audio comes from. By default this is the microphone; the file and
+     * synthetic sources let the recognize path run on machines without a sound card, for example
+     * for load and regression testing. The wakeWordAgent source reads the audio captured by the
+     * wake word agent, so the microphone never has to change hands.
+     */
+    public static class AudioSourceInformation {
+        public static final String TYPE = "type";
+        public static final String FILES = "files";
+        public static final String SPEED = "speed";
+        public static final String SIGNAL = "signal";
+        public static final String FREQUENCY_HZ = "frequencyHz";
+        public static final String DURATION_MS = "durationMs";
+
+        private static final double DEFAULT_SPEED = 1.0;
+        private static final String DEFAULT_SIGNAL = "sine";
+        private static final int DEFAULT_FREQUENCY_HZ = 440;
+        private static final int DEFAULT_DURATION_MS = 3000;
+
+        private final AudioSourceType type;
+        private final List<String> files;
+        private final double speed;
+        private final String signal;
+        private final int frequencyHz;
+        private final int durationMs;
+
+        /**
+         * Creates an {@link AudioSourceInformation} describing the default microphone source.
+         */
+        public AudioSourceInformation() {
+            this(AudioSourceType.LINE.toString(), new ArrayList<>(), DEFAULT_SPEED,
+                    DEFAULT_SIGNAL, DEFAULT_FREQUENCY_HZ, DEFAULT_DURATION_MS);
+        }
+
+        /**
+         * Creates an {@link AudioSourceInformation} object.
+         *
+         * @param type
+         *            One of "line", "file" or "synthetic".
+         * @param files
+         *            WAV or raw 16 kHz mono PCM files (or directories of them) to play, one per
+         *            recording, in rotation.
+         * @param speed
+         *            Playback speed relative to real time for file and synthetic sources. 0 or
+         *            less delivers audio as fast as it is read.
+         * @param signal
+         *            The generated signal for the synthetic source: "sine", "noise" or "silence".
+         * @param frequencyHz
+         *            Frequency of the generated sine.
+         * @param durationMs
+         *            Length of each generated utterance.
+         */
+        public AudioSourceInformation(String type, List<String> files, double speed,
+                String signal, int frequencyHz, int durationMs) {
+            try {
+                this.type = AudioSourceType.fromString(type);
+            } catch (IllegalArgumentException e) {
+                throw new MalformedConfigException(AUDIO_SOURCE + "." + TYPE
+                        + " should be one of \"line\", \"file\" or \"synthetic\".");
+            }
+            this.files = files;
+            this.speed = speed;
+            this.signal = signal;
+            this.frequencyHz = frequencyHz;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * @return type.
+         */
+        public AudioSourceType getType() {
+            return type;
+        }
+
+        /**
+         * @return files.
+         */
+        public List<String> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return speed.
+         */
+        public double getSpeed() {
+            return speed;
+        }
+
+        /**
+         * @return signal.
+         */
+        public String getSignal() {
+            return signal;
+        }
+
+        /**
+         * @return frequencyHz.
+         */
+        public int getFrequencyHz() {
+            return frequencyHz;
+        }
+
+        /**
+         * @return durationMs.
+         */
+        public int getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * Serialize this object to JSON.
+         *
+         * @return A JSON representation of this object.
+         */
+        public JsonObject toJson() {
+            JsonArrayBuilder fileArray = Json.createArrayBuilder();
+            for (String file : files) {
+                fileArray.add(file);
+            }
+
+            return Json.createObjectBuilder()
+                        .add(TYPE, type.toString())
+                        .add(FILES, fileArray)
+                        .add(SPEED, speed)
+                        .add(SIGNAL, signal)
+                        .add(FREQUENCY_HZ, frequencyHz)
+                        .add(DURATION_MS, durationMs)
+                        .build();
+        }
+
+        public boolean isValid() {
+            if (type == AudioSourceType.FILE) {
+                if (files.isEmpty()) {
+                    throw new MalformedConfigException(AUDIO_SOURCE + "." + FILES
+                            + " is empty in your config file.");
+                }
+                for (String file : files) {
+                    if (!new File(file).exists()) {
+                        throw new MalformedConfigException(file + " " + AUDIO_SOURCE + "."
+                                + FILES + " does not exist.");
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Read an {@link AudioSourceInformation} from its JSON representation.
+         *
+         * @param json
+         *            The audio source section of the config file, or null.
+         * @return The audio source information, describing the microphone if json is null.
+         */
+        public static AudioSourceInformation fromJson(JsonObject json) {
+            if (json == null) {
+                return new AudioSourceInformation();
+            }
+
+            List<String> files = new ArrayList<>();
+            if (json.getJsonArray(FILES) != null) {
+                files.addAll(json.getJsonArray(FILES)
+                        .getValuesAs(JsonString.class)
+                        .stream()
+                        .map(JsonString::getString)
+                        .collect(Collectors.toList()));
+            }
+            double speed = json.containsKey(SPEED)
+                    ? json.getJsonNumber(SPEED).doubleValue() : DEFAULT_SPEED;
+
+            return new AudioSourceInformation(
+                    json.getString(TYPE, AudioSourceType.LINE.toString()), files, speed,
+                    json.getString(SIGNAL, DEFAULT_SIGNAL),
+                    json.getInt(FREQUENCY_HZ, DEFAULT_FREQUENCY_HZ),
+                    json.getInt(DURATION_MS, DEFAULT_DURATION_MS));
+        }
+    }
+
+    /**
+     * Describes the wake word engine run inside the client when the wake word agent transport is
+     * "inProcess": recordings of the wake word to match against, and how close a match has to be.
+     */
+    public static class WakeWordEngineInformation {
+        public static final String TEMPLATES = "templates";
+        public static final String THRESHOLD = "threshold";
+
+        private final List<String> templates;
+        private final double threshold;
+
+        /**
+         * Creates an empty {@link WakeWordEngineInformation}.
+         */
+        public WakeWordEngineInformation() {
+            this(new ArrayList<>(), TemplateMatchingWakeWordEngine.DEFAULT_THRESHOLD);
+        }
+
+        /**
+         * Creates a {@link WakeWordEngineInformation} object.
+         *
+         * @param templates
+         *            WAV or raw 16 kHz mono PCM recordings of the wake word (or directories of
+         *            them), one utterance per file.
+         * @param threshold
+         *            Highest average feature distance that is still a detection. Lower values
+         *            mean fewer false alarms and more missed wake words.
+         */
+        public WakeWordEngineInformation(List<String> templates, double threshold) {
+            this.templates = templates;
+            this.threshold = threshold;
+        }
+
+        /**
+         * @return templates.
+         */
+        public List<String> getTemplates() {
+            return templates;
+        }
+
+        /**
+         * @return threshold.
+         */
+        public double getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * Serialize this object to JSON.
+         *
+         * @return A JSON representation of this object.
+         */
+        public JsonObject toJson() {
+            JsonArrayBuilder templateArray = Json.createArrayBuilder();
+            for (String template : templates) {
+                templateArray.add(template);
+            }
+
+            return Json.createObjectBuilder()
+                        .add(TEMPLATES, templateArray)
+                        .add(THRESHOLD, threshold)
+                        .build();
+        }
+
+        public boolean isValid() {
+            if (templates.isEmpty()) {
+                throw new MalformedConfigException(WAKE_WORD_ENGINE + "." + TEMPLATES
+                        + " is empty in your config file.");
+            }
+            for (String template : templates) {
+                if (!new File(template).exists()) {
+                    throw new MalformedConfigException(template + " " + WAKE_WORD_ENGINE + "."
+                            + TEMPLATES + " does not exist.");
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Read a {@link WakeWordEngineInformation} from its JSON representation.
+         *
+         * @param json
+         *            The wake word engine section of the config file, or null.
+         * @return The wake word engine information, without templates if json is null.
+         */
+        public static WakeWordEngineInformation fromJson(JsonObject json) {
+            if (json == null) {
+                return new WakeWordEngineInformation();
+            }
+
+            List<String> templates = new ArrayList<>();
+            if (json.getJsonArray(TEMPLATES) != null) {
+                templates.addAll(json.getJsonArray(TEMPLATES)
+                        .getValuesAs(JsonString.class)
+                        .stream()
+                        .map(JsonString::getString)
+                        .collect(Collectors.toList()));
+            }
+            double threshold = json.containsKey(THRESHOLD)
+                    ? json.getJsonNumber(THRESHOLD).doubleValue()
+                    : TemplateMatchingWakeWordEngine.DEFAULT_THRESHOLD;
+
+            return new WakeWordEngineInformation(templates, threshold);
+        }
+    }
+
     @SuppressWarnings("javadoc")
     public static class MalformedConfigException extends RuntimeException {
         private static final long serialVersionUID = 1L;
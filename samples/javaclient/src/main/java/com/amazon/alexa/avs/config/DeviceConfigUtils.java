@@ -29,8 +29,12 @@ import javax.json.stream.JsonGenerator;
 
 import org.apache.commons.io.IOUtils;
 
+import com.amazon.alexa.avs.config.DeviceConfig.AudioSourceInformation;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionAppInformation;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionServiceInformation;
+import com.amazon.alexa.avs.config.DeviceConfig.MalformedConfigException;
+import com.amazon.alexa.avs.config.DeviceConfig.WakeWordAgentTransport;
+import com.amazon.alexa.avs.config.DeviceConfig.WakeWordEngineInformation;
 
 /**
  * A utility class for interacting with the config file. This class is used for creating
@@ -122,6 +126,39 @@ public final class DeviceConfigUtils {
                     wakeWordAgentEnabled, locale, companionAppInfo, companionServiceInfo, avsHost, 
             		autoLoginEnabled, autoLoginUsername, autoLoginPassword);
 
+            AudioSourceInformation audioSourceInfo = AudioSourceInformation
+                    .fromJson(configObject.getJsonObject(DeviceConfig.AUDIO_SOURCE));
+            audioSourceInfo.isValid();
+            deviceConfig.setAudioSourceInfo(audioSourceInfo);
+
+            String wakeWordAgentTransport = configObject.getString(
+                    DeviceConfig.WAKE_WORD_AGENT_TRANSPORT, WakeWordAgentTransport.TCP.toString());
+            try {
+                deviceConfig.setWakeWordAgentTransport(
+                        WakeWordAgentTransport.fromString(wakeWordAgentTransport));
+            } catch (IllegalArgumentException e) {
+                throw new MalformedConfigException(DeviceConfig.WAKE_WORD_AGENT_TRANSPORT
+                        + " should be one of \"" + WakeWordAgentTransport.TCP + "\", \""
+                        + WakeWordAgentTransport.SHARED_MEMORY + "\" or \""
+                        + WakeWordAgentTransport.IN_PROCESS + "\".");
+            }
+
+            WakeWordEngineInformation wakeWordEngineInfo = WakeWordEngineInformation
+                    .fromJson(configObject.getJsonObject(DeviceConfig.WAKE_WORD_ENGINE));
+            if (wakeWordAgentEnabled && deviceConfig
+                    .getWakeWordAgentTransport() == WakeWordAgentTransport.IN_PROCESS) {
+                wakeWordEngineInfo.isValid();
+            }
+            deviceConfig.setWakeWordEngineInfo(wakeWordEngineInfo);
+
+            int mediaPrefetchLeadMs = configObject.getInt(DeviceConfig.MEDIA_PREFETCH_LEAD_MS,
+                    DeviceConfig.DEFAULT_MEDIA_PREFETCH_LEAD_MS);
+            if (mediaPrefetchLeadMs < 0) {
+                throw new MalformedConfigException(
+                        DeviceConfig.MEDIA_PREFETCH_LEAD_MS + " should not be negative.");
+            }
+            deviceConfig.setMediaPrefetchLeadMs(mediaPrefetchLeadMs);
+
             return deviceConfig;
         } catch (FileNotFoundException e) {
             throw new RuntimeException(
@@ -15,6 +15,7 @@ package com.amazon.alexa.avs.http;
 import com.amazon.alexa.avs.AVSRequest;
 import com.amazon.alexa.avs.AudioInputFormat;
 import com.amazon.alexa.avs.RequestListener;
+import com.amazon.alexa.avs.TimerWheel;
 import com.amazon.alexa.avs.config.ObjectMapperFactory;
 import com.amazon.alexa.avs.exception.AVSException;
 import com.amazon.alexa.avs.exception.AVSJsonProcessingException;
@@ -160,8 +161,8 @@ public class AVSClient implements ConnectionListener {
         }
 
         // Sets up an HttpClient that sends HTTP/1.1 requests over an HTTP/2 transport
-        httpClient = new HttpClient(new PingSendingHttpClientTransportOverHTTP2(http2Client, this),
-                sslContextFactory);
+        httpClient = new HttpClient(new PingSendingHttpClientTransportOverHTTP2(http2Client, this,
+                TimerWheel.getInstance()), sslContextFactory);
         httpClient.addLifeCycleListener(new Listener() {
 
             @Override
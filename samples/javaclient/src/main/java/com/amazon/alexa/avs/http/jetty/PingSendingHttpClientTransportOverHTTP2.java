@@ -12,6 +12,8 @@
  */
 package com.amazon.alexa.avs.http.jetty;
 
+import com.amazon.alexa.avs.TimerWheel;
+
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.Origin;
@@ -25,8 +27,6 @@ import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.util.Callback;
 
 import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,12 +35,14 @@ import java.util.concurrent.TimeUnit;
 public class PingSendingHttpClientTransportOverHTTP2 extends HttpClientTransportOverHTTP2 {
     private static final int PING_INTERVAL_IN_MINUTES = 5;
     private static final int INITIAL_PING_DELAY_IN_MINUTES = PING_INTERVAL_IN_MINUTES;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final TimerWheel timerWheel;
     private Optional<ConnectionListener> connectionListener = Optional.empty();
     private HttpClient httpClient;
 
-    public PingSendingHttpClientTransportOverHTTP2(HTTP2Client client, ConnectionListener connectionListener) {
+    public PingSendingHttpClientTransportOverHTTP2(HTTP2Client client,
+            ConnectionListener connectionListener, TimerWheel timerWheel) {
         super(client);
+        this.timerWheel = timerWheel;
         this.connectionListener = Optional.ofNullable(connectionListener);
     }
 
@@ -52,8 +54,9 @@ public class PingSendingHttpClientTransportOverHTTP2 extends HttpClientTransport
 
     @Override
     protected HttpConnectionOverHTTP2 newHttpConnection(HttpDestination destination, Session session) {
-        scheduler.scheduleAtFixedRate(new ServerPing(session), INITIAL_PING_DELAY_IN_MINUTES,
-                PING_INTERVAL_IN_MINUTES, TimeUnit.MINUTES);
+        ServerPing ping = new ServerPing(session);
+        ping.timeout = timerWheel.scheduleAtFixedRate(ping, INITIAL_PING_DELAY_IN_MINUTES,
+                PING_INTERVAL_IN_MINUTES, TimeUnit.MINUTES, httpClient.getExecutor());
         return super.newHttpConnection(destination, session);
     }
 
@@ -84,10 +87,12 @@ public class PingSendingHttpClientTransportOverHTTP2 extends HttpClientTransport
     }
 
     /**
-     * Task to send a PING frame over an open HTTP/2 Session.
+     * Task to send a PING frame over an open HTTP/2 Session. It stops repeating once the session is
+     * closed.
      */
     private static class ServerPing implements Runnable {
         private Session session;
+        private volatile TimerWheel.Timeout timeout;
 
         private ServerPing(Session session) {
             this.session = session;
@@ -98,6 +103,8 @@ public class PingSendingHttpClientTransportOverHTTP2 extends HttpClientTransport
             if (!session.isClosed()) {
                 PingFrame frame = new PingFrame(false);
                 session.ping(frame, Callback.NOOP);
+            } else if (timeout != null) {
+                timeout.cancel();
             }
         }
     }
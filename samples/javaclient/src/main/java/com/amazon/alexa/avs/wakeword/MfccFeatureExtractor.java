@@ -0,0 +1,214 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import java.util.Arrays;
+
+/**
+ * Computes mel-frequency cepstral coefficients from 16 kHz audio, one feature vector for every
+ * 10 ms of audio over a 25 ms Hamming window. The energy term c0 is left out so the features
+ * don't depend on how loudly the word was spoken; {@link #getLogEnergy()} reports it separately.
+ * Samples are pushed in one at a time and all buffers, including the FFT tables, are allocated up
+ * front.
+ */
+public class MfccFeatureExtractor {
+    public static final int SAMPLE_RATE = 16000;
+    public static final int FRAME_LENGTH = 400;
+    public static final int FRAME_SHIFT = 160;
+    public static final int NUM_COEFFICIENTS = 12;
+
+    private static final int FFT_SIZE = 512;
+    private static final int NUM_FILTERS = 26;
+    private static final double LOW_FREQUENCY_HZ = 64;
+    private static final double HIGH_FREQUENCY_HZ = 7600;
+    private static final float PRE_EMPHASIS = 0.97f;
+    // floor for filter bank energies, in squared 16 bit sample units
+    private static final float ENERGY_FLOOR = 1f;
+
+    private final float[] history = new float[FRAME_LENGTH];
+    private int historyIndex;
+    private int samplesUntilFrame = FRAME_LENGTH;
+    private float previousSample;
+
+    private final float[] window = new float[FRAME_LENGTH];
+    private final float[] real = new float[FFT_SIZE];
+    private final float[] imaginary = new float[FFT_SIZE];
+    private final float[] cosines = new float[FFT_SIZE / 2];
+    private final float[] sines = new float[FFT_SIZE / 2];
+    private final int[] bitReversed = new int[FFT_SIZE];
+
+    // triangular filters stored as a first bin and weights for consecutive bins
+    private final int[] filterFirstBin = new int[NUM_FILTERS];
+    private final float[][] filterWeights = new float[NUM_FILTERS][];
+    private final float[] filterEnergies = new float[NUM_FILTERS];
+    private final float[] dct = new float[NUM_COEFFICIENTS * NUM_FILTERS];
+
+    private final float[] features = new float[NUM_COEFFICIENTS];
+    private float logEnergy;
+
+    public MfccFeatureExtractor() {
+        for (int i = 0; i < FRAME_LENGTH; i++) {
+            window[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (FRAME_LENGTH - 1)));
+        }
+        for (int i = 0; i < FFT_SIZE / 2; i++) {
+            cosines[i] = (float) Math.cos(2 * Math.PI * i / FFT_SIZE);
+            sines[i] = (float) -Math.sin(2 * Math.PI * i / FFT_SIZE);
+        }
+        int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            bitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        createFilterBank();
+        double scale = Math.sqrt(2.0 / NUM_FILTERS);
+        for (int k = 0; k < NUM_COEFFICIENTS; k++) {
+            for (int m = 0; m < NUM_FILTERS; m++) {
+                // orthonormal DCT-II, coefficient k + 1 since c0 is not used
+                dct[k * NUM_FILTERS + m] =
+                        (float) (scale * Math.cos(Math.PI * (k + 1) * (m + 0.5) / NUM_FILTERS));
+            }
+        }
+    }
+
+    /**
+     * Start over, as if no audio had been seen.
+     */
+    public void reset() {
+        historyIndex = 0;
+        samplesUntilFrame = FRAME_LENGTH;
+        previousSample = 0f;
+    }
+
+    /**
+     * @return true if this sample completed a frame, whose features are then available from
+     *         {@link #getFeatures()} until the next frame completes.
+     */
+    public boolean addSample(short sample) {
+        // pre-emphasis boosts the high frequencies, which carry little energy in speech
+        history[historyIndex] = sample - PRE_EMPHASIS * previousSample;
+        previousSample = sample;
+        historyIndex = (historyIndex + 1) % FRAME_LENGTH;
+        if (--samplesUntilFrame > 0) {
+            return false;
+        }
+        samplesUntilFrame = FRAME_SHIFT;
+        computeFeatures();
+        return true;
+    }
+
+    /**
+     * @return the coefficients of the last completed frame. The array is reused for every frame.
+     */
+    public float[] getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return the natural log of the energy of the last completed frame.
+     */
+    public float getLogEnergy() {
+        return logEnergy;
+    }
+
+    private void computeFeatures() {
+        // the oldest sample of the frame is the next one to be overwritten
+        float energy = 0f;
+        for (int i = 0; i < FRAME_LENGTH; i++) {
+            float value = history[(historyIndex + i) % FRAME_LENGTH] * window[i];
+            energy += value * value;
+            real[bitReversed[i]] = value;
+        }
+        for (int i = FRAME_LENGTH; i < FFT_SIZE; i++) {
+            real[bitReversed[i]] = 0f;
+        }
+        Arrays.fill(imaginary, 0f);
+        logEnergy = (float) Math.log(Math.max(energy, ENERGY_FLOOR));
+
+        fft();
+
+        for (int m = 0; m < NUM_FILTERS; m++) {
+            float[] weights = filterWeights[m];
+            int bin = filterFirstBin[m];
+            float sum = 0f;
+            for (int i = 0; i < weights.length; i++, bin++) {
+                sum += weights[i] * (real[bin] * real[bin] + imaginary[bin] * imaginary[bin]);
+            }
+            filterEnergies[m] = (float) Math.log(Math.max(sum, ENERGY_FLOOR));
+        }
+
+        for (int k = 0; k < NUM_COEFFICIENTS; k++) {
+            float sum = 0f;
+            int base = k * NUM_FILTERS;
+            for (int m = 0; m < NUM_FILTERS; m++) {
+                sum += dct[base + m] * filterEnergies[m];
+            }
+            features[k] = sum;
+        }
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of the bit reversed input in real and imaginary.
+     */
+    private void fft() {
+        for (int size = 2; size <= FFT_SIZE; size <<= 1) {
+            int half = size >> 1;
+            int step = FFT_SIZE / size;
+            for (int start = 0; start < FFT_SIZE; start += size) {
+                for (int j = 0; j < half; j++) {
+                    float cos = cosines[j * step];
+                    float sin = sines[j * step];
+                    int even = start + j;
+                    int odd = even + half;
+                    float oddReal = real[odd] * cos - imaginary[odd] * sin;
+                    float oddImaginary = real[odd] * sin + imaginary[odd] * cos;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                }
+            }
+        }
+    }
+
+    private void createFilterBank() {
+        double lowMel = toMel(LOW_FREQUENCY_HZ);
+        double highMel = toMel(HIGH_FREQUENCY_HZ);
+        double[] edges = new double[NUM_FILTERS + 2];
+        for (int i = 0; i < edges.length; i++) {
+            double hz = toHz(lowMel + (highMel - lowMel) * i / (NUM_FILTERS + 1));
+            edges[i] = hz * FFT_SIZE / SAMPLE_RATE;
+        }
+        for (int m = 0; m < NUM_FILTERS; m++) {
+            double left = edges[m];
+            double center = edges[m + 1];
+            double right = edges[m + 2];
+            int first = (int) Math.ceil(left);
+            int last = (int) Math.floor(right);
+            float[] weights = new float[Math.max(0, last - first + 1)];
+            for (int bin = first; bin <= last; bin++) {
+                double weight = bin <= center ? (bin - left) / (center - left)
+                        : (right - bin) / (right - center);
+                weights[bin - first] = (float) Math.max(0, weight);
+            }
+            filterFirstBin[m] = first;
+            filterWeights[m] = weights;
+        }
+    }
+
+    private static double toMel(double hz) {
+        return 1127 * Math.log(1 + hz / 700);
+    }
+
+    private static double toHz(double mel) {
+        return 700 * (Math.exp(mel / 1127) - 1);
+    }
+}
@@ -0,0 +1,361 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import com.amazon.alexa.avs.AudioInputFormat;
+import com.amazon.alexa.avs.FileAudioSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Reference {@link WakeWordEngine} that compares the incoming audio with recordings of the wake
+ * word. Each recording is turned into a template of MFCC feature vectors, trimmed to where the
+ * word is spoken, and every 10 ms frame of live audio advances a subsequence dynamic time warping
+ * match against every template: the cost of the best alignment of the whole template with audio
+ * ending at the current frame, averaged over the alignment path. When that cost drops below the
+ * threshold and stops improving the wake word is reported. This works best with a few recordings
+ * by the people who will use the device, and the threshold should be tuned with
+ * WakeWordEngineBenchmark in the test sources.
+ */
+public class TemplateMatchingWakeWordEngine implements WakeWordEngine {
+    private static final Logger log = LoggerFactory.getLogger(TemplateMatchingWakeWordEngine.class);
+
+    public static final float DEFAULT_THRESHOLD = 5.0f;
+
+    // template frames quieter than this relative to the loudest one (~30 dB) are trimmed
+    private static final float TRIM_LOG_ENERGY = 6.9f;
+    // frames the cost has to stop improving for before a match is reported
+    private static final int PEAK_HOLD_FRAMES = 5;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // a match may be spoken at most this much slower or faster than the template
+    private static final int MAX_STRETCH = 2;
+
+    private final Template[] templates;
+    private final float threshold;
+    private final int refractoryFrames;
+    private final MfccFeatureExtractor extractor = new MfccFeatureExtractor();
+    private long frameIndex;
+    // no new detection is reported before this frame
+    private long quietUntilFrame;
+    private float lowestCost = Float.MAX_VALUE;
+
+    // best match so far that is below the threshold, reported once it stops improving
+    private int candidateTemplate = -1;
+    private float candidateCost;
+    private long candidateStartFrame;
+    private long candidateEndFrame;
+
+    /**
+     * @param templates
+     *            feature vectors of each recording of the wake word, as produced by
+     *            {@link #createTemplate(byte[], int)}.
+     * @param threshold
+     *            highest average distance between the audio and a template that counts as a
+     *            detection.
+     */
+    public TemplateMatchingWakeWordEngine(List<float[][]> templates, float threshold) {
+        if (templates.isEmpty()) {
+            throw new IllegalArgumentException("At least one wake word template is required");
+        }
+        this.templates = new Template[templates.size()];
+        int longest = 0;
+        for (int i = 0; i < this.templates.length; i++) {
+            this.templates[i] = new Template(templates.get(i));
+            longest = Math.max(longest, templates.get(i).length);
+        }
+        refractoryFrames = MAX_STRETCH * longest;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Create an engine with templates made from WAV or raw 16 kHz PCM recordings of the wake word.
+     *
+     * @param paths
+     *            files, or directories of files, each holding one utterance of the wake word.
+     */
+    public static TemplateMatchingWakeWordEngine fromRecordings(List<String> paths,
+            float threshold) throws LineUnavailableException {
+        List<float[][]> templates = new ArrayList<>();
+        for (byte[] recording : readRecordings(paths)) {
+            float[][] template = createTemplate(recording, recording.length);
+            if (template.length > 0) {
+                templates.add(template);
+            }
+        }
+        log.info("Loaded {} wake word templates", templates.size());
+        return new TemplateMatchingWakeWordEngine(templates, threshold);
+    }
+
+    /**
+     * Read every recording in full, converted to the format engines are fed.
+     */
+    public static List<byte[]> readRecordings(List<String> paths) throws LineUnavailableException {
+        FileAudioSource source =
+                new FileAudioSource(AudioInputFormat.LPCM.getAudioFormat(), paths, 0);
+        List<byte[]> recordings = new ArrayList<>();
+        byte[] buffer = new byte[AudioInputFormat.LPCM.getChunkSizeBytes() * 10];
+        for (int i = 0; i < source.getFiles().size(); i++) {
+            ByteArrayOutputStream recording = new ByteArrayOutputStream();
+            source.open();
+            try {
+                int numBytesRead;
+                while ((numBytesRead = source.read(buffer, 0, buffer.length)) >= 0) {
+                    recording.write(buffer, 0, numBytesRead);
+                }
+            } finally {
+                source.close();
+            }
+            recordings.add(recording.toByteArray());
+        }
+        return recordings;
+    }
+
+    /**
+     * Turn a recording of the wake word into a template, leaving out the silence around it.
+     */
+    public static float[][] createTemplate(byte[] audio, int length) {
+        MfccFeatureExtractor templateExtractor = new MfccFeatureExtractor();
+        List<float[]> frames = new ArrayList<>();
+        List<Float> energies = new ArrayList<>();
+        float maxEnergy = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i + 1 < length; i += BYTES_PER_SAMPLE) {
+            if (templateExtractor.addSample(readSample(audio, i))) {
+                frames.add(templateExtractor.getFeatures().clone());
+                energies.add(templateExtractor.getLogEnergy());
+                maxEnergy = Math.max(maxEnergy, templateExtractor.getLogEnergy());
+            }
+        }
+
+        int first = 0;
+        int last = frames.size() - 1;
+        while (first <= last && energies.get(first) < maxEnergy - TRIM_LOG_ENERGY) {
+            first++;
+        }
+        while (last >= first && energies.get(last) < maxEnergy - TRIM_LOG_ENERGY) {
+            last--;
+        }
+        List<float[]> trimmed = first <= last ? frames.subList(first, last + 1)
+                : Collections.<float[]> emptyList();
+        return trimmed.toArray(new float[trimmed.size()][]);
+    }
+
+    @Override
+    public WakeWordDetection process(byte[] audio, int offset, int length) {
+        WakeWordDetection detection = null;
+        int end = offset + length - 1;
+        for (int i = offset; i < end; i += BYTES_PER_SAMPLE) {
+            if (extractor.addSample(readSample(audio, i))) {
+                WakeWordDetection frameDetection = processFrame(extractor.getFeatures());
+                if (frameDetection != null) {
+                    detection = frameDetection;
+                }
+            }
+        }
+        return detection;
+    }
+
+    @Override
+    public void reset() {
+        extractor.reset();
+        frameIndex = 0;
+        quietUntilFrame = 0;
+        lowestCost = Float.MAX_VALUE;
+        candidateTemplate = -1;
+        for (Template template : templates) {
+            template.reset();
+        }
+    }
+
+    /**
+     * @return the lowest match cost against any template since the last reset, for tuning the
+     *         threshold.
+     */
+    public float getLowestCost() {
+        return lowestCost;
+    }
+
+    private WakeWordDetection processFrame(float[] features) {
+        int bestTemplate = -1;
+        float bestCost = Float.MAX_VALUE;
+        for (int t = 0; t < templates.length; t++) {
+            float cost = templates[t].advance(features, frameIndex);
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestTemplate = t;
+            }
+        }
+
+        lowestCost = Math.min(lowestCost, bestCost);
+
+        WakeWordDetection detection = null;
+        boolean afterLastDetection = frameIndex >= quietUntilFrame;
+        if (afterLastDetection && bestCost < threshold
+                && (candidateTemplate < 0 || bestCost < candidateCost)) {
+            candidateTemplate = bestTemplate;
+            candidateCost = bestCost;
+            candidateStartFrame = templates[bestTemplate].getMatchStartFrame();
+            candidateEndFrame = frameIndex;
+        } else if (candidateTemplate >= 0
+                && frameIndex - candidateEndFrame >= PEAK_HOLD_FRAMES) {
+            detection = report();
+        }
+        frameIndex++;
+        return detection;
+    }
+
+    private WakeWordDetection report() {
+        int startSample = (int) (candidateStartFrame * MfccFeatureExtractor.FRAME_SHIFT);
+        int endSample = (int) (candidateEndFrame * MfccFeatureExtractor.FRAME_SHIFT)
+                + MfccFeatureExtractor.FRAME_LENGTH;
+        // how far into the audio we had to look past the end of the word to be sure
+        int latencyUs = (int) ((frameIndex - candidateEndFrame) * MfccFeatureExtractor.FRAME_SHIFT
+                * 1000000L / MfccFeatureExtractor.SAMPLE_RATE);
+        log.debug("Wake word matched template {} with cost {}", candidateTemplate, candidateCost);
+        WakeWordDetection detection = new WakeWordDetection(candidateTemplate, startSample,
+                endSample, latencyUs, System.currentTimeMillis());
+
+        // don't let the same utterance trigger again
+        candidateTemplate = -1;
+        quietUntilFrame = frameIndex + refractoryFrames;
+        for (Template template : templates) {
+            template.reset();
+        }
+        return detection;
+    }
+
+    private static short readSample(byte[] data, int index) {
+        return (short) ((data[index + 1] << 8) | (data[index] & 0xff));
+    }
+
+    /**
+     * One template and the last column of its alignment with the incoming audio.
+     */
+    private static final class Template {
+        private final float[][] frames;
+        private float[] cost;
+        private float[] previousCost;
+        private int[] pathLength;
+        private int[] previousPathLength;
+        private long[] startFrame;
+        private long[] previousStartFrame;
+
+        Template(float[][] frames) {
+            if (frames.length == 0) {
+                throw new IllegalArgumentException("Empty wake word template");
+            }
+            this.frames = frames;
+            cost = new float[frames.length];
+            previousCost = new float[frames.length];
+            pathLength = new int[frames.length];
+            previousPathLength = new int[frames.length];
+            startFrame = new long[frames.length];
+            previousStartFrame = new long[frames.length];
+            reset();
+        }
+
+        void reset() {
+            for (int j = 0; j < frames.length; j++) {
+                cost[j] = Float.MAX_VALUE;
+                pathLength[j] = 1;
+            }
+        }
+
+        /**
+         * Extend the alignment by one frame of audio.
+         *
+         * @return the average cost of the best alignment of the whole template ending at this
+         *         frame.
+         */
+        float advance(float[] features, long frameIndex) {
+            float[] swapCost = previousCost;
+            previousCost = cost;
+            cost = swapCost;
+            int[] swapLength = previousPathLength;
+            previousPathLength = pathLength;
+            pathLength = swapLength;
+            long[] swapStart = previousStartFrame;
+            previousStartFrame = startFrame;
+            startFrame = swapStart;
+
+            // a match may start at any frame of the audio
+            cost[0] = distance(features, frames[0]);
+            pathLength[0] = 1;
+            startFrame[0] = frameIndex;
+
+            // alignments spanning more audio than this are dropped
+            long earliestStart = frameIndex - (long) MAX_STRETCH * frames.length;
+            for (int j = 1; j < frames.length; j++) {
+                // diagonal, then audio advancing alone, then template advancing alone
+                int from = j - 1;
+                float[] fromCost = previousCost;
+                int[] fromLength = previousPathLength;
+                long[] fromStart = previousStartFrame;
+                if (isCheaper(previousCost[j], previousPathLength[j], fromCost[from],
+                        fromLength[from])) {
+                    from = j;
+                }
+                if (isCheaper(cost[j - 1], pathLength[j - 1], fromCost[from], fromLength[from])) {
+                    from = j - 1;
+                    fromCost = cost;
+                    fromLength = pathLength;
+                    fromStart = startFrame;
+                }
+
+                if (fromCost[from] == Float.MAX_VALUE || fromStart[from] < earliestStart) {
+                    cost[j] = Float.MAX_VALUE;
+                    pathLength[j] = 1;
+                    continue;
+                }
+                cost[j] = fromCost[from] + distance(features, frames[j]);
+                pathLength[j] = fromLength[from] + 1;
+                startFrame[j] = fromStart[from];
+            }
+
+            int last = frames.length - 1;
+            long span = frameIndex - startFrame[last] + 1;
+            if (cost[last] == Float.MAX_VALUE || span * MAX_STRETCH < frames.length) {
+                return Float.MAX_VALUE;
+            }
+            return cost[last] / pathLength[last];
+        }
+
+        long getMatchStartFrame() {
+            return startFrame[frames.length - 1];
+        }
+
+        private static boolean isCheaper(float cost, int length, float otherCost,
+                int otherLength) {
+            if (cost == Float.MAX_VALUE) {
+                return false;
+            }
+            return otherCost == Float.MAX_VALUE || cost / length < otherCost / otherLength;
+        }
+
+        private static float distance(float[] a, float[] b) {
+            float sum = 0f;
+            for (int i = 0; i < a.length; i++) {
+                float difference = a[i] - b[i];
+                sum += difference * difference;
+            }
+            return (float) Math.sqrt(sum);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+/**
+ * What the wake word agent reported about a detection. Agents that don't speak the framed
+ * protocol only report that a detection happened, so every value may be
+ * {@link WakeWordIPCMessage#UNKNOWN}.
+ */
+public class WakeWordDetection {
+    private final int keywordIndex;
+    private final int startSampleIndex;
+    private final int endSampleIndex;
+    private final int engineLatencyUs;
+    private final long agentTimestampMs;
+    private final long receivedTimestampMs;
+
+    /**
+     * A detection reported by an agent that doesn't send any details.
+     */
+    public WakeWordDetection(long receivedTimestampMs) {
+        this.keywordIndex = WakeWordIPCMessage.UNKNOWN;
+        this.startSampleIndex = WakeWordIPCMessage.UNKNOWN;
+        this.endSampleIndex = WakeWordIPCMessage.UNKNOWN;
+        this.engineLatencyUs = WakeWordIPCMessage.UNKNOWN;
+        this.agentTimestampMs = WakeWordIPCMessage.UNKNOWN;
+        this.receivedTimestampMs = receivedTimestampMs;
+    }
+
+    public WakeWordDetection(WakeWordIPCMessage message, long receivedTimestampMs) {
+        this.keywordIndex = message.getKeywordIndex();
+        this.startSampleIndex = message.getDetectionStartIndex();
+        this.endSampleIndex = message.getDetectionEndIndex();
+        this.engineLatencyUs = message.getEngineLatencyUs();
+        this.agentTimestampMs = message.getTimestampMs();
+        this.receivedTimestampMs = receivedTimestampMs;
+    }
+
+    /**
+     * A detection made by an in-process {@link WakeWordEngine}, which has nothing to deliver.
+     */
+    public WakeWordDetection(int keywordIndex, int startSampleIndex, int endSampleIndex,
+            int engineLatencyUs, long timestampMs) {
+        this.keywordIndex = keywordIndex;
+        this.startSampleIndex = startSampleIndex;
+        this.endSampleIndex = endSampleIndex;
+        this.engineLatencyUs = engineLatencyUs;
+        this.agentTimestampMs = timestampMs;
+        this.receivedTimestampMs = timestampMs;
+    }
+
+    public int getKeywordIndex() {
+        return keywordIndex;
+    }
+
+    public int getStartSampleIndex() {
+        return startSampleIndex;
+    }
+
+    public int getEndSampleIndex() {
+        return endSampleIndex;
+    }
+
+    public int getEngineLatencyUs() {
+        return engineLatencyUs;
+    }
+
+    public long getAgentTimestampMs() {
+        return agentTimestampMs;
+    }
+
+    public long getReceivedTimestampMs() {
+        return receivedTimestampMs;
+    }
+
+    /**
+     * @return time from the agent sending the detection until it was received, or
+     *         {@link WakeWordIPCMessage#UNKNOWN}. Both run on the same machine, so their clocks
+     *         agree.
+     */
+    public long getDeliveryLatencyMs() {
+        if (agentTimestampMs == WakeWordIPCMessage.UNKNOWN) {
+            return WakeWordIPCMessage.UNKNOWN;
+        }
+        return receivedTimestampMs - agentTimestampMs;
+    }
+
+    @Override
+    public String toString() {
+        return "keywordIndex=" + keywordIndex + ", samples=" + startSampleIndex + "-"
+                + endSampleIndex + ", engineLatencyUs=" + engineLatencyUs + ", deliveryLatencyMs="
+                + getDeliveryLatencyMs();
+    }
+}
@@ -0,0 +1,34 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+/**
+ * A wake word detector that runs inside the client on captured audio, instead of in the separate
+ * wake word agent. Engines are fed 16 kHz mono 16 bit little endian PCM in blocks of any size
+ * from a single thread, and should neither allocate nor block on audio without a wake word.
+ */
+public interface WakeWordEngine {
+
+    /**
+     * Run the detector over the next block of audio.
+     *
+     * @return details of the wake word if one ended within this block, otherwise null.
+     */
+    WakeWordDetection process(byte[] audio, int offset, int length);
+
+    /**
+     * Forget all audio seen so far, for example after the microphone has been used for a
+     * recording. Sample indexes in detections count from the last reset.
+     */
+    void reset();
+}
@@ -33,6 +33,7 @@ public abstract class WakeWordIPC {
     }
 
     private WakeWordDetectedHandler handler = null;
+    private volatile WakeWordDetection lastDetection = null;
 
     public WakeWordIPC(WakeWordDetectedHandler handler) {
         this.handler = handler;
@@ -44,6 +45,17 @@ public abstract class WakeWordIPC {
         }
     }
 
+    protected void setLastDetection(WakeWordDetection detection) {
+        lastDetection = detection;
+    }
+
+    /**
+     * @return details of the most recent detection, or null if there hasn't been one.
+     */
+    public WakeWordDetection getLastDetection() {
+        return lastDetection;
+    }
+
     public abstract void sendCommand(IPCCommand command) throws IOException;
 
     public abstract void init();
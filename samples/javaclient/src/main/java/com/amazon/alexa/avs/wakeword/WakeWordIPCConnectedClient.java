@@ -15,10 +15,10 @@ package com.amazon.alexa.avs.wakeword;
 
 import com.amazon.alexa.avs.wakeword.WakeWordIPC.IPCCommand;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,66 +26,174 @@ import org.slf4j.LoggerFactory;
 // this class represents a single wake word agent that is connected
 // over some form of IPC.  This agent is expected to notify us
 // when the wake-word is detected from the audio input.
-public class WakeWordIPCConnectedClient implements Runnable {
+// Reads and writes are non-blocking and driven by the selector thread
+// of the owning WakeWordIPCSocket.
+// Agents may speak the framed protocol described in WakeWordIPCMessage;
+// until both sides have exchanged hellos everything is sent as bare commands.
+public class WakeWordIPCConnectedClient {
 
-    private WakeWordIPCSocket wakeWordIPCSocket = null;
-    private Thread connectionThread = null;
-    private Socket clientSocket = null;
-    private DataInputStream input = null;
-    private DataOutputStream output = null;
-    private volatile boolean running = true;
+    private static final int COMMAND_SIZE_BYTES = 4;
+    private static final int BUFFER_SIZE_BYTES = 1024;
+
+    private final WakeWordIPCSocket wakeWordIPCSocket;
+    private final SocketChannel clientChannel;
+    private SelectionKey selectionKey = null;
+    private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE_BYTES);
+    private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE_BYTES);
+    private final WakeWordIPCMessage message = new WakeWordIPCMessage();
+    // protocol version agreed with the agent, 0 while it only speaks bare commands
+    private volatile int protocolVersion = 0;
+    private volatile long lastReceivedMillis = System.currentTimeMillis();
 
     private static final Logger log = LoggerFactory.getLogger(WakeWordIPCSocket.class);
 
-    public WakeWordIPCConnectedClient(Socket clientSocket, WakeWordIPCSocket wakeWordIPCSocket)
-            throws IOException {
+    public WakeWordIPCConnectedClient(SocketChannel clientChannel,
+            WakeWordIPCSocket wakeWordIPCSocket) {
         this.wakeWordIPCSocket = wakeWordIPCSocket;
-        this.clientSocket = clientSocket;
-        input = new DataInputStream(clientSocket.getInputStream());
-        output = new DataOutputStream(clientSocket.getOutputStream());
+        this.clientChannel = clientChannel;
     }
 
-    public void init() {
-        if (connectionThread == null) {
-            connectionThread = new Thread(this);
-            connectionThread.start();
-        }
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
     }
 
-    @Override
-    public void run() {
-        while (running) {
-            try {
-                int receivedCommand = input.readInt();
-                if (IPCCommand.IPC_DISCONNECT.getValue() == receivedCommand) {
-                    terminate();
-                } else if (IPCCommand.IPC_WAKE_WORD_DETECTED.getValue() == receivedCommand) {
-                    log.info("Received wake word detected");
-                    wakeWordIPCSocket.processWakeWordDetected();
-                }
-            } catch (Exception e) {
-                log.warn("Could not read/process the command received:", e);
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    long getLastReceivedMillis() {
+        return lastReceivedMillis;
+    }
+
+    void onReadable() {
+        try {
+            if (clientChannel.read(input) < 0) {
                 terminate();
+                return;
             }
+            lastReceivedMillis = System.currentTimeMillis();
+            input.flip();
+            while (input.remaining() >= COMMAND_SIZE_BYTES) {
+                int value = input.getInt(input.position());
+                if (WakeWordIPCMessage.isFrameHeader(value)) {
+                    int payloadSize = WakeWordIPCMessage.getPayloadSize(value);
+                    if (payloadSize > WakeWordIPCMessage.MAX_PAYLOAD_SIZE) {
+                        log.warn("Wake word agent sent an oversized message, disconnecting");
+                        terminate();
+                        return;
+                    }
+                    if (input.remaining() < WakeWordIPCMessage.HEADER_SIZE + payloadSize) {
+                        break;
+                    }
+                    input.position(input.position() + WakeWordIPCMessage.HEADER_SIZE);
+                    if (!message.parse(input, payloadSize)) {
+                        log.warn("Ignoring malformed message from the wake word agent");
+                    } else if (!processMessage()) {
+                        return;
+                    }
+                } else {
+                    input.position(input.position() + COMMAND_SIZE_BYTES);
+                    if (WakeWordIPCMessage.isHello(value)) {
+                        processHello(WakeWordIPCMessage.getHelloVersion(value));
+                    } else if (!processCommand(value, null)) {
+                        return;
+                    }
+                }
+            }
+            input.compact();
+        } catch (IOException e) {
+            log.warn("Could not read/process the command received:", e);
+            terminate();
+        }
+    }
+
+    private void processHello(int agentVersion) throws IOException {
+        int version = Math.min(agentVersion, WakeWordIPCMessage.PROTOCOL_VERSION);
+        log.info("Wake word agent speaks protocol version " + agentVersion + ", using " + version);
+        synchronized (this) {
+            // answer in the old format, the agent only switches once it has our hello
+            output.putInt(WakeWordIPCMessage.hello(WakeWordIPCMessage.PROTOCOL_VERSION));
+            protocolVersion = version;
+            flush();
+        }
+    }
+
+    /**
+     * @return false if the agent disconnected.
+     */
+    private boolean processMessage() {
+        if (message.getType() == WakeWordIPCMessage.TYPE_COMMAND) {
+            return processCommand(message.getCommand(), message);
+        }
+        // heartbeats only need to refresh lastReceivedMillis
+        return true;
+    }
+
+    /**
+     * @return false if the agent disconnected.
+     */
+    private boolean processCommand(int receivedCommand, WakeWordIPCMessage details) {
+        if (IPCCommand.IPC_DISCONNECT.getValue() == receivedCommand) {
+            terminate();
+            return false;
+        } else if (IPCCommand.IPC_WAKE_WORD_DETECTED.getValue() == receivedCommand) {
+            log.info("Received wake word detected");
+            long now = System.currentTimeMillis();
+            wakeWordIPCSocket.processWakeWordDetected((details == null)
+                    ? new WakeWordDetection(now) : new WakeWordDetection(details, now));
+        }
+        return true;
+    }
+
+    synchronized void onWritable() {
+        try {
+            flush();
+        } catch (IOException e) {
+            log.warn("Could not send to the wake word agent:", e);
+            terminate();
         }
     }
 
     void terminate() {
         log.info("Terminating/Disconneting a Wake Word Agent, Bye!");
-        running = false;
         wakeWordIPCSocket.unregisterClient(this);
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
         try {
-            if (input != null) {
-                input.close();
-                if (clientSocket != null)
-                    clientSocket.close();
-            }
+            clientChannel.close();
         } catch (IOException e) {
-            log.warn("Could not close streams and socket:", e);
+            log.warn("Could not close the channel:", e);
+        }
+    }
+
+    public synchronized void send(IPCCommand command) throws IOException {
+        if (!clientChannel.isOpen()) {
+            return;
         }
+        if (output.remaining() < WakeWordIPCMessage.getCommandFrameSize()) {
+            throw new IOException("Wake word agent is not reading its commands");
+        }
+        if (protocolVersion > 0) {
+            WakeWordIPCMessage.writeCommand(output, command, System.currentTimeMillis());
+        } else {
+            output.putInt(command.getValue());
+        }
+        flush();
     }
 
-    public void send(IPCCommand command) throws IOException {
-        output.writeInt(command.getValue());
+    // write as much as the socket takes without blocking, and let the selector finish the rest
+    private void flush() throws IOException {
+        output.flip();
+        clientChannel.write(output);
+        output.compact();
+        if (selectionKey != null && selectionKey.isValid()) {
+            int interestOps = (output.position() > 0)
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (selectionKey.interestOps() != interestOps) {
+                selectionKey.interestOps(interestOps);
+                wakeWordIPCSocket.wakeUpSelector();
+            }
+        }
     }
 }
@@ -12,12 +12,51 @@
  */
 package com.amazon.alexa.avs.wakeword;
 
+import com.amazon.alexa.avs.CaptureFrameBus;
+import com.amazon.alexa.avs.config.DeviceConfig.WakeWordAgentTransport;
+import com.amazon.alexa.avs.config.DeviceConfig.WakeWordEngineInformation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
 import java.io.IOException;
 
+import javax.sound.sampled.LineUnavailableException;
+
 public class WakeWordIPCFactory {
 
+    private static final Logger log = LoggerFactory.getLogger(WakeWordIPCFactory.class);
+
     public WakeWordIPC createWakeWordIPC(WakeWordDetectedHandler handler, int portNumber)
             throws IOException {
         return new WakeWordIPCSocket(handler, portNumber);
     }
+
+    public WakeWordIPC createWakeWordIPC(WakeWordDetectedHandler handler, int portNumber,
+            WakeWordAgentTransport transport) throws IOException {
+        if (transport == WakeWordAgentTransport.SHARED_MEMORY) {
+            File controlFile = new File(WakeWordIPCSharedMemory.DEFAULT_CONTROL_FILE);
+            try {
+                return new WakeWordIPCSharedMemory(handler, portNumber, controlFile);
+            } catch (IOException e) {
+                log.warn("Could not map " + controlFile + ", falling back to TCP", e);
+            }
+        }
+        return createWakeWordIPC(handler, portNumber);
+    }
+
+    /**
+     * Create an IPC that runs the wake word engine in this process on the given capture frames.
+     *
+     * @throws LineUnavailableException
+     *             if the wake word recordings could not be read.
+     */
+    public WakeWordIPC createInProcessWakeWordIPC(WakeWordDetectedHandler handler,
+            CaptureFrameBus frameBus, WakeWordEngineInformation engineInfo)
+            throws LineUnavailableException {
+        WakeWordEngine engine = TemplateMatchingWakeWordEngine
+                .fromRecordings(engineInfo.getTemplates(), (float) engineInfo.getThreshold());
+        return new WakeWordIPCInProcess(handler, frameBus, engine);
+    }
 }
@@ -0,0 +1,102 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import com.amazon.alexa.avs.CaptureFrameBus;
+import com.amazon.alexa.avs.CaptureFrameBus.Frame;
+import com.amazon.alexa.avs.CaptureFrameBus.FrameListener;
+import com.amazon.alexa.avs.CaptureFrameBus.Subscription;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link WakeWordEngine} on the client's own capture frames in place of the wake word
+ * agent, so there is no second process, no handing the microphone back and forth and no IPC hop.
+ * Commands that would go to the agent are applied here: pausing stops feeding the engine and
+ * resuming starts it over on fresh audio. The capture has to be kept running between recordings
+ * for the engine to hear anything.
+ */
+public class WakeWordIPCInProcess extends WakeWordIPC implements FrameListener {
+    private static final Logger log = LoggerFactory.getLogger(WakeWordIPCInProcess.class);
+
+    private final CaptureFrameBus frameBus;
+    private final WakeWordEngine engine;
+    private final ThreadPoolExecutor detectionDispatcher;
+    private final Runnable dispatchWakeWordDetected = this::wakeWordDetected;
+    private Subscription subscription;
+    private volatile boolean paused = false;
+    // set by resume, acted on by the frame thread which owns the engine
+    private volatile boolean resetRequested = false;
+
+    public WakeWordIPCInProcess(WakeWordDetectedHandler handler, CaptureFrameBus frameBus,
+            WakeWordEngine engine) {
+        super(handler);
+        this.frameBus = frameBus;
+        this.engine = engine;
+
+        detectionDispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "WakeWordDetectionDispatcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        detectionDispatcher.prestartAllCoreThreads();
+    }
+
+    @Override
+    public synchronized void init() {
+        if (subscription == null) {
+            subscription = frameBus.subscribe("WakeWordEngine", this);
+        }
+    }
+
+    @Override
+    public void sendCommand(IPCCommand command) {
+        switch (command) {
+            case IPC_PAUSE_WAKE_WORD_ENGINE:
+                paused = true;
+                break;
+            case IPC_RESUME_WAKE_WORD_ENGINE:
+                resetRequested = true;
+                paused = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onFrame(Frame frame) {
+        if (paused) {
+            return;
+        }
+        if (resetRequested) {
+            resetRequested = false;
+            engine.reset();
+        }
+
+        WakeWordDetection detection = engine.process(frame.getData(), 0, frame.getLength());
+        if (detection != null) {
+            long latencyMs =
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - frame.getTimestampNanos());
+            log.debug("Wake word detected {} ms after the frame was captured", latencyMs);
+            setLastDetection(detection);
+            detectionDispatcher.execute(dispatchWakeWordDetected);
+        }
+    }
+}
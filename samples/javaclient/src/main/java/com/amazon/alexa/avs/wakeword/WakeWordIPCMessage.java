@@ -0,0 +1,211 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import com.amazon.alexa.avs.wakeword.WakeWordIPC.IPCCommand;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One message of the framed wake word IPC protocol, reused for every message a connection reads
+ * so that parsing doesn't allocate.
+ * <p>
+ * Agents that predate the protocol send bare 4 byte commands. Either side announces the protocol
+ * by sending {@link #hello(int)}, which old peers ignore as an unknown command, and only sends
+ * frames once it has received the other side's hello. A frame is a 4 byte header, holding
+ * {@link #FRAME_MARKER} and the payload length, followed by the payload: the protocol version, the
+ * message type, and a list of fields, each a tag, a length and a big endian value. Fields with
+ * unknown tags are skipped, so later versions can add fields without breaking older readers.
+ * <p>
+ * The layout must match WakeWordIPCProtocol.h in the wake word agent.
+ */
+public class WakeWordIPCMessage {
+
+    public static final int PROTOCOL_VERSION = 1;
+
+    static final int HELLO_MARKER = 0x57570000;
+    static final int FRAME_MARKER = 0x57460000;
+    static final int MARKER_MASK = 0xffff0000;
+    static final int HEADER_SIZE = 4;
+    static final int MAX_PAYLOAD_SIZE = 256;
+
+    public static final int TYPE_COMMAND = 1;
+    public static final int TYPE_HEARTBEAT = 2;
+
+    static final int TAG_COMMAND = 1;
+    static final int TAG_TIMESTAMP_MS = 2;
+    static final int TAG_DETECTION_START_INDEX = 3;
+    static final int TAG_DETECTION_END_INDEX = 4;
+    static final int TAG_ENGINE_LATENCY_US = 5;
+    static final int TAG_KEYWORD_INDEX = 6;
+
+    public static final int UNKNOWN = -1;
+
+    private int version;
+    private int type;
+    private int command;
+    private long timestampMs;
+    private int detectionStartIndex;
+    private int detectionEndIndex;
+    private int engineLatencyUs;
+    private int keywordIndex;
+
+    public static int hello(int version) {
+        return HELLO_MARKER | version;
+    }
+
+    public static boolean isHello(int value) {
+        return (value & MARKER_MASK) == HELLO_MARKER;
+    }
+
+    public static int getHelloVersion(int value) {
+        return value & ~MARKER_MASK;
+    }
+
+    public static boolean isFrameHeader(int value) {
+        return (value & MARKER_MASK) == FRAME_MARKER;
+    }
+
+    public static int getPayloadSize(int header) {
+        return header & ~MARKER_MASK;
+    }
+
+    /**
+     * Read a payload from the buffer's position, leaving the position after it.
+     *
+     * @return false if the payload is malformed; the message should then be ignored.
+     */
+    public boolean parse(ByteBuffer buffer, int payloadSize) {
+        int end = buffer.position() + payloadSize;
+        version = UNKNOWN;
+        type = UNKNOWN;
+        command = UNKNOWN;
+        timestampMs = UNKNOWN;
+        detectionStartIndex = UNKNOWN;
+        detectionEndIndex = UNKNOWN;
+        engineLatencyUs = UNKNOWN;
+        keywordIndex = UNKNOWN;
+
+        if (payloadSize < 2) {
+            buffer.position(end);
+            return false;
+        }
+        version = buffer.get() & 0xff;
+        type = buffer.get() & 0xff;
+
+        while (buffer.position() + 2 <= end) {
+            int tag = buffer.get() & 0xff;
+            int length = buffer.get() & 0xff;
+            int valueEnd = buffer.position() + length;
+            if (valueEnd > end) {
+                buffer.position(end);
+                return false;
+            }
+            switch (tag) {
+                case TAG_COMMAND:
+                    command = readInt(buffer, length);
+                    break;
+                case TAG_TIMESTAMP_MS:
+                    timestampMs = (length == 8) ? buffer.getLong() : UNKNOWN;
+                    break;
+                case TAG_DETECTION_START_INDEX:
+                    detectionStartIndex = readInt(buffer, length);
+                    break;
+                case TAG_DETECTION_END_INDEX:
+                    detectionEndIndex = readInt(buffer, length);
+                    break;
+                case TAG_ENGINE_LATENCY_US:
+                    engineLatencyUs = readInt(buffer, length);
+                    break;
+                case TAG_KEYWORD_INDEX:
+                    keywordIndex = readInt(buffer, length);
+                    break;
+                default:
+                    break;
+            }
+            buffer.position(valueEnd);
+        }
+        buffer.position(end);
+        return true;
+    }
+
+    private static int readInt(ByteBuffer buffer, int length) {
+        return (length == 4) ? buffer.getInt() : UNKNOWN;
+    }
+
+    /**
+     * Append a command frame to the buffer.
+     */
+    public static void writeCommand(ByteBuffer buffer, IPCCommand command, long timestampMs) {
+        int payloadSize = 2 + (2 + 4) + (2 + 8);
+        buffer.putInt(FRAME_MARKER | payloadSize);
+        buffer.put((byte) PROTOCOL_VERSION);
+        buffer.put((byte) TYPE_COMMAND);
+        buffer.put((byte) TAG_COMMAND).put((byte) 4).putInt(command.getValue());
+        buffer.put((byte) TAG_TIMESTAMP_MS).put((byte) 8).putLong(timestampMs);
+    }
+
+    public static int getCommandFrameSize() {
+        return HEADER_SIZE + 2 + (2 + 4) + (2 + 8);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the sender's wall clock time when the message was sent, or {@link #UNKNOWN}.
+     */
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    /**
+     * @return index in the agent's capture of the first sample of the wake word, or
+     *         {@link #UNKNOWN}.
+     */
+    public int getDetectionStartIndex() {
+        return detectionStartIndex;
+    }
+
+    /**
+     * @return index in the agent's capture of the sample after the wake word, or
+     *         {@link #UNKNOWN}.
+     */
+    public int getDetectionEndIndex() {
+        return detectionEndIndex;
+    }
+
+    /**
+     * @return time the engine took to detect the wake word once it had the audio, or
+     *         {@link #UNKNOWN}.
+     */
+    public int getEngineLatencyUs() {
+        return engineLatencyUs;
+    }
+
+    /**
+     * @return which of the engine's keywords was detected, or {@link #UNKNOWN}.
+     */
+    public int getKeywordIndex() {
+        return keywordIndex;
+    }
+}
@@ -0,0 +1,144 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wake word IPC through a small memory mapped control block shared with the wake word agent. Each
+ * direction has a ring of command slots and a sequence word; the writer fills the next slot and
+ * then bumps the sequence, which acts as the doorbell. Noticing a detection therefore costs a
+ * memory read instead of a socket wakeup: the doorbell thread spins briefly and then parks for
+ * short, growing intervals, so a detection is seen well within a millisecond while an idle client
+ * uses next to no CPU.
+ * <p>
+ * The TCP transport keeps running alongside, so agents that don't map the control block still
+ * work.
+ */
+public class WakeWordIPCSharedMemory extends WakeWordIPC implements Runnable {
+
+    public static final String DEFAULT_CONTROL_FILE = "/dev/shm/alexa-wake-word-control";
+
+    // the layout must match WakeWordIPCSharedMemory.h in the wake word agent
+    static final int MAGIC = 0x41575743;
+    static final int VERSION = 1;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int AGENT_SEQUENCE_OFFSET = 64;
+    static final int AGENT_SLOTS_OFFSET = AGENT_SEQUENCE_OFFSET + 4;
+    static final int CLIENT_SEQUENCE_OFFSET = 192;
+    static final int CLIENT_SLOTS_OFFSET = CLIENT_SEQUENCE_OFFSET + 4;
+    static final int SLOT_COUNT = 16;
+    static final int CONTROL_BLOCK_SIZE = 4096;
+
+    private static final int SPIN_ITERATIONS = 100;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private static final Logger log = LoggerFactory.getLogger(WakeWordIPCSharedMemory.class);
+
+    private final WakeWordIPC fallback;
+    private final File controlFile;
+    private final MappedByteBuffer controlBlock;
+    private Thread doorbellThread = null;
+    private int clientSequence = 0;
+    // a volatile write/read pair orders the slot and the sequence on weakly ordered CPUs
+    private volatile int fence;
+
+    public WakeWordIPCSharedMemory(WakeWordDetectedHandler handler, int portNumber,
+            File controlFile) throws IOException {
+        super(handler);
+        this.controlFile = controlFile;
+        try (RandomAccessFile file = new RandomAccessFile(controlFile, "rw")) {
+            file.setLength(0);
+            file.setLength(CONTROL_BLOCK_SIZE);
+            controlBlock = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    CONTROL_BLOCK_SIZE);
+        }
+        controlBlock.order(ByteOrder.nativeOrder());
+        controlBlock.putInt(VERSION_OFFSET, VERSION);
+        fence = 0;
+        // the agent only uses the block once the magic is there
+        controlBlock.putInt(MAGIC_OFFSET, MAGIC);
+
+        fallback = new WakeWordIPCSocket(handler, portNumber);
+    }
+
+    public void init() {
+        fallback.init();
+        if (doorbellThread == null) {
+            doorbellThread = new Thread(this, "WakeWordDoorbell");
+            doorbellThread.setDaemon(true);
+            doorbellThread.start();
+            log.info("Waiting for wake word agent commands on " + controlFile);
+        }
+    }
+
+    @Override
+    public void run() {
+        int seen = controlBlock.getInt(AGENT_SEQUENCE_OFFSET);
+        int idle = 0;
+        while (true) {
+            int sequence = controlBlock.getInt(AGENT_SEQUENCE_OFFSET);
+            if (sequence == seen) {
+                idle++;
+                if (idle <= SPIN_ITERATIONS) {
+                    Thread.yield();
+                } else {
+                    long park = MIN_PARK_NANOS << Math.min(idle - SPIN_ITERATIONS, 5);
+                    LockSupport.parkNanos(this, Math.min(park, MAX_PARK_NANOS));
+                }
+                continue;
+            }
+
+            idle = 0;
+            // the volatile read keeps the slots from being read ahead of the sequence
+            int acquire = fence;
+            if (sequence - seen > SLOT_COUNT) {
+                log.warn("Missed " + (sequence - seen - SLOT_COUNT) + " wake word agent commands");
+                seen = sequence - SLOT_COUNT;
+            }
+            while (seen != sequence) {
+                int command =
+                        controlBlock.getInt(AGENT_SLOTS_OFFSET + (seen & (SLOT_COUNT - 1)) * 4);
+                seen++;
+                if (IPCCommand.IPC_WAKE_WORD_DETECTED.getValue() == command) {
+                    log.info("Wake Word Detected ......");
+                    setLastDetection(new WakeWordDetection(System.currentTimeMillis()));
+                    wakeWordDetected();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sendCommand(IPCCommand command) throws IOException {
+        synchronized (this) {
+            controlBlock.putInt(CLIENT_SLOTS_OFFSET + (clientSequence & (SLOT_COUNT - 1)) * 4,
+                    command.getValue());
+            fence = clientSequence;
+            controlBlock.putInt(CLIENT_SEQUENCE_OFFSET, ++clientSequence);
+        }
+        fallback.sendCommand(command);
+    }
+}
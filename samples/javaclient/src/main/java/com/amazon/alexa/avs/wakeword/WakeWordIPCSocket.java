@@ -14,76 +14,161 @@ package com.amazon.alexa.avs.wakeword;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.HashSet;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Wake word IPC over TCP. All agent connections are served by a single selector thread, commands
+ * to the agents are written without blocking, and detections are handed to a dispatcher thread
+ * that is started up front so that reacting to a wake word never waits for a thread to be
+ * created.
+ */
 public class WakeWordIPCSocket extends WakeWordIPC implements Runnable {
 
-    private ServerSocket serverSocket = null;
+    // agents speaking the framed protocol send a heartbeat every few seconds
+    private static final long HEARTBEAT_TIMEOUT_MS = 15000;
+    private static final long HEARTBEAT_CHECK_INTERVAL_MS = 1000;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
     private Thread ipcThread = null;
-    private final Set<WakeWordIPCConnectedClient> connectedClients = new HashSet<>();
+    private final Set<WakeWordIPCConnectedClient> connectedClients = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor detectionDispatcher;
+    private final Runnable dispatchWakeWordDetected = this::wakeWordDetected;
+    private long lastHeartbeatCheckMillis = 0;
     private static final Logger log = LoggerFactory.getLogger(WakeWordIPCSocket.class);
 
     public WakeWordIPCSocket(WakeWordDetectedHandler handler, int portNumber) throws IOException {
         super(handler);
-        serverSocket = new ServerSocket(portNumber, 0, InetAddress.getByName(null));
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getByName(null), portNumber));
+        serverChannel.configureBlocking(false);
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        detectionDispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "WakeWordDetectionDispatcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        detectionDispatcher.prestartAllCoreThreads();
     }
 
     public void init() {
         if (ipcThread == null) {
-            ipcThread = new Thread(this);
+            ipcThread = new Thread(this, "WakeWordIPC");
+            ipcThread.setDaemon(true);
             ipcThread.start();
         }
     }
 
     @Override
     public void run() {
-        while (true) {
+        while (serverChannel.isOpen()) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                WakeWordIPCConnectedClient newConnectedClient =
-                        new WakeWordIPCConnectedClient(clientSocket, this);
-                newConnectedClient.init();
-                registerClient(newConnectedClient);
-            } catch (Exception e) {
-                log.warn("Could not accept/connect IPC client", e);
+                selector.select(HEARTBEAT_CHECK_INTERVAL_MS);
+            } catch (IOException e) {
+                log.error("Wake word IPC selector failed", e);
+                return;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    acceptClient();
+                    continue;
+                }
+                WakeWordIPCConnectedClient client = (WakeWordIPCConnectedClient) key.attachment();
+                if (key.isReadable()) {
+                    client.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    client.onWritable();
+                }
+            }
+            checkHeartbeats();
+        }
+    }
+
+    private void checkHeartbeats() {
+        long now = System.currentTimeMillis();
+        if (now - lastHeartbeatCheckMillis < HEARTBEAT_CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastHeartbeatCheckMillis = now;
+        for (WakeWordIPCConnectedClient client : connectedClients) {
+            if (client.getProtocolVersion() > 0
+                    && now - client.getLastReceivedMillis() > HEARTBEAT_TIMEOUT_MS) {
+                log.warn("Wake word agent stopped sending heartbeats, disconnecting it");
+                client.terminate();
             }
         }
     }
 
-    public synchronized void registerClient(WakeWordIPCConnectedClient newClient) {
+    private void acceptClient() {
+        try {
+            SocketChannel clientChannel = serverChannel.accept();
+            if (clientChannel == null) {
+                return;
+            }
+            clientChannel.configureBlocking(false);
+            clientChannel.socket().setTcpNoDelay(true);
+            WakeWordIPCConnectedClient newConnectedClient =
+                    new WakeWordIPCConnectedClient(clientChannel, this);
+            newConnectedClient.setSelectionKey(
+                    clientChannel.register(selector, SelectionKey.OP_READ, newConnectedClient));
+            registerClient(newConnectedClient);
+        } catch (IOException e) {
+            log.warn("Could not accept/connect IPC client", e);
+        }
+    }
+
+    public void registerClient(WakeWordIPCConnectedClient newClient) {
         connectedClients.add(newClient);
         log.info("New IPC client was accepted, current of current clients is "
                 + connectedClients.size());
     }
 
-    public synchronized void unregisterClient(WakeWordIPCConnectedClient oldClient) {
+    public void unregisterClient(WakeWordIPCConnectedClient oldClient) {
         connectedClients.remove(oldClient);
         log
                 .info("IPC client was removed, current of current clients is "
                         + connectedClients.size());
     }
 
+    void wakeUpSelector() {
+        selector.wakeup();
+    }
+
     @Override
-    public synchronized void sendCommand(IPCCommand command) throws IOException {
+    public void sendCommand(IPCCommand command) throws IOException {
         log.debug("Sending command " + command + " to all connected clients");
         for (WakeWordIPCConnectedClient client : connectedClients) {
             client.send(command);
         }
     }
 
-    public void processWakeWordDetected() {
-        log.info("Wake Word Detected ......");
-        (new Thread() {
-            @Override
-            public void run() {
-                wakeWordDetected();
-            }
-        }).start();
+    public void processWakeWordDetected(WakeWordDetection detection) {
+        log.info("Wake Word Detected ...... " + detection);
+        setLastDetection(detection);
+        detectionDispatcher.execute(dispatchWakeWordDetected);
     }
 }
@@ -0,0 +1,194 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class AudioCacheTest {
+    private static final long BUDGET_BYTES = 400;
+    private static final int ENTRY_BYTES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void committedEntryIsReadable() throws Exception {
+        AudioCache cache = new AudioCache(folder.getRoot().toPath(), BUDGET_BYTES);
+        byte[] content = content(ENTRY_BYTES, 7);
+        AudioCache.Writer writer = begin(cache, "http://a/1");
+        assertNull(cache.get("http://a/1"));
+        writer.write(content, 0, content.length);
+        writer.commit();
+
+        AudioCache.Entry entry = cache.get("http://a/1");
+        assertNotNull(entry);
+        assertEquals("\"etag\"", entry.getEtag());
+        assertEquals("audio/mpeg", entry.getContentType());
+        assertEquals(ENTRY_BYTES, entry.getLength());
+        assertArrayEquals(content, read(entry));
+        assertEquals(ENTRY_BYTES, cache.getUsedBytes());
+    }
+
+    @Test
+    public void incompleteDownloadIsNotCommitted() throws Exception {
+        AudioCache cache = new AudioCache(folder.getRoot().toPath(), BUDGET_BYTES);
+        AudioCache.Writer writer = begin(cache, "http://a/1");
+        writer.write(content(ENTRY_BYTES - 1, 0), 0, ENTRY_BYTES - 1);
+        try {
+            writer.commit();
+            fail("commit of a short download");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertNull(cache.get("http://a/1"));
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(0, listFiles().length);
+        // the url can be downloaded again
+        assertNotNull(begin(cache, "http://a/1"));
+    }
+
+    @Test
+    public void failedCommitLeavesNothingBehind() throws Exception {
+        AudioCache cache = new AudioCache(folder.getRoot().toPath(), BUDGET_BYTES);
+        put(cache, "http://a/1", 1);
+        // the metadata can't be written once the data has been moved into place
+        Files.createDirectory(
+                folder.getRoot().toPath().resolve(AudioCache.key("http://a/1") + ".meta.tmp"));
+
+        AudioCache.Writer writer = begin(cache, "http://a/1");
+        writer.write(content(ENTRY_BYTES, 2), 0, ENTRY_BYTES);
+        try {
+            writer.commit();
+            fail("commit without metadata");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertNull(cache.get("http://a/1"));
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(0, listFiles().length);
+        assertNotNull(begin(cache, "http://a/1"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() throws Exception {
+        AudioCache cache = new AudioCache(folder.getRoot().toPath(), BUDGET_BYTES);
+        for (int i = 1; i <= 4; i++) {
+            put(cache, "http://a/" + i, i);
+        }
+        assertNotNull(cache.get("http://a/1"));
+
+        put(cache, "http://a/5", 5);
+
+        assertEquals(BUDGET_BYTES, cache.getUsedBytes());
+        assertNull(cache.get("http://a/2"));
+        assertNotNull(cache.get("http://a/1"));
+        assertNotNull(cache.get("http://a/5"));
+        assertEquals(8, listFiles().length);
+    }
+
+    @Test
+    public void entryLargerThanAQuarterOfTheBudgetIsNotCached() throws Exception {
+        AudioCache cache = new AudioCache(folder.getRoot().toPath(), BUDGET_BYTES);
+        assertNull(cache.begin("http://a/1", null, null, null, BUDGET_BYTES / 4 + 1, 0));
+    }
+
+    @Test
+    public void entriesAndTheirOrderSurviveRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        AudioCache cache = new AudioCache(directory, BUDGET_BYTES);
+        for (int i = 1; i <= 4; i++) {
+            put(cache, "http://a/" + i, i);
+            // file times only record uses a little apart
+            setLastUsed("http://a/" + i, 1000000L * i);
+        }
+        setLastUsed("http://a/1", 5000000L);
+        // leftovers of a crash: a download in progress and data without metadata
+        Files.write(directory.resolve("partial.part"), new byte[10]);
+        Files.write(directory.resolve(AudioCache.key("http://a/9") + ".data"), new byte[10]);
+
+        AudioCache reopened = new AudioCache(directory, BUDGET_BYTES);
+
+        assertEquals(BUDGET_BYTES, reopened.getUsedBytes());
+        assertEquals(8, listFiles().length);
+        AudioCache.Entry entry = reopened.get("http://a/3");
+        assertEquals("\"etag\"", entry.getEtag());
+        assertArrayEquals(content(ENTRY_BYTES, 3), read(entry));
+
+        put(reopened, "http://a/5", 5);
+        assertNull(reopened.get("http://a/2"));
+        assertNotNull(reopened.get("http://a/1"));
+        assertTrue(Files.exists(directory.resolve(AudioCache.key("http://a/5") + ".data")));
+        assertFalse(Files.exists(directory.resolve(AudioCache.key("http://a/2") + ".data")));
+    }
+
+    private static AudioCache.Writer begin(AudioCache cache, String url) throws IOException {
+        return cache.begin(url, "\"etag\"", null, "audio/mpeg", ENTRY_BYTES, 0);
+    }
+
+    private static void put(AudioCache cache, String url, int seed) throws IOException {
+        try (AudioCache.Writer writer = begin(cache, url)) {
+            writer.write(content(ENTRY_BYTES, seed), 0, ENTRY_BYTES);
+            writer.commit();
+        }
+    }
+
+    private void setLastUsed(String url, long millis) throws IOException {
+        Files.setLastModifiedTime(folder.getRoot().toPath().resolve(AudioCache.key(url) + ".data"),
+                FileTime.fromMillis(millis));
+    }
+
+    private String[] listFiles() {
+        return folder.getRoot().list();
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (seed * 31 + i);
+        }
+        return content;
+    }
+
+    private static byte[] read(AudioCache.Entry entry) throws IOException {
+        byte[] content = new byte[(int) entry.getLength()];
+        try (InputStream in = entry.open(0)) {
+            int offset = 0;
+            while (offset < content.length) {
+                int count = in.read(content, offset, content.length - offset);
+                if (count < 0) {
+                    break;
+                }
+                offset += count;
+            }
+        }
+        return content;
+    }
+}
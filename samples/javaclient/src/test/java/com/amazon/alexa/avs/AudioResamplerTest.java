@@ -0,0 +1,149 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+
+public class AudioResamplerTest {
+    private static final AudioFormat AVS_FORMAT = new AudioFormat(16000f, 16, 1, true, false);
+    private static final float AMPLITUDE = 10000f;
+    // longer than the filter, whose start up is left out of the measurements
+    private static final int SETTLE_SAMPLES = 256;
+
+    @Test
+    public void conversionIsOnlyRequiredForOtherFormats() {
+        assertFalse(AudioResampler.isConversionRequired(AVS_FORMAT,
+                new AudioFormat(16000f, 16, 1, true, false)));
+        assertTrue(AudioResampler.isConversionRequired(
+                new AudioFormat(48000f, 16, 2, true, false), AVS_FORMAT));
+    }
+
+    @Test
+    public void outputLengthFollowsTheRateRatio() {
+        int[][] rates = { { 48000, 16000 }, { 44100, 16000 }, { 8000, 16000 }, { 16000, 24000 } };
+        for (int[] rate : rates) {
+            AudioFormat source = new AudioFormat(rate[0], 16, 2, true, false);
+            AudioFormat target = new AudioFormat(rate[1], 16, 1, true, false);
+            AudioResampler resampler = new AudioResampler(source, target);
+            int frames = rate[0];
+            byte[] input = new byte[frames * source.getFrameSize()];
+
+            int outputBytes = 0;
+            // odd sized chunks, which do not line up with the rate ratio
+            int chunk = 997 * source.getFrameSize();
+            for (int offset = 0; offset < input.length; offset += chunk) {
+                int length = Math.min(chunk, input.length - offset);
+                byte[] output = new byte[resampler.getMaxOutputSize(length)];
+                int count = resampler.convert(input, offset, length, output, 0);
+                assertTrue(count <= output.length);
+                outputBytes += count;
+            }
+
+            // one second of audio in, one second out
+            assertEquals(rate[1] * 2, outputBytes, 2);
+        }
+    }
+
+    @Test
+    public void maxInputSizeFitsInTheOutput() {
+        AudioFormat source = new AudioFormat(44100f, 16, 2, true, false);
+        AudioResampler resampler = new AudioResampler(source, AVS_FORMAT);
+        for (int space = 0; space < 4096; space += 37) {
+            int input = resampler.getMaxInputSize(space);
+            assertEquals(0, input % source.getFrameSize());
+            assertTrue(resampler.getMaxOutputSize(input) <= Math.max(space, 2));
+        }
+    }
+
+    // the filter rolls off between these, around the 8 kHz Nyquist frequency of AVS audio
+    @Test
+    public void passesTheSpeechBand() {
+        AudioResampler resampler =
+                new AudioResampler(new AudioFormat(48000f, 16, 1, true, false), AVS_FORMAT);
+        for (double frequency : new double[] { 100, 1000, 3400, 4000 }) {
+            resampler.reset();
+            assertEquals("gain at " + frequency + " Hz", 1.0,
+                    gain(resampler, 48000, frequency, false), 0.01);
+        }
+        resampler.reset();
+        assertEquals(1.0, gain(resampler, 48000, 5000, false), 0.02);
+    }
+
+    @Test
+    public void removesTonesThatWouldAlias() {
+        AudioResampler resampler =
+                new AudioResampler(new AudioFormat(48000f, 16, 1, true, false), AVS_FORMAT);
+        for (double frequency : new double[] { 11500, 13000, 17000, 23000 }) {
+            resampler.reset();
+            double gain = gain(resampler, 48000, frequency, false);
+            // at least 46 dB down
+            assertTrue("gain at " + frequency + " Hz was " + gain, gain < 0.005);
+        }
+    }
+
+    @Test
+    public void upsamplesWithoutImages() {
+        AudioResampler resampler =
+                new AudioResampler(new AudioFormat(8000f, 16, 1, true, false), AVS_FORMAT);
+        assertEquals(1.0, gain(resampler, 8000, 1000, false), 0.01);
+    }
+
+    @Test
+    public void averagesChannelsOfEitherByteOrder() {
+        AudioResampler resampler =
+                new AudioResampler(new AudioFormat(48000f, 16, 2, true, true), AVS_FORMAT);
+        assertEquals(1.0, gain(resampler, 48000, 1000, true), 0.01);
+    }
+
+    /**
+     * Convert a second of a sine at the frequency, with the same tone on both channels of a
+     * stereo source, and measure the amplitude that comes out.
+     *
+     * @return the output amplitude relative to the input.
+     */
+    private static double gain(AudioResampler resampler, int sourceRate, double frequency,
+            boolean stereoBigEndian) {
+        int channels = stereoBigEndian ? 2 : 1;
+        byte[] input = new byte[sourceRate * channels * 2];
+        for (int i = 0; i < sourceRate; i++) {
+            double phase = 2 * Math.PI * frequency * i / sourceRate;
+            short sample = (short) Math.round(AMPLITUDE * Math.sin(phase));
+            for (int channel = 0; channel < channels; channel++) {
+                int index = (i * channels + channel) * 2;
+                if (stereoBigEndian) {
+                    input[index] = (byte) (sample >> 8);
+                    input[index + 1] = (byte) sample;
+                } else {
+                    input[index] = (byte) sample;
+                    input[index + 1] = (byte) (sample >> 8);
+                }
+            }
+        }
+        byte[] output = new byte[resampler.getMaxOutputSize(input.length)];
+        int samples = resampler.convert(input, 0, input.length, output, 0) / 2;
+
+        double sumOfSquares = 0;
+        for (int i = SETTLE_SAMPLES; i < samples; i++) {
+            short sample = (short) ((output[i * 2 + 1] << 8) | (output[i * 2] & 0xff));
+            sumOfSquares += (double) sample * sample;
+        }
+        double rms = Math.sqrt(sumOfSquares / (samples - SETTLE_SAMPLES));
+        return rms * Math.sqrt(2) / AMPLITUDE;
+    }
+}
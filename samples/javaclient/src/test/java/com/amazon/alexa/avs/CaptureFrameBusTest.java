@@ -0,0 +1,186 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class CaptureFrameBusTest {
+    private static final int CAPACITY = 8;
+    private static final int FRAME_SIZE = 16;
+    private static final long TIMEOUT_MS = 5000;
+
+    private final CaptureFrameBus bus = new CaptureFrameBus(CAPACITY, FRAME_SIZE);
+    private final List<CaptureFrameBus.Subscription> subscriptions = new ArrayList<>();
+    // hold up the slow subscriber of the lag tests on frame 0
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        for (CaptureFrameBus.Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    public void framesWrapAroundTheRingIntact() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        subscribe("copy", frame -> received.add(describe(frame)));
+
+        for (int sequence = 0; sequence < CAPACITY * 3; sequence++) {
+            publish(sequence);
+            // waits for each frame, so the listener never falls behind
+            assertEquals(describe(sequence, content(sequence)),
+                    received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(0, subscriptions.get(0).getDroppedFrames());
+        assertEquals(0, subscriptions.get(0).getTornFrames());
+    }
+
+    @Test
+    public void subscriberOnlySeesFramesPublishedAfterSubscribing() throws Exception {
+        publish(0);
+        publish(1);
+        BlockingQueue<Long> received = new LinkedBlockingQueue<>();
+        subscribe("late", frame -> received.add(frame.getSequence()));
+
+        publish(2);
+
+        assertEquals(Long.valueOf(2), received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNull(received.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void laggingSubscriberSkipsToTheNewestFrame() throws Exception {
+        BlockingQueue<Long> slow = blockedSubscriber();
+        BlockingQueue<Long> fast = new LinkedBlockingQueue<>();
+        subscribe("fast", frame -> fast.add(frame.getSequence()));
+
+        // the slot of frame 0 is not claimed again, so it isn't torn
+        publishPaced(CAPACITY - 1, fast);
+        release();
+
+        assertEquals(Long.valueOf(CAPACITY - 1), slow.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        CaptureFrameBus.Subscription slowSubscription = subscriptions.get(0);
+        assertEquals(CAPACITY - 2, slowSubscription.getDroppedFrames());
+        assertEquals(0, slowSubscription.getTornFrames());
+        // the other consumer didn't miss anything
+        assertEquals(0, subscriptions.get(1).getDroppedFrames());
+    }
+
+    @Test
+    public void listenerLappedWhileReadingSeesATornFrame() throws Exception {
+        BlockingQueue<Long> slow = blockedSubscriber();
+        BlockingQueue<Long> fast = new LinkedBlockingQueue<>();
+        subscribe("fast", frame -> fast.add(frame.getSequence()));
+
+        // frame 8 is captured into the slot the slow listener is still reading
+        publishPaced(CAPACITY, fast);
+        release();
+
+        assertEquals(Long.valueOf(CAPACITY), slow.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        CaptureFrameBus.Subscription slowSubscription = subscriptions.get(0);
+        assertEquals(1, slowSubscription.getTornFrames());
+        assertEquals(CAPACITY - 1, slowSubscription.getDroppedFrames());
+        assertEquals(0, subscriptions.get(1).getDroppedFrames());
+        assertEquals(0, subscriptions.get(1).getTornFrames());
+    }
+
+    /**
+     * @return the sequences received by a subscriber which holds on to frame 0 until
+     *         {@link #release()}.
+     */
+    private BlockingQueue<Long> blockedSubscriber() {
+        BlockingQueue<Long> received = new LinkedBlockingQueue<>();
+        subscribe("slow", frame -> {
+            if (frame.getSequence() == 0) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                received.add(frame.getSequence());
+            }
+        });
+        return received;
+    }
+
+    private void release() {
+        released.countDown();
+    }
+
+    /**
+     * Publish frames from the first up to the last sequence, each once the subscriber has seen the
+     * one before, after the blocked subscriber has taken frame 0.
+     */
+    private void publishPaced(int last, BlockingQueue<Long> subscriber)
+            throws InterruptedException {
+        publish(0);
+        assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Long.valueOf(0), subscriber.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int sequence = 1; sequence <= last; sequence++) {
+            publish(sequence);
+            assertEquals(Long.valueOf(sequence),
+                    subscriber.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void subscribe(String name, CaptureFrameBus.FrameListener listener) {
+        subscriptions.add(bus.subscribe(name, listener));
+    }
+
+    private void publish(int sequence) {
+        CaptureFrameBus.Frame frame = bus.claim();
+        assertEquals(sequence, frame.getSequence());
+        byte[] content = content(sequence);
+        System.arraycopy(content, 0, frame.getData(), 0, content.length);
+        bus.publish(frame, content.length, timestamp(sequence));
+    }
+
+    /**
+     * @return a length that differs from one frame to the next, filled with the sequence.
+     */
+    private static byte[] content(int sequence) {
+        byte[] content = new byte[1 + sequence % FRAME_SIZE];
+        Arrays.fill(content, (byte) sequence);
+        return content;
+    }
+
+    private static long timestamp(long sequence) {
+        return sequence * 1000L;
+    }
+
+    private static String describe(long sequence, byte[] content) {
+        return sequence + "@" + timestamp(sequence) + ":" + Arrays.toString(content);
+    }
+
+    private static String describe(CaptureFrameBus.Frame frame) {
+        return frame.getSequence() + "@" + frame.getTimestampNanos() + ":"
+                + Arrays.toString(Arrays.copyOf(frame.getData(), frame.getLength()));
+    }
+}
@@ -0,0 +1,87 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sound.sampled.AudioFormat;
+
+public class DecodedAudioTest {
+    private static final String SOUND = "res/alarm.mp3";
+    // how far decoding runs ahead of playback
+    private static final long BUFFER_MS = 2000;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void fullBufferDoesNotHoldOnToTheDecoderThread() throws Exception {
+        // decodes until its buffer is full and is never read
+        DecodedAudio waiting = DecodedAudio.decode(openLongSound(), executor);
+        DecodedAudio played = DecodedAudio.decode(openLongSound(), executor);
+
+        // longer than the buffer, so the first item can't have been decoded to its end
+        assertTrue(readAllMs(played) > BUFFER_MS);
+        waiting.cancel();
+    }
+
+    @Test(timeout = 10000)
+    public void decodingResumesAsTheAudioIsRead() throws Exception {
+        DecodedAudio audio = DecodedAudio.decode(openLongSound(), executor);
+        audio.awaitFormat();
+        // give the decoder time to fill its buffer and give up the thread
+        Thread.sleep(200);
+
+        assertTrue(readAllMs(audio) > BUFFER_MS);
+    }
+
+    /**
+     * @return the duration of the audio read to its end.
+     */
+    private static long readAllMs(DecodedAudio audio) throws Exception {
+        AudioFormat format = audio.awaitFormat();
+        PcmRingBuffer ring = audio.getBuffer();
+        byte[] chunk = new byte[4096];
+        long total = 0;
+        int count;
+        while ((count = ring.read(chunk, 0, chunk.length)) >= 0) {
+            total += count;
+        }
+        return (long) (total * 1000 / (format.getFrameRate() * format.getFrameSize()));
+    }
+
+    /**
+     * @return the sound three times over, about 5 s; MP3 frames are independent so the copies
+     *         decode as one stream.
+     */
+    private static InputStream openLongSound() {
+        ClassLoader loader = DecodedAudioTest.class.getClassLoader();
+        return new SequenceInputStream(Collections.enumeration(
+                Arrays.asList(loader.getResourceAsStream(SOUND), loader.getResourceAsStream(SOUND),
+                        loader.getResourceAsStream(SOUND))));
+    }
+}
@@ -0,0 +1,180 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.message.Header;
+import com.amazon.alexa.avs.message.response.Directive;
+
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long directives wait to be handled in a mixed stream where some are slow, once with
+ * every directive going through a single synchronized dispatcher as before, and once with the
+ * {@link NamespaceDirectiveDispatcher}. Handlers are simulated by sleeping; the latency reported
+ * is from a directive being queued until its handler finished.
+ * <p>
+ * Usage: {@code DirectiveDispatchBenchmark [seconds]}
+ */
+public class DirectiveDispatchBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(DirectiveDispatchBenchmark.class);
+
+    /**
+     * One kind of directive in the stream: how often it arrives and how long it takes to handle.
+     */
+    private static class Workload {
+        private final String namespace;
+        private final long periodMs;
+        private final long handlingMs;
+
+        Workload(String namespace, long periodMs, long handlingMs) {
+            this.namespace = namespace;
+            this.periodMs = periodMs;
+            this.handlingMs = handlingMs;
+        }
+    }
+
+    private static final List<Workload> WORKLOADS = Arrays.asList(
+            // a Play copying a large attachment to disk
+            new Workload(AVSAPIConstants.AudioPlayer.NAMESPACE, 1000, 400),
+            new Workload(AVSAPIConstants.Speaker.NAMESPACE, 100, 1),
+            new Workload(AVSAPIConstants.Alerts.NAMESPACE, 250, 5),
+            new Workload(AVSAPIConstants.System.NAMESPACE, 500, 1));
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<Directive> directives = new ArrayList<>();
+        List<Long> dueMs = new ArrayList<>();
+        createStream(seconds * 1000L, directives, dueMs);
+
+        log.info("Synchronized dispatch:");
+        report(directives, runSynchronized(directives, dueMs));
+        log.info("Namespace dispatch:");
+        report(directives, runNamespaced(directives, dueMs));
+    }
+
+    private static void createStream(long durationMs, List<Directive> directives,
+            List<Long> dueMs) throws Exception {
+        for (long time = 0; time < durationMs; time++) {
+            for (Workload workload : WORKLOADS) {
+                if (time % workload.periodMs == 0) {
+                    String index = Integer.toString(directives.size());
+                    // no payload class exists for this name, so the payload stays empty
+                    directives.add(new Directive(
+                            new Header(workload.namespace, "Benchmark" + workload.handlingMs),
+                            JsonNodeFactory.instance.objectNode(), index));
+                    dueMs.add(time);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return latency of each directive in nanoseconds.
+     */
+    private static long[] runSynchronized(List<Directive> directives, List<Long> dueMs)
+            throws Exception {
+        long[] queuedNanos = new long[directives.size()];
+        long[] latencyNanos = new long[directives.size()];
+        Object lock = new Object();
+        DirectiveDispatcher handler = directive -> {
+            synchronized (lock) {
+                simulateHandling(directive, queuedNanos, latencyNanos);
+            }
+        };
+
+        BlockingQueue<Directive> queue = new LinkedBlockingQueue<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < directives.size(); i++) {
+                    handler.dispatch(queue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        produce(directives, dueMs, queuedNanos, queue::add);
+        consumer.join();
+        return latencyNanos;
+    }
+
+    private static long[] runNamespaced(List<Directive> directives, List<Long> dueMs)
+            throws Exception {
+        long[] queuedNanos = new long[directives.size()];
+        long[] latencyNanos = new long[directives.size()];
+        NamespaceDirectiveDispatcher dispatcher = new NamespaceDirectiveDispatcher(
+                directive -> simulateHandling(directive, queuedNanos, latencyNanos));
+        List<CompletableFuture<Void>> handled = new ArrayList<>();
+        produce(directives, dueMs, queuedNanos,
+                directive -> handled.add(dispatcher.submit(directive)));
+        CompletableFuture.allOf(handled.toArray(new CompletableFuture<?>[handled.size()])).join();
+        dispatcher.shutdown();
+        return latencyNanos;
+    }
+
+    private static void produce(List<Directive> directives, List<Long> dueMs, long[] queuedNanos,
+            DirectiveDispatcher sink) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < directives.size(); i++) {
+            long delayNanos =
+                    startNanos + TimeUnit.MILLISECONDS.toNanos(dueMs.get(i)) - System.nanoTime();
+            if (delayNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+            queuedNanos[i] = System.nanoTime();
+            sink.dispatch(directives.get(i));
+        }
+    }
+
+    private static void simulateHandling(Directive directive, long[] queuedNanos,
+            long[] latencyNanos) {
+        int index = Integer.parseInt(directive.getRawMessage());
+        long handlingMs = Long.parseLong(directive.getName().substring("Benchmark".length()));
+        try {
+            Thread.sleep(handlingMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        latencyNanos[index] = System.nanoTime() - queuedNanos[index];
+    }
+
+    private static void report(List<Directive> directives, long[] latencyNanos) {
+        Map<String, List<Long>> byNamespace = new LinkedHashMap<>();
+        for (int i = 0; i < directives.size(); i++) {
+            byNamespace.computeIfAbsent(directives.get(i).getNamespace(), k -> new ArrayList<>())
+                    .add(latencyNanos[i]);
+        }
+        for (Map.Entry<String, List<Long>> entry : byNamespace.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            log.info(String.format("  %-16s n=%4d p50=%7.1f ms p99=%7.1f ms max=%7.1f ms",
+                    entry.getKey(), sorted.length, percentile(sorted, 0.5),
+                    percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6));
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, fraction * sorted.length)] / 1e6;
+    }
+}
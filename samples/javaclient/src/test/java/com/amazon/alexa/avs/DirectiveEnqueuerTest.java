@@ -0,0 +1,156 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexa.avs.message.DialogRequestIdHeader;
+import com.amazon.alexa.avs.message.response.Directive;
+import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+public class DirectiveEnqueuerTest {
+    private static final long TTL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(DirectiveEnqueuer.PENDING_TTL_MS);
+
+    private final FakeClock clock = new FakeClock();
+    private final Queue<Directive> dependentQueue = new LinkedBlockingDeque<>();
+    private final Queue<Directive> independentQueue = new LinkedBlockingDeque<>();
+    private DirectiveEnqueuer enqueuer;
+
+    @Before
+    public void setUp() {
+        enqueuer = new DirectiveEnqueuer(DialogRequestIdAuthority.getInstance(), dependentQueue,
+                independentQueue, null, new TimerWheel(clock));
+    }
+
+    @After
+    public void tearDown() {
+        enqueuer.shutdown();
+    }
+
+    @Test
+    public void directiveWaitsForItsAttachment() throws Exception {
+        Directive directive = speak("cid:audio");
+        enqueuer.onDirective(directive);
+        assertTrue(independentQueue.isEmpty());
+        assertEquals(1, enqueuer.getIncompleteDirectiveCount());
+
+        enqueuer.onDirectiveAttachment("audio", content());
+
+        assertSame(directive, independentQueue.poll());
+        assertEquals(0, enqueuer.getIncompleteDirectiveCount());
+    }
+
+    @Test
+    public void attachmentWaitsForItsDirective() throws Exception {
+        enqueuer.onDirectiveAttachment("audio", content());
+        assertEquals(1, enqueuer.getPendingAttachmentCount());
+
+        Directive directive = speak("cid:audio");
+        enqueuer.onDirective(directive);
+
+        assertSame(directive, independentQueue.poll());
+        assertEquals(0, enqueuer.getPendingAttachmentCount());
+    }
+
+    @Test
+    public void directiveWithoutAttachmentIsDroppedAfterTtl() throws Exception {
+        Directive stranded = speak("cid:never");
+        Directive behind = directive("Behind");
+        enqueuer.onDirective(stranded);
+        enqueuer.onDirective(behind);
+
+        clock.advance(TTL_NANOS - 1, TimeUnit.NANOSECONDS);
+        enqueuer.evictExpired();
+        assertEquals(2, enqueuer.getIncompleteDirectiveCount());
+
+        clock.advance(1, TimeUnit.NANOSECONDS);
+        enqueuer.evictExpired();
+
+        assertEquals(0, enqueuer.getIncompleteDirectiveCount());
+        assertEquals(1, enqueuer.getExpiredDirectiveCount());
+        // the directive held up behind the dropped one goes through
+        assertSame(behind, independentQueue.poll());
+        assertTrue(independentQueue.isEmpty());
+    }
+
+    @Test
+    public void attachmentWithoutDirectiveIsDroppedAfterTtl() throws Exception {
+        ClosingInputStream orphan = new ClosingInputStream();
+        enqueuer.onDirectiveAttachment("orphan", orphan);
+        clock.advance(TTL_NANOS / 2, TimeUnit.NANOSECONDS);
+        enqueuer.onDirectiveAttachment("recent", content());
+
+        clock.advance(TTL_NANOS / 2, TimeUnit.NANOSECONDS);
+        enqueuer.evictExpired();
+
+        assertEquals(1, enqueuer.getPendingAttachmentCount());
+        assertEquals(1, enqueuer.getOrphanedAttachmentCount());
+        assertTrue(orphan.closed);
+    }
+
+    @Test
+    public void arrivingPartEvictsExpiredEntries() throws Exception {
+        enqueuer.onDirectiveAttachment("orphan", content());
+        clock.advance(TTL_NANOS, TimeUnit.NANOSECONDS);
+
+        enqueuer.onDirective(directive("Unrelated"));
+
+        assertEquals(0, enqueuer.getPendingAttachmentCount());
+        assertEquals(1, enqueuer.getOrphanedAttachmentCount());
+    }
+
+    /**
+     * A directive of a made up interface, so that no payload needs to be parsed.
+     */
+    private static Directive directive(String name) throws Exception {
+        return new Directive(new DialogRequestIdHeader("Test", name, null), null, "");
+    }
+
+    private static Directive speak(String url) throws Exception {
+        Speak speak = new Speak();
+        speak.setUrl(url);
+        Directive directive = directive("Speak");
+        directive.setPayload(speak);
+        return directive;
+    }
+
+    private static InputStream content() {
+        return new ByteArrayInputStream(new byte[1]);
+    }
+
+    private static class ClosingInputStream extends ByteArrayInputStream {
+        private volatile boolean closed;
+
+        ClosingInputStream() {
+            super(new byte[1]);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
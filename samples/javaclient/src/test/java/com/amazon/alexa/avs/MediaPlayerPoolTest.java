@@ -0,0 +1,141 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.co.caprica.vlcj.player.MediaPlayer;
+
+public class MediaPlayerPoolTest {
+    private final List<MediaPlayer> created = new ArrayList<>();
+    private final Map<MediaPlayer, FakePlayer> fakes = new IdentityHashMap<>();
+
+    @Test
+    public void healthyPlayerIsReused() {
+        MediaPlayerPool pool = new MediaPlayerPool(this::newPlayer, 2, 10);
+
+        MediaPlayer player = pool.acquire();
+        pool.release(player, true);
+
+        assertSame(player, pool.acquire());
+        assertEquals(1, created.size());
+        assertEquals(1, fakes.get(player).stopped);
+        assertEquals(0, fakes.get(player).released);
+    }
+
+    @Test
+    public void failedPlayerIsReleased() {
+        MediaPlayerPool pool = new MediaPlayerPool(this::newPlayer, 2, 10);
+
+        MediaPlayer player = pool.acquire();
+        pool.release(player, false);
+
+        assertEquals(1, fakes.get(player).released);
+        assertNotSame(player, pool.acquire());
+    }
+
+    @Test
+    public void playerThatKeepsPlayingIsReleased() {
+        MediaPlayerPool pool = new MediaPlayerPool(this::newPlayer, 2, 10);
+
+        MediaPlayer player = pool.acquire();
+        fakes.get(player).ignoresStop = true;
+        pool.release(player, true);
+
+        assertEquals(1, fakes.get(player).released);
+        assertNotSame(player, pool.acquire());
+    }
+
+    @Test
+    public void playerIsRetiredAfterMaxUses() {
+        MediaPlayerPool pool = new MediaPlayerPool(this::newPlayer, 2, 3);
+
+        MediaPlayer first = pool.acquire();
+        for (int i = 1; i < 3; i++) {
+            pool.release(first, true);
+            assertSame(first, pool.acquire());
+        }
+        pool.release(first, true);
+
+        assertEquals(1, fakes.get(first).released);
+        assertNotSame(first, pool.acquire());
+    }
+
+    @Test
+    public void surplusIdlePlayersAreReleased() {
+        MediaPlayerPool pool = new MediaPlayerPool(this::newPlayer, 1, 10);
+
+        MediaPlayer first = pool.acquire();
+        MediaPlayer second = pool.acquire();
+        pool.release(first, true);
+        pool.release(second, true);
+
+        assertEquals(0, fakes.get(first).released);
+        assertEquals(1, fakes.get(second).released);
+        assertSame(first, pool.acquire());
+    }
+
+    private MediaPlayer newPlayer() {
+        FakePlayer fake = new FakePlayer();
+        MediaPlayer player = (MediaPlayer) Proxy.newProxyInstance(
+                MediaPlayer.class.getClassLoader(), new Class<?>[] { MediaPlayer.class }, fake);
+        created.add(player);
+        fakes.put(player, fake);
+        return player;
+    }
+
+    /**
+     * Stands in for a VLC player, recording the calls the pool makes.
+     */
+    private static class FakePlayer implements InvocationHandler {
+        private boolean playing = true;
+        private boolean ignoresStop;
+        private int stopped;
+        private int released;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "stop":
+                    stopped++;
+                    playing = ignoresStop;
+                    return null;
+                case "isPlaying":
+                    return playing;
+                case "release":
+                    released++;
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakePlayer";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexa.avs.message.Header;
+import com.amazon.alexa.avs.message.response.Directive;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NamespaceDirectiveDispatcherTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private NamespaceDirectiveDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void handlesDirectivesOfANamespaceInOrder() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher = new NamespaceDirectiveDispatcher(directive -> {
+            handled.add(directive.getName());
+        });
+
+        List<String> expected = new ArrayList<>();
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 100; i++) {
+            expected.add("Directive" + i);
+            last = dispatcher.submit(directive("Ordered", "Directive" + i));
+        }
+        last.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(expected, handled);
+    }
+
+    @Test
+    public void slowNamespaceDoesNotHoldUpAnother() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher = new NamespaceDirectiveDispatcher(directive -> {
+            if ("Slow".equals(directive.getNamespace())) {
+                await(release);
+            }
+        });
+
+        CompletableFuture<Void> first = dispatcher.submit(directive("Slow", "First"));
+        CompletableFuture<Void> second = dispatcher.submit(directive("Slow", "Second"));
+        dispatcher.submit(directive("Fast", "Only")).get(TIMEOUT_SECONDS,
+                TimeUnit.SECONDS);
+
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        release.countDown();
+        second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void sharedExecutorHandlesNamespacesOneAtATime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher = new NamespaceDirectiveDispatcher(directive -> {
+            if ("First".equals(directive.getNamespace())) {
+                await(release);
+            }
+            handled.add(directive.getNamespace());
+        });
+        dispatcher.shareExecutor("First", "Second");
+
+        CompletableFuture<Void> first = dispatcher.submit(directive("First", "Blocked"));
+        CompletableFuture<Void> second = dispatcher.submit(directive("Second", "Waiting"));
+        dispatcher.submit(directive("Other", "Only")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        release.countDown();
+        second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("Other", "First", "Second"), handled);
+    }
+
+    @Test
+    public void failedDirectiveDoesNotStopItsNamespace() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher = new NamespaceDirectiveDispatcher(directive -> {
+            if ("Fail".equals(directive.getName())) {
+                throw new IllegalStateException("expected by the test");
+            }
+            handled.add(directive.getName());
+        });
+
+        dispatcher.dispatchAndWait(directive("Failing", "Fail"));
+        dispatcher.dispatchAndWait(directive("Failing", "Next"));
+
+        assertEquals(Collections.singletonList("Next"), handled);
+    }
+
+    @Test
+    public void dispatchAndWaitReturnsOnceHandled() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher = new NamespaceDirectiveDispatcher(directive -> {
+            handled.add(directive.getName());
+        });
+
+        dispatcher.dispatchAndWait(directive("Waited", "Only"));
+
+        assertEquals(Collections.singletonList("Only"), handled);
+    }
+
+    /**
+     * A directive of a made up interface, so that no payload needs to be parsed.
+     */
+    private static Directive directive(String namespace, String name) throws Exception {
+        return new Directive(new Header(namespace, name), null, "");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Measures the mixing path of {@link SpeechRenderEngine} without an audio device: per 10 ms
+ * period, a speech channel in the output format, an earcon channel and an alert channel decoded
+ * at 22.05 kHz which has to be resampled are added with ramped gains and clipped to 16 bit. It
+ * reports the time per period, how many times faster than real time that is, and the bytes
+ * allocated per period, which should be zero.
+ * <p>
+ * Usage: {@code PcmMixerBenchmark [seconds of audio]}
+ */
+public class PcmMixerBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(PcmMixerBenchmark.class);
+
+    private static final int PERIOD_FRAMES = 240;
+    private static final AudioFormat ALERT_FORMAT = new AudioFormat(22050f, 16, 1, true, false);
+
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int periods = seconds * 100;
+
+        byte[] speech = noise(PERIOD_FRAMES * 2);
+        byte[] earcon = noise(PERIOD_FRAMES * 2);
+        AudioResampler resampler =
+                new AudioResampler(ALERT_FORMAT, SpeechRenderEngine.OUTPUT_FORMAT);
+        byte[] alertInput = noise(resampler.getMaxInputSize(PERIOD_FRAMES * 2 * 2));
+        byte[] alert = new byte[resampler.getMaxOutputSize(alertInput.length)];
+        float[] mix = new float[PERIOD_FRAMES];
+        byte[] output = new byte[PERIOD_FRAMES * 2];
+
+        // warm up, then measure
+        run(periods / 10, speech, earcon, resampler, alertInput, alert, mix, output);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long checksum = run(periods, speech, earcon, resampler, alertInput, alert, mix, output);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        log.info("Mixed {} periods of 3 channels in {} ms", periods, elapsed / 1000000);
+        log.info(String.format("%.2f us per 10 ms period, %.0fx real time",
+                elapsed / 1000.0 / periods, periods * 10e6 / elapsed));
+        log.info(String.format("%.2f bytes allocated per period (checksum %d)",
+                (double) allocated / periods, checksum));
+    }
+
+    private static long run(int periods, byte[] speech, byte[] earcon, AudioResampler resampler,
+            byte[] alertInput, byte[] alert, float[] mix, byte[] output) {
+        long checksum = 0;
+        float gain = 1f;
+        for (int period = 0; period < periods; period++) {
+            Arrays.fill(mix, 0f);
+            PcmMixer.add(speech, 0, mix, 0, PERIOD_FRAMES, 1f, 1f);
+            PcmMixer.add(earcon, 0, mix, 0, PERIOD_FRAMES, 0.8f, 0.8f);
+            int alertFrames =
+                    resampler.convert(alertInput, 0, alertInput.length, alert, 0) / 2;
+            // the alert ducks and recovers, so the gain is always ramping
+            float target = (period / 50) % 2 == 0 ? 0.25f : 1f;
+            float next = PcmMixer.approach(gain, target, PERIOD_FRAMES / 720f);
+            PcmMixer.add(alert, 0, mix, 0, Math.min(alertFrames, PERIOD_FRAMES), gain, next);
+            gain = next;
+            PcmMixer.toPcm(mix, PERIOD_FRAMES, output);
+            checksum += output[period % output.length];
+        }
+        return checksum;
+    }
+
+    private static byte[] noise(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,82 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PcmRingBufferTest {
+    private final PcmRingBuffer buffer = new PcmRingBuffer(8);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void writesWhatFitsAndWrapsAround() throws Exception {
+        assertEquals(6, buffer.writeAvailable(bytes(1, 6), 0, 6));
+        byte[] read = new byte[4];
+        assertEquals(4, buffer.readAvailable(read, 0, 4));
+        assertArrayEquals(bytes(1, 4), read);
+
+        assertEquals(6, buffer.writeAvailable(bytes(7, 8), 0, 8));
+        assertEquals(0, buffer.writeAvailable(bytes(1, 1), 0, 1));
+
+        byte[] rest = new byte[8];
+        int count = buffer.readAvailable(rest, 0, 8);
+        count += buffer.readAvailable(rest, count, 8 - count);
+        assertEquals(8, count);
+        assertArrayEquals(new byte[] { 5, 6, 7, 8, 9, 10, 11, 12 }, rest);
+    }
+
+    @Test
+    public void listenerWaitsForTheReaderToMakeRoom() throws Exception {
+        buffer.writeAvailable(bytes(1, 8), 0, 8);
+        buffer.whenSpace(calls::incrementAndGet);
+        assertEquals(0, calls.get());
+
+        buffer.readAvailable(new byte[1], 0, 1);
+        assertEquals(1, calls.get());
+        buffer.readAvailable(new byte[1], 0, 1);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void listenerRunsAtOnceIfThereIsSpace() {
+        buffer.writeAvailable(bytes(1, 7), 0, 7);
+        buffer.whenSpace(calls::incrementAndGet);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void listenerRunsOnCancel() {
+        buffer.writeAvailable(bytes(1, 8), 0, 8);
+        buffer.whenSpace(calls::incrementAndGet);
+
+        buffer.cancel();
+
+        assertEquals(1, calls.get());
+        assertTrue(buffer.isCancelled());
+        assertEquals(-1, buffer.writeAvailable(bytes(1, 1), 0, 1));
+    }
+
+    private static byte[] bytes(int first, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) (first + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SpeechPipelineTest {
+    private final FakeClock clock = new FakeClock();
+    private SpeechPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        SpeechPipeline.Listener listener = new SpeechPipeline.Listener() {
+            @Override
+            public void onSpeechItemStarted(SpeakItem item, long timeToFirstAudioMs) {
+            }
+
+            @Override
+            public void onSpeechItemFinished(SpeakItem item, boolean last) {
+            }
+        };
+        pipeline = new SpeechPipeline(new SpeechRenderEngine(), listener, new TimerWheel(clock));
+    }
+
+    @Test
+    public void preparesAtMostMaxItems() {
+        BlockingInputStream extra = new BlockingInputStream();
+        for (int i = 0; i < SpeechPipeline.MAX_PREPARED_ITEMS; i++) {
+            pipeline.prepare("token" + i, new BlockingInputStream());
+        }
+        pipeline.prepare("extra", extra);
+
+        assertEquals(SpeechPipeline.MAX_PREPARED_ITEMS, pipeline.getPreparedCount());
+        // left for the item to decode when it is queued
+        assertFalse(extra.isClosed());
+    }
+
+    @Test
+    public void preparedItemIsCancelledAfterTtl() throws Exception {
+        BlockingInputStream stale = new BlockingInputStream();
+        pipeline.prepare("stale", stale);
+        clock.advance(SpeechPipeline.PREPARED_TTL_MS / 2, TimeUnit.MILLISECONDS);
+        pipeline.prepare("recent", new BlockingInputStream());
+
+        clock.advance(SpeechPipeline.PREPARED_TTL_MS / 2 - 1, TimeUnit.MILLISECONDS);
+        pipeline.expirePrepared();
+        assertEquals(2, pipeline.getPreparedCount());
+
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        pipeline.expirePrepared();
+
+        assertEquals(1, pipeline.getPreparedCount());
+        assertTrue(stale.isClosed());
+    }
+
+    @Test
+    public void stopCancelsPreparedItems() {
+        BlockingInputStream first = new BlockingInputStream();
+        BlockingInputStream second = new BlockingInputStream();
+        pipeline.prepare("first", first);
+        pipeline.prepare("second", second);
+
+        pipeline.stop();
+
+        assertEquals(0, pipeline.getPreparedCount());
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+    }
+
+    @Test
+    public void discardCancelsOnlyThatItem() {
+        BlockingInputStream kept = new BlockingInputStream();
+        BlockingInputStream discarded = new BlockingInputStream();
+        pipeline.prepare("kept", kept);
+        pipeline.prepare("discarded", discarded);
+
+        pipeline.discard("discarded");
+
+        assertEquals(1, pipeline.getPreparedCount());
+        assertTrue(discarded.isClosed());
+        assertFalse(kept.isClosed());
+        pipeline.stop();
+    }
+
+    @Test
+    public void queuedItemIsNoLongerPrepared() {
+        BlockingInputStream audio = new BlockingInputStream();
+        pipeline.prepare("token", audio);
+
+        pipeline.enqueue(new SpeakItem("token", audio));
+
+        assertEquals(0, pipeline.getPreparedCount());
+        pipeline.stop();
+    }
+
+    /**
+     * An attachment whose data hasn't arrived yet: reads wait until the stream is closed.
+     */
+    private static class BlockingInputStream extends InputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        boolean isClosed() {
+            return closed.getCount() == 0;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerWheelTest {
+    private final FakeClock clock = new FakeClock();
+    // the wheel has no thread of its own: each advance hands out the due tasks, which run inline
+    private final TimerWheel wheel = new TimerWheel(clock, false);
+    private final Executor inline = Runnable::run;
+
+    @Test
+    public void taskNeverRunsEarly() {
+        AtomicInteger onTick = new AtomicInteger();
+        AtomicInteger betweenTicks = new AtomicInteger();
+        wheel.schedule(onTick::incrementAndGet, 1000, TimeUnit.MILLISECONDS, inline);
+        wheel.schedule(betweenTicks::incrementAndGet, 1005, TimeUnit.MILLISECONDS, inline);
+
+        advance(999, TimeUnit.MILLISECONDS);
+        assertEquals(0, onTick.get());
+        advance(1, TimeUnit.MILLISECONDS);
+        assertEquals(1, onTick.get());
+
+        advance(4, TimeUnit.MILLISECONDS);
+        assertEquals(0, betweenTicks.get());
+        // at most one tick late
+        advance(6, TimeUnit.MILLISECONDS);
+        assertEquals(1, betweenTicks.get());
+    }
+
+    @Test
+    public void delayIsCountedFromThePartialMillisecond() {
+        AtomicInteger runs = new AtomicInteger();
+        clock.advance(500, TimeUnit.MICROSECONDS);
+        wheel.schedule(runs::incrementAndGet, 10, TimeUnit.MILLISECONDS, inline);
+
+        advance(10, TimeUnit.MILLISECONDS);
+        assertEquals(0, runs.get());
+        advance(10, TimeUnit.MILLISECONDS);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void tasksCascadeDownFromOverflowLevels() {
+        // one task for each level of the wheel: 640 ms, 41 s, 44 min and 47 h spans
+        long[] delaysMs = { 330, 7_777, 1_234_567, 9_876_543 };
+        List<Long> ranAt = new ArrayList<>();
+        for (long delayMs : delaysMs) {
+            wheel.schedule(() -> ranAt.add(nowMs()), delayMs, TimeUnit.MILLISECONDS, inline);
+        }
+
+        for (int i = 0; i < delaysMs.length; i++) {
+            advance(delaysMs[i] - 1 - nowMs(), TimeUnit.MILLISECONDS);
+            assertEquals(i, ranAt.size());
+            // within a tick of the finest level, whichever level the task started on
+            advance(10, TimeUnit.MILLISECONDS);
+            assertEquals(i + 1, ranAt.size());
+            assertTrue(ranAt.get(i) >= delaysMs[i]);
+        }
+        advance(1, TimeUnit.DAYS);
+        assertEquals(delaysMs.length, ranAt.size());
+    }
+
+    @Test
+    public void longJumpRunsTasksOfEveryLevelOnce() {
+        AtomicInteger runs = new AtomicInteger();
+        for (long delayMs : new long[] { 330, 7_777, 1_234_567, 9_876_543 }) {
+            wheel.schedule(runs::incrementAndGet, delayMs, TimeUnit.MILLISECONDS, inline);
+        }
+
+        advance(3, TimeUnit.HOURS);
+        assertEquals(4, runs.get());
+        advance(3, TimeUnit.HOURS);
+        assertEquals(4, runs.get());
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() {
+        AtomicInteger once = new AtomicInteger();
+        AtomicInteger periodic = new AtomicInteger();
+        AtomicInteger far = new AtomicInteger();
+        TimerWheel.Timeout onceTimeout =
+                wheel.schedule(once::incrementAndGet, 100, TimeUnit.MILLISECONDS, inline);
+        TimerWheel.Timeout periodicTimeout = wheel.scheduleAtFixedRate(periodic::incrementAndGet,
+                100, 100, TimeUnit.MILLISECONDS, inline);
+        TimerWheel.Timeout farTimeout =
+                wheel.schedule(far::incrementAndGet, 1, TimeUnit.HOURS, inline);
+
+        assertTrue(onceTimeout.cancel());
+        assertFalse(onceTimeout.cancel());
+        assertTrue(farTimeout.cancel());
+        advance(100, TimeUnit.MILLISECONDS);
+        advance(150, TimeUnit.MILLISECONDS);
+        assertEquals(2, periodic.get());
+        assertTrue(periodicTimeout.cancel());
+
+        advance(2, TimeUnit.HOURS);
+        assertEquals(0, once.get());
+        assertEquals(2, periodic.get());
+        assertEquals(0, far.get());
+    }
+
+    @Test
+    public void periodicTaskCanCancelItself() {
+        AtomicInteger runs = new AtomicInteger();
+        TimerWheel.Timeout[] timeout = new TimerWheel.Timeout[1];
+        timeout[0] = wheel.scheduleAtFixedRate(() -> {
+            if (runs.incrementAndGet() == 3) {
+                timeout[0].cancel();
+            }
+        }, 0, 50, TimeUnit.MILLISECONDS, inline);
+
+        for (int i = 0; i < 10; i++) {
+            advance(50, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    public void missedPeriodsAreSkipped() {
+        List<Long> ranAt = new ArrayList<>();
+        wheel.scheduleAtFixedRate(() -> ranAt.add(nowMs()), 100, 100, TimeUnit.MILLISECONDS,
+                inline);
+
+        advance(100, TimeUnit.MILLISECONDS);
+        // as if the device slept through nine periods
+        advance(950, TimeUnit.MILLISECONDS);
+        assertEquals(2, ranAt.size());
+
+        // the period keeps its phase
+        advance(49, TimeUnit.MILLISECONDS);
+        assertEquals(2, ranAt.size());
+        advance(1, TimeUnit.MILLISECONDS);
+        assertEquals(3, ranAt.size());
+        assertEquals(1100L, (long) ranAt.get(2));
+    }
+
+    @Test
+    public void periodIsSkippedWhileLastRunIsGoing() {
+        List<Runnable> handedOut = new ArrayList<>();
+        AtomicInteger runs = new AtomicInteger();
+        wheel.scheduleAtFixedRate(runs::incrementAndGet, 100, 100, TimeUnit.MILLISECONDS,
+                handedOut::add);
+
+        advance(100, TimeUnit.MILLISECONDS);
+        assertEquals(1, handedOut.size());
+        // the first run has not started yet, so the next two periods are skipped
+        advance(100, TimeUnit.MILLISECONDS);
+        advance(100, TimeUnit.MILLISECONDS);
+        assertEquals(1, handedOut.size());
+
+        handedOut.remove(0).run();
+        advance(100, TimeUnit.MILLISECONDS);
+        assertEquals(1, handedOut.size());
+        handedOut.remove(0).run();
+        assertEquals(2, runs.get());
+    }
+
+    private void advance(long delta, TimeUnit unit) {
+        clock.advance(delta, unit);
+        wheel.runDue();
+    }
+
+    private long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.nanoTime());
+    }
+}
@@ -0,0 +1,139 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import com.amazon.alexa.avs.AudioInputFormat;
+import com.amazon.alexa.avs.FileAudioSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the {@link TemplateMatchingWakeWordEngine} over recorded clips as fast as it can and
+ * reports, per clip, whether the wake word was found, the lowest match cost (to pick a threshold)
+ * and the detection latency, plus the CPU time the engine needs per second of audio.
+ * <p>
+ * Usage: {@code WakeWordEngineBenchmark <threshold> <templates> <clips>}, where templates and
+ * clips are WAV or raw 16 kHz PCM files or directories of them, separated by commas.
+ */
+public class WakeWordEngineBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(WakeWordEngineBenchmark.class);
+
+    private static final int BLOCK_MS = 10;
+    // silence after each clip so a wake word at the very end can still be reported
+    private static final int TRAILING_SILENCE_MS = 300;
+    private static final int WARMUP_PASSES = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            log.error("Usage: WakeWordEngineBenchmark <threshold> <templates> <clips>");
+            System.exit(1);
+        }
+        float threshold = Float.parseFloat(args[0]);
+        List<String> templatePaths = Arrays.asList(args[1].split(","));
+        List<String> clipPaths = Arrays.asList(args[2].split(","));
+
+        TemplateMatchingWakeWordEngine engine =
+                TemplateMatchingWakeWordEngine.fromRecordings(templatePaths, threshold);
+        List<File> clipFiles = new FileAudioSource(AudioInputFormat.LPCM.getAudioFormat(),
+                clipPaths, 0).getFiles();
+        List<byte[]> clips = new ArrayList<>();
+        int silenceBytes = bytesFor(TRAILING_SILENCE_MS);
+        for (byte[] clip : TemplateMatchingWakeWordEngine.readRecordings(clipPaths)) {
+            clips.add(Arrays.copyOf(clip, clip.length + silenceBytes));
+        }
+
+        // let the JIT compile the engine before measuring
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            for (byte[] clip : clips) {
+                run(engine, clip, null);
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+        long totalBytes = 0;
+        long totalNanos = 0;
+        int detected = 0;
+        log.info("clip, detected, keyword, lowest cost, latency ms, ms per second");
+        for (int i = 0; i < clips.size(); i++) {
+            byte[] clip = clips.get(i);
+            long[] blockNanos = new long[1];
+            long start = cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            WakeWordDetection detection = run(engine, clip, blockNanos);
+            long end = cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+
+            long nanos = end - start;
+            totalNanos += nanos;
+            totalBytes += clip.length;
+            double seconds = (double) clip.length / bytesFor(1000);
+            String latency = "";
+            if (detection != null) {
+                detected++;
+                // audio the engine waited for after the word, plus the time to process the block
+                // in which it decided
+                latency = String.format("%.1f",
+                        detection.getEngineLatencyUs() / 1000.0 + blockNanos[0] / 1e6);
+            }
+            log.info(String.format("%s, %b, %s, %.3f, %s, %.3f",
+                    clipFiles.get(i).getName(), detection != null,
+                    detection == null ? "" : Integer.toString(detection.getKeywordIndex()),
+                    engine.getLowestCost(), latency, nanos / 1e6 / seconds));
+        }
+
+        double totalSeconds = (double) totalBytes / bytesFor(1000);
+        log.info(String.format(
+                "%d of %d clips detected, %.1f s of audio, %.3f ms of %s per second of audio",
+                detected, clips.size(), totalSeconds, totalNanos / 1e6 / totalSeconds,
+                cpuTimeSupported ? "CPU" : "wall clock time"));
+    }
+
+    /**
+     * Feed a clip to the engine in capture sized blocks.
+     *
+     * @param detectionBlockNanos
+     *            if not null, receives the time taken by the block in which the wake word was
+     *            detected.
+     * @return the first detection in the clip, or null.
+     */
+    private static WakeWordDetection run(TemplateMatchingWakeWordEngine engine, byte[] clip,
+            long[] detectionBlockNanos) {
+        engine.reset();
+        WakeWordDetection first = null;
+        int blockBytes = bytesFor(BLOCK_MS);
+        for (int offset = 0; offset < clip.length; offset += blockBytes) {
+            long start = System.nanoTime();
+            WakeWordDetection detection =
+                    engine.process(clip, offset, Math.min(blockBytes, clip.length - offset));
+            if (detection != null && first == null) {
+                first = detection;
+                if (detectionBlockNanos != null) {
+                    detectionBlockNanos[0] = System.nanoTime() - start;
+                }
+            }
+        }
+        return first;
+    }
+
+    private static int bytesFor(int ms) {
+        return AudioInputFormat.LPCM.getChunkSizeBytes() * ms
+                / AudioInputFormat.LPCM.getChunkSizeMs();
+    }
+}
@@ -0,0 +1,155 @@
+/** 
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License for the 
+ * specific language governing permissions and limitations under the License.
+ */
+package com.amazon.alexa.avs.wakeword;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexa.avs.wakeword.WakeWordIPC.IPCCommand;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The frames here are laid out byte by byte as WakeWordIPCProtocol.cpp in the wake word agent
+ * encodes them, so that both ends stay in step.
+ */
+public class WakeWordIPCMessageTest {
+
+    // encode(buffer, COMMAND, IPC_WAKE_WORD_DETECTED, 0x0102030405060708, detection) with
+    // start 16000, end 24000, latency 1500 us and keyword 1
+    private static final byte[] DETECTION_FRAME = {
+            0x57, 0x46, 0x00, 0x2a,
+            0x01, 0x01,
+            0x01, 0x04, 0x00, 0x00, 0x00, 0x02,
+            0x02, 0x08, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08,
+            0x03, 0x04, 0x00, 0x00, 0x3e, (byte) 0x80,
+            0x04, 0x04, 0x00, 0x00, 0x5d, (byte) 0xc0,
+            0x05, 0x04, 0x00, 0x00, 0x05, (byte) 0xdc,
+            0x06, 0x04, 0x00, 0x00, 0x00, 0x01 };
+
+    // encode(buffer, HEARTBEAT, 0, 0x0102030405060708, nullptr)
+    private static final byte[] HEARTBEAT_FRAME = {
+            0x57, 0x46, 0x00, 0x0c,
+            0x01, 0x02,
+            0x02, 0x08, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+
+    private final WakeWordIPCMessage message = new WakeWordIPCMessage();
+
+    @Test
+    public void helloIsTellableFromFramesAndCommands() {
+        int hello = WakeWordIPCMessage.hello(WakeWordIPCMessage.PROTOCOL_VERSION);
+        assertEquals(0x57570001, hello);
+        assertTrue(WakeWordIPCMessage.isHello(hello));
+        assertFalse(WakeWordIPCMessage.isFrameHeader(hello));
+        assertEquals(1, WakeWordIPCMessage.getHelloVersion(hello));
+        assertEquals(7, WakeWordIPCMessage.getHelloVersion(WakeWordIPCMessage.hello(7)));
+
+        int header = ByteBuffer.wrap(DETECTION_FRAME).getInt();
+        assertTrue(WakeWordIPCMessage.isFrameHeader(header));
+        assertFalse(WakeWordIPCMessage.isHello(header));
+        assertEquals(DETECTION_FRAME.length - WakeWordIPCMessage.HEADER_SIZE,
+                WakeWordIPCMessage.getPayloadSize(header));
+
+        for (IPCCommand command : IPCCommand.values()) {
+            assertFalse(WakeWordIPCMessage.isHello(command.getValue()));
+            assertFalse(WakeWordIPCMessage.isFrameHeader(command.getValue()));
+        }
+    }
+
+    @Test
+    public void parsesDetectionFromTheAgent() {
+        ByteBuffer buffer = payloadOf(DETECTION_FRAME);
+
+        assertTrue(message.parse(buffer, buffer.remaining()));
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(1, message.getVersion());
+        assertEquals(WakeWordIPCMessage.TYPE_COMMAND, message.getType());
+        assertEquals(IPCCommand.IPC_WAKE_WORD_DETECTED.getValue(), message.getCommand());
+        assertEquals(0x0102030405060708L, message.getTimestampMs());
+        assertEquals(16000, message.getDetectionStartIndex());
+        assertEquals(24000, message.getDetectionEndIndex());
+        assertEquals(1500, message.getEngineLatencyUs());
+        assertEquals(1, message.getKeywordIndex());
+    }
+
+    @Test
+    public void parsesHeartbeatAndForgetsTheLastMessage() {
+        ByteBuffer detection = payloadOf(DETECTION_FRAME);
+        assertTrue(message.parse(detection, detection.remaining()));
+        ByteBuffer heartbeat = payloadOf(HEARTBEAT_FRAME);
+
+        assertTrue(message.parse(heartbeat, heartbeat.remaining()));
+
+        assertEquals(WakeWordIPCMessage.TYPE_HEARTBEAT, message.getType());
+        assertEquals(WakeWordIPCMessage.UNKNOWN, message.getCommand());
+        assertEquals(0x0102030405060708L, message.getTimestampMs());
+        assertEquals(WakeWordIPCMessage.UNKNOWN, message.getDetectionStartIndex());
+        assertEquals(WakeWordIPCMessage.UNKNOWN, message.getKeywordIndex());
+    }
+
+    @Test
+    public void skipsUnknownFieldsAndWrongLengths() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {
+                0x02, 0x01,
+                0x7f, 0x03, 0x0a, 0x0b, 0x0c,
+                0x03, 0x02, 0x00, 0x01,
+                0x01, 0x04, 0x00, 0x00, 0x00, 0x01 });
+
+        assertTrue(message.parse(buffer, buffer.remaining()));
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(2, message.getVersion());
+        assertEquals(WakeWordIPCMessage.UNKNOWN, message.getDetectionStartIndex());
+        assertEquals(IPCCommand.IPC_DISCONNECT.getValue(), message.getCommand());
+    }
+
+    @Test
+    public void rejectsMalformedPayloadsAndSkipsThem() {
+        // the last field runs past the payload, which is followed by the next frame
+        ByteBuffer truncated = ByteBuffer.wrap(new byte[] {
+                0x01, 0x01, 0x01, 0x04, 0x00, 0x00, 0x57, 0x46 });
+        assertFalse(message.parse(truncated, 6));
+        assertEquals(6, truncated.position());
+
+        ByteBuffer tooShort = ByteBuffer.wrap(new byte[] { 0x01 });
+        assertFalse(message.parse(tooShort, 1));
+        assertFalse(tooShort.hasRemaining());
+    }
+
+    @Test
+    public void writesCommandsAsTheAgentDecodesThem() {
+        ByteBuffer buffer = ByteBuffer.allocate(WakeWordIPCMessage.getCommandFrameSize());
+
+        WakeWordIPCMessage.writeCommand(buffer, IPCCommand.IPC_PAUSE_WAKE_WORD_ENGINE,
+                0x0102030405060708L);
+
+        // encode(buffer, COMMAND, IPC_PAUSE_WAKE_WORD_ENGINE, 0x0102030405060708, nullptr)
+        assertArrayEquals(new byte[] {
+                0x57, 0x46, 0x00, 0x12,
+                0x01, 0x01,
+                0x01, 0x04, 0x00, 0x00, 0x00, 0x03,
+                0x02, 0x08, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 }, buffer.array());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static ByteBuffer payloadOf(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.position(WakeWordIPCMessage.HEADER_SIZE);
+        return buffer;
+    }
+}
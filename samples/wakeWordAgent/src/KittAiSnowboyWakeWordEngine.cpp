@@ -16,6 +16,7 @@
 #include "WakeWordUtils.h"
 #include "WakeWordException.h"
 
+#include <chrono>
 #include <unistd.h>
 
 using namespace snowboy;
@@ -31,10 +32,17 @@ static const bool         APPLY_FRONTEND = true;
 static const int          MICROSECONDS_BETWEEN_SAMPLES = 100000;
 
 KittAiSnowboyWakeWordEngine::KittAiSnowboyWakeWordEngine(
-        WakeWordDetectedInterface* interface) : WakeWordEngine(interface),
+        WakeWordDetectedInterface* interface) :
+        KittAiSnowboyWakeWordEngine(interface, false) {
+}
+
+KittAiSnowboyWakeWordEngine::KittAiSnowboyWakeWordEngine(
+        WakeWordDetectedInterface* interface, bool shareCapture) :
+        WakeWordEngine(interface),
         m_isRunning{false},
         m_isDetectorSetup{false},
-        m_isPortAudioSetup{false} {
+        m_isPortAudioSetup{false},
+        m_shareCapture{shareCapture} {
 
   try {
     init();
@@ -62,6 +70,13 @@ void KittAiSnowboyWakeWordEngine::pause() {
 
   // Pause means we want to release the microphone input stream.
   // This will allow the AVS client to acquire it.
+  // When the capture is shared the client never needs the microphone.
+
+  if(m_sharedCaptureRing) {
+    log(Logger::INFO,
+        "KittAiSnowboyWakeWordEngine: capture is shared, keeping portAudio");
+    return;
+  }
 
   std::lock_guard<std::mutex> lock(m_portAudioMutex);
 
@@ -88,6 +103,13 @@ void KittAiSnowboyWakeWordEngine::init() {
   log(Logger::DEBUG, "KittAiSnowboyWakeWordEngine: initializing");
 
   initDetector();
+
+  if(m_shareCapture) {
+    m_sharedCaptureRing = make_unique<SharedCaptureRing>(
+            m_detector->SampleRate(), m_detector->NumChannels(),
+            m_detector->BitsPerSample());
+  }
+
   initPortAudio();
 
   log(Logger::DEBUG, "Starting Kitt-Ai engine thread");
@@ -128,7 +150,8 @@ void KittAiSnowboyWakeWordEngine::initPortAudio() {
 
   m_portAudioWrapper = make_unique<PortAudioWrapper>(sampleRate,
                                                      numChannels,
-                                                     bitsPerSample);
+                                                     bitsPerSample,
+                                                     m_sharedCaptureRing.get());
   m_isPortAudioSetup = true;
 }
 
@@ -143,6 +166,24 @@ void KittAiSnowboyWakeWordEngine::getPortAudioInput(std::vector<int16_t>* data)
   m_portAudioWrapper->readData(data);
 }
 
+void KittAiSnowboyWakeWordEngine::markDetection(WakeWordDetection* detection) {
+
+  std::lock_guard<std::mutex> lock(m_portAudioMutex);
+
+  if (!m_isPortAudioSetup) {
+    return;
+  }
+
+  // The detector has seen everything up to the end of the last read, so the
+  // client's Recognize audio starts right after it.
+  uint32_t sampleIndex = m_portAudioWrapper->getSampleIndex();
+  detection->endSampleIndex = static_cast<int32_t>(sampleIndex);
+
+  if (m_sharedCaptureRing) {
+    m_sharedCaptureRing->markDetection(sampleIndex);
+  }
+}
+
 void KittAiSnowboyWakeWordEngine::mainLoop() {
 
   log(Logger::INFO, "KittAiSnowboyWakeWordEngine: thread started");
@@ -152,11 +193,23 @@ void KittAiSnowboyWakeWordEngine::mainLoop() {
     std::vector<int16_t> paSamples;
     getPortAudioInput(&paSamples);
 
-    if( (!paSamples.empty()) &&
-        m_detector->RunDetection(paSamples.data(), paSamples.size()) > 0) {
+    if(!paSamples.empty()) {
+
+      auto detectionStart = std::chrono::steady_clock::now();
+      int result = m_detector->RunDetection(paSamples.data(), paSamples.size());
+
+      if(result > 0) {
+
+        log(Logger::INFO, "KittAiSnowboyWakeWordEngine: Wake Word Detected");
 
-      log(Logger::INFO, "KittAiSnowboyWakeWordEngine: Wake Word Detected");
-      wakeWordDetected();
+        WakeWordDetection detection;
+        detection.keywordIndex = result;
+        detection.engineLatencyUs = static_cast<int32_t>(
+                std::chrono::duration_cast<std::chrono::microseconds>(
+                        std::chrono::steady_clock::now() - detectionStart).count());
+        markDetection(&detection);
+        wakeWordDetected(detection);
+      }
     }
     usleep(MICROSECONDS_BETWEEN_SAMPLES);
   }
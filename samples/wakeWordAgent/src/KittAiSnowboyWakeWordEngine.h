@@ -17,6 +17,7 @@
 #include "WakeWordEngine.h"
 #include "snowboy-detect.h"
 #include "PortAudioWrapper.h"
+#include "SharedCaptureRing.h"
 
 #include <thread>
 #include <memory>
@@ -36,6 +37,12 @@ class KittAiSnowboyWakeWordEngine: public WakeWordEngine {
 public:
 
   KittAiSnowboyWakeWordEngine(WakeWordDetectedInterface* passedInterface);
+
+  // With shareCapture set, everything captured is also published in a
+  // SharedCaptureRing, and pause() keeps the microphone since the AVS client
+  // reads from the ring instead of opening it.
+  KittAiSnowboyWakeWordEngine(WakeWordDetectedInterface* passedInterface,
+                              bool shareCapture);
   ~KittAiSnowboyWakeWordEngine();
 
   void pause();
@@ -47,6 +54,7 @@ private:
   void initDetector();
   void initPortAudio();
   void getPortAudioInput(std::vector<int16_t>* data);
+  void markDetection(WakeWordDetection* detection);
   void mainLoop();
 
   // Audio is acquired and processed in this thread
@@ -61,6 +69,10 @@ private:
   std::unique_ptr<PortAudioWrapper> m_portAudioWrapper;
   std::atomic<bool> m_isPortAudioSetup;
   std::mutex m_portAudioMutex;
+
+  // The capture shared with the AVS client, if enabled
+  bool m_shareCapture;
+  std::unique_ptr<SharedCaptureRing> m_sharedCaptureRing;
 };
 
 } // namespace AlexaWakeWord
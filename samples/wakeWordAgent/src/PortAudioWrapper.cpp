@@ -50,8 +50,19 @@ int portAudioCallback(const void* input,
 PortAudioWrapper::PortAudioWrapper(int sampleRate,
                                    int numChannels,
                                    int bitsPerSample) :
-        m_paStream{nullptr}, m_numLostSamples{0} {
+        PortAudioWrapper(sampleRate, numChannels, bitsPerSample, nullptr) {
+}
 
+PortAudioWrapper::PortAudioWrapper(int sampleRate,
+                                   int numChannels,
+                                   int bitsPerSample,
+                                   SharedCaptureRing* sharedRing) :
+        m_paStream{nullptr}, m_numLostSamples{0}, m_sharedRing{sharedRing},
+        m_sampleIndexBase{0}, m_numReadSamples{0} {
+
+  if(m_sharedRing) {
+    m_sampleIndexBase = m_sharedRing->getWriteIndex();
+  }
   init(bitsPerSample, numChannels, sampleRate);
 }
 
@@ -66,6 +77,7 @@ void PortAudioWrapper::readData(std::vector<int16_t>* paSamples) {
   if(m_numLostSamples > 0) {
     log(Logger::INFO, "RingBuffer overflow, number of lost samples:" +
             std::to_string(m_numLostSamples));
+    m_numReadSamples += m_numLostSamples;
     m_numLostSamples = 0;
   }
 
@@ -83,6 +95,8 @@ void PortAudioWrapper::readData(std::vector<int16_t>* paSamples) {
                                               paSamples->data(),
                                               numAvailableSamples);
 
+  m_numReadSamples += numReadSamples;
+
   // Confirm we read the amount of data we expected
   if(numReadSamples != numAvailableSamples) {
     log(Logger::ERROR, std::string("Error reading from PortAudio") +
@@ -91,11 +105,19 @@ void PortAudioWrapper::readData(std::vector<int16_t>* paSamples) {
   }
 }
 
+uint32_t PortAudioWrapper::getSampleIndex() const {
+  return m_sampleIndexBase + m_numReadSamples;
+}
+
 // The class-level callback.  Propagates the data from portAudio into the
 // ringbuffer.
 void PortAudioWrapper::paCallback(const void* input,
                                   unsigned long numSamplesToWrite) {
 
+  if(m_sharedRing) {
+    m_sharedRing->write(static_cast<const int16_t*>(input), numSamplesToWrite);
+  }
+
   // Write PortAudio's input to the ring buffer where we can access it later
   auto numWrittenSamples = PaUtil_WriteRingBuffer(&m_paRingBuffer,
                                                   input,
@@ -16,6 +16,7 @@
 
 #include "pa_ringbuffer.h"
 #include "portaudio.h"
+#include "SharedCaptureRing.h"
 
 #include <stdint.h>
 #include <vector>
@@ -32,11 +33,19 @@ class PortAudioWrapper {
 
 public:
   PortAudioWrapper(int sampleRate, int numChannels, int bitsPerSample);
+
+  // As above, additionally copying everything captured into sharedRing
+  PortAudioWrapper(int sampleRate, int numChannels, int bitsPerSample,
+                   SharedCaptureRing* sharedRing);
   virtual ~PortAudioWrapper();
 
   // Copies the data acquired from PortAudio into the passed vector
   void readData(std::vector<int16_t>* paSamples);
 
+  // The index in the shared ring of the sample following the last one
+  // returned by readData
+  uint32_t getSampleIndex() const;
+
   // We integrate with PortAudio via a low-level C callback.
   // This public member function is provided to be called in turn.
   // Don't call this function from outside this class.
@@ -59,6 +68,14 @@ private:
 
   // Number of lost samples lost during callback processing
   int m_numLostSamples;
+
+  // Optional ring the captured audio is shared through, and the ring's
+  // write index when this stream was started
+  SharedCaptureRing* m_sharedRing;
+  uint32_t m_sampleIndexBase;
+
+  // Number of samples readData has returned or reported lost
+  uint32_t m_numReadSamples;
 };
 
 } // namespace AlexaWakeWord
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#include "SharedCaptureRing.h"
+#include "Logger.h"
+#include "WakeWordException.h"
+
+#include <sys/mman.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <cstring>
+#include <string>
+
+using namespace AlexaWakeWord::Logger;
+
+namespace AlexaWakeWord {
+
+const char* CAPTURE_RING_FILE = "/dev/shm/alexa-wake-word-audio";
+
+// 8 s at 16 kHz, rounded to a power of 2 so the reader can mask indices
+const uint32_t CAPTURE_RING_CAPACITY_SAMPLES = 131072;
+
+SharedCaptureRing::SharedCaptureRing(int sampleRate, int numChannels,
+                                     int bitsPerSample) :
+        m_mapping{nullptr}, m_mappingSize{0}, m_samples{nullptr},
+        m_capacity{CAPTURE_RING_CAPACITY_SAMPLES} {
+
+  if(16 != bitsPerSample) {
+    throw WakeWordException("SharedCaptureRing: only 16 bit audio supported");
+  }
+
+  m_mappingSize = DATA_OFFSET + m_capacity * sizeof(int16_t);
+
+  // Keep the same file across restarts, so a client that already mapped it
+  // sees us come back instead of holding on to an orphaned copy.
+  int fd = open(CAPTURE_RING_FILE, O_RDWR | O_CREAT, 0644);
+  if(fd < 0) {
+    throw WakeWordException(std::string("SharedCaptureRing: could not open ") +
+                            CAPTURE_RING_FILE);
+  }
+  if(ftruncate(fd, m_mappingSize) < 0) {
+    close(fd);
+    throw WakeWordException("SharedCaptureRing: could not size the ring");
+  }
+
+  void* mapping = mmap(nullptr, m_mappingSize, PROT_READ | PROT_WRITE,
+                       MAP_SHARED, fd, 0);
+  close(fd);
+  if(MAP_FAILED == mapping) {
+    throw WakeWordException("SharedCaptureRing: could not map the ring");
+  }
+
+  m_mapping = static_cast<uint8_t*>(mapping);
+  m_samples = reinterpret_cast<int16_t*>(m_mapping + DATA_OFFSET);
+
+  // Readers ignore the ring until the magic is there
+  __atomic_store_n(word(MAGIC_OFFSET), 0, __ATOMIC_RELEASE);
+  *word(VERSION_OFFSET) = VERSION;
+  *word(SAMPLE_RATE_OFFSET) = sampleRate;
+  *word(CHANNELS_OFFSET) = numChannels;
+  *word(BITS_PER_SAMPLE_OFFSET) = bitsPerSample;
+  *word(CAPACITY_OFFSET) = m_capacity;
+  __atomic_store_n(word(WRITE_INDEX_OFFSET), 0, __ATOMIC_RELAXED);
+  __atomic_store_n(word(DETECTION_INDEX_OFFSET), 0, __ATOMIC_RELAXED);
+  __atomic_store_n(word(MAGIC_OFFSET), MAGIC, __ATOMIC_RELEASE);
+
+  log(Logger::INFO, std::string("SharedCaptureRing: sharing capture in ") +
+          CAPTURE_RING_FILE);
+}
+
+SharedCaptureRing::~SharedCaptureRing() {
+  if(m_mapping) {
+    __atomic_store_n(word(MAGIC_OFFSET), 0, __ATOMIC_RELEASE);
+    munmap(m_mapping, m_mappingSize);
+  }
+}
+
+uint32_t* SharedCaptureRing::word(size_t offset) const {
+  return reinterpret_cast<uint32_t*>(m_mapping + offset);
+}
+
+void SharedCaptureRing::write(const int16_t* samples, size_t numSamples) {
+
+  uint32_t writeIndex = __atomic_load_n(word(WRITE_INDEX_OFFSET),
+                                        __ATOMIC_RELAXED);
+
+  while(numSamples > 0) {
+    uint32_t position = writeIndex & (m_capacity - 1);
+    size_t chunk = m_capacity - position;
+    if(chunk > numSamples) {
+      chunk = numSamples;
+    }
+    memcpy(m_samples + position, samples, chunk * sizeof(int16_t));
+    samples += chunk;
+    numSamples -= chunk;
+    writeIndex += chunk;
+  }
+
+  // Publish the samples only once they are all in place
+  __atomic_store_n(word(WRITE_INDEX_OFFSET), writeIndex, __ATOMIC_RELEASE);
+}
+
+uint32_t SharedCaptureRing::getWriteIndex() const {
+  return __atomic_load_n(word(WRITE_INDEX_OFFSET), __ATOMIC_ACQUIRE);
+}
+
+void SharedCaptureRing::markDetection(uint32_t sampleIndex) {
+  __atomic_store_n(word(DETECTION_INDEX_OFFSET), sampleIndex,
+                   __ATOMIC_RELEASE);
+}
+
+} // namespace AlexaWakeWord
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#ifndef ALEXA_VS_WAKE_WORD_SHARED_CAPTURE_RING_H_
+#define ALEXA_VS_WAKE_WORD_SHARED_CAPTURE_RING_H_
+
+#include <stdint.h>
+#include <stddef.h>
+
+namespace AlexaWakeWord {
+
+// A memory mapped ring of the PCM captured by this agent, which the AVS
+// client reads its Recognize audio from.  Sharing the capture means the
+// client never has to take the microphone over from us, so there is no
+// pause/resume hand-off when the wake word is detected, and the client can
+// start streaming from the exact sample the wake word was detected at.
+//
+// We are the only writer.  Samples are stored in native byte order, and the
+// write index counts every sample ever written, wrapping at 2^32, so the
+// reader can tell from the difference to its own index how far behind it is.
+// The layout must match SharedCaptureRingAudioSource.java.
+class SharedCaptureRing {
+
+public:
+
+  SharedCaptureRing(int sampleRate, int numChannels, int bitsPerSample);
+  ~SharedCaptureRing();
+
+  // Called from the PortAudio callback: copies without locking or allocating
+  void write(const int16_t* samples, size_t numSamples);
+
+  // Total number of samples written so far
+  uint32_t getWriteIndex() const;
+
+  // Records the sample index at which the wake word was detected, before
+  // the detection is sent to the client.
+  void markDetection(uint32_t sampleIndex);
+
+private:
+
+  static const uint32_t MAGIC = 0x41575741;
+  static const uint32_t VERSION = 1;
+  static const size_t MAGIC_OFFSET = 0;
+  static const size_t VERSION_OFFSET = 4;
+  static const size_t SAMPLE_RATE_OFFSET = 8;
+  static const size_t CHANNELS_OFFSET = 12;
+  static const size_t BITS_PER_SAMPLE_OFFSET = 16;
+  static const size_t CAPACITY_OFFSET = 20;
+  static const size_t WRITE_INDEX_OFFSET = 64;
+  static const size_t DETECTION_INDEX_OFFSET = 128;
+  static const size_t DATA_OFFSET = 4096;
+
+  uint32_t* word(size_t offset) const;
+
+  uint8_t* m_mapping;
+  size_t m_mappingSize;
+  int16_t* m_samples;
+  uint32_t m_capacity;
+};
+
+} // namespace AlexaWakeWord
+
+#endif // ALEXA_VS_WAKE_WORD_SHARED_CAPTURE_RING_H_
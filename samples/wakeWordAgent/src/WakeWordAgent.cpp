@@ -23,7 +23,8 @@ using namespace AlexaWakeWord::Logger;
 namespace AlexaWakeWord {
 
 WakeWordAgent::WakeWordAgent(WakeWordEngineFactory::EngineType engineType,
-                             WakeWordIPCFactory::IPCType ipcType) :
+                             WakeWordIPCFactory::IPCType ipcType,
+                             bool shareCapture) :
         m_isRunning{false}, m_currentState{State::UNINITIALIZED} {
 
   setState(State::IDLE);
@@ -36,7 +37,8 @@ WakeWordAgent::WakeWordAgent(WakeWordEngineFactory::EngineType engineType,
             " | IPC handler of type:" +
             WakeWordIPCFactory::IPCTypeToString(ipcType));
 
-    m_wakeWordEngine = WakeWordEngineFactory::createEngine(this, engineType);
+    m_wakeWordEngine = WakeWordEngineFactory::createEngine(this, engineType,
+                                                           shareCapture);
     m_IPCHandler = WakeWordIPCFactory::createIPCHandler(this, ipcType);
 
     m_isRunning = true;
@@ -82,7 +84,7 @@ void WakeWordAgent::mainLoop() {
 
       switch (m_currentState) {
         case State::WAKE_WORD_DETECTED:
-          m_IPCHandler->sendCommand(Command::WAKE_WORD_DETECTED);
+          m_IPCHandler->sendWakeWordDetected(m_detection);
           setState(State::SENT_WAKE_WORD_DETECTED);
           break;
 
@@ -115,11 +117,17 @@ void WakeWordAgent::mainLoop() {
 // Besides setting the state, prints some pretty cool trace!
 void WakeWordAgent::onWakeWordDetected() {
 
+  onWakeWordDetected(WakeWordDetection());
+}
+
+void WakeWordAgent::onWakeWordDetected(const WakeWordDetection& detection) {
+
   log(Logger::INFO, "===> WakeWordAgent: wake word detected <===");
 
   if(State::IDLE == m_currentState ||
       State::SENT_WAKE_WORD_DETECTED == m_currentState) {
     std::lock_guard<std::mutex> lock(m_mtx);
+    m_detection = detection;
     setState(State::WAKE_WORD_DETECTED);
     m_cvStateChange.notify_one();
   }
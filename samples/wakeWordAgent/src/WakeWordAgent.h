@@ -42,11 +42,12 @@ class WakeWordAgent: public WakeWordDetectedInterface, public IPCInterface {
 
 public:
   WakeWordAgent(WakeWordEngineFactory::EngineType engineType,
-          WakeWordIPCFactory::IPCType ipcType);
+          WakeWordIPCFactory::IPCType ipcType, bool shareCapture);
   ~WakeWordAgent();
 
   // An implementation for handling wake word detection
   void onWakeWordDetected();
+  void onWakeWordDetected(const WakeWordDetection& detection);
 
   // An implementation for handling an IPC command
   void onIPCCommandReceived(IPCInterface::Command command);
@@ -78,6 +79,9 @@ private:
   std::atomic<bool> m_isRunning;
   State m_currentState;
 
+  // Details of the detection being sent, guarded by m_mtx
+  WakeWordDetection m_detection;
+
   // The objects that handle wakeword detection and IPC
   std::unique_ptr<WakeWordEngine> m_wakeWordEngine;
   std::unique_ptr<WakeWordIPC> m_IPCHandler;
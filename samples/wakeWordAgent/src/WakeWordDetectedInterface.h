@@ -14,13 +14,31 @@
 #ifndef ALEXA_VS_WAKE_WORD_WAKEWORDDETECTEDINTERFACE_H_
 #define ALEXA_VS_WAKE_WORD_WAKEWORDDETECTEDINTERFACE_H_
 
+#include <stdint.h>
+
 namespace AlexaWakeWord {
 
+// What an engine knows about a detection.  Values it can't provide are left
+// at UNKNOWN.  Sample indices count samples in the SharedCaptureRing.
+struct WakeWordDetection {
+  static const int32_t UNKNOWN = -1;
+
+  int32_t keywordIndex = UNKNOWN;
+  int32_t startSampleIndex = UNKNOWN;
+  int32_t endSampleIndex = UNKNOWN;
+  int32_t engineLatencyUs = UNKNOWN;
+};
+
 class WakeWordDetectedInterface {
 
 public:
   virtual ~WakeWordDetectedInterface() = default;
   virtual void onWakeWordDetected() = 0;
+
+  // Engines that know more about the detection call this instead
+  virtual void onWakeWordDetected(const WakeWordDetection& detection) {
+    onWakeWordDetected();
+  }
 };
 
 } /* namespace AlexaWakeWord*/
@@ -32,4 +32,14 @@ void WakeWordEngine::wakeWordDetected() {
   m_interface->onWakeWordDetected();
 }
 
+void WakeWordEngine::wakeWordDetected(const WakeWordDetection& detection) {
+
+  if(!m_interface) {
+    log(Logger::WARNING, "Wakeword Interface has not been set");
+    return;
+  }
+
+  m_interface->onWakeWordDetected(detection);
+}
+
 } // namespace AlexaWakeWord
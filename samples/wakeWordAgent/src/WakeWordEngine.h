@@ -36,6 +36,7 @@ protected:
   // This will be called by subclasses of WakeWordEngine to notify that
   // a wake-word was detected.
   void wakeWordDetected();
+  void wakeWordDetected(const WakeWordDetection& detection);
 
 private:
 
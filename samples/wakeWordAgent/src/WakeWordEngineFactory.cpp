@@ -28,10 +28,23 @@ std::unique_ptr<WakeWordEngine> createEngine(
         WakeWordDetectedInterface* interface,
         EngineType engineType) {
 
+  return createEngine(interface, engineType, false);
+}
+
+std::unique_ptr<WakeWordEngine> createEngine(
+        WakeWordDetectedInterface* interface,
+        EngineType engineType,
+        bool shareCapture) {
+
+  if(shareCapture && EngineType::KITT_AI_SNOWBOY_ENGINE != engineType) {
+    log(Logger::WARNING,
+        "WakeWordEngineFactory: capture can only be shared by the Kitt-Ai Engine");
+  }
+
   switch(engineType) {
     case EngineType::KITT_AI_SNOWBOY_ENGINE:
       log(Logger::DEBUG, "WakeWordEngineFactory: creating Kitt-Ai Engine");
-      return make_unique<KittAiSnowboyWakeWordEngine>(interface);
+      return make_unique<KittAiSnowboyWakeWordEngine>(interface, shareCapture);
     case EngineType::SENSORY_ENGINE:
       log(Logger::DEBUG, "WakeWordEngineFactory: creating Sensory Engine");
       return make_unique<SensoryWakeWordEngine>(interface);
@@ -35,6 +35,12 @@ enum class EngineType {
 std::unique_ptr<WakeWordEngine> createEngine(
         WakeWordDetectedInterface* interface, EngineType engineType);
 
+// Creation function.  With shareCapture set, engines that capture through
+// PortAudio publish their audio in a SharedCaptureRing for the AVS client.
+std::unique_ptr<WakeWordEngine> createEngine(
+        WakeWordDetectedInterface* interface, EngineType engineType,
+        bool shareCapture);
+
 // Utility function
 std::string engineTypeToString(const EngineType type);
 
@@ -22,6 +22,10 @@ WakeWordIPC::WakeWordIPC(IPCInterface* interface) :
         m_interface{interface} {
 }
 
+void WakeWordIPC::sendWakeWordDetected(const WakeWordDetection& detection) {
+  sendCommand(IPCInterface::Command::WAKE_WORD_DETECTED);
+}
+
 void WakeWordIPC::ipcCommandReceived(IPCInterface::Command command) {
 
   if(!m_interface) {
@@ -15,6 +15,7 @@
 #define ALEXA_VS_WAKE_WORD_WAKEWORDIPC_H_
 
 #include "IPCInterface.h"
+#include "WakeWordDetectedInterface.h"
 
 namespace AlexaWakeWord {
 
@@ -28,6 +29,9 @@ public:
   // Allows a command to be sent
   virtual void sendCommand(const IPCInterface::Command command) = 0;
 
+  // Sends WAKE_WORD_DETECTED, with the details if the transport can carry them
+  virtual void sendWakeWordDetected(const WakeWordDetection& detection);
+
 protected:
 
   // Sub-classes should call this function when a command is received
@@ -13,6 +13,7 @@
 
 #include "WakeWordIPCFactory.h"
 #include "Logger.h"
+#include "WakeWordIPCSharedMemory.h"
 #include "WakeWordIPCSocket.h"
 #include "WakeWordUtils.h"
 
@@ -29,6 +30,9 @@ std::unique_ptr<WakeWordIPC> createIPCHandler(IPCInterface* interface,
     case IPCType::TCP_PROTOCOL:
       log(Logger::DEBUG, "createIPCHandler: Creating TCP handler");
       return make_unique<WakeWordIPCSocket>(interface);
+    case IPCType::SHARED_MEMORY:
+      log(Logger::DEBUG, "createIPCHandler: Creating shared memory handler");
+      return make_unique<WakeWordIPCSharedMemory>(interface);
     default:
       log(Logger::ERROR, "createIPCHandler: Unhandled switch case");
       return nullptr;
@@ -40,6 +44,8 @@ std::string IPCTypeToString(const IPCType type) {
   switch(type) {
     case IPCType::TCP_PROTOCOL:
       return "TCP_PROTOCOL";
+    case IPCType::SHARED_MEMORY:
+      return "SHARED_MEMORY";
     default:
       log(Logger::ERROR, "IPCTypeToString: Unhandled switch case");
       return "UNKNOWN";
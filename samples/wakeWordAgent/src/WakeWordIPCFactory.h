@@ -28,7 +28,8 @@ namespace WakeWordIPCFactory {
 
 // Currently supported IPC types
 enum class IPCType {
-  TCP_PROTOCOL = 1
+  TCP_PROTOCOL = 1,
+  SHARED_MEMORY
 };
 
 // Creation
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#include "WakeWordIPCProtocol.h"
+
+namespace AlexaWakeWord {
+
+namespace WakeWordIPCProtocol {
+
+static uint8_t* putUint32(uint8_t* out, uint32_t value) {
+  *out++ = static_cast<uint8_t>(value >> 24);
+  *out++ = static_cast<uint8_t>(value >> 16);
+  *out++ = static_cast<uint8_t>(value >> 8);
+  *out++ = static_cast<uint8_t>(value);
+  return out;
+}
+
+static uint8_t* putField(uint8_t* out, FieldTag tag, uint32_t value) {
+  *out++ = tag;
+  *out++ = 4;
+  return putUint32(out, value);
+}
+
+static uint8_t* putField(uint8_t* out, FieldTag tag, uint64_t value) {
+  *out++ = tag;
+  *out++ = 8;
+  out = putUint32(out, static_cast<uint32_t>(value >> 32));
+  return putUint32(out, static_cast<uint32_t>(value));
+}
+
+size_t encode(uint8_t* buffer, MessageType type, uint32_t command,
+              uint64_t timestampMs, const WakeWordDetection* detection) {
+
+  uint8_t* out = buffer + HEADER_SIZE;
+  *out++ = static_cast<uint8_t>(PROTOCOL_VERSION);
+  *out++ = type;
+
+  if(COMMAND == type) {
+    out = putField(out, TAG_COMMAND, command);
+  }
+  out = putField(out, TAG_TIMESTAMP_MS, timestampMs);
+
+  if(detection) {
+    if(WakeWordDetection::UNKNOWN != detection->startSampleIndex) {
+      out = putField(out, TAG_DETECTION_START_INDEX,
+                     static_cast<uint32_t>(detection->startSampleIndex));
+    }
+    if(WakeWordDetection::UNKNOWN != detection->endSampleIndex) {
+      out = putField(out, TAG_DETECTION_END_INDEX,
+                     static_cast<uint32_t>(detection->endSampleIndex));
+    }
+    if(WakeWordDetection::UNKNOWN != detection->engineLatencyUs) {
+      out = putField(out, TAG_ENGINE_LATENCY_US,
+                     static_cast<uint32_t>(detection->engineLatencyUs));
+    }
+    if(WakeWordDetection::UNKNOWN != detection->keywordIndex) {
+      out = putField(out, TAG_KEYWORD_INDEX,
+                     static_cast<uint32_t>(detection->keywordIndex));
+    }
+  }
+
+  size_t payloadSize = out - buffer - HEADER_SIZE;
+  putUint32(buffer, FRAME_MARKER | static_cast<uint32_t>(payloadSize));
+  return out - buffer;
+}
+
+bool decodeCommand(const uint8_t* payload, size_t payloadSize,
+                   uint32_t* command) {
+
+  if(payloadSize < 2 || COMMAND != payload[1]) {
+    return false;
+  }
+
+  size_t position = 2;
+  while(position + 2 <= payloadSize) {
+    uint8_t tag = payload[position];
+    uint8_t length = payload[position + 1];
+    position += 2;
+    if(position + length > payloadSize) {
+      return false;
+    }
+    if(TAG_COMMAND == tag && 4 == length) {
+      *command = (static_cast<uint32_t>(payload[position]) << 24) |
+                 (static_cast<uint32_t>(payload[position + 1]) << 16) |
+                 (static_cast<uint32_t>(payload[position + 2]) << 8) |
+                 static_cast<uint32_t>(payload[position + 3]);
+      return true;
+    }
+    position += length;
+  }
+  return false;
+}
+
+} // namespace WakeWordIPCProtocol
+
+} // namespace AlexaWakeWord
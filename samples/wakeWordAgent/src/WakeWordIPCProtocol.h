@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#ifndef ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_PROTOCOL_H_
+#define ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_PROTOCOL_H_
+
+#include "WakeWordDetectedInterface.h"
+
+#include <stdint.h>
+#include <stddef.h>
+
+namespace AlexaWakeWord {
+
+// The framed IPC protocol.  Peers that predate it exchange bare 4 byte
+// commands.  Either side announces the protocol by sending a hello, which old
+// peers ignore as an unknown command, and only sends frames once it has
+// received the other side's hello.  A frame is a 4 byte header holding
+// FRAME_MARKER and the payload length, followed by the payload: the protocol
+// version, the message type, and a list of fields, each a tag, a length and
+// a value.  Everything is in network byte order.  Readers skip fields with
+// unknown tags, so later versions can add fields.
+// This must match WakeWordIPCMessage.java in the AVS client.
+namespace WakeWordIPCProtocol {
+
+const uint32_t PROTOCOL_VERSION = 1;
+
+const uint32_t HELLO_MARKER = 0x57570000;
+const uint32_t FRAME_MARKER = 0x57460000;
+const uint32_t MARKER_MASK  = 0xffff0000;
+const size_t   HEADER_SIZE  = 4;
+const size_t   MAX_FRAME_SIZE = 64;
+
+enum MessageType : uint8_t {
+  COMMAND   = 1,
+  HEARTBEAT = 2
+};
+
+enum FieldTag : uint8_t {
+  TAG_COMMAND               = 1,  // uint32
+  TAG_TIMESTAMP_MS          = 2,  // uint64, sender wall clock
+  TAG_DETECTION_START_INDEX = 3,  // int32, SharedCaptureRing sample index
+  TAG_DETECTION_END_INDEX   = 4,  // int32, SharedCaptureRing sample index
+  TAG_ENGINE_LATENCY_US     = 5,  // int32
+  TAG_KEYWORD_INDEX         = 6   // int32
+};
+
+inline uint32_t hello(uint32_t version) {
+  return HELLO_MARKER | version;
+}
+
+inline bool isHello(uint32_t value) {
+  return (value & MARKER_MASK) == HELLO_MARKER;
+}
+
+inline uint32_t getHelloVersion(uint32_t value) {
+  return value & ~MARKER_MASK;
+}
+
+// Writes a frame into buffer, which must hold MAX_FRAME_SIZE bytes.  The
+// detection may be null.  Returns the number of bytes to send.
+size_t encode(uint8_t* buffer, MessageType type, uint32_t command,
+              uint64_t timestampMs, const WakeWordDetection* detection);
+
+// Reads the command out of a frame's payload.  Returns false if the payload
+// is not a well formed command message.
+bool decodeCommand(const uint8_t* payload, size_t payloadSize,
+                   uint32_t* command);
+
+} // namespace WakeWordIPCProtocol
+
+} // namespace AlexaWakeWord
+
+#endif // ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_PROTOCOL_H_
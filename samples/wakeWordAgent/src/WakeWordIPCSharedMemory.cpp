@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#include "WakeWordIPCSharedMemory.h"
+#include "Logger.h"
+#include "WakeWordException.h"
+#include "WakeWordUtils.h"
+
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <fcntl.h>
+#include <unistd.h>
+
+const char* CONTROL_FILE = "/dev/shm/alexa-wake-word-control";
+const int SECONDS_BETWEEN_MAP_RETRIES = 2;
+const int MICROSECONDS_BETWEEN_POLLS = 1000;
+
+namespace AlexaWakeWord {
+
+WakeWordIPCSharedMemory::WakeWordIPCSharedMemory(IPCInterface* interface) :
+        WakeWordIPC{interface}, m_isRunning{false}, m_controlBlock{nullptr},
+        m_clientReady{false}, m_clientSequenceSeen{0} {
+
+  try {
+    m_isRunning = true;
+    m_thread = make_unique<std::thread>(&WakeWordIPCSharedMemory::mainLoop,
+                                        this);
+  } catch (std::bad_alloc &e) {
+    log(Logger::WARNING, "WakeWordIPCSharedMemory: Could not allocate memory");
+    throw;
+  }
+}
+
+WakeWordIPCSharedMemory::~WakeWordIPCSharedMemory() {
+
+  log(Logger::DEBUG, "WakeWordIPCSharedMemory: joining on thread.");
+
+  m_isRunning = false;
+  m_thread->join();
+
+  std::lock_guard<std::mutex> lock(m_mtx);
+  unmapControlBlock();
+}
+
+uint32_t* WakeWordIPCSharedMemory::word(size_t offset) {
+  return reinterpret_cast<uint32_t*>(m_controlBlock + offset);
+}
+
+bool WakeWordIPCSharedMemory::isClientReady() {
+  return __atomic_load_n(word(MAGIC_OFFSET), __ATOMIC_ACQUIRE) == MAGIC &&
+         *word(VERSION_OFFSET) == VERSION;
+}
+
+void WakeWordIPCSharedMemory::sendCommand(
+        const IPCInterface::Command command) {
+
+  std::lock_guard<std::mutex> lock(m_mtx);
+
+  if(!m_controlBlock || !isClientReady()) {
+    throw WakeWordException(
+            "WakeWordIPCSharedMemory::sendCommand: not connected.");
+  }
+
+  // We are the only writer of this sequence, but the client may have
+  // re-created the block since we last wrote, so always start from its value.
+  uint32_t sequence = __atomic_load_n(word(AGENT_SEQUENCE_OFFSET),
+                                      __ATOMIC_RELAXED);
+  *word(AGENT_SLOTS_OFFSET + (sequence % SLOT_COUNT) * 4) = command;
+  __atomic_store_n(word(AGENT_SEQUENCE_OFFSET), sequence + 1,
+                   __ATOMIC_RELEASE);
+}
+
+bool WakeWordIPCSharedMemory::mapControlBlock() {
+
+  int fd = open(CONTROL_FILE, O_RDWR);
+  if(fd < 0) {
+    return false;
+  }
+
+  struct stat fileStat;
+  if(fstat(fd, &fileStat) < 0 ||
+     fileStat.st_size < static_cast<off_t>(CONTROL_BLOCK_SIZE)) {
+    close(fd);
+    return false;
+  }
+
+  void* mapping = mmap(nullptr, CONTROL_BLOCK_SIZE, PROT_READ | PROT_WRITE,
+                       MAP_SHARED, fd, 0);
+  close(fd);
+  if(MAP_FAILED == mapping) {
+    log(Logger::WARNING, "WakeWordIPCSharedMemory: could not map " +
+            std::string(CONTROL_FILE));
+    return false;
+  }
+
+  std::lock_guard<std::mutex> lock(m_mtx);
+  m_controlBlock = static_cast<uint8_t*>(mapping);
+  m_clientReady = false;
+  log(Logger::INFO, "WakeWordIPCSharedMemory: mapped " +
+          std::string(CONTROL_FILE));
+  return true;
+}
+
+void WakeWordIPCSharedMemory::unmapControlBlock() {
+
+  if(m_controlBlock) {
+    munmap(m_controlBlock, CONTROL_BLOCK_SIZE);
+    m_controlBlock = nullptr;
+  }
+}
+
+void WakeWordIPCSharedMemory::receiveCommands() {
+
+  // The client clears the block when it starts, so a missing magic means it
+  // is (re)starting and we should pick up from its new sequence.
+  if(!isClientReady()) {
+    m_clientReady = false;
+    return;
+  }
+
+  uint32_t sequence = __atomic_load_n(word(CLIENT_SEQUENCE_OFFSET),
+                                      __ATOMIC_ACQUIRE);
+  if(!m_clientReady) {
+    m_clientReady = true;
+    m_clientSequenceSeen = sequence;
+    log(Logger::INFO, "===> Connected to AVS client <===");
+    return;
+  }
+
+  if(sequence - m_clientSequenceSeen > SLOT_COUNT) {
+    log(Logger::WARNING, "WakeWordIPCSharedMemory: missed commands");
+    m_clientSequenceSeen = sequence - SLOT_COUNT;
+  }
+
+  while(m_clientSequenceSeen != sequence) {
+    uint32_t command =
+            *word(CLIENT_SLOTS_OFFSET + (m_clientSequenceSeen % SLOT_COUNT) * 4);
+    m_clientSequenceSeen++;
+    if(command != 0) {
+      ipcCommandReceived(IPCInterface::intToCommand(command));
+    }
+  }
+}
+
+// The main function for the thread.
+void WakeWordIPCSharedMemory::mainLoop() {
+
+  log(Logger::INFO, "WakeWordIPCSharedMemory::mainLoop thread started");
+
+  while(m_isRunning && !mapControlBlock()) {
+    log(Logger::INFO, "Not mapped! Make sure AVS client is running");
+    sleep(SECONDS_BETWEEN_MAP_RETRIES);
+  }
+
+  while(m_isRunning) {
+    receiveCommands();
+    usleep(MICROSECONDS_BETWEEN_POLLS);
+  }
+
+  log(Logger::INFO, "WakeWordIPCSharedMemory::mainLoop thread ended");
+}
+
+} // AlexaWakeWord
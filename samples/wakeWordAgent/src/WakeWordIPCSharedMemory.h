@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License"). You may not use this file 
+ * except in compliance with the License. A copy of the License is located at
+ *
+ *   http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, express or implied. See the License 
+ * for the specific language governing permissions and limitations under the License.
+ */
+
+#ifndef ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_SHARED_MEMORY_H_
+#define ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_SHARED_MEMORY_H_
+
+#include "WakeWordIPC.h"
+
+#include <stdint.h>
+#include <thread>
+#include <atomic>
+#include <mutex>
+
+namespace AlexaWakeWord {
+
+// An implementation of the IPC class which exchanges commands through a
+// small memory mapped control block created by the AVS client.  Each
+// direction has a ring of command slots and a sequence word; the writer fills
+// the next slot and then bumps the sequence, which acts as the doorbell for
+// the reader.  The layout must match WakeWordIPCSharedMemory.java.
+class WakeWordIPCSharedMemory: public WakeWordIPC {
+
+public:
+
+  WakeWordIPCSharedMemory(IPCInterface* interface);
+  virtual ~WakeWordIPCSharedMemory();
+  void sendCommand(const IPCInterface::Command command);
+
+private:
+
+  // Control block layout, all values in native byte order
+  static const uint32_t MAGIC = 0x41575743;
+  static const uint32_t VERSION = 1;
+  static const size_t MAGIC_OFFSET = 0;
+  static const size_t VERSION_OFFSET = 4;
+  static const size_t AGENT_SEQUENCE_OFFSET = 64;
+  static const size_t AGENT_SLOTS_OFFSET = AGENT_SEQUENCE_OFFSET + 4;
+  static const size_t CLIENT_SEQUENCE_OFFSET = 192;
+  static const size_t CLIENT_SLOTS_OFFSET = CLIENT_SEQUENCE_OFFSET + 4;
+  static const uint32_t SLOT_COUNT = 16;
+  static const size_t CONTROL_BLOCK_SIZE = 4096;
+
+  // Utility functions
+  uint32_t* word(size_t offset);
+  bool isClientReady();
+  bool mapControlBlock();
+  void unmapControlBlock();
+  void receiveCommands();
+
+  // The main thread loop
+  void mainLoop();
+
+  // Thread management variables
+  std::atomic<bool> m_isRunning;
+  std::unique_ptr<std::thread> m_thread;
+
+  // Guards the mapping against concurrent sends
+  std::mutex m_mtx;
+  uint8_t* m_controlBlock;
+  bool m_clientReady;
+  uint32_t m_clientSequenceSeen;
+};
+
+} // namespace AlexaWakeWord
+
+#endif // ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_SHARED_MEMORY_H_
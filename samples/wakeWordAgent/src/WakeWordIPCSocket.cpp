@@ -17,6 +17,7 @@
 #include "WakeWordUtils.h"
 
 #include <sys/socket.h>
+#include <poll.h>
 #include <ifaddrs.h>
 #include <net/if.h>
 #include <unistd.h>
@@ -24,11 +25,14 @@
 
 const u_short PORT_NUMBER = 5123;
 const int SECONDS_BETWEEN_RETRIES = 2;
+const int MILLISECONDS_BETWEEN_POLLS = 1000;
+const auto HEARTBEAT_INTERVAL = std::chrono::seconds(5);
 
 namespace AlexaWakeWord {
 
 WakeWordIPCSocket::WakeWordIPCSocket(IPCInterface* interface) :
-        WakeWordIPC{interface}, m_isRunning{false}, m_socketHandle{-1} {
+        WakeWordIPC{interface}, m_isRunning{false}, m_socketHandle{-1},
+        m_framed{false} {
 
   clearSocketMembers();
 
@@ -62,14 +66,66 @@ WakeWordIPCSocket::~WakeWordIPCSocket() {
 
 void WakeWordIPCSocket::sendCommand(const IPCInterface::Command command) {
 
-  if(!m_socketConnected) {
-    throw WakeWordException("WakeWordIPCSocket::sendCommand: not connected.");
+  if(m_framed) {
+    sendFrame(WakeWordIPCProtocol::COMMAND, command, nullptr);
+    return;
   }
 
   // Convert to network byte layout
   auto networkCommand = htonl(command);
-  if(send(m_socketHandle, &networkCommand, sizeof(networkCommand), 0) !=
-          sizeof(networkCommand)) {
+  std::lock_guard<std::mutex> lock(m_sendMutex);
+  sendBytes(&networkCommand, sizeof(networkCommand));
+}
+
+void WakeWordIPCSocket::sendWakeWordDetected(
+        const WakeWordDetection& detection) {
+
+  if(m_framed) {
+    sendFrame(WakeWordIPCProtocol::COMMAND,
+              IPCInterface::Command::WAKE_WORD_DETECTED, &detection);
+  } else {
+    sendCommand(IPCInterface::Command::WAKE_WORD_DETECTED);
+  }
+}
+
+void WakeWordIPCSocket::sendFrame(WakeWordIPCProtocol::MessageType type,
+                                  IPCInterface::Command command,
+                                  const WakeWordDetection* detection) {
+
+  uint8_t frame[WakeWordIPCProtocol::MAX_FRAME_SIZE];
+  auto timestampMs = std::chrono::duration_cast<std::chrono::milliseconds>(
+          std::chrono::system_clock::now().time_since_epoch()).count();
+  size_t size = WakeWordIPCProtocol::encode(frame, type, command,
+                                            timestampMs, detection);
+
+  std::lock_guard<std::mutex> lock(m_sendMutex);
+  sendBytes(frame, size);
+  m_lastHeartbeat = std::chrono::steady_clock::now();
+}
+
+void WakeWordIPCSocket::sendHeartbeatIfDue() {
+
+  if(!m_framed ||
+     std::chrono::steady_clock::now() - m_lastHeartbeat < HEARTBEAT_INTERVAL) {
+    return;
+  }
+
+  try {
+    sendFrame(WakeWordIPCProtocol::HEARTBEAT,
+              IPCInterface::Command::UNKNOWN, nullptr);
+  } catch (WakeWordException &e) {
+    log(Logger::WARNING, std::string("WakeWordIPCSocket: ") + e.what());
+  }
+}
+
+// Callers must hold m_sendMutex
+void WakeWordIPCSocket::sendBytes(const void* buffer, size_t size) {
+
+  if(!m_socketConnected) {
+    throw WakeWordException("WakeWordIPCSocket::sendCommand: not connected.");
+  }
+
+  if(send(m_socketHandle, buffer, size, 0) != static_cast<ssize_t>(size)) {
     throw WakeWordException("WakeWordIPCSocket::sendCommand: error sending.");
   }
 }
@@ -152,20 +208,30 @@ bool WakeWordIPCSocket::makeConnection() {
   }
 
   m_socketConnected = true;
+  m_framed = false;
   log(Logger::INFO, "===> Connected to AVS client <===");
+
+  // Offer the framed protocol; clients that don't know it ignore this
+  auto networkHello = htonl(WakeWordIPCProtocol::hello(
+          WakeWordIPCProtocol::PROTOCOL_VERSION));
+  try {
+    std::lock_guard<std::mutex> lock(m_sendMutex);
+    sendBytes(&networkHello, sizeof(networkHello));
+  } catch (WakeWordException &e) {
+    log(Logger::WARNING, std::string("WakeWordIPCSocket: ") + e.what());
+  }
   return true;
 }
 
-bool WakeWordIPCSocket::receiveCommand() {
+bool WakeWordIPCSocket::receiveBytes(void* buffer, size_t size) {
 
-  uint32_t command = 0;
-  int bytesRemaining = sizeof(command);
-  uint8_t* pCommand = reinterpret_cast<uint8_t*>(&command);
+  int bytesRemaining = size;
+  uint8_t* pBuffer = static_cast<uint8_t*>(buffer);
 
   // The entire payload may not arrive in one pass.
   while(bytesRemaining > 0) {
 
-    auto numBytesReceived = recv(m_socketHandle, pCommand, bytesRemaining, 0);
+    auto numBytesReceived = recv(m_socketHandle, pBuffer, bytesRemaining, 0);
 
     if(numBytesReceived <= 0) {
         log(Logger::DEBUG, "Socket disconnected.");
@@ -177,11 +243,53 @@ bool WakeWordIPCSocket::receiveCommand() {
     log(Logger::DEBUG,
             "Received:" + std::to_string(numBytesReceived) + " | remaining:"
                     + std::to_string(bytesRemaining));
-    pCommand += numBytesReceived;
+    pBuffer += numBytesReceived;
+  }
+
+  return true;
+}
+
+bool WakeWordIPCSocket::receiveCommand() {
+
+  // Wake up regularly to send heartbeats while nothing arrives
+  struct pollfd pollFd = { m_socketHandle, POLLIN, 0 };
+  if(poll(&pollFd, 1, MILLISECONDS_BETWEEN_POLLS) == 0) {
+    sendHeartbeatIfDue();
+    return true;
+  }
+
+  uint32_t command = 0;
+  if(!receiveBytes(&command, sizeof(command))) {
+    return false;
   }
 
   // All bytes for the command has been received
   auto commandReceivedLocal = ntohl(command);
+
+  if(WakeWordIPCProtocol::isHello(commandReceivedLocal)) {
+    log(Logger::INFO, "WakeWordIPCSocket: client speaks protocol version " +
+            std::to_string(
+                    WakeWordIPCProtocol::getHelloVersion(commandReceivedLocal)));
+    m_lastHeartbeat = std::chrono::steady_clock::now();
+    m_framed = true;
+    return true;
+  }
+
+  if((commandReceivedLocal & WakeWordIPCProtocol::MARKER_MASK) ==
+          WakeWordIPCProtocol::FRAME_MARKER) {
+    size_t payloadSize =
+            commandReceivedLocal & ~WakeWordIPCProtocol::MARKER_MASK;
+    uint8_t payload[WakeWordIPCProtocol::MAX_FRAME_SIZE];
+    if(payloadSize > sizeof(payload) ||
+       !receiveBytes(payload, payloadSize)) {
+      return false;
+    }
+    if(!WakeWordIPCProtocol::decodeCommand(payload, payloadSize,
+                                           &commandReceivedLocal)) {
+      return true;
+    }
+  }
+
   if (commandReceivedLocal != 0) {
     ipcCommandReceived(IPCInterface::intToCommand(commandReceivedLocal));
   }
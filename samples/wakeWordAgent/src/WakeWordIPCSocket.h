@@ -15,10 +15,13 @@
 #define ALEXA_VS_WAKE_WORD_WAKE_WORD_IPC_SOCKET_H_
 
 #include "WakeWordIPC.h"
+#include "WakeWordIPCProtocol.h"
 
 #include <stdint.h>
 #include <thread>
 #include <atomic>
+#include <chrono>
+#include <mutex>
 #include <arpa/inet.h>
 
 namespace AlexaWakeWord {
@@ -31,6 +34,7 @@ public:
   WakeWordIPCSocket(IPCInterface* interface);
   virtual ~WakeWordIPCSocket();
   void sendCommand(const IPCInterface::Command command);
+  void sendWakeWordDetected(const WakeWordDetection& detection);
 
 private:
 
@@ -40,6 +44,12 @@ private:
   bool initializeSocket();
   bool makeConnection();
   bool receiveCommand();
+  bool receiveBytes(void* buffer, size_t size);
+  void sendBytes(const void* buffer, size_t size);
+  void sendFrame(WakeWordIPCProtocol::MessageType type,
+                 IPCInterface::Command command,
+                 const WakeWordDetection* detection);
+  void sendHeartbeatIfDue();
 
   // The main thread loop
   void mainLoop();
@@ -52,6 +62,13 @@ private:
   int m_socketHandle;
   bool m_socketConnected;
   struct sockaddr_in m_socketAddr;
+
+  // Serializes sends from the agent thread and the heartbeat
+  std::mutex m_sendMutex;
+
+  // True once the client has answered our hello, after which we send frames
+  std::atomic<bool> m_framed;
+  std::chrono::steady_clock::time_point m_lastHeartbeat;
 };
 
 } // namespace AlexaWakeWord
@@ -37,11 +37,18 @@ void usage() {
 
   std::string msg = std::string(
           "Usage: ") +
-          "WakeWordAgent -e <engine_type>\n" +
+          "WakeWordAgent -e <engine_type> [-i <ipc_type>] [-c <capture_mode>]\n" +
           " engine_type options:\n" +
           " 'kitt_ai'\n" +
           " 'sensory'\n" +
           " 'gpio'\n" +
+          " ipc_type options:\n" +
+          " 'tcp' (default)\n" +
+          " 'shm' (set wakeWordAgentTransport to sharedMemory in the client)\n" +
+          " capture_mode options:\n" +
+          " 'exclusive' (default) - the microphone is handed to the client\n" +
+          " 'shared' - the client reads audio from us (kitt_ai only; set the\n" +
+          "            client's audioSource type to wakeWordAgent)\n" +
           "WakeWordAgent [-h] [--help]\n" +
           " prints help (this message)\n";
 
@@ -49,12 +56,14 @@ void usage() {
 }
 
 bool parseArgs(int argc, char* argv[],
-               WakeWordEngineFactory::EngineType* engineType) {
+               WakeWordEngineFactory::EngineType* engineType,
+               WakeWordIPCFactory::IPCType* ipcType,
+               bool* shareCapture) {
 
   bool printHelp = (2 == argc) &&
           (std::string("-h") == argv[1] || std::string("--help") == argv[1]);
 
-  bool validArgCount = printHelp || (3 == argc);
+  bool validArgCount = printHelp || (argc >= 3 && 1 == argc % 2);
 
   if(!validArgCount) {
     usage();
@@ -66,6 +75,24 @@ bool parseArgs(int argc, char* argv[],
     return false;
   }
 
+  for(int i = 3; i < argc; i += 2) {
+    std::string option = argv[i];
+    std::string param = argv[i + 1];
+
+    if("-i" == option && "tcp" == param) {
+      *ipcType = WakeWordIPCFactory::IPCType::TCP_PROTOCOL;
+    } else if("-i" == option && "shm" == param) {
+      *ipcType = WakeWordIPCFactory::IPCType::SHARED_MEMORY;
+    } else if("-c" == option && "exclusive" == param) {
+      *shareCapture = false;
+    } else if("-c" == option && "shared" == param) {
+      *shareCapture = true;
+    } else {
+      usage();
+      return false;
+    }
+  }
+
   std::string engineParam = argv[2];
 
   if("kitt_ai" == engineParam) {
@@ -89,7 +116,10 @@ int main(int argc, char* argv[]) {
 
   WakeWordEngineFactory::EngineType selectedEngine =
           WakeWordEngineFactory::EngineType::KITT_AI_SNOWBOY_ENGINE;
-  if(!parseArgs(argc, argv, &selectedEngine)) {
+  WakeWordIPCFactory::IPCType selectedIPC =
+          WakeWordIPCFactory::IPCType::TCP_PROTOCOL;
+  bool shareCapture = false;
+  if(!parseArgs(argc, argv, &selectedEngine, &selectedIPC, &shareCapture)) {
     return 0;
   }
 
@@ -110,7 +140,8 @@ int main(int argc, char* argv[]) {
     log(Logger::DEBUG, "main: Creating Wake Word Agent instance");
     wakeWordAgent = make_unique<WakeWordAgent>(
                             selectedEngine,
-                            WakeWordIPCFactory::IPCType::TCP_PROTOCOL);
+                            selectedIPC,
+                            shareCapture);
   } catch (std::bad_alloc& e) {
     log(Logger::ERROR, "main: unable to allocate memory");
     shutdown();
@@ -37,6 +37,9 @@ void createTempIPCFactory() {
 
   auto ipc = WakeWordIPCFactory::createIPCHandler(dummyAgent.get(),
                                                   WakeWordIPCFactory::IPCType::TCP_PROTOCOL);
+
+  auto sharedMemoryIpc = WakeWordIPCFactory::createIPCHandler(dummyAgent.get(),
+                                                  WakeWordIPCFactory::IPCType::SHARED_MEMORY);
 }
 
 bool testIPCFactory() {